@@ -0,0 +1,42 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.crypto.AesGcm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cipher used for every frame exchanged with the socket
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesGcmBenchmark {
+    @Param({"128", "4096", "65536"})
+    private int size;
+
+    private byte[] key;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        this.key = Fixtures.bytes(32);
+        this.plaintext = Fixtures.bytes(size);
+        this.ciphertext = AesGcm.encrypt(0, plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return AesGcm.encrypt(counter++, plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return AesGcm.decrypt(0, ciphertext, key);
+    }
+}
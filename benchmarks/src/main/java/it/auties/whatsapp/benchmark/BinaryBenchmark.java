@@ -0,0 +1,45 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.binary.BinaryDecoder;
+import it.auties.whatsapp.binary.BinaryEncoder;
+import it.auties.whatsapp.model.exchange.Node;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding of the nodes exchanged with the socket
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int children;
+
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private Node node;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        this.encoder = new BinaryEncoder();
+        this.decoder = new BinaryDecoder();
+        this.node = Fixtures.largeNode(children);
+        this.encoded = encoder.encode(node);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.encode(node);
+    }
+
+    @Benchmark
+    public Node decode() {
+        return decoder.decode(encoded);
+    }
+}
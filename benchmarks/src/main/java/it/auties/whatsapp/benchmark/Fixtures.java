@@ -0,0 +1,168 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.controller.ControllerSerializer;
+import it.auties.whatsapp.controller.Store;
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.exchange.Node;
+import it.auties.whatsapp.model.info.MessageInfo;
+import it.auties.whatsapp.model.message.model.MessageContainer;
+import it.auties.whatsapp.model.message.model.MessageKey;
+import it.auties.whatsapp.model.sync.HistorySync;
+import it.auties.whatsapp.util.Protobuf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic fixtures shared by the benchmarks, so that results are comparable across runs
+ */
+final class Fixtures {
+    private static final long SEED = 42;
+
+    private Fixtures() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Creates a node shaped like a large usync or receipt response: a list of items, each with a few attributes and a binary payload
+     *
+     * @param children the number of items
+     * @return a non-null node
+     */
+    static Node largeNode(int children) {
+        var random = new Random(SEED);
+        var items = new ArrayList<Node>(children);
+        for (var i = 0; i < children; i++) {
+            var attributes = Map.<String, Object>of(
+                    "jid", ContactJid.of("39%010d@s.whatsapp.net".formatted(i)),
+                    "id", HexFormat.of().formatHex(bytes(random, 8)),
+                    "type", i % 2 == 0 ? "text" : "media",
+                    "t", String.valueOf(1_690_000_000L + i)
+            );
+            items.add(Node.of("item", attributes, bytes(random, 64)));
+        }
+
+        return Node.of("iq", Map.of("id", "benchmark", "type", "result", "xmlns", "usync"), Node.of("list", items.toArray(Node[]::new)));
+    }
+
+    /**
+     * Creates an encoded history sync with text messages
+     *
+     * @param chats           the number of chats
+     * @param messagesPerChat the number of messages per chat
+     * @return the encoded history sync
+     */
+    static byte[] historySync(int chats, int messagesPerChat) {
+        var conversations = new ArrayList<Chat>(chats);
+        for (var i = 0; i < chats; i++) {
+            conversations.add(chat(i, messagesPerChat));
+        }
+
+        var historySync = HistorySync.builder()
+                .syncType(HistorySync.Type.RECENT)
+                .conversations(conversations)
+                .build();
+        return Protobuf.writeMessage(historySync);
+    }
+
+    /**
+     * Creates a store with text messages
+     *
+     * @param serializer      the serializer of the store
+     * @param chats           the number of chats
+     * @param messagesPerChat the number of messages per chat
+     * @return a non-null store
+     */
+    static Store store(ControllerSerializer serializer, int chats, int messagesPerChat) {
+        var store = Store.random(null, null, ClientType.WEB, serializer);
+        for (var i = 0; i < chats; i++) {
+            store.addChatDirect(chat(i, messagesPerChat));
+        }
+
+        return store;
+    }
+
+    /**
+     * Creates a chat with text messages
+     *
+     * @param index    the index of the chat, used to create its jid
+     * @param messages the number of messages
+     * @return a non-null chat
+     */
+    static Chat chat(int index, int messages) {
+        var jid = ContactJid.of("39%010d@s.whatsapp.net".formatted(index));
+        var chat = Chat.ofJid(jid);
+        for (var i = 0; i < messages; i++) {
+            var key = MessageKey.builder()
+                    .chatJid(jid)
+                    .id("%016X".formatted(((long) index << 32) | i))
+                    .fromMe(i % 2 == 0)
+                    .build();
+            var info = MessageInfo.builder()
+                    .key(key)
+                    .message(MessageContainer.of("Message %s of chat %s, long enough to look like a real text message".formatted(i, index)))
+                    .timestampSeconds(1_690_000_000L + i)
+                    .build();
+            chat.addNewMessage(info);
+        }
+
+        return chat;
+    }
+
+    /**
+     * Returns deterministic random bytes
+     *
+     * @param length the number of bytes
+     * @return a non-null array
+     */
+    static byte[] bytes(int length) {
+        return bytes(new Random(SEED), length);
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        var result = new byte[length];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /**
+     * Creates a temporary directory, the benchmark that uses it should delete it using {@link Fixtures#deleteDirectory(Path)}
+     *
+     * @return a non-null path
+     */
+    static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("whatsapp-benchmark");
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot create temporary directory", exception);
+        }
+    }
+
+    /**
+     * Deletes a directory and everything inside it
+     *
+     * @param directory the directory to delete, can be null
+     */
+    static void deleteDirectory(Path directory) {
+        if (directory == null || Files.notExists(directory)) {
+            return;
+        }
+
+        try (var walker = Files.walk(directory)) {
+            for (var file : walker.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot delete temporary directory", exception);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.sync.HistorySync;
+import it.auties.whatsapp.util.Protobuf;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding of history sync payloads, both materialized and streamed chat by chat
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistorySyncBenchmark {
+    private static final int CONVERSATIONS_INDEX = 2;
+
+    @Param({"100", "1000"})
+    private int chats;
+
+    @Param({"50"})
+    private int messagesPerChat;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        this.payload = Fixtures.historySync(chats, messagesPerChat);
+    }
+
+    @Benchmark
+    public HistorySync decode() {
+        return Protobuf.readMessage(payload, HistorySync.class);
+    }
+
+    @Benchmark
+    public HistorySync decodeStreaming(Blackhole blackhole) {
+        return Protobuf.readMessage(new ByteArrayInputStream(payload), HistorySync.class, CONVERSATIONS_INDEX, Chat.class, blackhole::consume);
+    }
+}
@@ -0,0 +1,62 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.binary.BinaryPatchType;
+import it.auties.whatsapp.crypto.LTHash;
+import it.auties.whatsapp.model.sync.LTHashState;
+import it.auties.whatsapp.model.sync.RecordSync;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the integrity hash computed for every app state patch
+ * Half of the mutations overwrite a value that is already in the state, so both the add and the subtract paths are exercised
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LTHashBenchmark {
+    private static final int MAC_LENGTH = 32;
+
+    @Param({"1000"})
+    private int mutations;
+
+    private LTHashState state;
+    private byte[][] indexMacs;
+    private byte[][] valueMacs;
+
+    @Setup
+    public void setup() {
+        var seed = Fixtures.bytes(mutations * MAC_LENGTH * 2);
+        this.indexMacs = new byte[mutations][];
+        this.valueMacs = new byte[mutations][];
+        this.state = new LTHashState(BinaryPatchType.REGULAR);
+        for (var i = 0; i < mutations; i++) {
+            indexMacs[i] = slice(seed, i * 2);
+            valueMacs[i] = slice(seed, i * 2 + 1);
+            if (i % 2 == 0) {
+                state.indexValueMap().put(Base64.getEncoder().encodeToString(indexMacs[i]), valueMacs[i]);
+            }
+        }
+    }
+
+    private byte[] slice(byte[] seed, int index) {
+        var result = new byte[MAC_LENGTH];
+        System.arraycopy(seed, index * MAC_LENGTH, result, 0, MAC_LENGTH);
+        return result;
+    }
+
+    @Benchmark
+    public LTHash.Result mix() {
+        var hash = new LTHash(state);
+        for (var i = 0; i < mutations; i++) {
+            hash.mix(indexMacs[i], valueMacs[i], RecordSync.Operation.SET);
+        }
+
+        return hash.finish();
+    }
+}
@@ -0,0 +1,84 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.controller.DefaultControllerSerializer;
+import it.auties.whatsapp.controller.Keys;
+import it.auties.whatsapp.crypto.GroupBuilder;
+import it.auties.whatsapp.crypto.GroupCipher;
+import it.auties.whatsapp.crypto.SessionBuilder;
+import it.auties.whatsapp.crypto.SessionCipher;
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+import it.auties.whatsapp.model.signal.keypair.SignalSignedKeyPair;
+import it.auties.whatsapp.model.signal.message.SignalDistributionMessage;
+import it.auties.whatsapp.model.signal.message.SignalPreKeyMessage;
+import it.auties.whatsapp.model.signal.sender.SenderKeyName;
+import it.auties.whatsapp.model.signal.session.SessionAddress;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full round trip, encryption by the sender and decryption by the recipient, of the signal ciphers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignalBenchmark {
+    @Param({"256", "4096"})
+    private int size;
+
+    private Path directory;
+    private byte[] plaintext;
+    private SessionCipher senderSession;
+    private SessionCipher recipientSession;
+    private GroupCipher senderGroup;
+    private GroupCipher recipientGroup;
+
+    @Setup
+    public void setup() {
+        this.directory = Fixtures.temporaryDirectory();
+        var serializer = new DefaultControllerSerializer(directory);
+        var sender = Keys.random(null, null, ClientType.WEB, serializer);
+        var recipient = Keys.random(null, null, ClientType.WEB, serializer);
+        var senderAddress = new SessionAddress("sender", 0);
+        var recipientAddress = new SessionAddress("recipient", 0);
+        var preKey = SignalPreKeyPair.random(1);
+        recipient.addPreKey(preKey);
+        new SessionBuilder(recipientAddress, sender).createOutgoing(
+                recipient.registrationId(),
+                recipient.identityKeyPair().encodedPublicKey(),
+                recipient.signedKeyPair(),
+                new SignalSignedKeyPair(preKey.id(), preKey.toGenericKeyPair(), null)
+        );
+        this.senderSession = new SessionCipher(recipientAddress, sender);
+        this.recipientSession = new SessionCipher(senderAddress, recipient);
+
+        var groupName = new SenderKeyName("120363000000000000@g.us", senderAddress);
+        var distribution = new GroupBuilder(sender).createOutgoing(groupName);
+        new GroupBuilder(recipient).createIncoming(groupName, SignalDistributionMessage.ofSerialized(distribution));
+        this.senderGroup = new GroupCipher(groupName, sender);
+        this.recipientGroup = new GroupCipher(groupName, recipient);
+        this.plaintext = Fixtures.bytes(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public byte[] session() {
+        var encrypted = senderSession.encrypt(plaintext);
+        return recipientSession.decrypt(SignalPreKeyMessage.ofSerialized(encrypted.message()));
+    }
+
+    @Benchmark
+    public byte[] group() {
+        var encrypted = senderGroup.encrypt(plaintext);
+        return recipientGroup.decrypt(encrypted.message());
+    }
+}
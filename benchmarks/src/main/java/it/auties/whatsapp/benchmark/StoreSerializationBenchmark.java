@@ -0,0 +1,47 @@
+package it.auties.whatsapp.benchmark;
+
+import it.auties.whatsapp.controller.DefaultControllerSerializer;
+import it.auties.whatsapp.controller.Store;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a synchronous save of a large store, including one file per chat
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StoreSerializationBenchmark {
+    @Param({"10000"})
+    private int chats;
+
+    @Param({"5"})
+    private int messagesPerChat;
+
+    private Path directory;
+    private DefaultControllerSerializer serializer;
+    private Store store;
+
+    @Setup
+    public void setup() {
+        this.directory = Fixtures.temporaryDirectory();
+        this.serializer = new DefaultControllerSerializer(directory);
+        this.store = Fixtures.store(serializer, chats, messagesPerChat);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Store serializeStore() {
+        serializer.serializeStore(store, false);
+        return store;
+    }
+}
@@ -1,14 +1,23 @@
 package it.auties.whatsapp.api;
 
+import it.auties.whatsapp.controller.CallLog;
 import it.auties.whatsapp.controller.ControllerSerializer;
+import it.auties.whatsapp.controller.DefaultMediaCache;
 import it.auties.whatsapp.controller.Keys;
+import it.auties.whatsapp.controller.MediaCache;
 import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.listener.RegisterListener;
+import it.auties.whatsapp.metrics.MetricsRecorder;
+import it.auties.whatsapp.model.call.CallRetention;
+import it.auties.whatsapp.model.chat.ChatRetention;
+import it.auties.whatsapp.model.exchange.RequestTraceMode;
 import it.auties.whatsapp.model.signal.auth.UserAgent.UserAgentReleaseChannel;
 import it.auties.whatsapp.model.signal.auth.Version;
+import it.auties.whatsapp.util.Validate;
 import lombok.NonNull;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.Executor;
@@ -91,6 +100,176 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
         return (T) this;
     }
 
+    /**
+     * Sets how long to wait for the preview of a link before sending a text message without it
+     * Previews that are resolved after the timeout are still cached for the next message with the same link
+     * By default, five seconds
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T linkPreviewTimeout(@NonNull Duration linkPreviewTimeout) {
+        if(store != null) {
+            store.linkPreviewTimeout(linkPreviewTimeout);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets how many messages each chat keeps in memory, chats can override it using {@link it.auties.whatsapp.model.chat.Chat#retention(ChatRetention)}
+     * Starred messages and messages waiting for a reply are never evicted
+     * By default, every message is kept
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T messageRetention(@NonNull ChatRetention messageRetention) {
+        if(store != null) {
+            store.messageRetention(messageRetention);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the estimated memory, in bytes, that the messages of all chats can use before the oldest ones are evicted
+     * By default, there is no limit
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T messageMemoryBudget(long messageMemoryBudget) {
+        Validate.isTrue(messageMemoryBudget >= 0, "Expected a non-negative budget, got: %s", messageMemoryBudget);
+        if(store != null) {
+            store.messageMemoryBudget(messageMemoryBudget);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the age after which messages are kept in memory only in their encoded form, which uses a fraction of the memory
+     * Compacted messages are decoded again transparently the first time they are accessed
+     * By default, messages are never compacted
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T messageCompactionAge(@NonNull Duration messageCompactionAge) {
+        Validate.isTrue(!messageCompactionAge.isNegative(), "Expected a non-negative age, got: %s", messageCompactionAge);
+        if(store != null) {
+            store.messageCompactionAge(messageCompactionAge);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the maximum number of message keys that can be skipped to decrypt a message that arrived out of order
+     * Messages that would skip more keys are rejected before any key is derived
+     * By default, up to 2000 keys can be skipped
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T maxSkippedMessageKeys(int maxSkippedMessageKeys) {
+        Validate.isTrue(maxSkippedMessageKeys >= 0, "Expected a non-negative number of keys, got: %s", maxSkippedMessageKeys);
+        if(keys != null) {
+            keys.maxSkippedMessageKeys(maxSkippedMessageKeys);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the maximum number of skipped message keys kept by each chain to decrypt messages that arrive late
+     * When a chain exceeds this limit, its oldest keys are evicted first
+     * By default, up to 2000 keys are kept
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T maxRetainedMessageKeys(int maxRetainedMessageKeys) {
+        Validate.isTrue(maxRetainedMessageKeys > 0, "Expected a positive number of keys, got: %s", maxRetainedMessageKeys);
+        if(keys != null) {
+            keys.maxRetainedMessageKeys(maxRetainedMessageKeys);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the age after which a pre key that was never used to start a session is removed
+     * Pre keys that were used are always removed after a grace window
+     * By default, unused pre keys are never removed
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T preKeyMaxAge(@NonNull Duration preKeyMaxAge) {
+        Validate.isTrue(!preKeyMaxAge.isNegative(), "Expected a non-negative age, got: %s", preKeyMaxAge);
+        if(keys != null) {
+            keys.preKeyMaxAge(preKeyMaxAge);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets when the stack trace of the caller of a request should be captured
+     * The stack trace is attached to the exception thrown if the request times out or fails, but capturing it has a cost for every request
+     * By default, the stack trace is captured for a sample of the requests
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T requestTraceMode(@NonNull RequestTraceMode requestTraceMode) {
+        if(store != null) {
+            store.requestTraceMode(requestTraceMode);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets how many terminated calls the store keeps and for how long
+     * Ongoing calls are kept until they aren't updated for longer than {@link CallRetention#ongoingTtl()}
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T callRetention(@NonNull CallRetention callRetention) {
+        if(store != null) {
+            store.callRetention(callRetention);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the log every update to a call is appended to
+     * If a log is set, terminated calls are removed from the store immediately
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T callLog(@NonNull CallLog callLog) {
+        if(store != null) {
+            store.callLog(callLog);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the recorder of the metrics of this session, such as the throughput of the socket and the latency of queries
+     * Use {@link MetricsRecorder#inMemory()} to keep them in memory and {@link Whatsapp#metrics()} to export them
+     * By default, metrics are discarded
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T metricsRecorder(@NonNull MetricsRecorder metricsRecorder) {
+        if(store != null) {
+            store.metricsRecorder(metricsRecorder);
+        }
+        if(keys != null) {
+            keys.metricsRecorder(metricsRecorder);
+        }
+        return (T) this;
+    }
+
     /**
      * Sets the error handler for this session
      *
@@ -165,4 +344,77 @@ public sealed class OptionsBuilder<T extends OptionsBuilder<T>> permits MobileOp
         store.checkPatchMacs(checkPatchMacs);
         return (T) this;
     }
+
+    /**
+     * Sets the number of concurrent range requests used to download a media to a file or a stream
+     * Large media are split in chunks that are downloaded concurrently and reassembled in order before they are verified
+     * By default, four requests are used
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T mediaDownloadParallelism(int mediaDownloadParallelism) {
+        Validate.isTrue(mediaDownloadParallelism > 0, "Expected a positive parallelism, got: %s", mediaDownloadParallelism);
+        if(store != null) {
+            store.mediaDownloadParallelism(mediaDownloadParallelism);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the cache used to store the media downloaded by this session
+     * By default, a least recently used cache that only keeps media in memory is used
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T mediaCache(@NonNull MediaCache mediaCache) {
+        if(store != null) {
+            store.mediaCache(mediaCache);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Uses a media cache that also moves the media evicted from memory to a directory private to this session
+     * Cached media are stored decrypted, so this isn't enabled by default
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T mediaCacheOnDisk() {
+        if(store != null) {
+            store.mediaCache(DefaultMediaCache.ofSession(store.uuid()));
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets how long an uploaded media can be reused when the same media is sent again
+     * A zero duration disables the reuse of uploads
+     * By default, it matches how long media are kept by Whatsapp's servers
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T mediaUploadCacheTtl(@NonNull Duration mediaUploadCacheTtl) {
+        if(store != null) {
+            store.mediaUploadCacheTtl(mediaUploadCacheTtl);
+        }
+        return (T) this;
+    }
+
+    /**
+     * Sets the maximum number of uploads that can be reused when the same media is sent again
+     * The oldest uploads are removed first, zero means no limit
+     *
+     * @return the same instance for chaining
+     */
+    @SuppressWarnings("unchecked")
+    public T mediaUploadCacheSize(int mediaUploadCacheSize) {
+        if(store != null) {
+            store.mediaUploadCacheSize(mediaUploadCacheSize);
+        }
+        return (T) this;
+    }
 }
\ No newline at end of file
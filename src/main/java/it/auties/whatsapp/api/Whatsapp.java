@@ -8,14 +8,13 @@ import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
 import com.google.zxing.common.HybridBinarizer;
 import com.google.zxing.qrcode.QRCodeReader;
 import it.auties.curve25519.Curve25519;
-import it.auties.linkpreview.LinkPreview;
-import it.auties.linkpreview.LinkPreviewMedia;
-import it.auties.linkpreview.LinkPreviewResult;
 import it.auties.whatsapp.binary.BinaryPatchType;
 import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.crypto.*;
 import it.auties.whatsapp.listener.*;
+import it.auties.whatsapp.metrics.MetricsRecorder;
+import it.auties.whatsapp.metrics.MetricsSnapshot;
 import it.auties.whatsapp.model.action.*;
 import it.auties.whatsapp.model.business.*;
 import it.auties.whatsapp.model.button.template.hsm.HighlyStructuredFourRowTemplate;
@@ -71,9 +70,12 @@ import lombok.experimental.Accessors;
 import javax.imageio.ImageIO;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.*;
@@ -82,6 +84,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -491,13 +494,13 @@ public class Whatsapp {
         } else if (content instanceof ButtonMessage buttonMessage) {
             return attributeButtonMessage(info, buttonMessage);
         } else if (content instanceof TextMessage textMessage) {
-            attributeTextMessage(textMessage);
+            return attributeTextMessage(textMessage);
         } else if (content instanceof PollCreationMessage pollCreationMessage) {
             attributePollCreationMessage(info, pollCreationMessage);
         } else if (content instanceof PollUpdateMessage pollUpdateMessage) {
             attributePollUpdateMessage(info, pollUpdateMessage);
         } else if (content instanceof GroupInviteMessage groupInviteMessage) {
-            attributeGroupInviteMessage(info, groupInviteMessage);
+            return attributeGroupInviteMessage(info, groupInviteMessage);
         }
 
         return CompletableFuture.completedFuture(null);
@@ -533,42 +536,59 @@ public class Whatsapp {
         info.message(info.message().unbox());
     }
 
-    private void attributeTextMessage(TextMessage textMessage) {
+    private CompletableFuture<Void> attributeTextMessage(TextMessage textMessage) {
         if (store().textPreviewSetting() == TextPreviewSetting.DISABLED) {
-            return;
-        }
-        var match = LinkPreview.createPreview(textMessage.text()).orElse(null);
-        if (match == null) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
-        var uri = match.result().uri().toString();
+        return LinkPreviews.findPreview(textMessage.text(), store().linkPreviewTimeout())
+                .thenAccept(match -> match.ifPresent(result -> attributeTextMessage(textMessage, result)));
+    }
+
+    private void attributeTextMessage(TextMessage textMessage, LinkPreviews.Match match) {
+        var preview = match.preview();
+        var uri = preview.result().uri().toString();
         if (store().textPreviewSetting() == TextPreviewSetting.ENABLED_WITH_INFERENCE && !match.text()
                 .equals(uri)) {
             textMessage.text(textMessage.text().replace(match.text(), uri));
         }
-        var imageUri = match.result()
-                .images()
-                .stream()
-                .reduce(this::compareDimensions)
-                .map(LinkPreviewMedia::uri)
-                .orElse(null);
-        var videoUri = match.result()
-                .videos()
-                .stream()
-                .reduce(this::compareDimensions)
-                .map(LinkPreviewMedia::uri)
-                .orElse(null);
         textMessage.matchedText(uri);
-        textMessage.canonicalUrl(Objects.requireNonNullElse(videoUri, match.result().uri()).toString());
-        textMessage.thumbnail(Medias.download(imageUri).orElse(null));
-        textMessage.description(match.result().siteDescription());
-        textMessage.title(match.result().title());
-        textMessage.previewType(videoUri != null ? TextMessagePreviewType.VIDEO : TextMessagePreviewType.NONE);
+        textMessage.canonicalUrl(Objects.requireNonNullElse(preview.videoUri(), preview.result().uri()).toString());
+        textMessage.thumbnail(preview.thumbnail());
+        textMessage.description(preview.result().siteDescription());
+        textMessage.title(preview.result().title());
+        textMessage.previewType(preview.videoUri() != null ? TextMessagePreviewType.VIDEO : TextMessagePreviewType.NONE);
     }
 
     private CompletableFuture<Void> attributeMediaMessage(MediaMessage mediaMessage) {
-        return Medias.upload(mediaMessage.decodedMedia().orElseThrow(), mediaMessage.mediaType().toAttachmentType(), store().mediaConnection())
-                .thenAccept(upload -> attributeMediaMessage(mediaMessage, upload));
+        var type = mediaMessage.mediaType().toAttachmentType();
+        var path = mediaMessage.decodedMediaPath();
+        if (path.isPresent()) {
+            return CompletableFuture.supplyAsync(() -> Medias.sha256(path.get()))
+                    .thenComposeAsync(sha256 -> uploadMedia(sha256, type, () -> Medias.upload(path.get(), type, store().mediaConnection(), store().mediaHosts())))
+                    .thenAccept(result -> attributeMediaMessage(mediaMessage, result))
+                    .whenComplete((ignored, throwable) -> mediaMessage.deleteTemporaryMedia());
+        }
+
+        var media = mediaMessage.decodedMedia().orElseThrow();
+        return uploadMedia(Sha256.calculate(media), type, () -> Medias.upload(media, type, store().mediaConnection(), store().mediaHosts()))
+                .thenAccept(result -> attributeMediaMessage(mediaMessage, result));
+    }
+
+    private CompletableFuture<MediaFile> uploadMedia(byte[] sha256, AttachmentType type, Supplier<CompletableFuture<MediaFile>> uploader) {
+        var ttl = store().mediaUploadCacheTtl();
+        if (ttl.isZero() || ttl.isNegative()) {
+            return uploader.get();
+        }
+
+        var cached = store().mediaUploadCache().find(sha256, type, ttl);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        return uploader.get().thenApply(result -> {
+            store().mediaUploadCache().add(sha256, type, result, store().mediaUploadCacheSize());
+            return result;
+        });
     }
 
     private AttachmentProvider attributeMediaMessage(MediaMessage mediaMessage, MediaFile upload) {
@@ -647,35 +667,27 @@ public class Whatsapp {
     }
 
     // This is not needed probably, but Whatsapp uses a text message by default, so maybe it makes sense
-    private void attributeGroupInviteMessage(MessageInfo info, GroupInviteMessage groupInviteMessage) {
+    private CompletableFuture<Void> attributeGroupInviteMessage(MessageInfo info, GroupInviteMessage groupInviteMessage) {
         Validate.isTrue(groupInviteMessage.code() != null, "Invalid message code");
         var url = "https://chat.whatsapp.com/%s".formatted(groupInviteMessage.code());
-        var preview = LinkPreview.createPreview(URI.create(url))
-                .stream()
-                .map(LinkPreviewResult::images)
-                .map(Collection::stream)
-                .map(Stream::findFirst)
-                .flatMap(Optional::stream)
-                .findFirst()
-                .map(LinkPreviewMedia::uri)
-                .orElse(null);
         var replacement = TextMessage.builder()
                 .text(groupInviteMessage.caption() != null ? "%s: %s".formatted(groupInviteMessage.caption(), url) : url)
                 .description("WhatsApp Group Invite")
                 .title(groupInviteMessage.groupName())
                 .previewType(TextMessagePreviewType.NONE)
-                .thumbnail(Medias.download(preview).orElse(null))
                 .matchedText(url)
                 .canonicalUrl(url)
                 .build();
         info.message(MessageContainer.of(replacement));
+        return LinkPreviews.getPreview(URI.create(url), store().linkPreviewTimeout())
+                .thenAccept(preview -> preview.map(LinkPreviews.Preview::thumbnail).ifPresent(replacement::thumbnail));
     }
 
     private <T extends ContactJidProvider> CompletableFuture<T> mark(@NonNull T chat, boolean read) {
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
             store().findChatByJid(chat.toJid())
-                    .ifPresent(entry -> entry.markedAsUnread(read));
+                    .ifPresent(entry -> store().updateChatViews(entry.markedAsUnread(read)));
             return CompletableFuture.completedFuture(chat);
         }
 
@@ -698,10 +710,6 @@ public class Whatsapp {
         return CompletableFuture.allOf(all);
     }
 
-    private LinkPreviewMedia compareDimensions(LinkPreviewMedia first, LinkPreviewMedia second) {
-        return first.width() * first.height() > second.width() * second.height() ? first : second;
-    }
-
     private ActionMessageRangeSync createRange(ContactJidProvider chat, boolean allMessages) {
         var known = store().findChatByJid(chat.toJid()).orElseGet(() -> store().addNewChat(chat.toJid()));
         return new ActionMessageRangeSync(known, allMessages);
@@ -720,6 +728,7 @@ public class Whatsapp {
         var count = info.chat().unreadMessagesCount();
         if (count > 0) {
             info.chat().unreadMessagesCount(count - 1);
+            store().updateChatViews(info.chat());
         }
         return CompletableFuture.completedFuture(info.status(MessageStatus.READ));
     }
@@ -1235,9 +1244,8 @@ public class Whatsapp {
      * @return a CompletableFuture
      */
     public <T extends ContactJidProvider> CompletableFuture<T> changeGroupPicture(@NonNull T group, byte[] image) {
-        var profilePic = image != null ? Medias.getProfilePic(image) : null;
-        var body = Node.of("picture", Map.of("type", "image"), profilePic);
-        return socketHandler.sendQuery(group.toJid().toWhatsappJid(), "set", "w:profile:picture", body)
+        var profilePic = image != null ? Medias.getProfilePicAsync(image) : CompletableFuture.<byte[]>completedFuture(null);
+        return profilePic.thenComposeAsync(result -> socketHandler.sendQuery(group.toJid().toWhatsappJid(), "set", "w:profile:picture", Node.of("picture", Map.of("type", "image"), result)))
                 .thenApplyAsync(ignored -> group);
     }
 
@@ -1561,7 +1569,7 @@ public class Whatsapp {
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
             store().findChatByJid(chat)
-                    .ifPresent(entry -> entry.pinnedTimestampSeconds(pin ? (int) Clock.nowSeconds() : 0));
+                    .ifPresent(entry -> store().updateChatViews(entry.pinnedTimestampSeconds(pin ? (int) Clock.nowSeconds() : 0)));
             return CompletableFuture.completedFuture(chat);
         }
 
@@ -1585,7 +1593,7 @@ public class Whatsapp {
     private CompletableFuture<MessageInfo> star(MessageInfo info, boolean star) {
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
-            info.starred(star);
+            store().updateStarredMessage(info.starred(star));
             return CompletableFuture.completedFuture(info);
         }
 
@@ -1633,7 +1641,7 @@ public class Whatsapp {
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
             store().findChatByJid(chat)
-                    .ifPresent(entry -> entry.archived(archive));
+                    .ifPresent(entry -> store().updateChatViews(entry.archived(archive)));
             return CompletableFuture.completedFuture(chat);
         }
 
@@ -1686,7 +1694,7 @@ public class Whatsapp {
 
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
-            info.chat().removeMessage(info);
+            store().removeMessage(info.chat(), info);
             return CompletableFuture.completedFuture(info);
         }
 
@@ -1733,7 +1741,7 @@ public class Whatsapp {
         if(store().clientType() == ClientType.MOBILE){
             // TODO: Send notification to companions
             store().findChatByJid(chat.toJid())
-                    .ifPresent(Chat::removeMessages);
+                    .ifPresent(store()::clearMessages);
             return CompletableFuture.completedFuture(chat);
         }
 
@@ -1961,7 +1969,8 @@ public class Whatsapp {
 
     private CompletableFuture<byte[]> downloadMedia(MessageInfo info, boolean retried) {
         var mediaMessage = (MediaMessage) info.message().content();
-        var result = mediaMessage.decodedMedia();
+        var result = mediaMessage.mediaHosts(store().mediaHosts())
+                .decodedMedia();
         if (result.isEmpty()) {
             Validate.isTrue(!retried, "Media reupload failed");
             return requireMediaReupload(info).thenComposeAsync(entry -> downloadMedia(entry, true));
@@ -1969,6 +1978,66 @@ public class Whatsapp {
         return CompletableFuture.completedFuture(result.get());
     }
 
+    /**
+     * Downloads a media from Whatsapp's servers and writes it to a file.
+     * The media is decrypted and verified in fixed-size chunks, so the memory used doesn't depend on its size.
+     * The file is only created or replaced if the media was verified and decrypted successfully.
+     * If the media isn't available, a retry request will be issued. If that also fails, an exception will be thrown.
+     *
+     * @param info the non-null message info wrapping the media
+     * @param path the non-null path where the media should be written
+     * @return a CompletableFuture
+     */
+    public CompletableFuture<Path> downloadMedia(@NonNull MessageInfo info, @NonNull Path path) {
+        return downloadMedia(info, provider -> Medias.download(provider, path, store().mediaDownloadOptions()), false)
+                .thenApply(ignored -> path);
+    }
+
+    /**
+     * Downloads a media from Whatsapp's servers and writes it to a stream.
+     * The media is decrypted and verified in fixed-size chunks, so the memory used doesn't depend on its size.
+     * Nothing is written to the stream if the media cannot be verified.
+     * If the media isn't available, a retry request will be issued. If that also fails, an exception will be thrown.
+     * The stream isn't closed by this method.
+     *
+     * @param info   the non-null message info wrapping the media
+     * @param output the non-null stream where the media should be written
+     * @return a CompletableFuture
+     */
+    public CompletableFuture<Void> downloadMedia(@NonNull MessageInfo info, @NonNull OutputStream output) {
+        return downloadMedia(info, provider -> Medias.download(provider, output, store().mediaDownloadOptions()), false);
+    }
+
+    /**
+     * Downloads a media from Whatsapp's servers and writes it to a channel.
+     * The media is decrypted and verified in fixed-size chunks, so the memory used doesn't depend on its size.
+     * Nothing is written to the channel if the media cannot be verified.
+     * If the media isn't available, a retry request will be issued. If that also fails, an exception will be thrown.
+     * The channel isn't closed by this method.
+     *
+     * @param info    the non-null message info wrapping the media
+     * @param channel the non-null channel where the media should be written
+     * @return a CompletableFuture
+     */
+    public CompletableFuture<Void> downloadMedia(@NonNull MessageInfo info, @NonNull WritableByteChannel channel) {
+        return downloadMedia(info, provider -> Medias.download(provider, channel, store().mediaDownloadOptions()), false);
+    }
+
+    private CompletableFuture<Void> downloadMedia(MessageInfo info, Function<MediaMessage, CompletableFuture<Boolean>> downloader, boolean retried) {
+        Validate.isTrue(info.message()
+                .category() == MessageCategory.MEDIA, "Expected media message, got: %s(%s)", info.message()
+                .category(), info.message().type());
+        var mediaMessage = (MediaMessage) info.message().content();
+        return downloader.apply(mediaMessage).thenComposeAsync(downloaded -> {
+            if (downloaded) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Validate.isTrue(!retried, "Media reupload failed");
+            return requireMediaReupload(info).thenComposeAsync(entry -> downloadMedia(entry, downloader, true));
+        });
+    }
+
     /**
      * Asks Whatsapp for a media reupload for a specific media
      *
@@ -2011,7 +2080,7 @@ public class Whatsapp {
         var mediaRetryNotificationData = AesGcm.decrypt(mediaIv, mediaPayload, retryKey, retryIdData);
         var mediaRetryNotification = Protobuf.readMessage(mediaRetryNotificationData, MediaRetryNotification.class);
         Validate.isTrue(mediaRetryNotification.directPath() != null, "Media retry upload failed: %s", mediaRetryNotification);
-        mediaMessage.mediaUrl(Medias.createMediaUrl(mediaRetryNotification.directPath()));
+        mediaMessage.mediaUrl(Medias.createMediaUrl(mediaRetryNotification.directPath(), store().mediaHosts()));
         mediaMessage.mediaDirectPath(mediaRetryNotification.directPath());
         return info;
     }
@@ -2365,7 +2434,11 @@ public class Whatsapp {
                 .conversations(chats)
                 .syncType(HistorySync.Type.INITIAL_BOOTSTRAP)
                 .build();
-        return sendHistoryProtocolMessage(jid, initialBootstrap, Type.INITIAL_BOOTSTRAP);
+        var syncBytes = store().withoutCompaction(() -> {
+            chats.forEach(Chat::inflateMessages);
+            return Protobuf.writeMessage(initialBootstrap);
+        });
+        return sendHistoryProtocolMessage(jid, syncBytes, Type.INITIAL_BOOTSTRAP);
     }
 
     private CompletableFuture<Void> sendInitialNullMessage(ContactJid jid) {
@@ -2440,8 +2513,11 @@ public class Whatsapp {
     }
 
     private CompletableFuture<Void> sendHistoryProtocolMessage(ContactJid jid, HistorySync historySync, HistorySyncNotification.Type type) {
-        var syncBytes = Protobuf.writeMessage(historySync);
-        return Medias.upload(syncBytes, AttachmentType.HISTORY_SYNC, store().mediaConnection())
+        return sendHistoryProtocolMessage(jid, Protobuf.writeMessage(historySync), type);
+    }
+
+    private CompletableFuture<Void> sendHistoryProtocolMessage(ContactJid jid, byte[] syncBytes, HistorySyncNotification.Type type) {
+        return Medias.upload(syncBytes, AttachmentType.HISTORY_SYNC, store().mediaConnection(), store().mediaHosts())
                 .thenApplyAsync(upload -> createHistoryProtocolMessage(upload, type))
                 .thenComposeAsync(result -> socketHandler.sendPeerMessage(jid, result));
     }
@@ -2623,6 +2699,39 @@ public class Whatsapp {
         return this;
     }
 
+    /**
+     * Registers a listener with custom options
+     * Events are always delivered to a listener one at a time and in order, the options determine what happens when the listener falls behind
+     * If the listener is already registered, its options are replaced starting from the next event
+     *
+     * @param listener the listener to register
+     * @param options  the options that determine how the events of the listener are queued
+     * @return the same instance
+     */
+    public Whatsapp addListener(@NonNull Listener listener, @NonNull ListenerOptions options) {
+        store().addListener(listener, options);
+        return this;
+    }
+
+    /**
+     * Returns how each listener is keeping up with the events that are published
+     *
+     * @return a non-null map
+     */
+    public Map<Listener, ListenerMetrics> listenerMetrics() {
+        return socketHandler.listenerMetrics();
+    }
+
+    /**
+     * Returns the current value of the metrics of this session
+     * Metrics are only recorded if a recorder was set using {@link OptionsBuilder#metricsRecorder(MetricsRecorder)}
+     *
+     * @return a non-null snapshot
+     */
+    public MetricsSnapshot metrics() {
+        return store().metricsRecorder().snapshot();
+    }
+
     /**
      * Unregisters a listener
      *
@@ -127,8 +127,8 @@ public final class BinaryDecoder {
 
     private ContactJid readJidPair() {
         var read = read(true);
-        if (read instanceof String encoded) {
-            return ContactJid.of(encoded, ContactJid.Server.of(readString()));
+        if (read instanceof String user) {
+            return ContactJid.of(user, ContactJid.Server.of(readString()), 0, 0);
         } else if (read == null) {
             return ContactJid.ofServer(ContactJid.Server.of(readString()));
         } else {
@@ -140,7 +140,7 @@ public final class BinaryDecoder {
         var agent = buffer.readUnsignedByte();
         var device = buffer.readUnsignedByte();
         var user = readString();
-        return ContactJid.ofDevice(user, device, agent);
+        return ContactJid.of(user, ContactJid.Server.WHATSAPP, device, agent);
     }
 
     private int readSize(int token) {
@@ -0,0 +1,19 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.call.Call;
+import lombok.NonNull;
+
+/**
+ * This interface provides a standardized way to persist the calls of a session outside of its store.
+ * Every update to a call is appended to the log, so the store only needs to keep the calls that are still ongoing.
+ */
+@FunctionalInterface
+public interface CallLog {
+    /**
+     * Appends an update to a call
+     * This method is called on the socket thread, so it should not block
+     *
+     * @param call the non-null call
+     */
+    void append(@NonNull Call call);
+}
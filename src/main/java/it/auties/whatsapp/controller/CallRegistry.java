@@ -0,0 +1,181 @@
+package it.auties.whatsapp.controller;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import it.auties.whatsapp.model.call.Call;
+import it.auties.whatsapp.model.call.CallRetention;
+import it.auties.whatsapp.util.Clock;
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The calls of a session, indexed by their id.
+ * Terminated calls are queued in the order in which they ended, so that the ones that exceed the retention can be removed without scanning every call.
+ * Ongoing calls are queued in the order in which they were last updated, so that the ones that were never terminated can be removed the same way.
+ * If a {@link CallLog} is provided, every update is appended to it and terminated calls are removed immediately.
+ */
+public final class CallRegistry {
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final Queue<Entry> terminated;
+    private final Queue<Entry> ongoing;
+
+    public CallRegistry() {
+        this(Map.of());
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    CallRegistry(Map<String, Call> calls) {
+        this.entries = new ConcurrentHashMap<>();
+        this.terminated = new ConcurrentLinkedQueue<>();
+        this.ongoing = new ConcurrentLinkedQueue<>();
+        if (calls == null) {
+            return;
+        }
+
+        calls.values()
+                .stream()
+                .map(call -> new Entry(call, call.time().toEpochSecond()))
+                .sorted(Comparator.comparingLong(Entry::updatedSeconds))
+                .forEach(entry -> put(entry, true));
+    }
+
+    /**
+     * Adds or updates a call and removes the calls that exceed the retention
+     *
+     * @param call      the non-null call
+     * @param retention the non-null retention
+     * @param log       the log the call should be appended to, can be null
+     * @return the old value associated with {@link Call#id()}
+     */
+    public Optional<Call> add(@NonNull Call call, @NonNull CallRetention retention, CallLog log) {
+        if (log != null) {
+            log.append(call);
+        }
+
+        Optional<Call> result;
+        if (log != null && call.isTerminated()) {
+            result = Optional.ofNullable(entries.remove(call.id())).map(Entry::call);
+        } else {
+            result = Optional.ofNullable(put(new Entry(call, Clock.nowSeconds()), !retention.ongoingTtl().isZero())).map(Entry::call);
+        }
+
+        removeExpired(retention);
+        return result;
+    }
+
+    // Ongoing calls are only queued if they can expire, otherwise the entries replaced by later updates would never be polled
+    private Entry put(Entry entry, boolean expirable) {
+        var previous = entries.put(entry.call().id(), entry);
+        if (entry.call().isTerminated()) {
+            terminated.add(entry);
+        } else if (expirable) {
+            ongoing.add(entry);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Queries a call by id
+     *
+     * @param id the non-null id of the call
+     * @return a non-null optional
+     */
+    public Optional<Call> find(@NonNull String id) {
+        return Optional.ofNullable(entries.get(id))
+                .map(Entry::call);
+    }
+
+    /**
+     * Removes the calls that exceed a retention, starting from the oldest one
+     * Ongoing calls are only removed if they weren't updated for longer than {@link CallRetention#ongoingTtl()}
+     *
+     * @param retention the non-null retention
+     * @return the number of calls that were removed
+     */
+    public int removeExpired(@NonNull CallRetention retention) {
+        if (retention.isUnlimited()) {
+            return 0;
+        }
+
+        var now = Clock.nowSeconds();
+        return removeStale(retention, now) + removeTerminated(retention, now);
+    }
+
+    private int removeStale(CallRetention retention, long now) {
+        if (retention.ongoingTtl().isZero()) {
+            return 0;
+        }
+
+        var removed = 0;
+        Entry head;
+        while ((head = ongoing.peek()) != null && now - head.updatedSeconds() >= retention.ongoingTtl().toSeconds()) {
+            var oldest = ongoing.poll();
+            if (oldest != null && entries.remove(oldest.call().id(), oldest)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    private int removeTerminated(CallRetention retention, long now) {
+        var removed = 0;
+        Entry head;
+        while ((head = terminated.peek()) != null) {
+            var expired = !retention.terminatedTtl().isZero() && now - head.updatedSeconds() >= retention.terminatedTtl().toSeconds();
+            var overflow = retention.maxCalls() != 0 && entries.size() > retention.maxCalls();
+            if (!expired && !overflow) {
+                break;
+            }
+
+            var oldest = terminated.poll();
+            if (oldest != null && entries.remove(oldest.call().id(), oldest)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns the number of calls
+     *
+     * @return an unsigned int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns all the calls
+     *
+     * @return a non-null immutable collection
+     */
+    public Collection<Call> values() {
+        return entries.values()
+                .stream()
+                .map(Entry::call)
+                .toList();
+    }
+
+    @JsonValue
+    private Map<String, Call> serializableCalls() {
+        var results = new HashMap<String, Call>();
+        entries.forEach((id, entry) -> results.put(id, entry.call()));
+        return results;
+    }
+
+    /**
+     * A stored call
+     *
+     * @param call           the call
+     * @param updatedSeconds the time at which the call was last updated
+     */
+    private record Entry(Call call, long updatedSeconds) {
+
+    }
+}
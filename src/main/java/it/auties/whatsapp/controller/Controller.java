@@ -2,6 +2,7 @@ package it.auties.whatsapp.controller;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.metrics.MetricsRecorder;
 import it.auties.whatsapp.model.mobile.PhoneNumber;
 import it.auties.whatsapp.util.Json;
 import lombok.Builder.Default;
@@ -38,6 +39,14 @@ public abstract sealed class Controller<T extends Controller<T>> permits Store,
     @JsonIgnore
     protected ControllerSerializer serializer;
 
+    /**
+     * The recorder of the metrics of this session
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    protected MetricsRecorder metricsRecorder = MetricsRecorder.noop();
+
     /**
      * The client type
      */
@@ -84,6 +93,28 @@ public abstract sealed class Controller<T extends Controller<T>> permits Store,
         return (T) this;
     }
 
+    /**
+     * Returns the recorder of the metrics of this controller
+     *
+     * @return a non-null recorder
+     */
+    public MetricsRecorder metricsRecorder() {
+        return metricsRecorder;
+    }
+
+    /**
+     * Sets the recorder of the metrics of this controller
+     * The socket counters and the gauges are registered when the session connects, so they move to a new recorder on the next connection
+     *
+     * @param metricsRecorder a non-null recorder
+     * @return the same instance
+     */
+    @SuppressWarnings("unchecked")
+    public T metricsRecorder(@NonNull MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+        return (T) this;
+    }
+
     /**
      * Returns the phone number of this controller
      *
@@ -2,6 +2,7 @@ package it.auties.whatsapp.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.metrics.MetricsRecorder;
 import it.auties.whatsapp.model.chat.Chat;
 import it.auties.whatsapp.model.contact.ContactJid;
 import it.auties.whatsapp.model.mobile.PhoneNumber;
@@ -26,6 +27,7 @@ import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import static it.auties.whatsapp.metrics.MetricNames.*;
 import static java.lang.System.Logger.Level.ERROR;
 import static java.lang.System.Logger.Level.WARNING;
 
@@ -136,7 +138,7 @@ public class DefaultControllerSerializer implements ControllerSerializer {
 
         var path = getSessionFile(keys.clientType(), keys.uuid().toString(), "keys.smile");
         var preferences = SmileFile.of(path);
-        preferences.write(keys, async);
+        preferences.write(keys, async, keys.metricsRecorder(), SERIALIZE_KEYS);
     }
 
     @Override
@@ -156,7 +158,7 @@ public class DefaultControllerSerializer implements ControllerSerializer {
         }
         var path = getSessionFile(store, "store.smile");
         var preferences = SmileFile.of(path);
-        preferences.write(store, async);
+        preferences.write(store, async, store.metricsRecorder(), SERIALIZE_STORE);
         if (async) {
             store.chats().forEach(chat -> serializeChat(store, chat));
             return;
@@ -173,7 +175,7 @@ public class DefaultControllerSerializer implements ControllerSerializer {
         var fileName = "%s%s.smile".formatted(CHAT_PREFIX, chat.jid().toString());
         var path = getSessionFile(store, fileName);
         var preferences = SmileFile.of(path);
-        return preferences.write(chat, true);
+        return preferences.write(chat, true, store.metricsRecorder(), SERIALIZE_CHAT);
     }
 
     @Override
@@ -426,31 +428,33 @@ public class DefaultControllerSerializer implements ControllerSerializer {
             }
         }
 
-        private CompletableFuture<Void> write(Object input, boolean async) {
+        private CompletableFuture<Void> write(Object input, boolean async, MetricsRecorder metricsRecorder, String metric) {
             if (!async) {
-                writeSync(input);
+                writeSync(input, metricsRecorder, metric);
                 return CompletableFuture.completedFuture(null);
             }
 
-            return CompletableFuture.runAsync(() -> writeSync(input)).exceptionallyAsync(throwable -> {
+            return CompletableFuture.runAsync(() -> writeSync(input, metricsRecorder, metric)).exceptionallyAsync(throwable -> {
                 logger.log(ERROR, "Cannot serialize smile file", throwable);
                 return null;
             });
         }
 
-        private void writeSync(Object input) {
+        private void writeSync(Object input, MetricsRecorder metricsRecorder, String metric) {
             try {
                 if (input == null) {
                     return;
                 }
 
                 semaphore.acquire();
+                var start = System.nanoTime();
                 try (var byteArrayOutputStream = new ByteArrayOutputStream()) {
                     try (var stream = new GZIPOutputStream(byteArrayOutputStream)) {
                         Smile.writeValueAsBytes(stream, input);
                         Files.write(file, byteArrayOutputStream.toByteArray());
                     }
                 }
+                metricsRecorder.recordSince(metric, start);
             } catch (IOException exception) {
                 throw new UncheckedIOException("Cannot complete file write", exception);
             } catch (InterruptedException exception) {
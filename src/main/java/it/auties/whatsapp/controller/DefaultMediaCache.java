@@ -0,0 +1,354 @@
+package it.auties.whatsapp.controller;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * The default media cache: a least recently used cache with a memory tier and an optional disk tier.
+ * Media evicted from memory are moved to disk, media evicted from disk are deleted.
+ * The disk tier is disabled by default because cached media are stored decrypted: its directory should be private to a single session.
+ * The disk tier survives restarts: files already in its directory are indexed the first time it's used.
+ * Files are read and written outside the lock of the cache, so a slow disk doesn't block lookups served from memory.
+ */
+public class DefaultMediaCache implements MediaCache {
+    private static final long DEFAULT_MEMORY_SIZE = 32 * 1024 * 1024;
+    private static final long DEFAULT_DISK_SIZE = 512 * 1024 * 1024;
+    private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home") + "/.whatsapp4j/media/");
+
+    private final long maxMemorySize;
+    private final Path directory;
+    private final long maxDiskSize;
+    private final LinkedHashMap<String, byte[]> memory;
+    private final LinkedHashMap<String, Long> disk;
+    private final Logger logger;
+    private volatile boolean diskIndexed;
+    private long memorySize;
+    private long diskSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache that only keeps media in memory using the default size
+     */
+    public DefaultMediaCache() {
+        this(DEFAULT_MEMORY_SIZE);
+    }
+
+    /**
+     * Creates a cache that only keeps media in memory
+     *
+     * @param maxMemorySize the maximum number of bytes to keep in memory
+     */
+    public DefaultMediaCache(long maxMemorySize) {
+        this(maxMemorySize, null, 0);
+    }
+
+    /**
+     * Creates a cache with a memory and a disk tier
+     *
+     * @param maxMemorySize the maximum number of bytes to keep in memory
+     * @param directory     the directory where media evicted from memory are written, null to disable the disk tier.
+     *                      Media are written decrypted, so this directory shouldn't be shared with other sessions or users.
+     * @param maxDiskSize   the maximum number of bytes to keep on disk
+     */
+    public DefaultMediaCache(long maxMemorySize, Path directory, long maxDiskSize) {
+        this.maxMemorySize = maxMemorySize;
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.disk = new LinkedHashMap<>(16, 0.75f, true);
+        this.logger = System.getLogger("MediaCache");
+    }
+
+    /**
+     * Creates a cache using the default sizes and a disk tier private to the provided session
+     *
+     * @param session the non-null uuid of the session that owns the cache
+     * @return a non-null cache
+     */
+    public static DefaultMediaCache ofSession(@NonNull UUID session) {
+        return new DefaultMediaCache(DEFAULT_MEMORY_SIZE, DEFAULT_DIRECTORY.resolve(session.toString()), DEFAULT_DISK_SIZE);
+    }
+
+    @Override
+    public Optional<byte[]> get(@NonNull String key) {
+        indexDisk();
+        Path file;
+        synchronized (this) {
+            var cached = memory.get(key);
+            if (cached != null) {
+                hits++;
+                return Optional.of(cached);
+            }
+
+            if (!disk.containsKey(key)) {
+                misses++;
+                return Optional.empty();
+            }
+
+            file = directory.resolve(key);
+        }
+
+        var stored = readFile(file);
+        List<Spill> spills;
+        synchronized (this) {
+            if (stored.isEmpty()) {
+                misses++;
+                removeFromDiskIndex(key);
+                return Optional.empty();
+            }
+
+            hits++;
+            spills = putInMemory(key, stored.get());
+        }
+
+        spill(spills);
+        return stored;
+    }
+
+    @Override
+    public void put(@NonNull String key, byte @NonNull [] media) {
+        indexDisk();
+        List<Spill> spills;
+        synchronized (this) {
+            spills = media.length > maxMemorySize ? List.of(new Spill(key, media, false)) : putInMemory(key, media);
+        }
+
+        spill(spills);
+    }
+
+    @Override
+    public void remove(@NonNull String key) {
+        indexDisk();
+        synchronized (this) {
+            var cached = memory.remove(key);
+            if (cached != null) {
+                memorySize -= cached.length;
+            }
+
+            if (!removeFromDiskIndex(key)) {
+                return;
+            }
+        }
+
+        deleteFile(key);
+    }
+
+    @Override
+    public void clear() {
+        indexDisk();
+        List<String> deleted;
+        synchronized (this) {
+            memory.clear();
+            memorySize = 0;
+            deleted = new ArrayList<>(disk.keySet());
+            disk.clear();
+            diskSize = 0;
+        }
+
+        deleted.forEach(this::deleteFile);
+    }
+
+    @Override
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, memorySize, diskSize);
+    }
+
+    // Must be called while holding the lock: the entries that don't fit in memory anymore are returned so that they can be written outside of it
+    private List<Spill> putInMemory(String key, byte[] media) {
+        var old = memory.put(key, media);
+        memorySize += media.length - (old == null ? 0 : old.length);
+        var spills = new ArrayList<Spill>();
+        var iterator = memory.entrySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            memorySize -= eldest.getValue().length;
+            spills.add(new Spill(eldest.getKey(), eldest.getValue(), true));
+        }
+
+        return spills;
+    }
+
+    private void spill(List<Spill> spills) {
+        for (var spill : spills) {
+            if (!writeToDisk(spill.key(), spill.media()) && spill.evicted()) {
+                synchronized (this) {
+                    evictions++;
+                }
+            }
+        }
+    }
+
+    private boolean writeToDisk(String key, byte[] media) {
+        if (!hasDisk() || media.length > maxDiskSize) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (disk.get(key) != null) {
+                return true;
+            }
+        }
+
+        // Media are written to a temporary file first, so that a concurrent lookup never reads a partial file
+        var file = directory.resolve(key);
+        try {
+            createDirectory();
+            var temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.write(temporary, media);
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException exception) {
+            logger.log(WARNING, "Cannot write media %s to disk: %s".formatted(key, exception.getMessage()));
+            return false;
+        }
+
+        List<String> evicted;
+        synchronized (this) {
+            var old = disk.put(key, (long) media.length);
+            diskSize += media.length - (old == null ? 0 : old);
+            evicted = evictFromDisk();
+        }
+
+        evicted.forEach(this::deleteFile);
+        return true;
+    }
+
+    private void createDirectory() throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory);
+            return;
+        }
+
+        Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    }
+
+    // Must be called while holding the lock: the files to delete are returned so that they can be deleted outside of it
+    private List<String> evictFromDisk() {
+        var evicted = new ArrayList<String>();
+        var iterator = disk.entrySet().iterator();
+        while (diskSize > maxDiskSize && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            diskSize -= eldest.getValue();
+            evictions++;
+            evicted.add(eldest.getKey());
+        }
+
+        return evicted;
+    }
+
+    // Must be called while holding the lock
+    private boolean removeFromDiskIndex(String key) {
+        var size = disk.remove(key);
+        if (size == null) {
+            return false;
+        }
+
+        diskSize -= size;
+        return true;
+    }
+
+    private Optional<byte[]> readFile(Path file) {
+        try {
+            return Optional.of(Files.readAllBytes(file));
+        } catch (IOException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key));
+        } catch (IOException exception) {
+            logger.log(WARNING, "Cannot delete media %s from disk: %s".formatted(key, exception.getMessage()));
+        }
+    }
+
+    private boolean hasDisk() {
+        return directory != null && maxDiskSize > 0;
+    }
+
+    // The directory is listed without holding the lock, then the files that weren't cached in the meantime are indexed
+    private void indexDisk() {
+        if (diskIndexed || !hasDisk()) {
+            return;
+        }
+
+        var files = listFiles();
+        List<String> evicted;
+        synchronized (this) {
+            if (diskIndexed) {
+                return;
+            }
+
+            diskIndexed = true;
+            files.forEach((key, size) -> {
+                if (disk.putIfAbsent(key, size) == null) {
+                    diskSize += size;
+                }
+            });
+            evicted = evictFromDisk();
+        }
+
+        evicted.forEach(this::deleteFile);
+    }
+
+    private Map<String, Long> listFiles() {
+        var results = new LinkedHashMap<String, Long>();
+        if (Files.notExists(directory)) {
+            return results;
+        }
+
+        try (var walker = Files.list(directory)) {
+            walker.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparing(this::getLastModifiedTime))
+                    .forEachOrdered(file -> indexFile(file, results));
+        } catch (IOException exception) {
+            logger.log(WARNING, "Cannot index media cache at %s: %s".formatted(directory, exception.getMessage()));
+        }
+
+        return results;
+    }
+
+    private void indexFile(Path file, Map<String, Long> results) {
+        try {
+            results.put(file.getFileName().toString(), Files.size(file));
+        } catch (IOException exception) {
+            logger.log(WARNING, "Cannot index media %s: %s".formatted(file, exception.getMessage()));
+        }
+    }
+
+    private FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException exception) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private record Spill(String key, byte[] media, boolean evicted) {
+
+    }
+}
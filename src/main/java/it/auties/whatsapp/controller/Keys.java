@@ -29,6 +29,7 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -91,11 +92,21 @@ public final class Keys extends Controller<Keys> {
     private long signedKeyIndexTimestamp;
 
     /**
-     * Whether these keys have generated pre keys assigned to them
+     * The pre keys assigned to these keys, indexed by their id
      */
     @Default
     @NonNull
-    private ArrayList<SignalPreKeyPair> preKeys = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private PreKeyManager preKeys = new PreKeyManager();
+
+    /**
+     * The age after which a pre key that was never used is removed
+     * Zero means that unused pre keys are never removed
+     */
+    @Setter
+    @Default
+    @NonNull
+    private Duration preKeyMaxAge = Duration.ZERO;
 
     /**
      * The companion secret key
@@ -197,6 +208,37 @@ public final class Keys extends Controller<Keys> {
     @Default
     private AtomicLong readCounter = new AtomicLong();
 
+    /**
+     * The maximum number of message keys that can be skipped to decrypt a message that arrived out of order
+     * Messages that would skip more keys are rejected before any key is derived
+     */
+    @Setter
+    @Default
+    private int maxSkippedMessageKeys = Spec.Signal.MAX_MESSAGES;
+
+    /**
+     * The maximum number of skipped message keys kept by each chain, the oldest ones are evicted first
+     */
+    @Setter
+    @Default
+    private int maxRetainedMessageKeys = Spec.Signal.MAX_MESSAGES;
+
+    /**
+     * The number of skipped message keys that were evicted
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private AtomicLong evictedMessageKeys = new AtomicLong();
+
+    /**
+     * The number of messages that were rejected because they skipped too many keys
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private AtomicLong rejectedMessageKeys = new AtomicLong();
+
     /**
      * Session dependent keys to write and read cyphered messages
      */
@@ -487,7 +529,7 @@ public final class Keys extends Controller<Keys> {
      * @return a non-null pre key
      */
     public Optional<SignalPreKeyPair> findPreKeyById(Integer id) {
-        return id == null ? Optional.empty() : preKeys.stream().filter(preKey -> preKey.id() == id).findFirst();
+        return id == null ? Optional.empty() : preKeys.find(id);
     }
 
     /**
@@ -605,6 +647,20 @@ public final class Keys extends Controller<Keys> {
         return this;
     }
 
+    /**
+     * Marks the pre key that matches {@code id} as used to start a session
+     * The pre key is removed once its grace window expires
+     *
+     * @param id the nullable id of the pre key
+     * @return this
+     */
+    public Keys consumePreKey(Integer id) {
+        if (id != null) {
+            preKeys.consume(id);
+        }
+        return this;
+    }
+
     /**
      * Returns write counter
      *
@@ -631,7 +687,7 @@ public final class Keys extends Controller<Keys> {
      * @return an integer
      */
     public int lastPreKeyId() {
-        return preKeys.isEmpty() ? 0 : preKeys.get(preKeys.size() - 1).id();
+        return preKeys.lastId();
     }
 
     @JsonSetter
@@ -667,7 +723,16 @@ public final class Keys extends Controller<Keys> {
      * @return a non-null collection
      */
     public Collection<SignalPreKeyPair> preKeys(){
-        return Collections.unmodifiableList(preKeys);
+        return preKeys.values();
+    }
+
+    /**
+     * Returns the manager of the pre keys
+     *
+     * @return a non-null manager
+     */
+    public PreKeyManager preKeyManager(){
+        return preKeys;
     }
 
     @Override
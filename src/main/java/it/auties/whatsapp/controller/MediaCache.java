@@ -0,0 +1,60 @@
+package it.auties.whatsapp.controller;
+
+import lombok.NonNull;
+
+import java.util.Optional;
+
+/**
+ * This interface provides a standardized way to cache the media downloaded by a session.
+ * Media messages only hold a reference to the cache of their session, so decoded media can be evicted instead of living as long as the message that wraps them.
+ */
+@SuppressWarnings("unused")
+public interface MediaCache {
+    /**
+     * Queries a cached media
+     *
+     * @param key the non-null key of the media, that is the hex encoded sha256 of its encrypted body
+     * @return a non-null optional
+     */
+    Optional<byte[]> get(@NonNull String key);
+
+    /**
+     * Caches a media
+     *
+     * @param key   the non-null key of the media, that is the hex encoded sha256 of its encrypted body
+     * @param media the non-null decoded media
+     */
+    void put(@NonNull String key, byte @NonNull [] media);
+
+    /**
+     * Removes a media from this cache
+     *
+     * @param key the non-null key of the media
+     */
+    void remove(@NonNull String key);
+
+    /**
+     * Removes all the media from this cache
+     */
+    void clear();
+
+    /**
+     * Returns the statistics of this cache
+     *
+     * @return a non-null snapshot
+     */
+    Stats stats();
+
+    /**
+     * A snapshot of the statistics of a cache
+     *
+     * @param hits       the number of lookups that were served by the cache
+     * @param misses     the number of lookups that weren't served by the cache
+     * @param evictions  the number of media that were evicted to respect the size bounds of the cache
+     * @param memorySize the number of bytes cached in memory
+     * @param diskSize   the number of bytes cached on disk
+     */
+    record Stats(long hits, long misses, long evictions, long memorySize, long diskSize) {
+
+    }
+}
@@ -0,0 +1,140 @@
+package it.auties.whatsapp.controller;
+
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A case-insensitive secondary index from names to the keys of the entries that have them.
+ * Exact lookups are served by a hash map, prefix lookups by a sorted map that shares the same buckets.
+ * Reads never lock, writes are serialized.
+ *
+ * @param <K> the type of the keys of the indexed entries
+ */
+final class NameIndex<K> {
+    private final Map<String, Set<K>> exact;
+    private final NavigableMap<String, Set<K>> sorted;
+    private final Map<K, Set<String>> names;
+    private volatile boolean populated;
+
+    NameIndex() {
+        this.exact = new ConcurrentHashMap<>();
+        this.sorted = new ConcurrentSkipListMap<>();
+        this.names = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Indexes all the provided entries, unless this index was already populated
+     * Used for entries that were deserialized without going through this index
+     *
+     * @param entries  the non-null entries to index
+     * @param keyer    a function that returns the key of an entry
+     * @param namer    a function that returns the names of an entry
+     * @param <V>      the type of the entries
+     */
+    <V> void populate(@NonNull Collection<V> entries, @NonNull Function<V, K> keyer, @NonNull Function<V, Collection<String>> namer) {
+        if (populated) {
+            return;
+        }
+
+        synchronized (this) {
+            if (populated) {
+                return;
+            }
+
+            entries.forEach(entry -> update(keyer.apply(entry), namer.apply(entry)));
+            populated = true;
+        }
+    }
+
+    /**
+     * Replaces the names associated with a key
+     *
+     * @param key      the non-null key
+     * @param newNames the names of the entry, null values are ignored
+     */
+    synchronized void update(@NonNull K key, @NonNull Collection<String> newNames) {
+        var normalized = newNames.stream()
+                .filter(Objects::nonNull)
+                .map(NameIndex::normalize)
+                .collect(Collectors.toUnmodifiableSet());
+        var oldNames = normalized.isEmpty() ? names.remove(key) : names.put(key, normalized);
+        if (oldNames != null) {
+            oldNames.stream()
+                    .filter(name -> !normalized.contains(name))
+                    .forEach(name -> unlink(name, key));
+        }
+
+        normalized.stream()
+                .filter(name -> oldNames == null || !oldNames.contains(name))
+                .forEach(name -> link(name, key));
+    }
+
+    /**
+     * Removes a key from this index
+     *
+     * @param key the non-null key
+     */
+    synchronized void remove(@NonNull K key) {
+        var oldNames = names.remove(key);
+        if (oldNames != null) {
+            oldNames.forEach(name -> unlink(name, key));
+        }
+    }
+
+    /**
+     * Returns the keys of the entries that have a name
+     *
+     * @param name the non-null name, case-insensitive
+     * @return a non-null immutable set
+     */
+    Set<K> find(@NonNull String name) {
+        var keys = exact.get(normalize(name));
+        return keys == null ? Set.of() : Set.copyOf(keys);
+    }
+
+    /**
+     * Returns the keys of the entries that have a name starting with a prefix
+     *
+     * @param prefix the non-null prefix, case-insensitive
+     * @return a non-null immutable set
+     */
+    Set<K> findByPrefix(@NonNull String prefix) {
+        var normalized = normalize(prefix);
+        return sorted.subMap(normalized, true, normalized + Character.MAX_VALUE, false)
+                .values()
+                .stream()
+                .flatMap(Collection::stream)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private void link(String name, K key) {
+        var keys = exact.computeIfAbsent(name, ignored -> {
+            var bucket = ConcurrentHashMap.<K>newKeySet();
+            sorted.put(name, bucket);
+            return bucket;
+        });
+        keys.add(key);
+    }
+
+    private void unlink(String name, K key) {
+        var keys = exact.get(name);
+        if (keys == null) {
+            return;
+        }
+
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            exact.remove(name);
+            sorted.remove(name);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,86 @@
+package it.auties.whatsapp.controller;
+
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A view over a subset of entries sorted from the highest to the lowest rank, updated incrementally as the entries change.
+ * Reading the first k entries takes O(k), updating an entry takes O(log n).
+ * Reads never lock, writes are serialized.
+ *
+ * @param <K> the type of the keys of the entries
+ * @param <V> the type of the entries
+ */
+final class OrderedIndex<K, V> {
+    private final NavigableMap<Position, V> ordered;
+    private final Map<K, Position> positions;
+
+    OrderedIndex() {
+        this.ordered = new ConcurrentSkipListMap<>();
+        this.positions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds an entry to this view or moves it to its new rank
+     *
+     * @param key   the non-null key of the entry
+     * @param rank  the rank of the entry
+     * @param value the non-null entry
+     */
+    synchronized void update(@NonNull K key, long rank, @NonNull V value) {
+        var position = new Position(rank, key.toString());
+        var oldPosition = positions.put(key, position);
+        if (oldPosition != null && !oldPosition.equals(position)) {
+            ordered.remove(oldPosition);
+        }
+
+        ordered.put(position, value);
+    }
+
+    /**
+     * Removes an entry from this view
+     *
+     * @param key the non-null key of the entry
+     */
+    synchronized void remove(@NonNull K key) {
+        var oldPosition = positions.remove(key);
+        if (oldPosition != null) {
+            ordered.remove(oldPosition);
+        }
+    }
+
+    /**
+     * Returns the entries with the highest rank
+     *
+     * @param limit the maximum number of entries to return
+     * @return a non-null immutable list
+     */
+    List<V> first(int limit) {
+        return ordered.values()
+                .stream()
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Returns all the entries in this view
+     *
+     * @return a non-null immutable list
+     */
+    List<V> all() {
+        return List.copyOf(ordered.values());
+    }
+
+    private record Position(long rank, String id) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position other) {
+            var result = Long.compare(other.rank(), rank);
+            return result != 0 ? result : id.compareTo(other.id());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package it.auties.whatsapp.controller;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+import it.auties.whatsapp.util.Clock;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pre keys of a session, indexed by their id.
+ * Key pairs are generated ahead of time on a background thread, so that new pre keys can be created without waiting for the key generation.
+ * Pre keys that were used to start a session are kept for a grace window, so that the messages that were sent with them can still be decrypted, and then removed.
+ */
+public final class PreKeyManager {
+    private final ConcurrentSkipListMap<Integer, Entry> entries;
+    private final Queue<SignalKeyPair> pool;
+    private final AtomicInteger poolSize;
+    private final AtomicBoolean refilling;
+    private volatile int poolTarget;
+
+    public PreKeyManager() {
+        this(List.of());
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    PreKeyManager(List<Entry> entries) {
+        this.entries = new ConcurrentSkipListMap<>();
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.poolSize = new AtomicInteger();
+        this.refilling = new AtomicBoolean();
+        if (entries != null) {
+            entries.forEach(entry -> this.entries.put(entry.id(), entry));
+        }
+    }
+
+    /**
+     * Queries the pre key that matches an id
+     *
+     * @param id the id to search
+     * @return a non-null optional
+     */
+    public Optional<SignalPreKeyPair> find(int id) {
+        return Optional.ofNullable(entries.get(id))
+                .map(Entry::toKeyPair);
+    }
+
+    /**
+     * Adds a pre key
+     *
+     * @param preKey the non-null pre key to add
+     */
+    public void add(@NonNull SignalPreKeyPair preKey) {
+        entries.put(preKey.id(), Entry.of(preKey));
+    }
+
+    /**
+     * Marks a pre key as used to start a session, so that it's removed once its grace window expires
+     *
+     * @param id the id of the pre key
+     */
+    public void consume(int id) {
+        entries.computeIfPresent(id, (key, entry) -> entry.consumedSeconds() != 0 ? entry : entry.consume());
+    }
+
+    /**
+     * Creates new pre keys whose ids follow the id of the last pre key
+     * Key pairs that were generated ahead of time are used first, and then the pool is refilled on a background thread
+     *
+     * @param count the number of pre keys to create
+     * @return a non-null list
+     */
+    public synchronized List<SignalPreKeyPair> create(int count) {
+        var startId = lastId() + 1;
+        var results = new ArrayList<SignalPreKeyPair>(count);
+        for (var id = startId; id < startId + count; id++) {
+            var keyPair = pool.poll();
+            if (keyPair == null) {
+                keyPair = SignalKeyPair.random();
+            } else {
+                poolSize.decrementAndGet();
+            }
+
+            var preKey = new SignalPreKeyPair(id, keyPair.publicKey(), keyPair.privateKey());
+            add(preKey);
+            results.add(preKey);
+        }
+
+        prefill(count);
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Generates key pairs on a background thread until the pool holds the provided number of them
+     *
+     * @param count the number of key pairs that the pool should hold
+     */
+    public void prefill(int count) {
+        poolTarget = Math.max(poolTarget, count);
+        if (poolSize.get() >= poolTarget || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        CompletableFuture.runAsync(this::refill);
+    }
+
+    private void refill() {
+        try {
+            while (poolSize.get() < poolTarget) {
+                pool.add(SignalKeyPair.random());
+                poolSize.incrementAndGet();
+            }
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * Removes the pre keys that were used to start a session before the grace window and, if a max age is provided, the ones that are older than it
+     *
+     * @param graceWindow the non-null time a used pre key is kept for
+     * @param maxAge      the non-null age after which a pre key is removed even if it wasn't used, zero means never
+     * @return the number of pre keys that were removed
+     */
+    public int removeExpired(@NonNull Duration graceWindow, @NonNull Duration maxAge) {
+        var now = Clock.nowSeconds();
+        var lastId = lastId();
+        var removed = 0;
+        for (var entry : entries.values()) {
+            var consumed = entry.consumedSeconds() != 0 && now - entry.consumedSeconds() >= graceWindow.toSeconds();
+            var expired = !maxAge.isZero() && entry.createdSeconds() != 0 && now - entry.createdSeconds() >= maxAge.toSeconds();
+            if ((consumed || expired) && entry.id() != lastId && entries.remove(entry.id(), entry)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns the id of the last pre key
+     * The last pre key is never removed, so that the ids of new pre keys never go back
+     *
+     * @return an integer, zero if no pre keys were created
+     */
+    public int lastId() {
+        return entries.isEmpty() ? 0 : entries.lastKey();
+    }
+
+    /**
+     * Returns whether there are no pre keys
+     *
+     * @return a boolean
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the number of pre keys
+     *
+     * @return an unsigned int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns all the pre keys sorted by their id
+     *
+     * @return a non-null immutable collection
+     */
+    public Collection<SignalPreKeyPair> values() {
+        return entries.values()
+                .stream()
+                .map(Entry::toKeyPair)
+                .toList();
+    }
+
+    @JsonValue
+    private List<Entry> serializableEntries() {
+        return List.copyOf(entries.values());
+    }
+
+    /**
+     * A stored pre key
+     * Pre keys stored before the creation and consumption times were tracked have both set to zero
+     */
+    record Entry(int id, byte[] publicKey, byte[] privateKey, long createdSeconds, long consumedSeconds) {
+        private static Entry of(SignalPreKeyPair preKey) {
+            return new Entry(preKey.id(), preKey.publicKey(), preKey.privateKey(), Clock.nowSeconds(), 0);
+        }
+
+        private Entry consume() {
+            return new Entry(id, publicKey, privateKey, createdSeconds, Clock.nowSeconds());
+        }
+
+        private SignalPreKeyPair toKeyPair() {
+            return new SignalPreKeyPair(id, publicKey, privateKey);
+        }
+    }
+}
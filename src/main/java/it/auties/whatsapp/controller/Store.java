@@ -7,20 +7,26 @@ import it.auties.whatsapp.api.WebHistoryLength;
 import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.crypto.Hkdf;
 import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerOptions;
 import it.auties.whatsapp.model.business.BusinessCategory;
 import it.auties.whatsapp.model.call.Call;
+import it.auties.whatsapp.model.call.CallRetention;
 import it.auties.whatsapp.model.chat.Chat;
 import it.auties.whatsapp.model.chat.ChatEphemeralTimer;
+import it.auties.whatsapp.model.chat.ChatRetention;
 import it.auties.whatsapp.model.companion.CompanionDevice;
 import it.auties.whatsapp.model.contact.Contact;
 import it.auties.whatsapp.model.contact.ContactJid;
 import it.auties.whatsapp.model.contact.ContactJidProvider;
 import it.auties.whatsapp.model.exchange.Node;
 import it.auties.whatsapp.model.exchange.Request;
+import it.auties.whatsapp.model.exchange.RequestTraceMode;
 import it.auties.whatsapp.model.info.ContextInfo;
 import it.auties.whatsapp.model.info.MessageInfo;
 import it.auties.whatsapp.model.media.MediaConnection;
+import it.auties.whatsapp.model.media.MediaUploadCache;
 import it.auties.whatsapp.model.message.model.ContextualMessage;
+import it.auties.whatsapp.model.message.model.MediaMessage;
 import it.auties.whatsapp.model.message.model.Message;
 import it.auties.whatsapp.model.message.model.MessageKey;
 import it.auties.whatsapp.model.message.standard.PollCreationMessage;
@@ -44,16 +50,24 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.lang.System.Logger;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.ConcurrentHashMap.KeySetView;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.lang.System.Logger.Level.WARNING;
+
 /**
  * This controller holds the user-related data regarding a WhatsappWeb session
  */
@@ -62,6 +76,11 @@ import java.util.stream.Stream;
 @Accessors(fluent = true, chain = true)
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public final class Store extends Controller<Store> {
+    private static final long MESSAGE_BUDGET_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final long MESSAGE_COMPACTION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final TimerWheel STATUS_EXPIRATION_TIMER = new TimerWheel("StatusExpiration", Duration.ofMinutes(1), 64);
+    private static final Logger logger = System.getLogger("Store");
+
     /**
      * The version used by this session
      */
@@ -215,6 +234,62 @@ public final class Store extends Controller<Store> {
     @Default
     private ConcurrentHashMap<ContactJid, Contact> contacts = new ConcurrentHashMap<>();
 
+    /**
+     * The non-null index of the names of the contacts
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private NameIndex<ContactJid> contactsNameIndex = new NameIndex<>();
+
+    /**
+     * The non-null index of the names of the chats
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private NameIndex<ContactJid> chatsNameIndex = new NameIndex<>();
+
+    /**
+     * The non-null view of the chats sorted from newest to oldest
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private OrderedIndex<ContactJid, Chat> recentChatsIndex = new OrderedIndex<>();
+
+    /**
+     * The non-null view of the pinned chats sorted from the most to the least recently pinned
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private OrderedIndex<ContactJid, Chat> pinnedChatsIndex = new OrderedIndex<>();
+
+    /**
+     * The non-null view of the archived chats sorted from newest to oldest
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private OrderedIndex<ContactJid, Chat> archivedChatsIndex = new OrderedIndex<>();
+
+    /**
+     * The non-null view of the unread chats sorted from newest to oldest
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private OrderedIndex<ContactJid, Chat> unreadChatsIndex = new OrderedIndex<>();
+
+    /**
+     * The non-null view of the starred messages sorted from newest to oldest
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private OrderedIndex<String, MessageInfo> starredMessagesIndex = new OrderedIndex<>();
+
     /**
      * The non-null list of status messages
      */
@@ -222,6 +297,20 @@ public final class Store extends Controller<Store> {
     @Default
     private ConcurrentHashMap<ContactJid, ConcurrentLinkedDeque<MessageInfo>> status = new ConcurrentHashMap<>();
 
+    /**
+     * The non-null index of the status by id, along with their scheduled expiration
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private ConcurrentHashMap<String, StatusEntry> statusIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the status deserialized with this store were indexed
+     */
+    @JsonIgnore
+    private volatile boolean statusIndexed;
+
     /**
      * The non-null map of privacy settings
      */
@@ -230,11 +319,11 @@ public final class Store extends Controller<Store> {
     private ConcurrentHashMap<PrivacySettingType, PrivacySettingEntry> privacySettings = new ConcurrentHashMap<>();
 
     /**
-     * The non-null map of calls
+     * The non-null registry of calls
      */
     @NonNull
     @Default
-    private ConcurrentHashMap<String, Call> calls = new ConcurrentHashMap<>();
+    private CallRegistry calls = new CallRegistry();
 
     /**
      * Whether chats should be unarchived if a new message arrives
@@ -267,6 +356,39 @@ public final class Store extends Controller<Store> {
     @Default
     private ConcurrentHashMap<String, CompletableFuture<MessageInfo>> replyHandlers = new ConcurrentHashMap<>();
 
+    /**
+     * The number of messages that were evicted from memory since this store was loaded
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private AtomicLong evictedMessages = new AtomicLong();
+
+    /**
+     * The last time, in milliseconds, the memory budget of the messages was checked
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private AtomicLong lastMessageBudgetCheck = new AtomicLong();
+
+    /**
+     * The last time, in milliseconds, the messages of all chats were compacted
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private AtomicLong lastMessageCompaction = new AtomicLong();
+
+    /**
+     * The lock that suspends the compaction of messages while chats are encoded
+     * Encoders hold the read lock, the compaction holds the write lock
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private ReentrantReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
     /**
      * The non-null list of listeners
      */
@@ -275,6 +397,14 @@ public final class Store extends Controller<Store> {
     @Default
     private final KeySetView<Listener, Boolean> listeners = ConcurrentHashMap.newKeySet();
 
+    /**
+     * The non-null map of the options of the listeners that were registered with custom options
+     */
+    @NonNull
+    @JsonIgnore
+    @Default
+    private ConcurrentHashMap<Listener, ListenerOptions> listenerOptions = new ConcurrentHashMap<>();
+
     /**
      * The request tag, used to create messages
      */
@@ -303,6 +433,14 @@ public final class Store extends Controller<Store> {
     @Default
     private CountDownLatch mediaConnectionLatch = new CountDownLatch(1);
 
+    /**
+     * The hosts used by this session for media transfers and their health
+     */
+    @JsonIgnore
+    @Getter
+    @Default
+    private MediaHosts mediaHosts = new MediaHosts();
+
     /**
      * The request tag, used to create messages
      */
@@ -320,6 +458,15 @@ public final class Store extends Controller<Store> {
     @Default
     private TextPreviewSetting textPreviewSetting = TextPreviewSetting.ENABLED_WITH_INFERENCE;
 
+    /**
+     * How long to wait for the preview of a link before sending a message without it
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private Duration linkPreviewTimeout = Duration.ofSeconds(5);
+
     /**
      * Describes how much chat history Whatsapp should send
      */
@@ -379,6 +526,105 @@ public final class Store extends Controller<Store> {
     @Default
     private boolean checkPatchMacs = false;
 
+    /**
+     * The non-null cache of the media uploaded by this session
+     */
+    @NonNull
+    @Default
+    @Getter
+    private MediaUploadCache mediaUploadCache = new MediaUploadCache();
+
+    /**
+     * How long an uploaded media can be reused when the same media is sent again
+     * A zero duration disables the reuse of uploads
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private Duration mediaUploadCacheTtl = Spec.Whatsapp.MEDIA_RETENTION;
+
+    /**
+     * The maximum number of uploads kept by {@link Store#mediaUploadCache()}, the oldest ones are removed first
+     * Zero means no limit
+     */
+    @Getter
+    @Setter
+    @Default
+    private int mediaUploadCacheSize = Spec.Whatsapp.MEDIA_UPLOAD_CACHE_SIZE;
+
+    /**
+     * The number of concurrent range requests used to download a media to a file or a stream
+     */
+    @Getter
+    @Setter
+    @Default
+    private int mediaDownloadParallelism = 4;
+
+    /**
+     * The retention of the messages of the chats that don't override it
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private ChatRetention messageRetention = ChatRetention.unlimited();
+
+    /**
+     * The estimated memory, in bytes, that the messages of all chats can use before the oldest ones are evicted
+     * Zero means no limit
+     */
+    @Getter
+    @Setter
+    @Default
+    private long messageMemoryBudget = 0;
+
+    /**
+     * The age after which messages are kept in memory only in their encoded form until they are accessed again
+     * Zero means that messages are never compacted
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private Duration messageCompactionAge = Duration.ZERO;
+
+    /**
+     * The policy used to capture the stack trace of the caller of a request
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private RequestTraceMode requestTraceMode = RequestTraceMode.SAMPLED;
+
+    /**
+     * The retention of the calls that are terminated
+     */
+    @NonNull
+    @Getter
+    @Setter
+    @Default
+    private CallRetention callRetention = CallRetention.defaultRetention();
+
+    /**
+     * The log every update to a call is appended to, if null terminated calls are kept in this store according to {@link Store#callRetention()}
+     */
+    @JsonIgnore
+    @Getter
+    @Setter
+    private CallLog callLog;
+
+    /**
+     * The non-null cache for the media downloaded by this session
+     */
+    @NonNull
+    @JsonIgnore
+    @Getter
+    @Setter
+    @Default
+    private MediaCache mediaCache = new DefaultMediaCache();
+
     /**
      * Returns the store saved in memory or constructs a new clean instance
      *
@@ -609,7 +855,7 @@ public final class Store extends Controller<Store> {
     }
 
     /**
-     * Queries the first contact whose name is equal to {@code name}
+     * Queries the first contact whose full, short or chosen name is equal to {@code name}, ignoring case
      *
      * @param name the name to search
      * @return a non-null optional
@@ -619,8 +865,57 @@ public final class Store extends Controller<Store> {
     }
 
     private Stream<Contact> findContactsStream(String name) {
-        return name == null ? Stream.empty() : contacts().parallelStream()
-                .filter(contact -> Objects.equals(contact.fullName(), name) || Objects.equals(contact.shortName(), name) || Objects.equals(contact.chosenName(), name));
+        if (name == null) {
+            return Stream.empty();
+        }
+
+        return contactsNameIndex().find(name)
+                .stream()
+                .map(contacts::get)
+                .filter(Objects::nonNull)
+                .filter(contact -> getContactNames(contact).stream().anyMatch(name::equalsIgnoreCase));
+    }
+
+    /**
+     * Queries every contact whose full, short or chosen name starts with {@code prefix}, ignoring case
+     *
+     * @param prefix the prefix to search
+     * @return a non-null immutable set
+     */
+    public Set<Contact> findContactsByNamePrefix(String prefix) {
+        if (prefix == null) {
+            return Set.of();
+        }
+
+        return contactsNameIndex().findByPrefix(prefix)
+                .stream()
+                .map(contacts::get)
+                .filter(Objects::nonNull)
+                .filter(contact -> getContactNames(contact).stream().anyMatch(name -> startsWithIgnoreCase(name, prefix)))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Updates the name indexes after the names of a contact were changed
+     * The names of the contacts handled by this store are already indexed automatically
+     *
+     * @param contact the non-null contact whose names changed
+     */
+    public void updateContactNames(@NonNull Contact contact) {
+        contactsNameIndex().update(contact.jid(), getContactNames(contact));
+    }
+
+    private NameIndex<ContactJid> contactsNameIndex() {
+        contactsNameIndex.populate(contacts.values(), Contact::jid, this::getContactNames);
+        return contactsNameIndex;
+    }
+
+    private List<String> getContactNames(Contact contact) {
+        return Arrays.asList(contact.fullName(), contact.shortName(), contact.chosenName());
+    }
+
+    private boolean startsWithIgnoreCase(String value, String prefix) {
+        return value != null && value.regionMatches(true, 0, prefix, 0, prefix.length());
     }
 
     /**
@@ -672,9 +967,9 @@ public final class Store extends Controller<Store> {
 
         return chat.messages()
                 .parallelStream()
-                .map(HistorySyncMessage::messageInfo)
-                .filter(message -> Objects.equals(message.key().id(), id))
-                .findAny();
+                .filter(message -> Objects.equals(message.id(), id))
+                .findAny()
+                .map(HistorySyncMessage::messageInfo);
     }
 
     /**
@@ -696,7 +991,7 @@ public final class Store extends Controller<Store> {
     }
 
     /**
-     * Queries the first chat whose name is equal to {@code name}
+     * Queries the first chat whose name is equal to {@code name}, ignoring case
      *
      * @param name the name to search
      * @return a non-null optional
@@ -706,11 +1001,51 @@ public final class Store extends Controller<Store> {
     }
 
     private Stream<Chat> findChatsStream(String name) {
-        return name == null ? Stream.empty() : chats.values()
-                .parallelStream()
+        if (name == null) {
+            return Stream.empty();
+        }
+
+        return chatsNameIndex().find(name)
+                .stream()
+                .map(chats::get)
+                .filter(Objects::nonNull)
                 .filter(chat -> chat.name().equalsIgnoreCase(name));
     }
 
+    /**
+     * Queries every chat whose name starts with {@code prefix}, ignoring case
+     *
+     * @param prefix the prefix to search
+     * @return a non-null immutable set
+     */
+    public Set<Chat> findChatsByNamePrefix(String prefix) {
+        if (prefix == null) {
+            return Set.of();
+        }
+
+        return chatsNameIndex().findByPrefix(prefix)
+                .stream()
+                .map(chats::get)
+                .filter(Objects::nonNull)
+                .filter(chat -> startsWithIgnoreCase(chat.name(), prefix))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Updates the name indexes after the name of a chat was changed
+     * The names of the chats handled by this store are already indexed automatically
+     *
+     * @param chat the non-null chat whose name changed
+     */
+    public void updateChatName(@NonNull Chat chat) {
+        chatsNameIndex().update(chat.jid(), List.of(chat.name()));
+    }
+
+    private NameIndex<ContactJid> chatsNameIndex() {
+        chatsNameIndex.populate(chats.values(), Chat::jid, chat -> List.of(chat.name()));
+        return chatsNameIndex;
+    }
+
     /**
      * Queries the first chat that matches the provided function
      *
@@ -753,9 +1088,12 @@ public final class Store extends Controller<Store> {
      * @return a non-null optional
      */
     public Optional<MessageInfo> findStatusById(String id) {
-        return id == null ? Optional.empty() : status().stream()
-                .filter(status -> Objects.equals(status.id(), id))
-                .findFirst();
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(statusIndex().get(id))
+                .map(StatusEntry::info);
     }
 
     /**
@@ -764,6 +1102,7 @@ public final class Store extends Controller<Store> {
      * @return an immutable collection
      */
     public Collection<MessageInfo> status() {
+        statusIndex();
         return status.values()
                 .stream()
                 .flatMap(Collection::stream)
@@ -771,12 +1110,13 @@ public final class Store extends Controller<Store> {
     }
 
     /**
-     * Queries all the status of a contact
+     * Queries all the status of a contact sorted from oldest to newest
      *
      * @param jid the sender of the status
      * @return a non-null immutable list
      */
     public Collection<MessageInfo> findStatusBySender(ContactJidProvider jid) {
+        statusIndex();
         return Optional.ofNullable(status.get(jid.toJid()))
                 .map(Collections::unmodifiableCollection)
                 .orElseGet(Set::of);
@@ -860,45 +1200,134 @@ public final class Store extends Controller<Store> {
      */
     public Chat addNewChat(@NonNull ContactJid chatJid) {
         var chat = Chat.ofJid(chatJid);
-        addChat(chat);
-        return chat;
+        return addChat(chat).orElse(chat);
     }
 
     /**
      * Adds a chat in memory
+     * If a chat with the same jid already exists, the messages and the metadata of the new chat are merged into it,
+     * so that the messages and the references to it held by the rest of the session are kept
      *
      * @param chat the chat to add
-     * @return the old chat, if present
+     * @return the chat that already existed and that the new chat was merged into, if present
      */
     public Optional<Chat> addChat(@NonNull Chat chat) {
-        chat.messages().forEach(this::attribute);
+        var target = Objects.requireNonNullElse(chats.get(chat.jid()), chat);
+        chat.messages().forEach(message -> attribute(message.messageInfo(), target));
         if (chat.hasName() && chat.jid().hasServer(ContactJid.Server.WHATSAPP)) {
             var contact = findContactByJid(chat.jid())
                     .orElseGet(() -> addContact(Contact.ofJid(chat.jid())));
             contact.fullName(chat.name());
+            updateContactNames(contact);
+        }
+        return putChat(chat);
+    }
+
+    // Inserts a chat if no chat with the same jid exists, otherwise merges it into the existing one
+    private Optional<Chat> putChat(Chat chat) {
+        var oldChat = chats.putIfAbsent(chat.jid(), chat);
+        if (oldChat == null) {
+            addChatDirect(chat);
+            return Optional.empty();
         }
-        var oldChat = chats.get(chat.jid());
-        if(oldChat != null) {
-            if(oldChat.hasName() && !chat.hasName()){
-                chat.name(oldChat.name()); // Coming from contact actions
+
+        var messages = List.copyOf(chat.messages());
+        messages.forEach(message -> message.messageInfo().key().chat(oldChat));
+        oldChat.mergeMetadata(chat);
+        oldChat.mergeMessages(messages);
+        messages.forEach(message -> {
+            attributeMedia(message.messageInfo());
+            if (message.messageInfo().starred()) {
+                updateStarredMessage(message.messageInfo());
+            }
+        });
+        updateChatName(oldChat);
+        updateChatViews(oldChat);
+        applyMessageRetention(oldChat);
+        return Optional.of(oldChat);
+    }
+
+    /**
+     * Adds a batch of chats in memory, usually coming from a history sync.
+     * Unlike {@link Store#addChat(Chat)}, every distinct sender is resolved only once per batch,
+     * the messages of each chat are merged with the ones already in memory in a single pass
+     * and reactions and poll updates are linked only after all the messages in the batch were indexed.
+     *
+     * @param chats the non-null chats to add
+     * @return the number of messages that were added
+     */
+    public long addChats(@NonNull Collection<Chat> chats) {
+        var contacts = new HashMap<ContactJid, Contact>();
+        var index = new HashMap<ContactJid, Map<String, MessageInfo>>();
+        var deferred = new ArrayList<MessageInfo>();
+        var added = 0L;
+        for (var chat : chats) {
+            try {
+                added += addChat(chat, contacts, index, deferred);
+            } catch (RuntimeException exception) {
+                logger.log(WARNING, "Cannot add chat %s from history sync".formatted(chat.jid()), exception);
             }
-            joinMessages(chat, oldChat);
         }
-        return addChatDirect(chat);
-    }
-
-    private void joinMessages(Chat chat, Chat oldChat) {
-        var newChatTimestamp = chat.newestMessage()
-                .map(MessageInfo::timestampSeconds)
-                .orElse(0L);
-        var oldChatTimestamp = oldChat.newestMessage()
-                .map(MessageInfo::timestampSeconds)
-                .orElse(0L);
-        if (newChatTimestamp <= oldChatTimestamp) {
-            chat.addMessages(oldChat.messages());
-            return;
+
+        for (var info : deferred) {
+            try {
+                processMessage(info, key -> findIndexedMessage(index, key));
+            } catch (RuntimeException exception) {
+                logger.log(WARNING, "Cannot link message %s in chat %s".formatted(info.id(), info.chatJid()), exception);
+            }
         }
-        chat.addOldMessages(chat.messages());
+
+        return added;
+    }
+
+    private int addChat(Chat chat, Map<ContactJid, Contact> contacts, Map<ContactJid, Map<String, MessageInfo>> index, List<MessageInfo> deferred) {
+        var messages = List.copyOf(chat.messages());
+        var oldChat = this.chats.get(chat.jid());
+        var target = Objects.requireNonNullElse(oldChat, chat);
+        var chatIndex = index.computeIfAbsent(chat.jid(), ignored -> new HashMap<>());
+        for (var message : messages) {
+            var info = message.messageInfo();
+            attributeKey(info, chat.jid().equals(info.chatJid()) ? target : findChatOrAdd(info.chatJid()), jid -> contacts.computeIfAbsent(jid, this::findContactOrAdd));
+            chatIndex.put(info.id(), info);
+            if (isLinkedMessage(info)) {
+                deferred.add(info);
+            } else {
+                processMessage(info, this::findMessageByKey);
+            }
+        }
+
+        if (oldChat == null) {
+            chat.removeMessages();
+            chat.mergeMessages(messages);
+        }
+
+        if (chat.hasName() && chat.jid().hasServer(ContactJid.Server.WHATSAPP)) {
+            var contact = contacts.computeIfAbsent(chat.jid(), this::findContactOrAdd);
+            contact.fullName(chat.name());
+            updateContactNames(contact);
+        }
+
+        putChat(chat);
+        return messages.size();
+    }
+
+    private boolean isLinkedMessage(MessageInfo info) {
+        var content = info.message().content();
+        return content instanceof PollUpdateMessage || content instanceof ReactionMessage;
+    }
+
+    private Optional<MessageInfo> findIndexedMessage(Map<ContactJid, Map<String, MessageInfo>> index, MessageKey key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+
+        var chatIndex = index.get(key.chatJid());
+        if (chatIndex == null) {
+            return findMessageByKey(key);
+        }
+
+        return Optional.ofNullable(chatIndex.get(key.id()))
+                .or(() -> findMessageByKey(key));
     }
 
     /**
@@ -908,7 +1337,225 @@ public final class Store extends Controller<Store> {
      * @return the old chat, if present
      */
     public Optional<Chat> addChatDirect(Chat chat) {
-        return Optional.ofNullable(chats.put(chat.jid(), chat));
+        chat.messages().forEach(message -> {
+            attributeMedia(message.messageInfo());
+            if (message.messageInfo().starred()) {
+                updateStarredMessage(message.messageInfo());
+            }
+        });
+        var oldChat = chats.put(chat.jid(), chat);
+        updateChatName(chat);
+        updateChatViews(chat);
+        applyMessageRetention(chat);
+        return Optional.ofNullable(oldChat);
+    }
+
+    /**
+     * Evicts the messages of a chat that exceed its retention and schedules the eviction of the oldest messages across all chats if the memory budget of this store is exceeded
+     * The memory budget is enforced asynchronously, at most once per second, as it needs to look at every chat
+     * Starred messages, messages kept in a disappearing chat and messages waiting for a reply are never evicted
+     * Evicted messages are dropped from memory, so they are also excluded from the next serialization of this store
+     *
+     * @param chat the non-null chat whose messages changed
+     * @return the number of messages of the chat that were evicted
+     */
+    public int applyMessageRetention(@NonNull Chat chat) {
+        var evicted = chat.evictMessages(chat.retention().orElse(messageRetention), this::isMessageProtected);
+        evictedMessages.addAndGet(evicted);
+        scheduleMessageMemoryBudget();
+        scheduleMessageCompaction();
+        return evicted;
+    }
+
+    private void scheduleMessageMemoryBudget() {
+        if (messageMemoryBudget <= 0) {
+            return;
+        }
+
+        var now = System.currentTimeMillis();
+        var lastCheck = lastMessageBudgetCheck.get();
+        if (now - lastCheck < MESSAGE_BUDGET_CHECK_INTERVAL || !lastMessageBudgetCheck.compareAndSet(lastCheck, now)) {
+            return;
+        }
+
+        CompletableFuture.runAsync(this::applyMessageMemoryBudget)
+                .exceptionally(throwable -> logFailure("Cannot apply the message memory budget", throwable));
+    }
+
+    private void scheduleMessageCompaction() {
+        if (messageCompactionAge.isZero()) {
+            return;
+        }
+
+        var now = System.currentTimeMillis();
+        var lastCompaction = lastMessageCompaction.get();
+        if (now - lastCompaction < MESSAGE_COMPACTION_INTERVAL || !lastMessageCompaction.compareAndSet(lastCompaction, now)) {
+            return;
+        }
+
+        CompletableFuture.runAsync(this::compactMessages)
+                .exceptionally(throwable -> logFailure("Cannot compact messages", throwable));
+    }
+
+    private Void logFailure(String message, Throwable throwable) {
+        logger.log(WARNING, message, throwable);
+        return null;
+    }
+
+    /**
+     * Compacts the messages of all chats older than {@link Store#messageCompactionAge()}
+     * A compacted message is kept in memory only in its encoded form, and it's decoded again the first time it's accessed
+     * Polls and the messages that are protected from eviction are never compacted
+     * This method is called automatically, at most once per minute, when new messages are added
+     * Nothing is compacted if chats are being encoded, as the next compaction will catch up
+     *
+     * @return the number of messages that were compacted
+     */
+    public long compactMessages() {
+        if (messageCompactionAge.isZero()) {
+            return 0;
+        }
+
+        var lock = compactionLock.writeLock();
+        if (!lock.tryLock()) {
+            return 0;
+        }
+
+        try {
+            return compactOldMessages();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long compactOldMessages() {
+        var threshold = Clock.nowSeconds() - messageCompactionAge.toSeconds();
+        Consumer<MessageInfo> attributor = this::attributeCompactedMessage;
+        var compacted = 0L;
+        for (var chat : chats.values()) {
+            for (var entry : chat.messages()) {
+                if (entry.timestampSeconds() > threshold) {
+                    continue;
+                }
+
+                try {
+                    if (entry.compact(this::isMessageCompactable, attributor)) {
+                        compacted++;
+                    }
+                } catch (RuntimeException exception) {
+                    logger.log(WARNING, "Cannot compact message %s in chat %s, keeping it decoded".formatted(entry.id(), chat.jid()), exception);
+                }
+            }
+        }
+
+        return compacted;
+    }
+
+    /**
+     * Runs an action while no message can be compacted
+     * Chats should be encoded as protobuf inside this method, after calling {@link Chat#inflateMessages()}, as the encoding of a compacted message skips it
+     *
+     * @param action the non-null action to run
+     * @param <T>    the type of the result
+     * @return the result of the action
+     */
+    public <T> T withoutCompaction(@NonNull Supplier<T> action) {
+        var lock = compactionLock.readLock();
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Protected messages are never compacted, so that the protection doesn't need to decode compacted messages when evicting them
+    private boolean isMessageCompactable(MessageInfo info) {
+        return !isMessageProtected(info)
+                && !(info.message().content() instanceof PollCreationMessage);
+    }
+
+    private void attributeCompactedMessage(MessageInfo info) {
+        attributeKey(info, findChatOrAdd(info.chatJid()), this::findContactOrAdd);
+        attributeMedia(info);
+    }
+
+    /**
+     * Evicts the oldest messages across all chats until the estimated memory used by messages fits {@link Store#messageMemoryBudget()}
+     * This method is called automatically when new messages are added
+     *
+     * @return the number of messages that were evicted
+     */
+    public synchronized int applyMessageMemoryBudget() {
+        if (messageMemoryBudget <= 0) {
+            return 0;
+        }
+
+        var excess = residentMessagesBytes() - messageMemoryBudget;
+        if (excess <= 0) {
+            return 0;
+        }
+
+        var candidates = new PriorityQueue<Chat>(Comparator.comparingLong(entry -> entry.oldestMessageTimestampSeconds().orElse(Long.MAX_VALUE)));
+        chats.values()
+                .stream()
+                .filter(entry -> entry.oldestMessageTimestampSeconds().isPresent())
+                .forEach(candidates::add);
+        var evicted = 0;
+        while (excess > 0 && !candidates.isEmpty()) {
+            var candidate = candidates.poll();
+            var freed = candidate.evictOldestMessage(this::isMessageProtected);
+            if (freed == 0) {
+                continue;
+            }
+
+            excess -= freed;
+            evicted++;
+            candidates.add(candidate);
+        }
+
+        evictedMessages.addAndGet(evicted);
+        return evicted;
+    }
+
+    private boolean isMessageProtected(MessageInfo info) {
+        return info.starred()
+                || info.keepInChat().isPresent()
+                || replyHandlers.containsKey(info.id());
+    }
+
+    /**
+     * Returns the number of messages that were evicted from memory since this store was loaded
+     *
+     * @return a non-negative number
+     */
+    public long evictedMessagesCount() {
+        return evictedMessages.get();
+    }
+
+    /**
+     * Returns the number of messages currently held in memory across all chats
+     *
+     * @return a non-negative number
+     */
+    public long residentMessagesCount() {
+        return chats.values()
+                .stream()
+                .mapToLong(chat -> chat.messages().size())
+                .sum();
+    }
+
+    /**
+     * Returns an estimate of the memory used by the messages of all chats
+     *
+     * @return the number of bytes
+     * @see Chat#residentBytes()
+     */
+    public long residentMessagesBytes() {
+        return chats.values()
+                .stream()
+                .mapToLong(Chat::residentBytes)
+                .sum();
     }
 
     /**
@@ -918,7 +1565,13 @@ public final class Store extends Controller<Store> {
      * @return the chat that was deleted wrapped by an optional
      */
     public Optional<Chat> removeChat(@NonNull ContactJid chatJid) {
-        return Optional.ofNullable(chats.remove(chatJid));
+        var oldChat = chats.remove(chatJid);
+        chatsNameIndex().remove(chatJid);
+        removeChatViews(chatJid);
+        if (oldChat != null) {
+            oldChat.messages().forEach(message -> removeStarredMessage(chatJid, message.id()));
+        }
+        return Optional.ofNullable(oldChat);
     }
 
     /**
@@ -939,6 +1592,7 @@ public final class Store extends Controller<Store> {
      */
     public Contact addContact(@NonNull Contact contact) {
         contacts.put(contact.jid(), contact);
+        updateContactNames(contact);
         return contact;
     }
 
@@ -959,51 +1613,65 @@ public final class Store extends Controller<Store> {
      * @return the same incoming message
      */
     public MessageInfo attribute(@NonNull MessageInfo info) {
-        var chat = findChatByJid(info.chatJid())
-                .orElseGet(() -> addNewChat(info.chatJid()));
+        attributeKey(info, findChatOrAdd(info.chatJid()), this::findContactOrAdd);
+        attributeMedia(info);
+        processMessage(info, this::findMessageByKey);
+        return info;
+    }
+
+    // Attributes a message of a chat that might not be in this store yet
+    private void attribute(MessageInfo info, Chat chat) {
+        attributeKey(info, chat.jid().equals(info.chatJid()) ? chat : findChatOrAdd(info.chatJid()), this::findContactOrAdd);
+        attributeMedia(info);
+        processMessage(info, this::findMessageByKey);
+    }
+
+    private void attributeKey(MessageInfo info, Chat chat, Function<ContactJid, Contact> contacts) {
         info.key().chat(chat);
         if(info.fromMe() && jid != null && !Objects.equals(info.senderJid().user(), jid.user())){
             info.key().senderJid(jid.toWhatsappJid());
         }
         info.key()
                 .senderJid()
-                .ifPresent(senderJid -> attributeSender(info, senderJid));
+                .ifPresent(senderJid -> attributeSender(info, contacts.apply(senderJid)));
         info.message()
                 .contentWithContext()
                 .map(ContextualMessage::contextInfo)
-                .ifPresent(this::attributeContext);
-        processMessage(info);
-        return info;
+                .ifPresent(contextInfo -> attributeContext(contextInfo, contacts));
     }
 
-    private MessageKey attributeSender(MessageInfo info, ContactJid senderJid) {
-        var contact = findContactByJid(senderJid).orElseGet(() -> addContact(Contact.ofJid(senderJid)));
-        return info.sender(contact).key().sender(contact);
+    private void attributeMedia(MessageInfo info) {
+        if (info.message().content() instanceof MediaMessage mediaMessage) {
+            mediaMessage.mediaCache(mediaCache);
+            mediaMessage.mediaHosts(mediaHosts);
+        }
+    }
+
+    private Chat findChatOrAdd(ContactJid chatJid) {
+        return findChatByJid(chatJid).orElseGet(() -> addNewChat(chatJid));
     }
 
-    private void attributeContext(ContextInfo contextInfo) {
-        contextInfo.quotedMessageSenderJid().ifPresent(senderJid -> attributeContextSender(contextInfo, senderJid));
-        contextInfo.quotedMessageChatJid().ifPresent(chatJid -> attributeContextChat(contextInfo, chatJid));
+    private Contact findContactOrAdd(ContactJid contactJid) {
+        return findContactByJid(contactJid).orElseGet(() -> addContact(Contact.ofJid(contactJid)));
     }
 
-    private void attributeContextChat(ContextInfo contextInfo, ContactJid chatJid) {
-        var chat = findChatByJid(chatJid).orElseGet(() -> addNewChat(chatJid));
-        contextInfo.quotedMessageChat(chat);
+    private MessageKey attributeSender(MessageInfo info, Contact contact) {
+        return info.sender(contact).key().sender(contact);
     }
 
-    private void attributeContextSender(ContextInfo contextInfo, ContactJid senderJid) {
-        var contact = findContactByJid(senderJid).orElseGet(() -> addContact(Contact.ofJid(senderJid)));
-        contextInfo.quotedMessageSender(contact);
+    private void attributeContext(ContextInfo contextInfo, Function<ContactJid, Contact> contacts) {
+        contextInfo.quotedMessageSenderJid().ifPresent(senderJid -> contextInfo.quotedMessageSender(contacts.apply(senderJid)));
+        contextInfo.quotedMessageChatJid().ifPresent(chatJid -> contextInfo.quotedMessageChat(findChatOrAdd(chatJid)));
     }
 
-    private void processMessage(MessageInfo info) {
+    private void processMessage(MessageInfo info, Function<MessageKey, Optional<MessageInfo>> messages) {
         Message content = info.message().content();
         if (Objects.requireNonNull(content) instanceof PollCreationMessage pollCreationMessage) {
             handlePollCreation(info, pollCreationMessage);
         } else if (content instanceof PollUpdateMessage pollUpdateMessage) {
-            handlePollUpdate(info, pollUpdateMessage);
+            handlePollUpdate(info, pollUpdateMessage, messages);
         } else if (content instanceof ReactionMessage reactionMessage) {
-            handleReactionMessage(info, reactionMessage);
+            handleReactionMessage(info, reactionMessage, messages);
         }
     }
 
@@ -1019,8 +1687,8 @@ public final class Store extends Controller<Store> {
                 .ifPresent(pollCreationMessage::encryptionKey);
     }
 
-    private void handlePollUpdate(MessageInfo info, PollUpdateMessage pollUpdateMessage) {
-        var originalPollInfo = findMessageByKey(pollUpdateMessage.pollCreationMessageKey())
+    private void handlePollUpdate(MessageInfo info, PollUpdateMessage pollUpdateMessage, Function<MessageKey, Optional<MessageInfo>> messages) {
+        var originalPollInfo = messages.apply(pollUpdateMessage.pollCreationMessageKey())
                 .orElseThrow(() -> new NoSuchElementException("Missing original poll message"));
         var originalPollMessage = (PollCreationMessage) originalPollInfo.message().content();
         pollUpdateMessage.pollCreationMessage(originalPollMessage);
@@ -1057,9 +1725,9 @@ public final class Store extends Controller<Store> {
         info.pollUpdates().add(update);
     }
 
-    private void handleReactionMessage(MessageInfo info, ReactionMessage reactionMessage) {
+    private void handleReactionMessage(MessageInfo info, ReactionMessage reactionMessage, Function<MessageKey, Optional<MessageInfo>> messages) {
         info.ignore(true);
-        findMessageByKey(reactionMessage.key())
+        messages.apply(reactionMessage.key())
                 .ifPresent(message -> message.reactions().add(reactionMessage));
     }
 
@@ -1069,20 +1737,34 @@ public final class Store extends Controller<Store> {
      * @return a non-null list of chats
      */
     public List<Chat> pinnedChats() {
-        return chats.values()
-                .parallelStream()
-                .filter(Chat::isPinned)
-                .sorted(Comparator.comparingLong((Chat chat) -> chat.pinnedTimestampSeconds()).reversed())
-                .toList();
+        return pinnedChatsIndex.all();
+    }
+
+    /**
+     * Returns the archived chats sorted from newest to oldest
+     *
+     * @return a non-null list of chats
+     */
+    public List<Chat> archivedChats() {
+        return archivedChatsIndex.all();
     }
 
     /**
-     * Returns all the starred messages
+     * Returns the chats that have unread messages or that were marked as unread sorted from newest to oldest
+     *
+     * @return a non-null list of chats
+     */
+    public List<Chat> unreadChats() {
+        return unreadChatsIndex.all();
+    }
+
+    /**
+     * Returns all the starred messages sorted from newest to oldest
      *
      * @return a non-null list of messages
      */
     public List<MessageInfo> starredMessages() {
-        return chats().parallelStream().map(Chat::starredMessages).flatMap(Collection::stream).toList();
+        return starredMessagesIndex.all();
     }
 
     /**
@@ -1091,10 +1773,99 @@ public final class Store extends Controller<Store> {
      * @return an immutable collection
      */
     public List<Chat> chats() {
-        return chats.values()
-                .stream()
-                .sorted(Comparator.comparingLong((Chat chat) -> chat.timestampSeconds()).reversed())
-                .toList();
+        return recentChatsIndex.all();
+    }
+
+    /**
+     * Returns the most recent chats sorted from newest to oldest
+     *
+     * @param limit the maximum number of chats to return
+     * @return an immutable collection
+     */
+    public List<Chat> recentChats(int limit) {
+        return recentChatsIndex.first(limit);
+    }
+
+    /**
+     * Updates the views of the chats after the timestamp, the pin, the archive status or the unread count of a chat changed
+     * The chats handled by this store are already updated automatically
+     *
+     * @param chat the non-null chat that changed
+     */
+    public void updateChatViews(@NonNull Chat chat) {
+        recentChatsIndex.update(chat.jid(), chat.timestampSeconds(), chat);
+        updateChatView(pinnedChatsIndex, chat, chat.isPinned(), chat.pinnedTimestampSeconds());
+        updateChatView(archivedChatsIndex, chat, chat.archived(), chat.timestampSeconds());
+        updateChatView(unreadChatsIndex, chat, chat.unreadMessagesCount() != 0 || chat.markedAsUnread(), chat.timestampSeconds());
+    }
+
+    private void updateChatView(OrderedIndex<ContactJid, Chat> index, Chat chat, boolean included, long rank) {
+        if (included) {
+            index.update(chat.jid(), rank, chat);
+        } else {
+            index.remove(chat.jid());
+        }
+    }
+
+    private void removeChatViews(ContactJid chatJid) {
+        recentChatsIndex.remove(chatJid);
+        pinnedChatsIndex.remove(chatJid);
+        archivedChatsIndex.remove(chatJid);
+        unreadChatsIndex.remove(chatJid);
+    }
+
+    /**
+     * Updates the view of the starred messages after a message was starred or unstarred
+     * The messages handled by this store are already updated automatically
+     *
+     * @param info the non-null message that changed
+     */
+    public void updateStarredMessage(@NonNull MessageInfo info) {
+        if (!info.starred()) {
+            removeStarredMessage(info.chatJid(), info.id());
+            return;
+        }
+
+        starredMessagesIndex.update(createStarredKey(info.chatJid(), info.id()), info.timestampSeconds(), info);
+    }
+
+    /**
+     * Removes a message from the view of the starred messages after it was deleted
+     *
+     * @param chatJid the non-null chat of the message
+     * @param id      the non-null id of the message
+     */
+    public void removeStarredMessage(@NonNull ContactJid chatJid, @NonNull String id) {
+        starredMessagesIndex.remove(createStarredKey(chatJid, id));
+    }
+
+    /**
+     * Removes a message from a chat and updates the views that depend on it
+     *
+     * @param chat the non-null chat of the message
+     * @param info the non-null message to remove
+     * @return whether the message was removed
+     */
+    public boolean removeMessage(@NonNull Chat chat, @NonNull MessageInfo info) {
+        var result = chat.removeMessage(info);
+        removeStarredMessage(chat.jid(), info.id());
+        updateChatViews(chat);
+        return result;
+    }
+
+    /**
+     * Removes all the messages of a chat and updates the views that depend on them
+     *
+     * @param chat the non-null chat to clear
+     */
+    public void clearMessages(@NonNull Chat chat) {
+        chat.messages().forEach(message -> removeStarredMessage(chat.jid(), message.id()));
+        chat.removeMessages();
+        updateChatViews(chat);
+    }
+
+    private String createStarredKey(ContactJid chatJid, String id) {
+        return "%s:%s".formatted(chatJid.toWhatsappJid(), id);
     }
 
     /**
@@ -1145,6 +1916,15 @@ public final class Store extends Controller<Store> {
         return this;
     }
 
+    /**
+     * Returns the options used by this session to download a media
+     *
+     * @return non-null options
+     */
+    public MediaDownloadOptions mediaDownloadOptions() {
+        return new MediaDownloadOptions(mediaHosts, mediaDownloadParallelism);
+    }
+
     /**
      * Returns all the blocked contacts
      *
@@ -1156,18 +1936,102 @@ public final class Store extends Controller<Store> {
 
     /**
      * Adds a status to this store
+     * The status is removed automatically when it expires, that is {@link Spec.Whatsapp#STATUS_LIFETIME} after it was sent
      *
      * @param info the non-null status to add
      * @return the same instance
      */
     public Store addStatus(@NonNull MessageInfo info) {
         attribute(info);
-        var wrapper = Objects.requireNonNullElseGet(status.get(info.senderJid()), ConcurrentLinkedDeque<MessageInfo>::new);
-        wrapper.add(info);
-        status.put(info.senderJid(), wrapper);
+        if (statusIndex().containsKey(info.id()) || isStatusExpired(info)) {
+            return this;
+        }
+
+        while (!addSenderStatus(info)) {
+            Thread.onSpinWait();
+        }
+
+        indexStatus(info);
         return this;
     }
 
+    // Returns false if the deque of the sender was removed by an expiration before the lock was acquired, so that the status isn't orphaned
+    private boolean addSenderStatus(MessageInfo info) {
+        var senderStatus = status.computeIfAbsent(info.senderJid(), ignored -> new ConcurrentLinkedDeque<>());
+        synchronized (senderStatus) {
+            if (status.get(info.senderJid()) != senderStatus) {
+                return false;
+            }
+
+            var last = senderStatus.peekLast();
+            if (last == null || last.timestampSeconds() <= info.timestampSeconds()) {
+                senderStatus.addLast(info);
+            } else {
+                var sorted = new ArrayList<>(senderStatus);
+                sorted.add(info);
+                sorted.sort(Comparator.comparingLong(MessageInfo::timestampSeconds));
+                senderStatus.clear();
+                senderStatus.addAll(sorted);
+            }
+
+            return true;
+        }
+    }
+
+    private Map<String, StatusEntry> statusIndex() {
+        if (statusIndexed) {
+            return statusIndex;
+        }
+
+        synchronized (statusIndex) {
+            if (statusIndexed) {
+                return statusIndex;
+            }
+
+            status.values()
+                    .stream()
+                    .flatMap(Collection::stream)
+                    .toList()
+                    .forEach(this::indexStatus);
+            statusIndexed = true;
+            return statusIndex;
+        }
+    }
+
+    private void indexStatus(MessageInfo info) {
+        if (isStatusExpired(info)) {
+            removeStatus(info);
+            return;
+        }
+
+        var lifetime = Duration.ofSeconds(info.timestampSeconds() + Spec.Whatsapp.STATUS_LIFETIME.toSeconds() - Clock.nowSeconds());
+        var expiration = STATUS_EXPIRATION_TIMER.schedule(new StatusExpiration(new WeakReference<>(this), info), lifetime);
+        var oldEntry = statusIndex.put(info.id(), new StatusEntry(info, expiration));
+        if (oldEntry != null) {
+            oldEntry.expiration().cancel();
+        }
+    }
+
+    private boolean isStatusExpired(MessageInfo info) {
+        return Clock.nowSeconds() - info.timestampSeconds() >= Spec.Whatsapp.STATUS_LIFETIME.toSeconds();
+    }
+
+    // Expired status are dropped from the map that is serialized, so they are also removed from disk the next time this store is saved
+    private void removeStatus(MessageInfo info) {
+        statusIndex.computeIfPresent(info.id(), (ignored, entry) -> entry.info() == info ? null : entry);
+        var senderStatus = status.get(info.senderJid());
+        if (senderStatus == null) {
+            return;
+        }
+
+        synchronized (senderStatus) {
+            senderStatus.removeIf(entry -> entry == info);
+            if (senderStatus.isEmpty()) {
+                status.remove(info.senderJid(), senderStatus);
+            }
+        }
+    }
+
     /**
      * Adds a request to this store
      *
@@ -1180,6 +2044,7 @@ public final class Store extends Controller<Store> {
         }
 
         requests.put(request.id(), request);
+        request.future().whenComplete((result, throwable) -> requests.remove(request.id(), request));
         return request.future();
     }
 
@@ -1303,6 +2168,31 @@ public final class Store extends Controller<Store> {
         return this;
     }
 
+    /**
+     * Registers a listener with custom options
+     * If the listener is already registered, its options are replaced
+     * The options are applied starting from the first event published after this method is called
+     *
+     * @param listener the listener to register
+     * @param options  the options that determine how the events of the listener are queued
+     * @return the same instance
+     */
+    public Store addListener(@NonNull Listener listener, @NonNull ListenerOptions options) {
+        listenerOptions.put(listener, options);
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Returns the options of a listener
+     *
+     * @param listener the listener
+     * @return the non-null options of the listener, {@link ListenerOptions#defaults()} if it was registered without options
+     */
+    public ListenerOptions listenerOptions(@NonNull Listener listener) {
+        return listenerOptions.getOrDefault(listener, ListenerOptions.defaults());
+    }
+
     /**
      * Registers a collection of listeners
      *
@@ -1322,6 +2212,7 @@ public final class Store extends Controller<Store> {
      */
     public Store removeListener(@NonNull Listener listener) {
         listeners.remove(listener);
+        listenerOptions.remove(listener);
         return this;
     }
 
@@ -1332,6 +2223,7 @@ public final class Store extends Controller<Store> {
      */
     public Store removeListener() {
         listeners.clear();
+        listenerOptions.clear();
         return this;
     }
 
@@ -1459,12 +2351,18 @@ public final class Store extends Controller<Store> {
 
     public void dispose() {
         serialize(false);
+        synchronized (statusIndex) {
+            statusIndex.values().forEach(entry -> entry.expiration().cancel());
+            statusIndex.clear();
+            statusIndexed = false;
+        }
         mediaConnectionLatch.countDown();
         mediaConnectionLatch = new CountDownLatch(1);
     }
 
     @Override
     public void serialize(boolean async) {
+        mediaUploadCache.removeExpired(mediaUploadCacheTtl);
         serializer.serializeStore(this, async);
     }
 
@@ -1475,7 +2373,7 @@ public final class Store extends Controller<Store> {
      * @return the old value associated with {@link Call#id()}
      */
     public Optional<Call> addCall(@NonNull Call call) {
-        return Optional.ofNullable(calls.put(call.id(), call));
+        return calls.add(call, callRetention, callLog);
     }
 
     /**
@@ -1485,7 +2383,22 @@ public final class Store extends Controller<Store> {
      * @return an optional
      */
     public Optional<Call> findCallById(String callId) {
-        return callId == null ? Optional.empty() : Optional.ofNullable(calls.get(callId));
+        if (callId == null) {
+            return Optional.empty();
+        }
+
+        calls.removeExpired(callRetention);
+        return calls.find(callId);
+    }
+
+    /**
+     * Returns all the calls kept by this store
+     *
+     * @return a non-null immutable collection
+     */
+    public Collection<Call> calls() {
+        calls.removeExpired(callRetention);
+        return calls.values();
     }
 
     public static abstract class StoreBuilder<C extends Store, B extends StoreBuilder<C, B>> extends ControllerBuilder<Store, C, B> {
@@ -1498,4 +2411,19 @@ public final class Store extends Controller<Store> {
             return this;
         }
     }
+
+    private record StatusEntry(MessageInfo info, TimerWheel.Timeout expiration) {
+
+    }
+
+    // The timer is shared by every store, so it only keeps a weak reference to a store that is never disposed
+    private record StatusExpiration(WeakReference<Store> store, MessageInfo info) implements Runnable {
+        @Override
+        public void run() {
+            var value = store.get();
+            if (value != null) {
+                value.removeStatus(info);
+            }
+        }
+    }
 }
@@ -38,11 +38,16 @@ public class AesCbc {
 
     @SneakyThrows
     public byte[] decrypt(byte[] iv, byte[] encrypted, byte[] key) {
-        Validate.isTrue(iv.length == AES_BLOCK_SIZE, "Invalid iv size: expected %s, got %s", AES_BLOCK_SIZE, iv.length);
         Validate.isTrue(encrypted.length % AES_BLOCK_SIZE == 0, "Invalid encrypted size");
+        return newCipher(Cipher.DECRYPT_MODE, iv, key).doFinal(encrypted);
+    }
+
+    @SneakyThrows
+    public Cipher newCipher(int mode, byte[] iv, byte[] key) {
+        Validate.isTrue(iv.length == AES_BLOCK_SIZE, "Invalid iv size: expected %s, got %s", AES_BLOCK_SIZE, iv.length);
         var cipher = Cipher.getInstance(AES_CBC);
         var keySpec = new SecretKeySpec(key, AES);
-        cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(iv));
-        return cipher.doFinal(encrypted);
+        cipher.init(mode, keySpec, new IvParameterSpec(iv));
+        return cipher;
     }
 }
@@ -46,11 +46,20 @@ public record GroupCipher(@NonNull SenderKeyName name, @NonNull Keys keys) {
                     .orElseThrow(() -> new NoSuchElementException("Received message with old counter: got %s, expected more than %s".formatted(iteration, senderKeyState.chainKey()
                             .iteration())));
         }
+        var skipped = iteration - senderKeyState.chainKey().iteration();
+        if (skipped > keys.maxSkippedMessageKeys()) {
+            keys.rejectedMessageKeys().incrementAndGet();
+            throw new IllegalArgumentException("Message overflow: expected <= %s, got %s".formatted(keys.maxSkippedMessageKeys(), skipped));
+        }
         var lastChainKey = senderKeyState.chainKey();
+        var evicted = 0;
         while (lastChainKey.iteration() < iteration) {
-            senderKeyState.addSenderMessageKey(lastChainKey.toMessageKey());
+            evicted += senderKeyState.addSenderMessageKey(lastChainKey.toMessageKey(), keys.maxRetainedMessageKeys());
             lastChainKey = lastChainKey.next();
         }
+        if (evicted != 0) {
+            keys.evictedMessageKeys().addAndGet(evicted);
+        }
         senderKeyState.chainKey(lastChainKey.next());
         return lastChainKey.toMessageKey();
     }
@@ -16,11 +16,24 @@ public class Hmac {
         return calculate(HMAC_SHA_256, plain, key);
     }
 
-    @SneakyThrows
     private byte[] calculate(String algorithm, byte[] plain, byte[] key) {
+        return newMac(algorithm, key).doFinal(plain);
+    }
+
+    public Mac newSha256(byte @NonNull [] key) {
+        return newMac(HMAC_SHA_256, key);
+    }
+
+    @SneakyThrows
+    public void rekeySha256(@NonNull Mac mac, byte @NonNull [] key) {
+        mac.init(new SecretKeySpec(key, HMAC_SHA_256));
+    }
+
+    @SneakyThrows
+    private Mac newMac(String algorithm, byte[] key) {
         var localMac = Mac.getInstance(algorithm);
         localMac.init(new SecretKeySpec(key, algorithm));
-        return localMac.doFinal(plain);
+        return localMac;
     }
 
     public byte[] calculateSha512(byte @NonNull [] plain, byte @NonNull [] key) {
@@ -110,6 +110,7 @@ public record SessionBuilder(@NonNull SessionAddress address, @NonNull Keys keys
             return;
         }
         var preKeyPair = keys.findPreKeyById(message.preKeyId()).orElse(null);
+        keys.consumePreKey(message.preKeyId());
         var signedPreKeyPair = keys.findSignedKeyPairById(message.signedPreKeyId())
                 .orElseThrow(() -> new NoSuchElementException("Cannot find signed pre key with id %s".formatted(message.signedPreKeyId())));
         session.closeCurrentState();
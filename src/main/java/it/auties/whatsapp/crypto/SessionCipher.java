@@ -25,6 +25,9 @@ import static it.auties.curve25519.Curve25519.sharedKey;
 import static it.auties.whatsapp.util.Spec.Signal.*;
 
 public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys) {
+    private static final byte[] MESSAGE_KEY_SEED = {1};
+    private static final byte[] CHAIN_KEY_SEED = {2};
+
     public CipheredMessageResult encrypt(byte[] data) {
         if(data == null){
             return new CipheredMessageResult(null, Signal.UNAVAILABLE);
@@ -77,20 +80,36 @@ public record SessionCipher(@NonNull SessionAddress address, @NonNull Keys keys)
         return Arrays.copyOfRange(sha256, 0, MAC_LENGTH);
     }
 
-    private void fillMessageKeys(SessionChain chain, int counter) {
-        if (chain.counter().get() >= counter) {
+    void fillMessageKeys(SessionChain chain, int counter) {
+        var skipped = counter - chain.counter().get();
+        if (skipped <= 0) {
             return;
         }
-        Validate.isTrue(counter - chain.counter()
-                .get() <= MAX_MESSAGES, "Message overflow: expected <= %s, got %s", MAX_MESSAGES, counter - chain.counter()
-                .get());
+        if (skipped > keys.maxSkippedMessageKeys()) {
+            keys.rejectedMessageKeys().incrementAndGet();
+            throw new IllegalArgumentException("Message overflow: expected <= %s, got %s".formatted(keys.maxSkippedMessageKeys(), skipped));
+        }
         Validate.isTrue(chain.key().get() != null, "Closed chain");
-        var messagesHmac = Hmac.calculateSha256(new byte[]{1}, chain.key().get());
-        chain.messageKeys().put(chain.counter().get() + 1, messagesHmac);
-        var keyHmac = Hmac.calculateSha256(new byte[]{2}, chain.key().get());
-        chain.key().set(keyHmac);
-        chain.counter().getAndIncrement();
-        fillMessageKeys(chain, counter);
+        var mac = Hmac.newSha256(chain.key().get());
+        var firstRetained = counter - keys.maxRetainedMessageKeys();
+        var evicted = 0;
+        for (var current = chain.counter().get() + 1; current <= counter; current++) {
+            var messageKey = mac.doFinal(MESSAGE_KEY_SEED);
+            var chainKey = mac.doFinal(CHAIN_KEY_SEED);
+            if (current > firstRetained) {
+                evicted += chain.addMessageKey(current, messageKey, keys.maxRetainedMessageKeys());
+            } else {
+                evicted++;
+            }
+            chain.key().set(chainKey);
+            chain.counter().set(current);
+            if (current != counter) {
+                Hmac.rekeySha256(mac, chainKey);
+            }
+        }
+        if (evicted != 0) {
+            keys.evictedMessageKeys().addAndGet(evicted);
+        }
     }
 
     public byte[] decrypt(SignalPreKeyMessage message) {
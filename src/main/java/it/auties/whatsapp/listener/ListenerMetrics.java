@@ -0,0 +1,19 @@
+package it.auties.whatsapp.listener;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * An immutable model class that represents how a {@link Listener} is keeping up with the events that are published
+ *
+ * @param pending        the number of events waiting to be delivered
+ * @param delivered      the number of events that were delivered
+ * @param dropped        the number of events that were discarded because the queue was full
+ * @param coalesced      the number of events that were replaced by a newer event that describes the same thing
+ * @param averageLatency the average time between the publication of an event and the end of its delivery
+ * @param maxLatency     the maximum time between the publication of an event and the end of its delivery
+ */
+public record ListenerMetrics(int pending, long delivered, long dropped, long coalesced, @NonNull Duration averageLatency, @NonNull Duration maxLatency) {
+
+}
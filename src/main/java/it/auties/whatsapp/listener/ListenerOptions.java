@@ -0,0 +1,33 @@
+package it.auties.whatsapp.listener;
+
+import it.auties.whatsapp.util.Validate;
+import lombok.NonNull;
+
+/**
+ * An immutable model class that represents how the events of a {@link Listener} are queued
+ * Events are always delivered to a listener one at a time and in the order they were published
+ *
+ * @param capacity       the maximum number of events waiting to be delivered to the listener
+ * @param overflowPolicy the policy to use when the queue is full
+ */
+public record ListenerOptions(int capacity, @NonNull ListenerOverflowPolicy overflowPolicy) {
+    /**
+     * Default constant
+     */
+    private static final ListenerOptions DEFAULT = new ListenerOptions(1024, ListenerOverflowPolicy.BLOCK);
+
+    public ListenerOptions {
+        Validate.isTrue(capacity > 0, "Expected a positive capacity, got: %s", capacity);
+    }
+
+    /**
+     * Returns the options used for listeners that were registered without options
+     * The default policy is {@link ListenerOverflowPolicy#BLOCK}, so no event is ever lost:
+     * use {@link ListenerOverflowPolicy#DROP_OLDEST} or {@link ListenerOverflowPolicy#COALESCE} for slow listeners that can miss some events
+     *
+     * @return a non-null options
+     */
+    public static ListenerOptions defaults() {
+        return DEFAULT;
+    }
+}
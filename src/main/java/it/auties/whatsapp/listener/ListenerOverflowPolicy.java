@@ -0,0 +1,27 @@
+package it.auties.whatsapp.listener;
+
+/**
+ * The list of policies that can be used when the queue of events of a {@link Listener} is full
+ */
+public enum ListenerOverflowPolicy {
+    /**
+     * The thread that publishes the event waits until the listener catches up
+     * If the event is published by a listener, the queue is allowed to grow to avoid a deadlock
+     * Events are usually published by the socket, so a listener that falls behind for longer than its queue can absorb delays every other message
+     * This is the default policy, as no event is ever lost
+     */
+    BLOCK,
+
+    /**
+     * The oldest event in the queue is discarded
+     * Discarded events are counted by {@link ListenerMetrics#dropped()} and logged
+     */
+    DROP_OLDEST,
+
+    /**
+     * Events that describe the latest state of something, like a presence update or the progress of a history sync,
+     * replace the pending event that describes the same thing, even if the queue isn't full.
+     * Other events wait like in {@link ListenerOverflowPolicy#BLOCK}
+     */
+    COALESCE
+}
@@ -0,0 +1,97 @@
+package it.auties.whatsapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram with log-linear buckets, in the style of HdrHistogram.
+ * Each power of two is split into a fixed number of linear sub buckets, so the relative error of a value is bounded regardless of its magnitude,
+ * and recording a value takes a constant time and no allocations.
+ */
+final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    Histogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.sum = new LongAdder();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    void record(long value) {
+        var clamped = Math.max(0, value);
+        buckets.incrementAndGet(indexOf(clamped));
+        sum.add(clamped);
+        min.accumulateAndGet(clamped, Math::min);
+        max.accumulateAndGet(clamped, Math::max);
+    }
+
+    HistogramSnapshot snapshot() {
+        var counts = new long[BUCKET_COUNT];
+        var count = 0L;
+        for (var i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        if (count == 0) {
+            return new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        var maxValue = max.get();
+        return new HistogramSnapshot(
+                count,
+                sum.sum(),
+                min.get(),
+                maxValue,
+                percentile(counts, count, 0.5, maxValue),
+                percentile(counts, count, 0.9, maxValue),
+                percentile(counts, count, 0.99, maxValue),
+                percentile(counts, count, 0.999, maxValue)
+        );
+    }
+
+    private long percentile(long[] counts, long count, double percentile, long maxValue) {
+        var rank = Math.max(1, (long) Math.ceil(count * percentile));
+        var seen = 0L;
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), maxValue);
+            }
+        }
+
+        return maxValue;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        var shift = exponent - SUB_BUCKET_BITS;
+        var subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        var shift = index / SUB_BUCKET_COUNT - 1;
+        var subBucket = index & SUB_BUCKET_MASK;
+        var lowest = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,25 @@
+package it.auties.whatsapp.metrics;
+
+/**
+ * An immutable model class that represents the distribution of the values recorded by a histogram
+ * Percentiles are approximated by the highest value of the bucket that contains them, so their relative error is at most 1/16
+ *
+ * @param count the number of recorded values
+ * @param sum   the sum of the recorded values
+ * @param min   the smallest recorded value
+ * @param max   the largest recorded value
+ * @param p50   the median
+ * @param p90   the 90th percentile
+ * @param p99   the 99th percentile
+ * @param p999  the 99.9th percentile
+ */
+public record HistogramSnapshot(long count, long sum, long min, long max, long p50, long p90, long p99, long p999) {
+    /**
+     * Returns the average of the recorded values
+     *
+     * @return a double, zero if no values were recorded
+     */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
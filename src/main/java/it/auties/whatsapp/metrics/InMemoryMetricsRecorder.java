@@ -0,0 +1,60 @@
+package it.auties.whatsapp.metrics;
+
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A recorder that keeps every metric in memory until a snapshot is taken
+ * Counters and histograms are lock-free, so they can be updated from any thread without contention
+ */
+public final class InMemoryMetricsRecorder implements MetricsRecorder {
+    private final ConcurrentHashMap<String, LongAdder> counters;
+    private final ConcurrentHashMap<String, LongSupplier> gauges;
+    private final ConcurrentHashMap<String, Histogram> histograms;
+
+    public InMemoryMetricsRecorder() {
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void increment(@NonNull String name, long delta) {
+        counters.computeIfAbsent(name, ignored -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void gauge(@NonNull String name, @NonNull LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    @Override
+    public void record(@NonNull String name, long value) {
+        histograms.computeIfAbsent(name, ignored -> new Histogram()).record(value);
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        var counterValues = new TreeMap<String, Long>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        var gaugeValues = new TreeMap<String, Long>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsLong()));
+        var histogramValues = new TreeMap<String, HistogramSnapshot>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        return new MetricsSnapshot(System.nanoTime(), Collections.unmodifiableMap(counterValues),
+                Collections.unmodifiableMap(gaugeValues), Collections.unmodifiableMap(histogramValues));
+    }
+
+    /**
+     * Removes every counter and histogram, gauges are kept as they are computed when a snapshot is taken
+     */
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+    }
+}
@@ -0,0 +1,68 @@
+package it.auties.whatsapp.metrics;
+
+/**
+ * The names of the metrics recorded by this library
+ * Durations are recorded in nanoseconds
+ */
+public final class MetricNames {
+    /**
+     * Counter of the frames read from the socket
+     */
+    public static final String SOCKET_FRAMES_RECEIVED = "socket.frames.received";
+
+    /**
+     * Counter of the frames written to the socket
+     */
+    public static final String SOCKET_FRAMES_SENT = "socket.frames.sent";
+
+    /**
+     * Counter of the bytes read from the socket
+     */
+    public static final String SOCKET_BYTES_RECEIVED = "socket.bytes.received";
+
+    /**
+     * Counter of the bytes written to the socket
+     */
+    public static final String SOCKET_BYTES_SENT = "socket.bytes.sent";
+
+    /**
+     * Histogram of the time needed to decode a node
+     */
+    public static final String BINARY_DECODE = "binary.decode";
+
+    /**
+     * Histogram of the time needed to encrypt an outgoing message, recorded once for each device and once for the sender key of a group
+     * Messages that fail to be encrypted are not recorded
+     */
+    public static final String MESSAGE_ENCRYPT = "message.encrypt";
+
+    /**
+     * Prefix of the histograms of the time between an iq and its response, followed by the xmlns of the iq
+     */
+    public static final String IQ_LATENCY = "iq.latency.";
+
+    /**
+     * Prefix of the counters of the iqs that failed or timed out, followed by the xmlns of the iq
+     */
+    public static final String IQ_FAILURES = "iq.failures.";
+
+    /**
+     * Gauge of the events waiting to be delivered to listeners
+     */
+    public static final String LISTENER_QUEUE_DEPTH = "listener.queue.depth";
+
+    /**
+     * Histogram of the time needed to serialize a store
+     */
+    public static final String SERIALIZE_STORE = "serializer.store";
+
+    /**
+     * Histogram of the time needed to serialize the keys
+     */
+    public static final String SERIALIZE_KEYS = "serializer.keys";
+
+    /**
+     * Histogram of the time needed to serialize a chat
+     */
+    public static final String SERIALIZE_CHAT = "serializer.chat";
+}
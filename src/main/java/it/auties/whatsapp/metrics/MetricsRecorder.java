@@ -0,0 +1,94 @@
+package it.auties.whatsapp.metrics;
+
+import lombok.NonNull;
+
+import java.util.function.LongSupplier;
+
+/**
+ * This interface provides a standardized way to observe the throughput and the latency of a session.
+ * Metrics are identified by their name, see {@link MetricNames} for the ones recorded by this library.
+ * Implementations are called on hot paths, such as the thread that reads from the socket, so they should be cheap and never block.
+ */
+@SuppressWarnings("unused")
+public interface MetricsRecorder {
+    /**
+     * Returns a recorder that discards every metric
+     *
+     * @return a non-null recorder
+     */
+    static MetricsRecorder noop() {
+        return NoopMetricsRecorder.INSTANCE;
+    }
+
+    /**
+     * Constructs a new recorder that keeps every metric in memory
+     *
+     * @return a non-null recorder
+     */
+    static MetricsRecorder inMemory() {
+        return new InMemoryMetricsRecorder();
+    }
+
+    /**
+     * Increments a counter
+     *
+     * @param name  the non-null name of the counter
+     * @param delta the amount to add
+     */
+    void increment(@NonNull String name, long delta);
+
+    /**
+     * Increments a counter by one
+     *
+     * @param name the non-null name of the counter
+     */
+    default void increment(@NonNull String name) {
+        increment(name, 1);
+    }
+
+    /**
+     * Registers a gauge, replacing the one with the same name if it exists
+     * The supplier is only called when a snapshot is taken
+     *
+     * @param name     the non-null name of the gauge
+     * @param supplier the non-null supplier of the current value
+     */
+    void gauge(@NonNull String name, @NonNull LongSupplier supplier);
+
+    /**
+     * Records a value in a histogram
+     *
+     * @param name  the non-null name of the histogram
+     * @param value the value to record, durations are recorded in nanoseconds
+     */
+    void record(@NonNull String name, long value);
+
+    /**
+     * Records the time elapsed since a point in a histogram
+     *
+     * @param name       the non-null name of the histogram
+     * @param startNanos the start of the measurement, as returned by {@link System#nanoTime()}
+     */
+    default void recordSince(@NonNull String name, long startNanos) {
+        record(name, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns whether this recorder keeps the metrics it receives
+     * Callers can use this method to skip the work needed to compute a metric
+     *
+     * @return a boolean
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Returns the current value of every metric
+     *
+     * @return a non-null snapshot
+     */
+    default MetricsSnapshot snapshot() {
+        return MetricsSnapshot.empty();
+    }
+}
@@ -0,0 +1,57 @@
+package it.auties.whatsapp.metrics;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable model class that represents the value of every metric of a recorder at a point in time
+ * Counters are cumulative, so rates such as the frames per second can be computed from the difference between two snapshots
+ *
+ * @param timestampNanos the time at which this snapshot was taken, as returned by {@link System#nanoTime()}
+ * @param counters       the non-null counters sorted by name
+ * @param gauges         the non-null gauges sorted by name
+ * @param histograms     the non-null histograms sorted by name
+ */
+public record MetricsSnapshot(long timestampNanos, @NonNull Map<String, Long> counters, @NonNull Map<String, Long> gauges,
+                              @NonNull Map<String, HistogramSnapshot> histograms) {
+    /**
+     * Constructs a new snapshot without any metric
+     *
+     * @return a non-null snapshot
+     */
+    public static MetricsSnapshot empty() {
+        return new MetricsSnapshot(System.nanoTime(), Map.of(), Map.of(), Map.of());
+    }
+
+    /**
+     * Returns the value of a counter
+     *
+     * @param name the non-null name of the counter
+     * @return the value, zero if the counter doesn't exist
+     */
+    public long counter(@NonNull String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Returns the value of a gauge
+     *
+     * @param name the non-null name of the gauge
+     * @return a non-null optional
+     */
+    public Optional<Long> gauge(@NonNull String name) {
+        return Optional.ofNullable(gauges.get(name));
+    }
+
+    /**
+     * Returns a histogram
+     *
+     * @param name the non-null name of the histogram
+     * @return a non-null optional
+     */
+    public Optional<HistogramSnapshot> histogram(@NonNull String name) {
+        return Optional.ofNullable(histograms.get(name));
+    }
+}
@@ -0,0 +1,41 @@
+package it.auties.whatsapp.metrics;
+
+import lombok.NonNull;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A recorder that discards every metric, used if none is provided
+ */
+final class NoopMetricsRecorder implements MetricsRecorder {
+    static final NoopMetricsRecorder INSTANCE = new NoopMetricsRecorder();
+
+    private NoopMetricsRecorder() {
+
+    }
+
+    @Override
+    public void increment(@NonNull String name, long delta) {
+
+    }
+
+    @Override
+    public void gauge(@NonNull String name, @NonNull LongSupplier supplier) {
+
+    }
+
+    @Override
+    public void record(@NonNull String name, long value) {
+
+    }
+
+    @Override
+    public void recordSince(@NonNull String name, long startNanos) {
+
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+}
@@ -7,4 +7,12 @@ import java.time.ZonedDateTime;
 
 public record Call(@NonNull ContactJid chat, @NonNull ContactJid caller, @NonNull String id, @NonNull ZonedDateTime time,
                    boolean video, @NonNull CallStatus status, boolean offline) {
-}
\ No newline at end of file
+    /**
+     * Returns whether this call ended
+     *
+     * @return a boolean
+     */
+    public boolean isTerminated() {
+        return status.isTerminated();
+    }
+}
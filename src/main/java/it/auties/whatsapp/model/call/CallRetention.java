@@ -0,0 +1,61 @@
+package it.auties.whatsapp.model.call;
+
+import it.auties.whatsapp.util.Spec;
+import it.auties.whatsapp.util.Validate;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * An immutable model class that represents how many calls should be kept in memory
+ * Terminated calls are removed once they exceed either limit starting from the oldest one
+ * Ongoing calls don't count towards the maximum number of calls, but they are removed if they aren't updated for longer than their ttl, as a call might never be terminated
+ *
+ * @param maxCalls      the maximum number of calls to keep, zero means no limit
+ * @param terminatedTtl the time a terminated call is kept for, zero means no limit
+ * @param ongoingTtl    the time an ongoing call is kept for after its last update, zero means no limit
+ */
+public record CallRetention(int maxCalls, @NonNull Duration terminatedTtl, @NonNull Duration ongoingTtl) {
+    /**
+     * Unlimited constant
+     */
+    private static final CallRetention UNLIMITED = new CallRetention(0, Duration.ZERO, Duration.ZERO);
+
+    /**
+     * Default constant
+     */
+    private static final CallRetention DEFAULT = new CallRetention(Spec.Whatsapp.MAX_CALLS, Spec.Whatsapp.TERMINATED_CALL_TTL, Spec.Whatsapp.ONGOING_CALL_TTL);
+
+    public CallRetention {
+        Validate.isTrue(maxCalls >= 0, "Expected a non-negative number of calls, got: %s", maxCalls);
+        Validate.isTrue(!terminatedTtl.isNegative(), "Expected a non-negative ttl, got: %s", terminatedTtl);
+        Validate.isTrue(!ongoingTtl.isNegative(), "Expected a non-negative ttl, got: %s", ongoingTtl);
+    }
+
+    /**
+     * Constructs a new retention that keeps every call
+     *
+     * @return a non-null retention
+     */
+    public static CallRetention unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Constructs the retention used if none is provided
+     *
+     * @return a non-null retention
+     */
+    public static CallRetention defaultRetention() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns whether this retention keeps every call
+     *
+     * @return a boolean
+     */
+    public boolean isUnlimited() {
+        return maxCalls == 0 && terminatedTtl.isZero() && ongoingTtl.isZero();
+    }
+}
@@ -4,5 +4,14 @@ public enum CallStatus {
     RINGING,
     ACCEPTED,
     REJECTED,
-    TIMED_OUT
+    TIMED_OUT;
+
+    /**
+     * Returns whether a call with this status ended
+     *
+     * @return a boolean
+     */
+    public boolean isTerminated() {
+        return this == REJECTED || this == TIMED_OUT;
+    }
 }
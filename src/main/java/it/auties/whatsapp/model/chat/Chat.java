@@ -1,5 +1,6 @@
 package it.auties.whatsapp.model.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonSetter;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufName;
@@ -23,6 +24,7 @@ import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -44,6 +46,16 @@ import static java.util.Objects.requireNonNullElse;
 @Accessors(fluent = true)
 @ProtobufName("Conversation")
 public final class Chat implements ProtobufMessage, ContactJidProvider {
+    /**
+     * The size used for messages that cannot be encoded
+     */
+    private static final int DEFAULT_MESSAGE_SIZE = 512;
+
+    /**
+     * Only one message out of this number is encoded to estimate its size, the others use the average size of the encoded ones
+     */
+    private static final int MESSAGE_SIZE_SAMPLE_RATE = 16;
+
     /**
      * The unique id of this chat
      */
@@ -337,6 +349,27 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
     @NonNull
     private Set<ContactJid> participantsPreKeys = new HashSet<>();
 
+    /**
+     * The retention of the messages of this chat, if it overrides the one of the store
+     */
+    private ChatRetention retention;
+
+    /**
+     * An estimate of the memory used by the messages of this chat in bytes, negative if it wasn't computed yet
+     */
+    @Default
+    @NonNull
+    @JsonIgnore
+    private AtomicLong residentBytes = new AtomicLong(-1);
+
+    /**
+     * The sampler used to estimate the size of the messages of this chat
+     */
+    @Default
+    @NonNull
+    @JsonIgnore
+    private MessageSizeSampler messageSizeSampler = new MessageSizeSampler();
+
     /**
      * Constructs a chat from a jid
      *
@@ -412,7 +445,7 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
     }
 
     /**
-     * Returns all the unread messages in this chat
+     * Returns all the unread messages in this chat, that is the newest {@link Chat#unreadMessagesCount()} messages
      *
      * @return a non-null collection
      */
@@ -421,11 +454,14 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
             return List.of();
         }
 
-        var iterator = historySyncMessages.iterator();
-        return historySyncMessages.stream()
-                .limit(unreadMessagesCount())
-                .map(HistorySyncMessage::messageInfo)
-                .toList();
+        var unreadMessages = new ArrayList<MessageInfo>(unreadMessagesCount);
+        var iterator = historySyncMessages.descendingIterator();
+        while (iterator.hasNext() && unreadMessages.size() < unreadMessagesCount) {
+            unreadMessages.add(iterator.next().messageInfo());
+        }
+
+        Collections.reverse(unreadMessages);
+        return Collections.unmodifiableList(unreadMessages);
     }
 
     /**
@@ -614,6 +650,7 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      */
     public Collection<MessageInfo> starredMessages() {
         return historySyncMessages.stream()
+                .filter(entry -> !entry.isCompacted())
                 .map(HistorySyncMessage::messageInfo)
                 .filter(MessageInfo::starred)
                 .toList();
@@ -712,7 +749,10 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @param newMessages the non-null messages to add
      */
     public void addMessages(@NonNull Collection<HistorySyncMessage> newMessages) {
-        historySyncMessages.addAll(newMessages);
+        synchronized (historySyncMessages) {
+            historySyncMessages.addAll(newMessages);
+            newMessages.forEach(entry -> trackMessage(entry, 1));
+        }
     }
 
     /**
@@ -721,7 +761,140 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @param oldMessages the non-null messages to add
      */
     public void addOldMessages(@NonNull Collection<HistorySyncMessage> oldMessages) {
-        oldMessages.forEach(historySyncMessages::addFirst);
+        synchronized (historySyncMessages) {
+            oldMessages.forEach(entry -> {
+                historySyncMessages.addFirst(entry);
+                trackMessage(entry, 1);
+            });
+        }
+    }
+
+    /**
+     * Copies the metadata of another copy of this chat, such as the one sent in a history sync, into this chat.
+     * Messages are not copied, use {@link Chat#mergeMessages(Collection)} to merge them.
+     * Flags and counters are overwritten, while values that are missing in the other chat are kept.
+     *
+     * @param other the non-null chat to copy
+     */
+    public void mergeMetadata(@NonNull Chat other) {
+        this.timestampSeconds = Math.max(timestampSeconds, other.timestampSeconds);
+        this.unreadMessagesCount = other.unreadMessagesCount;
+        this.readOnly = other.readOnly;
+        this.endOfHistoryTransfer = other.endOfHistoryTransfer;
+        this.ephemeralMessageDuration = other.ephemeralMessageDuration;
+        this.ephemeralMessagesToggleTime = other.ephemeralMessagesToggleTime != 0 ? other.ephemeralMessagesToggleTime : ephemeralMessagesToggleTime;
+        this.endOfHistoryTransferType = other.endOfHistoryTransferType;
+        this.name = other.name != null ? other.name : name;
+        this.notSpam = other.notSpam;
+        this.archived = other.archived;
+        this.disappearInitiator = other.disappearInitiator != null ? other.disappearInitiator : disappearInitiator;
+        this.markedAsUnread = other.markedAsUnread;
+        participants.putAll(other.participants);
+        pastParticipants.putAll(other.pastParticipants);
+        this.token = other.token != null ? other.token : token;
+        this.tokenTimestampSeconds = other.tokenTimestampSeconds != 0 ? other.tokenTimestampSeconds : tokenTimestampSeconds;
+        this.identityKey = other.identityKey != null ? other.identityKey : identityKey;
+        this.pinnedTimestampSeconds = other.pinnedTimestampSeconds;
+        this.mute = other.mute;
+        this.wallpaper = other.wallpaper != null ? other.wallpaper : wallpaper;
+        this.mediaVisibility = other.mediaVisibility;
+        this.tokenSenderTimestampSeconds = other.tokenSenderTimestampSeconds != 0 ? other.tokenSenderTimestampSeconds : tokenSenderTimestampSeconds;
+        this.suspended = other.suspended;
+        this.terminated = other.terminated;
+        this.foundationTimestampSeconds = other.foundationTimestampSeconds != 0 ? other.foundationTimestampSeconds : foundationTimestampSeconds;
+        this.founder = other.founder != null ? other.founder : founder;
+        this.description = other.description != null ? other.description : description;
+        this.support = other.support;
+        this.parentGroup = other.parentGroup;
+        this.defaultSubGroup = other.defaultSubGroup;
+        this.parentGroupJid = other.parentGroupJid != null ? other.parentGroupJid : parentGroupJid;
+        this.displayName = other.displayName != null ? other.displayName : displayName;
+        this.pnJid = other.pnJid != null ? other.pnJid : pnJid;
+        this.shareOwnPn = other.shareOwnPn;
+        this.pnhDuplicateLidThread = other.pnhDuplicateLidThread;
+        this.lidJid = other.lidJid != null ? other.lidJid : lidJid;
+    }
+
+    /**
+     * Merges an unspecified amount of messages into this chat, keeping them sorted chronologically.
+     * Messages whose id is already in this chat are skipped.
+     * The merge happens in place: messages older than this chat are prepended, newer ones are appended,
+     * and only the existing messages that are newer than the oldest interleaved message are moved.
+     *
+     * @param messages the non-null messages to merge
+     */
+    public void mergeMessages(@NonNull Collection<HistorySyncMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        synchronized (historySyncMessages) {
+            var ids = new HashSet<String>();
+            historySyncMessages.forEach(entry -> ids.add(entry.id()));
+            var incoming = messages.stream()
+                    .filter(entry -> ids.add(entry.id()))
+                    .sorted(Comparator.comparingLong(HistorySyncMessage::timestampSeconds))
+                    .toList();
+            if (incoming.isEmpty()) {
+                return;
+            }
+
+            incoming.forEach(entry -> trackMessage(entry, 1));
+            var oldest = historySyncMessages.peekFirst();
+            var prefixSize = oldest == null ? 0 : (int) incoming.stream()
+                    .takeWhile(entry -> entry.timestampSeconds() < oldest.timestampSeconds())
+                    .count();
+            mergeNewerMessages(incoming.subList(prefixSize, incoming.size()));
+            for (var index = prefixSize - 1; index >= 0; index--) {
+                historySyncMessages.addFirst(incoming.get(index));
+            }
+        }
+
+        refreshChatTimestamp();
+    }
+
+    // Appends the new messages after the existing messages that aren't newer than them
+    // The existing messages that are newer are appended again in order and then removed from their old position,
+    // so that concurrent readers never miss a message
+    private void mergeNewerMessages(List<HistorySyncMessage> incoming) {
+        if (incoming.isEmpty()) {
+            return;
+        }
+
+        var cut = incoming.get(0).timestampSeconds();
+        var suffixStart = 0;
+        var suffix = new ArrayList<HistorySyncMessage>();
+        for (var entry : historySyncMessages) {
+            if (suffix.isEmpty() && entry.timestampSeconds() <= cut) {
+                suffixStart++;
+                continue;
+            }
+
+            suffix.add(entry);
+        }
+
+        if (suffix.isEmpty()) {
+            historySyncMessages.addAll(incoming);
+            return;
+        }
+
+        var merged = new ArrayList<HistorySyncMessage>(suffix.size() + incoming.size());
+        var existingIndex = 0;
+        var incomingIndex = 0;
+        while (existingIndex < suffix.size() || incomingIndex < incoming.size()) {
+            var takeExisting = incomingIndex >= incoming.size()
+                    || (existingIndex < suffix.size() && suffix.get(existingIndex).timestampSeconds() <= incoming.get(incomingIndex).timestampSeconds());
+            merged.add(takeExisting ? suffix.get(existingIndex++) : incoming.get(incomingIndex++));
+        }
+
+        historySyncMessages.addAll(merged);
+        var iterator = historySyncMessages.iterator();
+        for (var index = 0; index < suffixStart + suffix.size(); index++) {
+            var entry = iterator.next();
+            if (index >= suffixStart) {
+                iterator.remove();
+            }
+        }
     }
 
     /**
@@ -731,11 +904,14 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @return whether the message was added
      */
     public boolean addNewMessage(@NonNull MessageInfo info) {
-        var sync = new HistorySyncMessage(info, historySyncMessages.size());
-        if (historySyncMessages.contains(sync)) {
-            return false;
+        synchronized (historySyncMessages) {
+            var sync = new HistorySyncMessage(info, historySyncMessages.size());
+            if (historySyncMessages.contains(sync)) {
+                return false;
+            }
+            historySyncMessages.add(sync);
+            trackMessage(sync, 1);
         }
-        historySyncMessages.add(sync);
         updateChatTimestamp(info);
         return true;
     }
@@ -747,7 +923,10 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @return whether the message was added
      */
     public boolean addOldMessage(@NonNull HistorySyncMessage info) {
-        historySyncMessages.addFirst(info);
+        synchronized (historySyncMessages) {
+            historySyncMessages.addFirst(info);
+            trackMessage(info, 1);
+        }
         return true;
     }
 
@@ -758,19 +937,41 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * @return whether the message was removed
      */
     public boolean removeMessage(@NonNull MessageInfo info) {
-        var result = historySyncMessages.removeIf(entry -> Objects.equals(entry.messageInfo().id(), info.id()));
+        boolean result;
+        synchronized (historySyncMessages) {
+            result = historySyncMessages.removeIf(entry -> Objects.equals(entry.id(), info.id()) && untrackMessage(entry));
+        }
+        refreshChatTimestamp();
+        return result;
+    }
+
+    /**
+     * Remove a message from the chat without decoding the messages that are compacted
+     *
+     * @param id the id of the message to remove
+     * @return whether the message was removed
+     */
+    public boolean removeMessage(@NonNull String id) {
+        boolean result;
+        synchronized (historySyncMessages) {
+            result = historySyncMessages.removeIf(entry -> Objects.equals(entry.id(), id) && untrackMessage(entry));
+        }
         refreshChatTimestamp();
         return result;
     }
 
     /**
      * Remove a message from the chat
+     * The predicate needs every message, so the messages that are compacted are decoded: prefer {@link Chat#removeMessage(String)} if possible
      *
      * @param predicate the predicate that determines if a message should be removed
      * @return whether the message was removed
      */
     public boolean removeMessage(@NonNull Predicate<? super MessageInfo> predicate) {
-        var result = historySyncMessages.removeIf(entry -> predicate.test(entry.messageInfo()));
+        boolean result;
+        synchronized (historySyncMessages) {
+            result = historySyncMessages.removeIf(entry -> predicate.test(entry.messageInfo()) && untrackMessage(entry));
+        }
         refreshChatTimestamp();
         return result;
     }
@@ -796,7 +997,142 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
      * Removes all messages from the chat
      */
     public void removeMessages() {
-        historySyncMessages.clear();
+        synchronized (historySyncMessages) {
+            historySyncMessages.clear();
+            residentBytes.set(0);
+        }
+    }
+
+    /**
+     * Evicts the oldest messages of this chat that exceed a retention
+     * Compacted messages are evicted without testing the protection, as protected messages should never be compacted
+     *
+     * @param retention  the non-null retention to apply
+     * @param protection a predicate that returns whether a message must never be evicted
+     * @return the number of messages that were evicted
+     */
+    public int evictMessages(@NonNull ChatRetention retention, @NonNull Predicate<? super MessageInfo> protection) {
+        if (retention.isUnlimited()) {
+            return 0;
+        }
+
+        synchronized (historySyncMessages) {
+            var excess = retention.maxMessages() == 0 ? 0 : historySyncMessages.size() - retention.maxMessages();
+            var evicted = 0;
+            var iterator = historySyncMessages.iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (excess <= 0 && !retention.isExpired(entry.timestampSeconds())) {
+                    break;
+                }
+
+                if (isProtected(entry, protection)) {
+                    continue;
+                }
+
+                iterator.remove();
+                trackMessage(entry, -1);
+                excess--;
+                evicted++;
+            }
+
+            return evicted;
+        }
+    }
+
+    /**
+     * Evicts the oldest message of this chat that isn't protected
+     * Compacted messages are evicted without testing the protection, as protected messages should never be compacted
+     *
+     * @param protection a predicate that returns whether a message must never be evicted
+     * @return the estimated size in bytes of the message that was evicted, zero if no message could be evicted
+     */
+    public long evictOldestMessage(@NonNull Predicate<? super MessageInfo> protection) {
+        synchronized (historySyncMessages) {
+            var iterator = historySyncMessages.iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (isProtected(entry, protection)) {
+                    continue;
+                }
+
+                iterator.remove();
+                var size = estimateSize(entry);
+                residentBytes.getAndUpdate(value -> value < 0 ? value : Math.max(0, value - size));
+                return size;
+            }
+
+            return 0;
+        }
+    }
+
+    private boolean isProtected(HistorySyncMessage entry, Predicate<? super MessageInfo> protection) {
+        return !entry.isCompacted() && protection.test(entry.messageInfo());
+    }
+
+    /**
+     * Returns the timestamp of the oldest message in this chat without decoding it if it's compacted
+     *
+     * @return an optional
+     */
+    public OptionalLong oldestMessageTimestampSeconds() {
+        var oldest = historySyncMessages.peekFirst();
+        return oldest == null ? OptionalLong.empty() : OptionalLong.of(oldest.timestampSeconds());
+    }
+
+    /**
+     * Decodes the messages of this chat that are compacted
+     * This method should be called before encoding this chat as protobuf, as only the messages that aren't compacted are encoded,
+     * inside {@link it.auties.whatsapp.controller.Store#withoutCompaction(java.util.function.Supplier)} so that they aren't compacted again before being encoded
+     */
+    public void inflateMessages() {
+        historySyncMessages.forEach(HistorySyncMessage::messageInfo);
+    }
+
+    /**
+     * Returns an estimate of the memory used by the messages of this chat
+     * The estimate is based on the encoded size of each message, and it's computed on the first call if the messages were deserialized
+     *
+     * @return the number of bytes
+     */
+    public long residentBytes() {
+        var value = residentBytes.get();
+        if (value >= 0) {
+            return value;
+        }
+
+        var computed = historySyncMessages.stream()
+                .mapToLong(this::estimateSize)
+                .sum();
+        residentBytes.compareAndSet(value, computed);
+        return residentBytes.get();
+    }
+
+    /**
+     * Returns the retention of the messages of this chat, if it overrides the one of the store
+     *
+     * @return an optional
+     */
+    public Optional<ChatRetention> retention() {
+        return Optional.ofNullable(retention);
+    }
+
+    private boolean untrackMessage(HistorySyncMessage entry) {
+        trackMessage(entry, -1);
+        return true;
+    }
+
+    private void trackMessage(HistorySyncMessage entry, int sign) {
+        if (residentBytes.get() < 0) {
+            return;
+        }
+
+        var size = sign * estimateSize(entry);
+        residentBytes.getAndUpdate(value -> value < 0 ? value : Math.max(0, value + size));
+    }
+
+    private long estimateSize(HistorySyncMessage entry) {
+        return entry.estimatedSize(messageSizeSampler::estimate);
     }
 
     /**
@@ -1009,4 +1345,34 @@ public final class Chat implements ProtobufMessage, ContactJidProvider {
             return this;
         }
     }
-}
\ No newline at end of file
+
+    // Encoding a message just to know its size is as expensive as serializing it, so only a sample of the messages is encoded
+    private static final class MessageSizeSampler {
+        private long messages;
+        private long sampledMessages;
+        private long sampledBytes;
+
+        private synchronized int estimate(HistorySyncMessage entry) {
+            if (entry.isCompacted()) {
+                return encodedSize(entry);
+            }
+
+            if (sampledMessages != 0 && messages++ % MESSAGE_SIZE_SAMPLE_RATE != 0) {
+                return (int) (sampledBytes / sampledMessages);
+            }
+
+            var size = encodedSize(entry);
+            sampledMessages++;
+            sampledBytes += size;
+            return size;
+        }
+
+        private static int encodedSize(HistorySyncMessage entry) {
+            try {
+                return Math.max(1, entry.encodedSize());
+            } catch (RuntimeException exception) {
+                return DEFAULT_MESSAGE_SIZE;
+            }
+        }
+    }
+}
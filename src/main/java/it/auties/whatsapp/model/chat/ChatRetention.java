@@ -0,0 +1,74 @@
+package it.auties.whatsapp.model.chat;
+
+import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.Validate;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * An immutable model class that represents how many messages of a chat should be kept in memory
+ * Messages that exceed either limit are evicted starting from the oldest one, unless they are protected
+ *
+ * @param maxMessages the maximum number of messages to keep, zero means no limit
+ * @param maxAge      the maximum age of the messages to keep, zero means no limit
+ */
+public record ChatRetention(int maxMessages, @NonNull Duration maxAge) {
+    /**
+     * Unlimited constant
+     */
+    private static final ChatRetention UNLIMITED = new ChatRetention(0, Duration.ZERO);
+
+    public ChatRetention {
+        Validate.isTrue(maxMessages >= 0, "Expected a non-negative number of messages, got: %s", maxMessages);
+        Validate.isTrue(!maxAge.isNegative(), "Expected a non-negative age, got: %s", maxAge);
+    }
+
+    /**
+     * Constructs a new retention that keeps every message
+     *
+     * @return a non-null retention
+     */
+    public static ChatRetention unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Constructs a new retention that keeps the newest messages
+     *
+     * @param maxMessages the maximum number of messages to keep
+     * @return a non-null retention
+     */
+    public static ChatRetention ofMessages(int maxMessages) {
+        return new ChatRetention(maxMessages, Duration.ZERO);
+    }
+
+    /**
+     * Constructs a new retention that keeps the messages sent in a time window
+     *
+     * @param maxAge the maximum age of the messages to keep
+     * @return a non-null retention
+     */
+    public static ChatRetention ofAge(@NonNull Duration maxAge) {
+        return new ChatRetention(0, maxAge);
+    }
+
+    /**
+     * Returns whether this retention keeps every message
+     *
+     * @return a boolean
+     */
+    public boolean isUnlimited() {
+        return maxMessages == 0 && maxAge.isZero();
+    }
+
+    /**
+     * Returns whether a message sent at the provided time is too old for this retention
+     *
+     * @param timestampSeconds the timestamp of the message in seconds
+     * @return a boolean
+     */
+    public boolean isExpired(long timestampSeconds) {
+        return !maxAge.isZero() && Clock.nowSeconds() - timestampSeconds > maxAge.toSeconds();
+    }
+}
@@ -7,17 +7,33 @@ import it.auties.whatsapp.model.signal.session.SessionAddress;
 import lombok.*;
 import lombok.experimental.Accessors;
 
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A model class that represents a jid. This class is only a model, this means that changing its
  * values will have no real effect on WhatsappWeb's servers. This class also offers a builder,
  * accessible using {@link ContactJid#builder()}.
+ * Jids created using the static factory methods are interned, so the same jid is usually represented by the same instance.
  */
 @Builder
 @With
 public record ContactJid(String user, @NonNull Server server, int device, int agent) implements ContactJidProvider {
+    /**
+     * The maximum number of entries in each cache, when a cache is full it's cleared
+     */
+    private static final int CACHE_SIZE = 16384;
+
+    /**
+     * The interned jids
+     */
+    private static final ConcurrentHashMap<ContactJid, ContactJid> INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * The interned jids indexed by the string they were parsed from
+     */
+    private static final ConcurrentHashMap<String, ContactJid> PARSED = new ConcurrentHashMap<>();
+
     /**
      * Default constructor
      */
@@ -27,6 +43,34 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
         this.device = device;
         this.agent = agent;
     }
+
+    /**
+     * Constructs a new ContactId from its components
+     * This method doesn't parse the user, so it should be used when the components are already known
+     *
+     * @param user   the nullable user, without a server, a device or an agent
+     * @param server the non-null server
+     * @param device the device
+     * @param agent  the agent
+     * @return a non-null contact jid
+     */
+    public static ContactJid of(String user, @NonNull Server server, int device, int agent) {
+        return intern(new ContactJid(user, server, device, agent));
+    }
+
+    private static ContactJid intern(ContactJid jid) {
+        var result = INSTANCES.get(jid);
+        if (result != null) {
+            return result;
+        }
+
+        if (INSTANCES.size() >= CACHE_SIZE) {
+            INSTANCES.clear();
+        }
+
+        result = INSTANCES.putIfAbsent(jid, jid);
+        return result != null ? result : jid;
+    }
     /**
      * Constructs a new ContactId that represents a server
      *
@@ -47,25 +91,19 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
     public static ContactJid of(String jid, @NonNull Server server) {
         var complexUser = withoutServer(jid);
         if (complexUser == null) {
-            return new ContactJid(null, server, 0, 0);
+            return of(null, server, 0, 0);
         }
-        if (complexUser.contains(":")) {
-            var simpleUser = complexUser.split(":", 2);
-            var user = simpleUser[0];
-            var device = Integer.parseUnsignedInt(simpleUser[1]);
-            if (user.contains("_")) {
-                var simpleUserAgent = user.split("_", 2);
-                var agent = tryParseAgent(simpleUserAgent[1]);
-                return new ContactJid(simpleUserAgent[0], server, device, agent);
-            }
-            return new ContactJid(user, server, device, 0);
-        }
-        if (!complexUser.contains("_")) {
-            return new ContactJid(complexUser, server, 0, 0);
+
+        var deviceIndex = complexUser.indexOf(':');
+        var userEnd = deviceIndex == -1 ? complexUser.length() : deviceIndex;
+        var device = deviceIndex == -1 ? 0 : Integer.parseUnsignedInt(complexUser, deviceIndex + 1, complexUser.length(), 10);
+        var agentIndex = complexUser.indexOf('_');
+        if (agentIndex == -1 || agentIndex >= userEnd) {
+            return of(complexUser.substring(0, userEnd), server, device, 0);
         }
-        var simpleUserAgent = complexUser.split("_", 2);
-        var agent = tryParseAgent(simpleUserAgent[1]);
-        return new ContactJid(simpleUserAgent[0], server, 0, agent);
+
+        var agent = tryParseAgent(complexUser, agentIndex + 1, userEnd);
+        return of(complexUser.substring(0, agentIndex), server, device, agent);
     }
 
     /**
@@ -78,15 +116,25 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
         if (jid == null) {
             return null;
         }
-        for (var server : Server.values()) {
-            jid = jid.replace("@%s".formatted(server), "");
+
+        var serverIndex = jid.lastIndexOf('@');
+        if (serverIndex == -1) {
+            return jid;
+        }
+
+        for (var server : Server.VALUES) {
+            var address = server.address();
+            if (jid.length() - serverIndex - 1 == address.length() && jid.startsWith(address, serverIndex + 1)) {
+                return jid.substring(0, serverIndex);
+            }
         }
+
         return jid;
     }
 
-    private static int tryParseAgent(String string) {
+    private static int tryParseAgent(String string, int start, int end) {
         try {
-            return Integer.parseUnsignedInt(string);
+            return Integer.parseUnsignedInt(string, start, end, 10);
         } catch (NumberFormatException exception) {
             return 0;
         }
@@ -101,7 +149,7 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
      * @return a non-null contact jid
      */
     public static ContactJid ofDevice(String jid, int device, int agent) {
-        return new ContactJid(withoutServer(jid), Server.WHATSAPP, device, agent);
+        return of(withoutServer(jid), Server.WHATSAPP, device, agent);
     }
 
     /**
@@ -112,7 +160,7 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
      * @return a non-null contact jid
      */
     public static ContactJid ofDevice(String jid, int device) {
-        return new ContactJid(withoutServer(jid), Server.WHATSAPP, device, 0);
+        return of(withoutServer(jid), Server.WHATSAPP, device, 0);
     }
 
     /**
@@ -136,7 +184,18 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
      */
     @JsonCreator
     public static ContactJid of(@NonNull String jid) {
-        return of(jid, Server.of(jid));
+        var result = PARSED.get(jid);
+        if (result != null) {
+            return result;
+        }
+
+        if (PARSED.size() >= CACHE_SIZE) {
+            PARSED.clear();
+        }
+
+        result = of(jid, Server.of(jid));
+        PARSED.putIfAbsent(jid, result);
+        return result;
     }
 
     /**
@@ -226,11 +285,20 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
     @JsonValue
     @Override
     public String toString() {
-        var user = Objects.requireNonNullElse(user(), "");
-        var agent = agent() != 0 ? "_%s".formatted(agent()) : "";
-        var device = device() != 0 ? ":%s".formatted(device()) : "";
-        var leading = "%s%s%s".formatted(user, agent, device);
-        return leading.isEmpty() ? server().toString() : "%s@%s".formatted(leading, server());
+        var result = new StringBuilder();
+        if (user() != null) {
+            result.append(user());
+        }
+        if (agent() != 0) {
+            result.append('_').append(agent());
+        }
+        if (device() != 0) {
+            result.append(':').append(device());
+        }
+        if (result.isEmpty()) {
+            return server().toString();
+        }
+        return result.append('@').append(server()).toString();
     }
 
     /**
@@ -271,6 +339,32 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
         return agent != 0;
     }
 
+    /**
+     * Returns whether this jid is equal to another object
+     * Interned jids are compared by identity first
+     *
+     * @param other the object to compare against
+     * @return a boolean
+     */
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof ContactJid that
+                && device == that.device
+                && agent == that.agent
+                && server == that.server
+                && Objects.equals(user, that.user);
+    }
+
+    /**
+     * Returns the hash code of this jid
+     *
+     * @return an int
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * Objects.hashCode(user) + server.hashCode()) + device) + agent;
+    }
+
     /**
      * The constants of this enumerated type describe the various types of jids currently supported
      */
@@ -361,15 +455,24 @@ public record ContactJid(String user, @NonNull Server server, int device, int ag
          */
         LID("lid");
 
+        private static final Server[] VALUES = values();
+
         @Getter
         private final String address;
 
         @JsonCreator
         public static Server of(String address) {
-            return Arrays.stream(values())
-                    .filter(entry -> address != null && address.endsWith(entry.address()))
-                    .findFirst()
-                    .orElse(WHATSAPP);
+            if (address == null) {
+                return WHATSAPP;
+            }
+
+            for (var entry : VALUES) {
+                if (address.endsWith(entry.address())) {
+                    return entry;
+                }
+            }
+
+            return WHATSAPP;
         }
 
         public ContactJid toJid() {
@@ -331,11 +331,22 @@ public record Node(@NonNull String description, @NonNull Attributes attributes,
      * @throws NullPointerException if no valid jid can be found
      */
     public Request toRequest(Function<Node, Boolean> filter, boolean response) {
+        return toRequest(filter, response, RequestTraceMode.ALWAYS);
+    }
+
+    /**
+     * Constructs a new request from this node
+     *
+     * @param traceMode the non-null policy used to capture the stack trace of the caller
+     * @return a non null request
+     * @throws NullPointerException if no valid jid can be found
+     */
+    public Request toRequest(Function<Node, Boolean> filter, boolean response, @NonNull RequestTraceMode traceMode) {
         if (response && id() == null) {
             attributes.put("id", MessageKey.randomId());
         }
 
-        return Request.of(this, filter);
+        return Request.of(this, filter, traceMode);
     }
 
     /**
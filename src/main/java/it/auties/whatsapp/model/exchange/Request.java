@@ -7,69 +7,119 @@ import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.socket.SocketSession;
 import it.auties.whatsapp.util.BytesHelper;
-import it.auties.whatsapp.util.Exceptions;
 import it.auties.whatsapp.util.Protobuf;
+import it.auties.whatsapp.util.TimerWheel;
 import lombok.NonNull;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
-import static java.util.concurrent.CompletableFuture.delayedExecutor;
-import static java.util.concurrent.TimeUnit.SECONDS;
-
 /**
  * An abstract model class that represents a request made from the client to the server.
+ * Requests that don't complete in time fail, the stack trace of the caller of a request is captured only if its {@link RequestTraceMode} requires it
+ * and it's turned into readable frames only if the request fails.
  */
 @SuppressWarnings("UnusedReturnValue")
 public record Request(String id, @NonNull Object body, @NonNull CompletableFuture<Node> future,
-                      Function<Node, Boolean> filter, Throwable caller) {
+                      Function<Node, Boolean> filter, Throwable caller, TimerWheel.Timeout timeout) {
     /**
-     * The timeout in seconds before a Request wrapping a Node fails
+     * The timeout before a Request wrapping a Node fails
      */
-    private static final int TIMEOUT = 60;
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
 
     /**
-     * The delayed executor used to cancel futures
+     * The timer shared by all requests to fail the ones that time out
      */
-    private static final Executor EXECUTOR = delayedExecutor(TIMEOUT, SECONDS);
+    private static final TimerWheel TIMER = new TimerWheel("RequestTimeout", Duration.ofSeconds(1), 128);
 
-    private Request(String id, Function<Node, Boolean> filter, @NonNull Object body) {
-        this(id, body, new CompletableFuture<>(), filter, trace(body));
-        EXECUTOR.execute(this::cancelTimedFuture);
+    /**
+     * One request every this number of requests is traced when using {@link RequestTraceMode#SAMPLED}
+     */
+    private static final int SAMPLE_RATE = 64;
+
+    /**
+     * The number of requests that were created using {@link RequestTraceMode#SAMPLED}
+     */
+    private static final AtomicLong SAMPLED_REQUESTS = new AtomicLong();
+
+    private Request(String id, Function<Node, Boolean> filter, @NonNull Object body, @NonNull RequestTraceMode traceMode) {
+        this(id, body, new CompletableFuture<>(), filter, capture(traceMode));
     }
 
-    private static Throwable trace(Object body) {
-        var message = body instanceof Node node ? "%s node timed out".formatted(node.toString()) : "Binary timed out";
-        var current = Exceptions.current(message);
-        var actualStackTrace = Arrays.stream(current.getStackTrace())
-                .filter(entry -> !entry.getClassName().equals(Request.class.getName()) && !entry.getClassName().equals(Node.class.getName()))
-                .toArray(StackTraceElement[]::new);
-        current.setStackTrace(actualStackTrace);
-        return current;
+    private Request(String id, Object body, CompletableFuture<Node> future, Function<Node, Boolean> filter, Throwable caller) {
+        this(id, body, future, filter, caller, TIMER.schedule(() -> scheduleTimeout(body, future, caller), TIMEOUT));
+    }
+
+    // The future is completed on the common pool: its dependent stages run on the thread that completes it, and they may block, which would delay every other timeout
+    private static void scheduleTimeout(Object body, CompletableFuture<Node> future, Throwable caller) {
+        if (future.isDone()) {
+            return;
+        }
+
+        CompletableFuture.runAsync(() -> onTimeout(body, future, caller));
+    }
+
+    private static Throwable capture(RequestTraceMode traceMode) {
+        return switch (traceMode) {
+            case NONE -> null;
+            case SAMPLED -> SAMPLED_REQUESTS.getAndIncrement() % SAMPLE_RATE == 0 ? new Throwable() : null;
+            case ALWAYS -> new Throwable();
+        };
     }
 
-    private void cancelTimedFuture() {
+    private static void onTimeout(Object body, CompletableFuture<Node> future, Throwable caller) {
         if (future.isDone()) {
             return;
         }
-        future.completeExceptionally(caller);
+
+        var message = body instanceof Node node ? "%s node timed out".formatted(node) : "Binary timed out";
+        future.completeExceptionally(trace(message, caller));
+    }
+
+    private static Throwable trace(String message, Throwable caller) {
+        var result = new RuntimeException(message);
+        if (caller == null) {
+            result.setStackTrace(new StackTraceElement[0]);
+            return result;
+        }
+
+        var actualStackTrace = Arrays.stream(caller.getStackTrace())
+                .filter(entry -> !entry.getClassName().equals(Request.class.getName()) && !entry.getClassName().equals(Node.class.getName()))
+                .toArray(StackTraceElement[]::new);
+        result.setStackTrace(actualStackTrace);
+        return result;
     }
 
     /**
      * Constructs a new request with the provided body expecting a response
      */
     public static Request of(@NonNull Node body, Function<Node, Boolean> filter) {
-        return new Request(body.id(), filter, body);
+        return of(body, filter, RequestTraceMode.ALWAYS);
+    }
+
+    /**
+     * Constructs a new request with the provided body expecting a response
+     */
+    public static Request of(@NonNull Node body, Function<Node, Boolean> filter, @NonNull RequestTraceMode traceMode) {
+        return new Request(body.id(), filter, body, traceMode);
     }
 
     /**
      * Constructs a new request with the provided body expecting a response
      */
     public static Request of(@NonNull ProtobufMessage body) {
-        return new Request(null, null, Protobuf.writeMessage(body));
+        return of(body, RequestTraceMode.ALWAYS);
+    }
+
+    /**
+     * Constructs a new request with the provided body expecting a response
+     */
+    public static Request of(@NonNull ProtobufMessage body, @NonNull RequestTraceMode traceMode) {
+        return new Request(null, null, Protobuf.writeMessage(body), traceMode);
     }
 
     /**
@@ -126,6 +176,7 @@ public record Request(String id, @NonNull Object body, @NonNull CompletableFutur
 
     private void onSendSuccess(Store store, boolean response) {
         if (!response) {
+            timeout.cancel();
             future.complete(null);
             return;
         }
@@ -134,6 +185,7 @@ public record Request(String id, @NonNull Object body, @NonNull CompletableFutur
     }
 
     private Void onSendError(Throwable throwable) {
+        timeout.cancel();
         future.completeExceptionally(new IOException("Cannot send %s, an unknown exception occurred".formatted(this), throwable));
         return null;
     }
@@ -168,16 +220,20 @@ public record Request(String id, @NonNull Object body, @NonNull CompletableFutur
      */
     public boolean complete(Node response, boolean exceptionally) {
         if (response == null) {
+            timeout.cancel();
             future.complete(null);
             return true;
         }
         if (exceptionally) {
-            future.completeExceptionally(new RuntimeException("Cannot process request %s with %s".formatted(this, response), caller));
+            timeout.cancel();
+            var message = "Cannot process request %s with %s".formatted(this, response);
+            future.completeExceptionally(new RuntimeException(message, caller == null ? null : trace("Request sent", caller)));
             return true;
         }
         if (filter != null && !filter.apply(response)) {
             return false;
         }
+        timeout.cancel();
         future.complete(response);
         return true;
     }
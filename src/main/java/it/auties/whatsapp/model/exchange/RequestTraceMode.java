@@ -0,0 +1,22 @@
+package it.auties.whatsapp.model.exchange;
+
+/**
+ * The list of policies that decide when the stack trace of the caller of a {@link Request} is captured
+ * The stack trace is attached to the exception that is thrown if the request times out or fails
+ */
+public enum RequestTraceMode {
+    /**
+     * The stack trace is never captured
+     */
+    NONE,
+
+    /**
+     * The stack trace is captured for one request every sixty-four
+     */
+    SAMPLED,
+
+    /**
+     * The stack trace is captured for every request
+     */
+    ALWAYS
+}
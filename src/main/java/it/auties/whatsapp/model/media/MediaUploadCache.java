@@ -0,0 +1,181 @@
+package it.auties.whatsapp.model.media;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import it.auties.whatsapp.util.Clock;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the media uploaded by a session, keyed by the sha256 of their plaintext and by their type.
+ * Sending a media that is already in this cache reuses its upload instead of encrypting and uploading it again.
+ * Entries expire after the amount of time the media is retained by Whatsapp's servers after being uploaded.
+ * Entries are kept in the order in which they were uploaded, so that both the expired ones and the ones that exceed the maximum size are removed starting from the oldest one.
+ */
+public final class MediaUploadCache {
+    // Guarded by itself
+    private LinkedHashMap<String, Entry> entries;
+
+    @JsonIgnore
+    private final AtomicLong hits;
+
+    @JsonIgnore
+    private final AtomicLong misses;
+
+    public MediaUploadCache() {
+        this.entries = new LinkedHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Queries an upload that didn't expire yet
+     * The oldest uploads that expired are removed as well
+     *
+     * @param sha256 the sha256 of the plaintext of the media
+     * @param type   the type of the media
+     * @param ttl    how long an upload can be reused after it was made
+     * @return a non-null optional
+     */
+    public Optional<MediaFile> find(byte @NonNull [] sha256, @NonNull AttachmentType type, @NonNull Duration ttl) {
+        var key = createKey(sha256, type);
+        var now = Clock.nowSeconds();
+        synchronized (entries) {
+            removeOldestExpired(now, ttl);
+            var entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+
+            if (isExpired(entry, now, ttl)) {
+                entries.remove(key);
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+
+            hits.incrementAndGet();
+            return Optional.of(entry.file());
+        }
+    }
+
+    // Uploads are ordered by time, so the expired ones are at the head
+    // Stores serialized before the uploads were ordered might not be sorted, but removeExpired scans them all
+    private void removeOldestExpired(long now, Duration ttl) {
+        var iterator = entries.values().iterator();
+        while (iterator.hasNext() && isExpired(iterator.next(), now, ttl)) {
+            iterator.remove();
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now, Duration ttl) {
+        return now - entry.timestampSeconds() >= ttl.toSeconds();
+    }
+
+    /**
+     * Adds an upload to this cache and removes the oldest uploads if the cache has more than the provided number of entries
+     *
+     * @param sha256     the sha256 of the plaintext of the media
+     * @param type       the type of the media
+     * @param file       the non-null upload
+     * @param maxEntries the maximum number of uploads to keep, zero means no limit
+     */
+    public void add(byte @NonNull [] sha256, @NonNull AttachmentType type, @NonNull MediaFile file, int maxEntries) {
+        var key = createKey(sha256, type);
+        synchronized (entries) {
+            entries.remove(key);
+            entries.put(key, new Entry(file, Clock.nowSeconds()));
+            if (maxEntries <= 0) {
+                return;
+            }
+
+            var iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the uploads that are older than the provided ttl
+     *
+     * @param ttl how long an upload can be reused after it was made
+     */
+    public void removeExpired(@NonNull Duration ttl) {
+        var now = Clock.nowSeconds();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> isExpired(entry, now, ttl));
+        }
+    }
+
+    /**
+     * Removes all the uploads from this cache
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of uploads in this cache
+     *
+     * @return an unsigned int
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @JsonGetter("entries")
+    private Map<String, Entry> serializableEntries() {
+        synchronized (entries) {
+            return new LinkedHashMap<>(entries);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that were served by this cache since this session was started
+     *
+     * @return an unsigned long
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that weren't served by this cache since this session was started
+     *
+     * @return an unsigned long
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio between the lookups that were served by this cache and all the lookups since this session was started
+     *
+     * @return a double between 0 and 1
+     */
+    public double hitRate() {
+        var hits = hits();
+        var total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private String createKey(byte[] sha256, AttachmentType type) {
+        return "%s:%s".formatted(type.name(), HexFormat.of().formatHex(sha256));
+    }
+
+    private record Entry(MediaFile file, long timestampSeconds) {
+
+    }
+}
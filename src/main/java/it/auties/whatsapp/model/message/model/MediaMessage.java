@@ -1,11 +1,17 @@
 package it.auties.whatsapp.model.message.model;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import it.auties.whatsapp.controller.MediaCache;
 import it.auties.whatsapp.model.info.MessageInfo;
 import it.auties.whatsapp.model.media.AttachmentProvider;
 import it.auties.whatsapp.model.media.AttachmentType;
 import it.auties.whatsapp.model.message.payment.PaymentInvoiceMessage;
 import it.auties.whatsapp.model.message.standard.*;
+import it.auties.whatsapp.util.MediaDownloadOptions;
+import it.auties.whatsapp.util.MediaHosts;
 import it.auties.whatsapp.util.Medias;
+import it.auties.whatsapp.util.Validate;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -14,12 +20,16 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * A model class that represents a message holding media inside This class is only a model, this
@@ -36,10 +46,71 @@ import java.util.Optional;
 @EqualsAndHashCode(callSuper = true)
 public abstract sealed class MediaMessage extends ContextualMessage implements AttachmentProvider permits PaymentInvoiceMessage, AudioMessage, DocumentMessage, ImageMessage, StickerMessage, VideoMessage {
     /**
-     * The cached decoded media, by default null
+     * The decoded media provided when this message was built, by default null.
+     * Downloaded media are stored here only if this message has no media cache.
      */
     private byte[] decodedMedia;
 
+    /**
+     * The cache where the downloaded media is stored, by default null
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private MediaCache mediaCache;
+
+    /**
+     * The hosts of the session that owns this message, used to download the media, by default null
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private MediaHosts mediaHosts;
+
+    /**
+     * The file holding the decoded media, by default null.
+     * If this field is set when the message is sent, the media is uploaded by streaming this file instead of loading it in memory.
+     */
+    private Path decodedMediaPath;
+
+    /**
+     * Whether {@link MediaMessage#decodedMediaPath} is a temporary copy of a stream, by default false
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private boolean decodedMediaTemporary;
+
+    // A temporary copy is deleted once the message is sent, so it's never serialized
+    @JsonGetter("decodedMediaPath")
+    private Path serializableMediaPath() {
+        return decodedMediaTemporary ? null : decodedMediaPath;
+    }
+
+    /**
+     * Returns the file holding the decoded media, if this media was built from one
+     *
+     * @return a non-null optional
+     */
+    public Optional<Path> decodedMediaPath() {
+        return Optional.ofNullable(decodedMediaPath);
+    }
+
+    /**
+     * Deletes the file holding the decoded media if it's a temporary copy of a stream
+     * This method is used internally once the media was uploaded
+     */
+    public void deleteTemporaryMedia() {
+        if (!decodedMediaTemporary || decodedMediaPath == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(decodedMediaPath);
+            this.decodedMediaPath = null;
+            this.decodedMediaTemporary = false;
+        } catch (IOException ignored) {
+
+        }
+    }
+
     /**
      * Saves this media to the provided path. Throws an error if the media cannot be downloaded
      * successfully.
@@ -59,20 +130,90 @@ public abstract sealed class MediaMessage extends ContextualMessage implements A
     }
 
     /**
-     * Returns the cached decoded media wrapped by this object if available. Otherwise, the encoded
-     * media that this object wraps is decoded, cached and returned. The difference between this
-     * method and {@link it.auties.whatsapp.api.Whatsapp#downloadMedia(MessageInfo)} is that this
+     * Returns the decoded media wrapped by this object if it's available in the media cache of its session.
+     * Otherwise, the encoded media that this object wraps is downloaded from the hosts of its session, decoded, cached and returned.
+     * The difference between this method and {@link it.auties.whatsapp.api.Whatsapp#downloadMedia(MessageInfo)} is that this
      * method doesn't try to issue a reupload.
      *
      * @return a non-null result
+     * @throws IllegalArgumentException if the media has to be downloaded, but this message doesn't belong to a session
      */
     public Optional<byte[]> decodedMedia() {
-        if (decodedMedia == null) {
-            this.decodedMedia = Medias.download(this)
-                    .join()
-                    .orElse(null);
+        if (decodedMedia != null) {
+            return Optional.of(decodedMedia);
+        }
+
+        if (decodedMediaPath != null) {
+            try {
+                return Optional.of(Files.readAllBytes(decodedMediaPath));
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Cannot read media", exception);
+            }
+        }
+
+        var key = mediaCacheKey();
+        if (key.isPresent()) {
+            var cached = mediaCache.get(key.get());
+            if (cached.isPresent()) {
+                return cached;
+            }
+        }
+
+        Validate.isTrue(mediaHosts != null, "Cannot download a media whose message doesn't belong to a session");
+        var result = Medias.download(this, MediaDownloadOptions.of(mediaHosts)).join();
+        if (result.isEmpty()) {
+            return result;
+        }
+
+        if (key.isPresent()) {
+            mediaCache.put(key.get(), result.get());
+        } else {
+            this.decodedMedia = result.get();
+        }
+
+        return result;
+    }
+
+    // Streams are spooled to a temporary file, so that the simple builders never hold more than the provided array in memory
+    protected static Path mediaFile(byte[] media, Path mediaPath, InputStream mediaStream) {
+        var sources = Stream.of(media, mediaPath, mediaStream)
+                .filter(Objects::nonNull)
+                .count();
+        Validate.isTrue(sources == 1, "Expected exactly one of media, mediaPath or mediaStream, got %s", sources);
+        return mediaStream != null ? Medias.spool(mediaStream) : mediaPath;
+    }
+
+    private Optional<String> mediaCacheKey() {
+        var mediaEncryptedSha256 = mediaEncryptedSha256();
+        if (mediaCache == null || mediaEncryptedSha256 == null) {
+            return Optional.empty();
         }
-        return Optional.ofNullable(decodedMedia);
+
+        return Optional.of(HexFormat.of().formatHex(mediaEncryptedSha256));
+    }
+
+    /**
+     * Sets the cache where the media downloaded by this message should be stored
+     * This method is used internally by the store of the session that owns this message
+     *
+     * @param mediaCache the cache to use, null to disable caching
+     * @return the same instance
+     */
+    public MediaMessage mediaCache(MediaCache mediaCache) {
+        this.mediaCache = mediaCache;
+        return this;
+    }
+
+    /**
+     * Sets the hosts used to download the media of this message
+     * This method is used internally by the store of the session that owns this message
+     *
+     * @param mediaHosts the hosts of the session
+     * @return the same instance
+     */
+    public MediaMessage mediaHosts(MediaHosts mediaHosts) {
+        this.mediaHosts = mediaHosts;
+        return this;
     }
 
     /**
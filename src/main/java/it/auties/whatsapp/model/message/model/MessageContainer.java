@@ -1,5 +1,6 @@
 package it.auties.whatsapp.model.message.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufName;
 import it.auties.protobuf.base.ProtobufProperty;
@@ -15,6 +16,7 @@ import lombok.extern.jackson.Jacksonized;
 
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static it.auties.protobuf.base.ProtobufType.MESSAGE;
 import static it.auties.protobuf.base.ProtobufType.STRING;
@@ -334,6 +336,13 @@ public class MessageContainer implements ProtobufMessage {
     @Default
     private DeviceContextInfo deviceInfo = DeviceContextInfo.of();
 
+    /**
+     * The resolved content of this container, computed the first time it's needed
+     * A container never changes after it's built, so the content never needs to be computed again
+     */
+    @JsonIgnore
+    private final transient AtomicReference<Discriminator> discriminator = new AtomicReference<>();
+
     /**
      * Returns an empty message container
      *
@@ -527,6 +536,23 @@ public class MessageContainer implements ProtobufMessage {
      * @return a non-null message
      */
     public Message content() {
+        return discriminator().content();
+    }
+
+    private Discriminator discriminator() {
+        var result = discriminator.get();
+        if (result != null) {
+            return result;
+        }
+
+        var content = findContent();
+        var deepType = content.type();
+        var type = ephemeralMessage != null ? MessageType.EPHEMERAL : viewOnceMessage != null || viewOnceV2Message != null || viewOnceV2ExtensionMessage != null ? MessageType.VIEW_ONCE : deepType;
+        var computed = new Discriminator(content, type, deepType);
+        return discriminator.compareAndSet(null, computed) ? computed : discriminator.get();
+    }
+
+    private Message findContent() {
         if (this.textWithNoContextMessage != null) {
             return TextMessage.of(textWithNoContextMessage);
         }
@@ -768,7 +794,7 @@ public class MessageContainer implements ProtobufMessage {
      * @return a boolean
      */
     public boolean hasType(@NonNull MessageType type) {
-        return content().type() == type;
+        return deepType() == type;
     }
 
     /**
@@ -787,7 +813,7 @@ public class MessageContainer implements ProtobufMessage {
      * @return a non-null type
      */
     public MessageType type() {
-        return ephemeralMessage != null ? MessageType.EPHEMERAL : viewOnceMessage != null || viewOnceV2Message != null || viewOnceV2ExtensionMessage != null ? MessageType.VIEW_ONCE : content().type();
+        return discriminator().type();
     }
 
     /**
@@ -796,7 +822,7 @@ public class MessageContainer implements ProtobufMessage {
      * @return a non-null type
      */
     public MessageType deepType() {
-        return content().type();
+        return discriminator().deepType();
     }
 
     /**
@@ -1309,4 +1335,8 @@ public class MessageContainer implements ProtobufMessage {
     public Optional<FutureMessageContainer> viewOnceV2ExtensionMessage() {
         return Optional.ofNullable(viewOnceV2ExtensionMessage);
     }
-}
\ No newline at end of file
+
+    private record Discriminator(Message content, MessageType type, MessageType deepType) {
+
+    }
+}
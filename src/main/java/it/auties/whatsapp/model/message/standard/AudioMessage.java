@@ -13,6 +13,8 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -117,8 +119,11 @@ public final class AudioMessage extends MediaMessage {
     /**
      * Constructs a new builder to create a AudioMessage. The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
      * {@link AudioMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media        the non-null image that the new message holds
+     * @param media        the audio that the new message holds
+     * @param mediaPath    the file holding the audio that the new message holds, streamed when the message is sent
+     * @param mediaStream  the stream holding the audio that the new message holds, read to its end but not closed
      * @param mimeType     the mime type of the new message, by default
      *                     {@link MediaMessageType#defaultMimeType()}
      * @param contextInfo  the context info that the new message wraps
@@ -127,21 +132,24 @@ public final class AudioMessage extends MediaMessage {
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleAudioMessageBuilder", builderMethodName = "simpleBuilder")
-    private static AudioMessage customBuilder(byte[] media, ContextInfo contextInfo, String mimeType, boolean voiceMessage) {
+    private static AudioMessage customBuilder(byte[] media, Path mediaPath, InputStream mediaStream, ContextInfo contextInfo, String mimeType, boolean voiceMessage) {
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
         return AudioMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
-                .duration(Medias.getDuration(media))
-                .mimetype(getMimeType(media, mimeType))
+                .duration(mediaFile != null ? Medias.getDuration(mediaFile) : Medias.getDuration(media))
+                .mimetype(getMimeType(media, mediaFile, mimeType))
                 .voiceMessage(voiceMessage)
-                .waveform(Medias.getAudioWaveForm(media).orElse(null))
+                .waveform((mediaFile != null ? Medias.getAudioWaveForm(mediaFile) : Medias.getAudioWaveForm(media)).orElse(null))
                 .build();
     }
 
-    private static String getMimeType(byte[] media, String mimeType) {
+    private static String getMimeType(byte[] media, Path mediaFile, String mimeType) {
         return Optional.ofNullable(mimeType)
-                .or(() -> Medias.getMimeType(media))
+                .or(() -> mediaFile != null ? Medias.getMimeType(mediaFile) : Medias.getMimeType(media))
                 .orElseGet(AUDIO::defaultMimeType);
     }
 
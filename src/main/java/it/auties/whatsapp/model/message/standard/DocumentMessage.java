@@ -21,6 +21,8 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -136,8 +138,11 @@ public final class DocumentMessage extends MediaMessage implements InteractiveHe
     /**
      * Constructs a new builder to create a DocumentMessage. The result can be later sent using
      * {@link Whatsapp#sendMessage(MessageInfo)}
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media       the non-null document that the new message wraps
+     * @param media       the document that the new message wraps
+     * @param mediaPath   the file holding the document that the new message wraps, streamed when the message is sent
+     * @param mediaStream the stream holding the document that the new message wraps, read to its end but not closed
      * @param fileName    the non-null name of the document that the new message wraps
      * @param mimeType    the mime type of the new message, by default
      *                    {@link MediaMessageType#defaultMimeType()}
@@ -148,28 +153,42 @@ public final class DocumentMessage extends MediaMessage implements InteractiveHe
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleDocumentMessageBuilder", builderMethodName = "simpleBuilder")
-    private static DocumentMessage customBuilder(byte[] media, @NonNull String fileName, String mimeType, String title, int pageCount, byte[] thumbnail, ContextInfo contextInfo) {
+    private static DocumentMessage customBuilder(byte[] media, Path mediaPath, InputStream mediaStream, @NonNull String fileName, String mimeType, String title, int pageCount, byte[] thumbnail, ContextInfo contextInfo) {
         var extensionIndex = fileName.lastIndexOf(".");
         Validate.isTrue(extensionIndex != -1 && extensionIndex + 1 < fileName.length(), "Expected fileName to be formatted as name.extension");
         var extension = fileName.substring(extensionIndex + 1);
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
         var actualMimeType = Optional.ofNullable(mimeType)
                 .or(() -> Medias.getMimeType(fileName))
-                .or(() -> Medias.getMimeType(media))
+                .or(() -> mediaFile != null ? Medias.getMimeType(mediaFile) : Medias.getMimeType(media))
                 .orElse(DOCUMENT.defaultMimeType());
+        var hashedMedia = pageCount > 0 && thumbnail != null ? null : Medias.hash(media);
         return DocumentMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(actualMimeType)
                 .fileName(fileName)
-                .pageCount(pageCount > 0 ? pageCount : Medias.getPagesCount(media, extension).orElse(1))
+                .pageCount(pageCount > 0 ? pageCount : getPagesCount(hashedMedia, mediaFile, extension))
                 .title(title)
-                .thumbnail(thumbnail != null ? null : Medias.getThumbnail(media, extension).orElse(null))
+                .thumbnail(thumbnail != null ? null : getThumbnail(hashedMedia, mediaFile, extension))
                 .thumbnailWidth(Spec.Whatsapp.THUMBNAIL_WIDTH)
                 .thumbnailHeight(Spec.Whatsapp.THUMBNAIL_HEIGHT)
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
 
+    private static int getPagesCount(Medias.HashedMedia media, Path mediaFile, String extension) {
+        var pages = mediaFile != null ? Medias.getPagesCount(mediaFile, extension) : Medias.getPagesCount(media, extension);
+        return pages.orElse(1);
+    }
+
+    private static byte[] getThumbnail(Medias.HashedMedia media, Path mediaFile, String extension) {
+        var thumbnail = mediaFile != null ? Medias.getThumbnail(mediaFile, extension) : Medias.getThumbnail(media, extension);
+        return thumbnail.orElse(null);
+    }
+
     /**
      * Returns the media type of the document that this object wraps
      *
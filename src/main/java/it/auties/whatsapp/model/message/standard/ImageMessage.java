@@ -20,6 +20,8 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 
@@ -179,8 +181,11 @@ public final class ImageMessage extends MediaMessage implements InteractiveHeade
     /**
      * Constructs a new builder to create a ImageMessage. The result can be later sent using
      * {@link Whatsapp#sendMessage(MessageInfo)}
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media       the non-null image that the new message wraps
+     * @param media       the image that the new message wraps
+     * @param mediaPath   the file holding the image that the new message wraps, streamed when the message is sent
+     * @param mediaStream the stream holding the image that the new message wraps, read to its end but not closed
      * @param mimeType    the mime type of the new message, by default
      *                    {@link MediaMessageType#defaultMimeType()}
      * @param caption     the caption of the new message
@@ -189,20 +194,29 @@ public final class ImageMessage extends MediaMessage implements InteractiveHeade
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleImageBuilder", builderMethodName = "simpleBuilder")
-    private static ImageMessage customBuilder(byte[] media, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
-        var dimensions = Medias.getDimensions(media, false);
+    private static ImageMessage customBuilder(byte[] media, Path mediaPath, InputStream mediaStream, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
+        var hashedMedia = Medias.hash(media);
+        var dimensions = mediaFile != null ? Medias.getDimensions(mediaFile, false) : Medias.getDimensions(hashedMedia, false);
         return ImageMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, IMAGE.defaultMimeType()))
                 .caption(caption)
                 .width(dimensions.width())
                 .height(dimensions.height())
-                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, JPG).orElse(null))
+                .thumbnail(thumbnail != null ? thumbnail : getThumbnail(hashedMedia, mediaFile))
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
 
+    private static byte[] getThumbnail(Medias.HashedMedia media, Path mediaFile) {
+        var thumbnail = mediaFile != null ? Medias.getThumbnail(mediaFile, JPG) : Medias.getThumbnail(media, JPG);
+        return thumbnail.orElse(null);
+    }
+
     /**
      * Returns the media type of the image that this object wraps
      *
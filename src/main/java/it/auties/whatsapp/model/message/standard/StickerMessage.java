@@ -13,6 +13,8 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Objects;
 
 import static it.auties.protobuf.base.ProtobufType.*;
@@ -126,8 +128,11 @@ public final class StickerMessage extends MediaMessage {
     /**
      * Constructs a new builder to create a StickerMessage. The result can be later sent using
      * {@link Whatsapp#sendMessage(MessageInfo)}
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media           the non-null sticker that the new message wraps
+     * @param media           the sticker that the new message wraps
+     * @param mediaPath       the file holding the sticker that the new message wraps, streamed when the message is sent
+     * @param mediaStream     the stream holding the sticker that the new message wraps, read to its end but not closed
      * @param mimeType        the mime type of the new message, by default
      *                        {@link MediaMessageType#defaultMimeType()}
      * @param thumbnail       the thumbnail of the sticker that the new message wraps as a png
@@ -136,17 +141,25 @@ public final class StickerMessage extends MediaMessage {
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleStickerMessageBuilder", builderMethodName = "simpleBuilder")
-    private static StickerMessage customBuilder(byte[] media, String mimeType, byte[] thumbnail, boolean animated, ContextInfo contextInfo) {
+    private static StickerMessage customBuilder(byte[] media, Path mediaPath, InputStream mediaStream, String mimeType, byte[] thumbnail, boolean animated, ContextInfo contextInfo) {
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
         return StickerMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, STICKER.defaultMimeType()))
-                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, PNG).orElse(null))
+                .thumbnail(thumbnail != null ? thumbnail : getThumbnail(media, mediaFile))
                 .animated(animated)
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
 
+    private static byte[] getThumbnail(byte[] media, Path mediaFile) {
+        var thumbnail = mediaFile != null ? Medias.getThumbnail(mediaFile, PNG) : Medias.getThumbnail(media, PNG);
+        return thumbnail.orElse(null);
+    }
+
     /**
      * Returns the media type of the sticker that this object wraps
      *
@@ -24,9 +24,13 @@ import lombok.experimental.Accessors;
 import lombok.experimental.SuperBuilder;
 import lombok.extern.jackson.Jacksonized;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static it.auties.protobuf.base.ProtobufType.*;
 import static it.auties.whatsapp.model.message.model.MediaMessageType.VIDEO;
@@ -171,8 +175,11 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
      * {@link VideoMessage#thumbnail} is computed automatically if ffmpeg is installed on the host machine
      * {@link VideoMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media       the non-null video that the new message wraps
+     * @param media       the video that the new message wraps
+     * @param mediaPath   the file holding the video that the new message wraps, streamed when the message is sent
+     * @param mediaStream the stream holding the video that the new message wraps, read to its end but not closed
      * @param mimeType    the mime type of the new message, by default
      *                    {@link MediaMessageType#defaultMimeType()}
      * @param caption     the caption of the new message
@@ -181,18 +188,23 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleVideoMessageBuilder", builderMethodName = "simpleVideoBuilder")
-    private static VideoMessage videoBuilder(byte[] media, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+    private static VideoMessage videoBuilder(byte[] media, Path mediaPath, InputStream mediaStream, String mimeType, String caption, byte[] thumbnail, ContextInfo contextInfo) {
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
+        var hashedMedia = Medias.hash(media);
+        var dimensions = mediaFile != null ? Medias.getDimensionsAsync(mediaFile, true) : Medias.getDimensionsAsync(hashedMedia, true);
+        var duration = mediaFile != null ? Medias.getDurationAsync(mediaFile) : Medias.getDurationAsync(hashedMedia);
+        var computedThumbnail = getThumbnail(hashedMedia, mediaFile, thumbnail);
         return VideoMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
-                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
+                .thumbnail(computedThumbnail.join().orElse(null))
                 .caption(caption)
-                .width(dimensions.width())
-                .height(dimensions.height())
-                .duration(duration)
+                .width(dimensions.join().width())
+                .height(dimensions.join().height())
+                .duration(duration.join())
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
@@ -204,8 +216,11 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * The result can be later sent using {@link Whatsapp#sendMessage(MessageInfo)}
      * {@link VideoMessage#thumbnail} is computed automatically if ffmpeg is installed on the host machine
      * {@link VideoMessage#duration} is computed automatically if ffprobe is installed on the host machine
+     * Exactly one of media, mediaPath and mediaStream should be provided
      *
-     * @param media          the non-null video that the new message wraps
+     * @param media          the video that the new message wraps
+     * @param mediaPath      the file holding the video that the new message wraps, streamed when the message is sent
+     * @param mediaStream    the stream holding the video that the new message wraps, read to its end but not closed
      * @param mimeType       the mime type of the new message, by default
      *                       {@link MediaMessageType#defaultMimeType()}
      * @param caption        the caption of the new message
@@ -215,27 +230,41 @@ public final class VideoMessage extends MediaMessage implements InteractiveHeade
      * @return a non-null new message
      */
     @Builder(builderClassName = "SimpleGifBuilder", builderMethodName = "simpleGifBuilder")
-    private static VideoMessage gifBuilder(byte[] media, String mimeType, String caption, VideoMessageAttribution gifAttribution, byte[] thumbnail, ContextInfo contextInfo) {
-        Validate.isTrue(isNotGif(media, mimeType), "Cannot create a VideoMessage with mime type image/gif: gif messages on whatsapp are videos played as gifs");
-        var dimensions = Medias.getDimensions(media, true);
-        var duration = Medias.getDuration(media);
+    private static VideoMessage gifBuilder(byte[] media, Path mediaPath, InputStream mediaStream, String mimeType, String caption, VideoMessageAttribution gifAttribution, byte[] thumbnail, ContextInfo contextInfo) {
+        var mediaFile = mediaFile(media, mediaPath, mediaStream);
+        Validate.isTrue(isNotGif(media, mediaFile, mimeType), "Cannot create a VideoMessage with mime type image/gif: gif messages on whatsapp are videos played as gifs");
+        var hashedMedia = Medias.hash(media);
+        var dimensions = mediaFile != null ? Medias.getDimensionsAsync(mediaFile, true) : Medias.getDimensionsAsync(hashedMedia, true);
+        var duration = mediaFile != null ? Medias.getDurationAsync(mediaFile) : Medias.getDurationAsync(hashedMedia);
+        var computedThumbnail = getThumbnail(hashedMedia, mediaFile, thumbnail);
         return VideoMessage.builder()
                 .decodedMedia(media)
+                .decodedMediaPath(mediaFile)
+                .decodedMediaTemporary(mediaStream != null)
                 .mediaKeyTimestamp(Clock.nowSeconds())
                 .mimetype(requireNonNullElse(mimeType, VIDEO.defaultMimeType()))
-                .thumbnail(thumbnail != null ? thumbnail : Medias.getThumbnail(media, Medias.Format.VIDEO).orElse(null))
+                .thumbnail(computedThumbnail.join().orElse(null))
                 .caption(caption)
-                .width(dimensions.width())
-                .height(dimensions.height())
-                .duration(duration)
+                .width(dimensions.join().width())
+                .height(dimensions.join().height())
+                .duration(duration.join())
                 .gifPlayback(true)
                 .gifAttribution(requireNonNullElse(gifAttribution, VideoMessageAttribution.NONE))
                 .contextInfo(Objects.requireNonNullElseGet(contextInfo, ContextInfo::new))
                 .build();
     }
 
-    private static boolean isNotGif(byte[] media, String mimeType) {
-        return Medias.getMimeType(media)
+    private static CompletableFuture<Optional<byte[]>> getThumbnail(Medias.HashedMedia media, Path mediaFile, byte[] thumbnail) {
+        if (thumbnail != null) {
+            return CompletableFuture.completedFuture(Optional.of(thumbnail));
+        }
+
+        return mediaFile != null ? Medias.getThumbnailAsync(mediaFile, Medias.Format.VIDEO) : Medias.getThumbnailAsync(media, Medias.Format.VIDEO);
+    }
+
+    private static boolean isNotGif(byte[] media, Path mediaFile, String mimeType) {
+        var detectedMimeType = mediaFile != null ? Medias.getMimeType(mediaFile) : Medias.getMimeType(media);
+        return detectedMimeType
                 .filter("image/gif"::equals)
                 .isEmpty() && (!Objects.equals(mimeType, "image/gif"));
     }
@@ -2,6 +2,7 @@ package it.auties.whatsapp.model.signal.sender;
 
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.util.Spec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.extern.jackson.Jacksonized;
@@ -36,9 +37,19 @@ public class SenderKeyRecord implements ProtobufMessage {
 
     public void addState(int id, int iteration, byte[] seed, SignalKeyPair signingKey) {
         var state = new SenderKeyState(id, iteration, seed, signingKey);
-        var oldList = states.getOrDefault(id, new ArrayList<>());
+        // Removing the id before putting it back moves it to the tail, so the least recently updated ids are evicted first
+        var oldList = Objects.requireNonNullElseGet(states.remove(id), ArrayList<SenderKeyState>::new);
         oldList.add(state);
+        if (oldList.size() > Spec.Signal.MAX_SENDER_KEY_STATES) {
+            oldList.remove(0);
+        }
         states.put(id, oldList);
+        var iterator = states.keySet().iterator();
+        while (states.size() > Spec.Signal.MAX_SENDER_KEY_STATES && iterator.hasNext()) {
+            if (iterator.next() != id) {
+                iterator.remove();
+            }
+        }
     }
 
     public boolean isEmpty() {
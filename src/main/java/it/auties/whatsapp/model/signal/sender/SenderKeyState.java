@@ -8,9 +8,10 @@ import lombok.Data;
 import lombok.experimental.Accessors;
 import lombok.extern.jackson.Jacksonized;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 @AllArgsConstructor
 @Builder
@@ -20,20 +21,40 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SenderKeyState implements ProtobufMessage {
     private final int id;
     private final SignalKeyPair signingKey;
-    private final ConcurrentHashMap<Integer, SenderMessageKey> messageKeys;
+    private final ConcurrentSkipListMap<Integer, SenderMessageKey> messageKeys;
     private SenderChainKey chainKey;
 
     public SenderKeyState(int id, int iteration, byte[] seed, SignalKeyPair signingKey) {
         this.id = id;
         this.chainKey = new SenderChainKey(iteration, seed);
         this.signingKey = signingKey;
-        this.messageKeys = new ConcurrentHashMap<>();
+        this.messageKeys = new ConcurrentSkipListMap<>();
     }
 
     public void addSenderMessageKey(SenderMessageKey senderMessageKey) {
         messageKeys.put(senderMessageKey.iteration(), senderMessageKey);
     }
 
+    /**
+     * Adds a skipped message key and evicts the oldest ones so that at most {@code maxRetained} iterations are kept
+     *
+     * @param senderMessageKey the non-null key to add
+     * @param maxRetained      the maximum number of keys to keep
+     * @return the number of keys that were evicted
+     */
+    public int addSenderMessageKey(SenderMessageKey senderMessageKey, int maxRetained) {
+        addSenderMessageKey(senderMessageKey);
+        var threshold = senderMessageKey.iteration() - maxRetained;
+        var evicted = 0;
+        Map.Entry<Integer, SenderMessageKey> oldest;
+        while ((oldest = messageKeys.firstEntry()) != null && oldest.getKey() <= threshold) {
+            if (messageKeys.remove(oldest.getKey(), oldest.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
     public Optional<SenderMessageKey> findSenderMessageKey(int iteration) {
         return Optional.ofNullable(messageKeys.get(iteration));
     }
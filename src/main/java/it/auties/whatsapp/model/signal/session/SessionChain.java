@@ -4,16 +4,38 @@ import lombok.Builder;
 import lombok.NonNull;
 import lombok.extern.jackson.Jacksonized;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Builder
 @Jacksonized
 public record SessionChain(AtomicInteger counter, AtomicReference<byte[]> key,
-                           ConcurrentHashMap<Integer, byte[]> messageKeys) {
+                           ConcurrentSkipListMap<Integer, byte[]> messageKeys) {
     public SessionChain(int counter, byte @NonNull [] key) {
-        this(new AtomicInteger(counter), new AtomicReference<>(key), new ConcurrentHashMap<>());
+        this(new AtomicInteger(counter), new AtomicReference<>(key), new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Adds a message key and evicts the oldest ones so that at most {@code maxRetained} counters are kept
+     *
+     * @param counter     the counter of the key
+     * @param messageKey  the non-null key to add
+     * @param maxRetained the maximum number of keys to keep
+     * @return the number of keys that were evicted
+     */
+    public int addMessageKey(int counter, byte @NonNull [] messageKey, int maxRetained) {
+        messageKeys.put(counter, messageKey);
+        var threshold = counter - maxRetained;
+        var evicted = 0;
+        Map.Entry<Integer, byte[]> oldest;
+        while ((oldest = messageKeys.firstEntry()) != null && oldest.getKey() <= threshold) {
+            if (messageKeys.remove(oldest.getKey(), oldest.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
     }
 
     public boolean hasMessageKey(int counter) {
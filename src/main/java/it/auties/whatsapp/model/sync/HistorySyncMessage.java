@@ -1,20 +1,33 @@
 package it.auties.whatsapp.model.sync;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufName;
 import it.auties.protobuf.base.ProtobufProperty;
 import it.auties.whatsapp.model.info.MessageInfo;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
+import it.auties.whatsapp.util.Protobuf;
+import lombok.*;
 import lombok.experimental.Accessors;
 import lombok.extern.jackson.Jacksonized;
 
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
 import static it.auties.protobuf.base.ProtobufType.MESSAGE;
 import static it.auties.protobuf.base.ProtobufType.UINT64;
 
+/**
+ * A message in the history of a chat
+ * Messages that are rarely accessed can be compacted: in this case only their encoding, their id and their timestamp are kept in memory,
+ * and the message is decoded again the first time {@link HistorySyncMessage#messageInfo()} is called
+ * The protobuf encoding of this object reads the message directly, so a compacted message must be decoded before being encoded:
+ * see {@link it.auties.whatsapp.controller.Store#withoutCompaction(java.util.function.Supplier)}
+ */
 @AllArgsConstructor
 @Data
+@EqualsAndHashCode(doNotUseGetters = true)
 @Builder
 @Jacksonized
 @Accessors(fluent = true)
@@ -25,4 +38,149 @@ public class HistorySyncMessage implements ProtobufMessage {
 
     @ProtobufProperty(index = 2, type = UINT64)
     private long messageOrderId;
-}
\ No newline at end of file
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompactMessageInfo compactMessageInfo;
+
+    /**
+     * The size of the message wrapped by this object as estimated by its chat, zero if it wasn't estimated yet
+     * The estimate is kept so that the same size is subtracted from the chat when the message is removed
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int estimatedSize;
+
+    public HistorySyncMessage(MessageInfo messageInfo, long messageOrderId) {
+        this(messageInfo, messageOrderId, null, 0);
+    }
+
+    /**
+     * Returns the message wrapped by this object, decoding it if it was compacted
+     *
+     * @return the message
+     */
+    public synchronized MessageInfo messageInfo() {
+        if (compactMessageInfo != null) {
+            messageInfo = compactMessageInfo.inflate();
+            compactMessageInfo = null;
+        }
+
+        return messageInfo;
+    }
+
+    /**
+     * Replaces the message wrapped by this object
+     *
+     * @param messageInfo the new message
+     * @return the same instance
+     */
+    public synchronized HistorySyncMessage messageInfo(MessageInfo messageInfo) {
+        this.messageInfo = messageInfo;
+        this.compactMessageInfo = null;
+        return this;
+    }
+
+    /**
+     * Returns the id of the message wrapped by this object without decoding it
+     *
+     * @return the id of the message
+     */
+    public synchronized String id() {
+        if (compactMessageInfo != null) {
+            return compactMessageInfo.id();
+        }
+
+        return messageInfo == null ? null : messageInfo.id();
+    }
+
+    /**
+     * Returns the timestamp of the message wrapped by this object without decoding it
+     *
+     * @return the timestamp in seconds
+     */
+    public synchronized long timestampSeconds() {
+        if (compactMessageInfo != null) {
+            return compactMessageInfo.timestampSeconds();
+        }
+
+        return messageInfo == null ? 0 : messageInfo.timestampSeconds();
+    }
+
+    /**
+     * Returns the size of the message wrapped by this object as estimated by its chat, estimating it on the first call
+     *
+     * @param estimator the non-null function used to estimate the size if it wasn't estimated yet
+     * @return the number of bytes
+     */
+    public synchronized int estimatedSize(@NonNull ToIntFunction<HistorySyncMessage> estimator) {
+        if (estimatedSize <= 0) {
+            estimatedSize = estimator.applyAsInt(this);
+        }
+
+        return estimatedSize;
+    }
+
+    /**
+     * Returns whether the message wrapped by this object is compacted
+     *
+     * @return a boolean
+     */
+    public synchronized boolean isCompacted() {
+        return compactMessageInfo != null;
+    }
+
+    /**
+     * Returns the encoded size of the message wrapped by this object
+     *
+     * @return the number of bytes
+     */
+    public synchronized int encodedSize() {
+        if (compactMessageInfo != null) {
+            return compactMessageInfo.encoded().length;
+        }
+
+        return messageInfo == null ? 0 : Protobuf.writeMessage(messageInfo).length;
+    }
+
+    /**
+     * Replaces the message wrapped by this object with its encoding, if it's not compacted already and it matches a filter
+     * The message is modified by the attributor after being decoded again, so that its references to other models are restored
+     *
+     * @param filter     the non-null filter for the message
+     * @param attributor the non-null attributor for the decoded message
+     * @return whether the message was compacted
+     */
+    public synchronized boolean compact(@NonNull Predicate<MessageInfo> filter, @NonNull Consumer<MessageInfo> attributor) {
+        if (messageInfo == null || compactMessageInfo != null || !filter.test(messageInfo)) {
+            return false;
+        }
+
+        compactMessageInfo = new CompactMessageInfo(messageInfo.id(), messageInfo.timestampSeconds(), Protobuf.writeMessage(messageInfo), attributor);
+        messageInfo = null;
+        return true;
+    }
+
+    @JsonProperty("messageInfo")
+    private synchronized MessageInfo serializableMessageInfo() {
+        return compactMessageInfo != null ? compactMessageInfo.decode() : messageInfo;
+    }
+
+    private record CompactMessageInfo(String id, long timestampSeconds, byte[] encoded, Consumer<MessageInfo> attributor) {
+        private MessageInfo decode() {
+            return Protobuf.readMessage(encoded, MessageInfo.class);
+        }
+
+        private MessageInfo inflate() {
+            var result = decode();
+            attributor.accept(result);
+            return result;
+        }
+    }
+}
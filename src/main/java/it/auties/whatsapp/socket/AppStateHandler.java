@@ -342,7 +342,7 @@ class AppStateHandler {
     private Optional<SnapshotSync> decodeSnapshot(Node snapshot) {
         return snapshot == null ? Optional.empty() : snapshot.contentAsBytes()
                 .map(bytes -> Protobuf.readMessage(bytes, ExternalBlobReference.class))
-                .map(Medias::download)
+                .map(reference -> Medias.download(reference, MediaDownloadOptions.of(socketHandler.store().mediaHosts())))
                 .flatMap(CompletableFuture::join)
                 .map(value -> Protobuf.readMessage(value, SnapshotSync.class));
     }
@@ -376,20 +376,31 @@ class AppStateHandler {
             } else if (action instanceof ContactAction contactAction) {
                 updateName(targetContact.orElseGet(() -> createContact(messageIndex)), targetChat.orElseGet(() -> createChat(messageIndex)), contactAction);
             } else if (action instanceof DeleteChatAction) {
-                targetChat.ifPresent(Chat::removeMessages);
+                targetChat.ifPresent(socketHandler.store()::clearMessages);
             } else if (action instanceof DeleteMessageForMeAction) {
                 targetMessage.ifPresent(message -> targetChat.ifPresent(chat -> deleteMessage(message, chat)));
             } else if (action instanceof MarkChatAsReadAction markAction) {
-                targetChat.ifPresent(chat -> chat.unreadMessagesCount(markAction.read() ? 0 : -1));
+                targetChat.ifPresent(chat -> {
+                    chat.unreadMessagesCount(markAction.read() ? 0 : -1);
+                    socketHandler.store().updateChatViews(chat);
+                });
             } else if (action instanceof MuteAction muteAction) {
                 targetChat.ifPresent(chat -> chat.mute(ChatMute.muted(muteAction.muteEndTimestampSeconds())));
             } else if (action instanceof PinAction pinAction) {
-                targetChat.ifPresent(chat -> chat.pinnedTimestampSeconds(pinAction.pinned() ? (int) mutation.value()
-                        .timestamp() : 0));
+                targetChat.ifPresent(chat -> {
+                    chat.pinnedTimestampSeconds(pinAction.pinned() ? (int) mutation.value().timestamp() : 0);
+                    socketHandler.store().updateChatViews(chat);
+                });
             } else if (action instanceof StarAction starAction) {
-                targetMessage.ifPresent(message -> message.starred(starAction.starred()));
+                targetMessage.ifPresent(message -> {
+                    message.starred(starAction.starred());
+                    socketHandler.store().updateStarredMessage(message);
+                });
             } else if (action instanceof ArchiveChatAction archiveChatAction) {
-                targetChat.ifPresent(chat -> chat.archived(archiveChatAction.archived()));
+                targetChat.ifPresent(chat -> {
+                    chat.archived(archiveChatAction.archived());
+                    socketHandler.store().updateChatViews(chat);
+                });
             } else if (action instanceof TimeFormatAction timeFormatAction) {
                 socketHandler.store().twentyFourHourFormat(timeFormatAction.twentyFourHourFormatEnabled());
             }
@@ -437,7 +448,7 @@ class AppStateHandler {
         }
 
         if (clearChatAction.messageRange().isEmpty()) {
-            targetChat.removeMessages();
+            socketHandler.store().clearMessages(targetChat);
             return;
         }
 
@@ -447,17 +458,23 @@ class AppStateHandler {
                 .flatMap(Collection::stream)
                 .map(SyncActionMessage::key)
                 .filter(Objects::nonNull)
-                .forEach(key -> targetChat.removeMessage(entry -> Objects.equals(entry.id(), key.id())));
+                .forEach(key -> {
+                    targetChat.removeMessage(key.id());
+                    socketHandler.store().removeStarredMessage(targetChat.jid(), key.id());
+                });
+        socketHandler.store().updateChatViews(targetChat);
     }
 
     private void updateName(Contact contact, Chat chat, ContactAction contactAction) {
         contactAction.fullName().ifPresent(contact::fullName);
         contactAction.firstName().ifPresent(contact::shortName);
         chat.name(contactAction.name());
+        socketHandler.store().updateContactNames(contact);
+        socketHandler.store().updateChatName(chat);
     }
 
     private void deleteMessage(MessageInfo message, Chat chat) {
-        chat.removeMessage(message);
+        socketHandler.store().removeMessage(chat, message);
         socketHandler.onMessageDeleted(message, false);
     }
 
@@ -473,7 +490,7 @@ class AppStateHandler {
 
     private MutationsRecord decodePatch(ContactJid jid, BinaryPatchType patchType, LTHashState newState, PatchSync patch) {
         if (patch.hasExternalMutations()) {
-            Medias.download(patch.externalMutations())
+            Medias.download(patch.externalMutations(), MediaDownloadOptions.of(socketHandler.store().mediaHosts()))
                     .join()
                     .ifPresent(blob -> handleExternalMutation(patch, blob));
         }
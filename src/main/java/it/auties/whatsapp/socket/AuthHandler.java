@@ -67,7 +67,7 @@ class AuthHandler {
     }
 
     private CompletableFuture<Boolean> sendHandshake(SocketSession session, Handshake handshake, HandshakeMessage handshakeMessage) {
-        return Request.of(handshakeMessage)
+        return Request.of(handshakeMessage, socketHandler.store().requestTraceMode())
                 .sendWithNoResponse(session, socketHandler.keys(), socketHandler.store())
                 .thenApplyAsync(result -> onHandshakeSent(handshake));
     }
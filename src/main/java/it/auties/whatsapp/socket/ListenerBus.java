@@ -0,0 +1,326 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerMetrics;
+import it.auties.whatsapp.listener.ListenerOptions;
+import it.auties.whatsapp.listener.ListenerOverflowPolicy;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Delivers events to listeners through a bounded mailbox per listener.
+ * Each mailbox is drained by at most one task at a time on a shared pool, so the events of a listener are delivered one at a time and in order,
+ * and the number of threads in use is bounded by the number of listeners, not by the number of events.
+ * What happens when a mailbox is full depends on the {@link ListenerOverflowPolicy} of its listener.
+ */
+final class ListenerBus {
+    private static final int DRAIN_BATCH_SIZE = 64;
+    private static final System.Logger LOGGER = System.getLogger("ListenerBus");
+
+    private final Supplier<Collection<Listener>> listeners;
+    private final Function<Listener, ListenerOptions> options;
+    private final Consumer<Throwable> failureHandler;
+    private final ConcurrentHashMap<Listener, Mailbox> mailboxes;
+    private final ThreadLocal<Mailbox> currentMailbox;
+    private ExecutorService service;
+
+    ListenerBus(Supplier<Collection<Listener>> listeners, Function<Listener, ListenerOptions> options, Consumer<Throwable> failureHandler) {
+        this.listeners = listeners;
+        this.options = options;
+        this.failureHandler = failureHandler;
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.currentMailbox = new ThreadLocal<>();
+    }
+
+    /**
+     * Publishes an event to all listeners without waiting for it to be delivered
+     *
+     * @param key   the key of the state described by this event, used by {@link ListenerOverflowPolicy#COALESCE}, can be null
+     * @param event the non-null event
+     */
+    void publish(String key, Consumer<Listener> event) {
+        var envelope = new Envelope(key, event, System.nanoTime(), null);
+        findMailboxes().forEach(mailbox -> mailbox.offer(envelope));
+    }
+
+    /**
+     * Publishes an event to all listeners and waits for it to be delivered
+     * If this method is called by a listener, the event is delivered to that listener immediately
+     *
+     * @param event the non-null event
+     */
+    void publishAndWait(Consumer<Listener> event) {
+        var current = currentMailbox.get();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var mailbox : findMailboxes()) {
+            if (mailbox == current) {
+                mailbox.deliver(new Envelope(null, event, System.nanoTime(), null));
+                continue;
+            }
+
+            var future = new CompletableFuture<Void>();
+            mailbox.offer(new Envelope(null, event, System.nanoTime(), future));
+            futures.add(future);
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Returns the metrics of every listener that received at least one event
+     *
+     * @return a non-null map
+     */
+    Map<Listener, ListenerMetrics> metrics() {
+        var results = new HashMap<Listener, ListenerMetrics>();
+        mailboxes.forEach((listener, mailbox) -> results.put(listener, mailbox.metrics()));
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered to all listeners
+     *
+     * @return an unsigned long
+     */
+    long pending() {
+        return mailboxes.values()
+                .stream()
+                .mapToLong(Mailbox::size)
+                .sum();
+    }
+
+    /**
+     * Discards the events that were not delivered yet and stops the workers
+     */
+    synchronized void dispose() {
+        mailboxes.values().forEach(Mailbox::clear);
+        mailboxes.clear();
+        if (service != null) {
+            service.shutdownNow();
+        }
+    }
+
+    private List<Mailbox> findMailboxes() {
+        var registered = listeners.get();
+        if (mailboxes.size() > registered.size()) {
+            mailboxes.keySet().retainAll(registered);
+        }
+
+        return registered.stream()
+                .map(this::findMailbox)
+                .toList();
+    }
+
+    private Mailbox findMailbox(Listener listener) {
+        var listenerOptions = options.apply(listener);
+        var mailbox = mailboxes.computeIfAbsent(listener, entry -> new Mailbox(entry, listenerOptions));
+        mailbox.options(listenerOptions);
+        return mailbox;
+    }
+
+    private synchronized ExecutorService getOrCreateService() {
+        if (service == null || service.isShutdown()) {
+            service = Executors.newCachedThreadPool();
+        }
+
+        return service;
+    }
+
+    private record Envelope(String key, Consumer<Listener> event, long publishedNanos, CompletableFuture<Void> completion) {
+        private void complete() {
+            if (completion != null) {
+                completion.complete(null);
+            }
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        private final Listener listener;
+        private volatile ListenerOptions options;
+        private final Deque<Envelope> queue;
+        private final ReentrantLock lock;
+        private final Condition notFull;
+        private final AtomicLong delivered;
+        private final AtomicLong dropped;
+        private final AtomicLong coalesced;
+        private final AtomicLong totalLatency;
+        private final AtomicLong maxLatency;
+        private boolean scheduled;
+
+        private Mailbox(Listener listener, ListenerOptions options) {
+            this.listener = listener;
+            this.options = options;
+            this.queue = new ArrayDeque<>();
+            this.lock = new ReentrantLock();
+            this.notFull = lock.newCondition();
+            this.delivered = new AtomicLong();
+            this.dropped = new AtomicLong();
+            this.coalesced = new AtomicLong();
+            this.totalLatency = new AtomicLong();
+            this.maxLatency = new AtomicLong();
+        }
+
+        // Called before every offer, so that registering a listener again with new options applies them to the next event
+        private void options(ListenerOptions options) {
+            if (this.options.equals(options)) {
+                return;
+            }
+
+            lock.lock();
+            try {
+                this.options = options;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void offer(Envelope envelope) {
+            boolean schedule;
+            lock.lock();
+            try {
+                if (options.overflowPolicy() == ListenerOverflowPolicy.COALESCE && coalesce(envelope)) {
+                    return;
+                }
+
+                while (queue.size() >= options.capacity()) {
+                    if (options.overflowPolicy() == ListenerOverflowPolicy.DROP_OLDEST) {
+                        Objects.requireNonNull(queue.pollFirst()).complete();
+                        logDrop(dropped.incrementAndGet());
+                        continue;
+                    }
+
+                    if (currentMailbox.get() != null) {
+                        break;
+                    }
+
+                    notFull.awaitUninterruptibly();
+                }
+
+                queue.addLast(envelope);
+                schedule = !scheduled;
+                scheduled = true;
+            } finally {
+                lock.unlock();
+            }
+
+            if (schedule) {
+                schedule();
+            }
+        }
+
+        // Logged when the count reaches a power of two, so that a listener that is always behind doesn't flood the log
+        private void logDrop(long count) {
+            if (Long.bitCount(count) != 1) {
+                return;
+            }
+
+            LOGGER.log(System.Logger.Level.WARNING, "Listener %s is too slow: %s events were dropped so far".formatted(listener, count));
+        }
+
+        private boolean coalesce(Envelope envelope) {
+            if (envelope.key() == null || envelope.completion() != null) {
+                return false;
+            }
+
+            var iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                var pending = iterator.next();
+                if (Objects.equals(pending.key(), envelope.key())) {
+                    iterator.remove();
+                    queue.addLast(envelope);
+                    coalesced.incrementAndGet();
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void schedule() {
+            try {
+                getOrCreateService().execute(this);
+            } catch (RejectedExecutionException exception) {
+                clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            currentMailbox.set(this);
+            try {
+                for (var i = 0; i < DRAIN_BATCH_SIZE; i++) {
+                    Envelope next;
+                    lock.lock();
+                    try {
+                        next = queue.pollFirst();
+                        if (next == null) {
+                            scheduled = false;
+                            return;
+                        }
+
+                        notFull.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    deliver(next);
+                }
+            } finally {
+                currentMailbox.remove();
+            }
+
+            schedule();
+        }
+
+        private void deliver(Envelope envelope) {
+            try {
+                envelope.event().accept(listener);
+            } catch (Throwable throwable) {
+                failureHandler.accept(throwable);
+            } finally {
+                var latency = System.nanoTime() - envelope.publishedNanos();
+                delivered.incrementAndGet();
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+                envelope.complete();
+            }
+        }
+
+        private void clear() {
+            lock.lock();
+            try {
+                queue.forEach(Envelope::complete);
+                queue.clear();
+                scheduled = false;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private ListenerMetrics metrics() {
+            var pending = size();
+            var deliveredCount = delivered.get();
+            var averageLatency = deliveredCount == 0 ? 0 : totalLatency.get() / deliveredCount;
+            return new ListenerMetrics(pending, deliveredCount, dropped.get(), coalesced.get(), Duration.ofNanos(averageLatency), Duration.ofNanos(maxLatency.get()));
+        }
+    }
+}
@@ -30,27 +30,36 @@ import it.auties.whatsapp.model.signal.message.SignalMessage;
 import it.auties.whatsapp.model.signal.message.SignalPreKeyMessage;
 import it.auties.whatsapp.model.signal.sender.SenderKeyName;
 import it.auties.whatsapp.model.sync.HistorySync;
+import it.auties.whatsapp.model.sync.HistorySyncNotification;
 import it.auties.whatsapp.model.sync.PushName;
 import it.auties.whatsapp.util.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.InflaterInputStream;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.MESSAGE;
 import static it.auties.whatsapp.api.ErrorHandler.Location.UNKNOWN;
+import static it.auties.whatsapp.metrics.MetricNames.MESSAGE_ENCRYPT;
 import static it.auties.whatsapp.model.sync.HistorySync.Type.*;
 import static it.auties.whatsapp.util.Spec.Signal.*;
 
 class MessageHandler {
     private static final int HISTORY_SYNC_TIMEOUT = 10;
+    private static final int HISTORY_SYNC_CONVERSATIONS_INDEX = 2;
+    private static final int HISTORY_SYNC_BATCH_SIZE = 32;
 
     private final SocketHandler socketHandler;
     private final Map<ContactJid, List<PastParticipant>> pastParticipantsQueue;
-    private final Set<Chat> historyCache;
+    private final Set<ContactJid> historyCache;
     private final Logger logger;
     private final Set<ContactJid> attributedGroups;
     private final EnumSet<HistorySync.Type> historySyncTypes;
@@ -110,7 +119,9 @@ class MessageHandler {
         var groupBuilder = new GroupBuilder(socketHandler.keys());
         var signalMessage = groupBuilder.createOutgoing(senderName);
         var groupCipher = new GroupCipher(senderName, socketHandler.keys());
+        var start = System.nanoTime();
         var groupMessage = groupCipher.encrypt(encodedMessage);
+        socketHandler.store().metricsRecorder().recordSince(MESSAGE_ENCRYPT, start);
         var messageNode = createMessageNode(request, groupMessage);
         if (request.hasRecipientOverride()) {
             return getDevices(request.recipients(), false)
@@ -271,7 +282,9 @@ class MessageHandler {
 
     private Node createMessageNode(MessageSendRequest request, ContactJid contact, byte[] message, boolean peer) {
         var cipher = new SessionCipher(contact.toSignalAddress(), socketHandler.keys());
+        var start = System.nanoTime();
         var encrypted = cipher.encrypt(message);
+        socketHandler.store().metricsRecorder().recordSince(MESSAGE_ENCRYPT, start);
         var messageNode = createMessageNode(request, encrypted);
         return peer ? messageNode : Node.of("to", Map.of("jid", contact), messageNode);
     }
@@ -591,8 +604,12 @@ class MessageHandler {
             }
             return;
         }
-        var result = info.chat().addNewMessage(info);
-        if (!result || info.timestampSeconds() <= socketHandler.store().initializationTimeStamp()) {
+        if (!info.chat().addNewMessage(info)) {
+            return;
+        }
+        socketHandler.store().applyMessageRetention(info.chat());
+        if (info.timestampSeconds() <= socketHandler.store().initializationTimeStamp()) {
+            socketHandler.store().updateChatViews(info.chat());
             return;
         }
         if (info.chat().archived() && socketHandler.store().unarchiveChats()) {
@@ -604,6 +621,7 @@ class MessageHandler {
         if (!info.ignore() && !info.fromMe()) {
             info.chat().unreadMessagesCount(info.chat().unreadMessagesCount() + 1);
         }
+        socketHandler.store().updateChatViews(info.chat());
         socketHandler.onNewMessage(info, offline);
     }
 
@@ -649,8 +667,11 @@ class MessageHandler {
             return;
         }
 
-        downloadHistorySync(protocolMessage)
-                .thenAcceptAsync(history -> onHistoryNotification(info, history))
+        var notification = protocolMessage.historySyncNotification();
+        Medias.downloadStream(notification, socketHandler.store().mediaDownloadOptions())
+                .thenApplyAsync(entry -> entry.orElseThrow(() -> new NoSuchElementException("Cannot download history sync")))
+                .thenApplyAsync(stream -> readHistorySync(notification, stream))
+                .thenAcceptAsync(chunk -> onHistoryNotification(info, chunk))
                 .exceptionallyAsync(throwable -> socketHandler.handleFailure(MESSAGE, throwable));
     }
 
@@ -667,42 +688,62 @@ class MessageHandler {
                 || sender.lastKnownPresence() == ContactStatus.RECORDING;
     }
 
-    private CompletableFuture<HistorySync> downloadHistorySync(ProtocolMessage protocolMessage) {
-        return Medias.download(protocolMessage.historySyncNotification())
-                .thenApplyAsync(entry -> entry.orElseThrow(() -> new NoSuchElementException("Cannot download history sync")))
-                .thenApplyAsync(result -> Protobuf.readMessage(BytesHelper.decompress(result), HistorySync.class));
+    private HistorySyncChunk readHistorySync(HistorySyncNotification notification, InputStream stream) {
+        // Conversations are the only part of a history sync that can grow unbounded, so they are handled as soon as they are decoded
+        // If the notification doesn't say which kind of sync this is, they are buffered until the payload's sync type is read
+        var syncType = notification.syncType() == null ? null : HistorySync.Type.of(notification.syncType().index());
+        var batch = new ArrayList<Chat>();
+        var conversations = new HashSet<ContactJid>();
+        var messages = new AtomicLong();
+        var start = System.nanoTime();
+        try (var input = new InflaterInputStream(stream)) {
+            var history = Protobuf.readMessage(input, HistorySync.class, HISTORY_SYNC_CONVERSATIONS_INDEX, Chat.class, chat -> {
+                batch.add(chat);
+                if (syncType != null && batch.size() >= HISTORY_SYNC_BATCH_SIZE) {
+                    messages.addAndGet(handleConversations(syncType, batch, conversations));
+                    batch.clear();
+                }
+            });
+            messages.addAndGet(handleConversations(Objects.requireNonNullElse(syncType, history.syncType()), batch, conversations));
+            logHistorySyncThroughput(history.syncType(), messages.get(), System.nanoTime() - start);
+            return new HistorySyncChunk(history, conversations);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read history sync", exception);
+        }
     }
 
-    private void onHistoryNotification(MessageInfo info, HistorySync history) {
-        handleHistorySync(history);
+    private void onHistoryNotification(MessageInfo info, HistorySyncChunk chunk) {
+        var history = chunk.history();
+        handleHistorySync(chunk);
         if (history.progress() != null) {
-            scheduleTimeoutSync(history);
+            scheduleTimeoutSync();
             socketHandler.onHistorySyncProgress(history.progress(), history.syncType() == RECENT);
         }
         socketHandler.sendReceipt(info.chatJid(), null, List.of(info.id()), "hist_sync");
     }
 
-    private void scheduleTimeoutSync(HistorySync history) {
+    private void scheduleTimeoutSync() {
         var executor = CompletableFuture.delayedExecutor(HISTORY_SYNC_TIMEOUT, TimeUnit.SECONDS);
         if(historySyncTask != null){
             historySyncTask.cancel(true);
         }
-        this.historySyncTask = CompletableFuture.runAsync(() -> handleChatsSync(history, true), executor);
+        this.historySyncTask = CompletableFuture.runAsync(() -> completeCachedChats(Set.of()), executor);
     }
 
     private void onMessageDeleted(MessageInfo info, MessageInfo message) {
-        info.chat().removeMessage(message);
+        socketHandler.store().removeMessage(info.chat(), message);
         message.revokeTimestampSeconds(Clock.nowSeconds());
         socketHandler.onMessageDeleted(message, true);
     }
 
-    private void handleHistorySync(HistorySync history) {
+    private void handleHistorySync(HistorySyncChunk chunk) {
+        var history = chunk.history();
         try {
             switch (history.syncType()) {
                 case INITIAL_STATUS_V3 -> handleInitialStatus(history);
                 case PUSH_NAME -> handlePushNames(history);
-                case INITIAL_BOOTSTRAP -> handleInitialBootstrap(history);
-                case RECENT, FULL -> handleChatsSync(history, false);
+                case INITIAL_BOOTSTRAP -> socketHandler.onChats();
+                case RECENT, FULL -> handleChatsSync(chunk);
                 case NON_BLOCKING_DATA -> handleNonBlockingData(history);
             }
         }finally {
@@ -731,6 +772,7 @@ class MessageHandler {
                 .findContactByJid(jid)
                 .orElseGet(() -> createNewContact(jid));
         contact.chosenName(pushName.name());
+        socketHandler.store().updateContactNames(contact);
         var action = new ContactAction(pushName.name(), null, null);
         socketHandler.onAction(action, MessageIndexInfo.of("contact", jid, null, true));
     }
@@ -741,44 +783,83 @@ class MessageHandler {
         return contact;
     }
 
-    private void handleInitialBootstrap(HistorySync history) {
-        if(socketHandler.store().historyLength() != WebHistoryLength.ZERO){
-            historyCache.addAll(history.conversations());
+    private long handleConversations(HistorySync.Type syncType, List<Chat> chats, Set<ContactJid> conversations) {
+        var historyLength = socketHandler.store().historyLength();
+        return switch (syncType) {
+            case INITIAL_BOOTSTRAP -> {
+                var added = addConversations(chats);
+                if (historyLength != WebHistoryLength.ZERO) {
+                    chats.forEach(chat -> historyCache.add(chat.jid()));
+                }
+                yield added;
+            }
+            case RECENT, FULL -> {
+                if (historyLength == WebHistoryLength.ZERO) {
+                    yield 0L;
+                }
+
+                var added = addConversations(chats);
+                for (var chat : chats) {
+                    conversations.add(chat.jid());
+                    if (historyCache.contains(chat.jid())) {
+                        socketHandler.onChatRecentMessages(chat, false);
+                    }
+                }
+                yield added;
+            }
+            default -> 0L;
+        };
+    }
+
+    private void logHistorySyncThroughput(HistorySync.Type syncType, long messages, long elapsedNanos) {
+        if (messages == 0) {
+            return;
         }
 
-        handleConversations(history);
-        socketHandler.onChats();
+        var elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(elapsedNanos), 1);
+        logger.log(Level.DEBUG, "Ingested %s messages from %s history sync in %s ms (%s messages/s)"
+                .formatted(messages, syncType, elapsedMillis, messages * 1000 / elapsedMillis));
     }
 
-    private void handleChatsSync(HistorySync history, boolean forceDone) {
+    private void handleChatsSync(HistorySyncChunk chunk) {
         if(socketHandler.store().historyLength() == WebHistoryLength.ZERO){
             return;
         }
 
-        handleConversations(history);
-        for (var cached : historyCache) {
-            var chat = socketHandler.store()
-                    .findChatByJid(cached.jid())
-                    .orElse(cached);
-            var done = forceDone || !history.conversations().contains(cached);
-            if(done){
-                chat.endOfHistoryTransferType(EndOfHistoryTransferType.COMPLETE_AND_NO_MORE_MESSAGE_REMAIN_ON_PRIMARY);
+        completeCachedChats(chunk.conversations());
+    }
+
+    private void completeCachedChats(Set<ContactJid> pending) {
+        var iterator = historyCache.iterator();
+        while (iterator.hasNext()) {
+            var cached = iterator.next();
+            if (pending.contains(cached)) {
+                continue;
             }
-            socketHandler.onChatRecentMessages(chat, done);
+
+            iterator.remove();
+            socketHandler.store()
+                    .findChatByJid(cached)
+                    .ifPresent(chat -> {
+                        chat.endOfHistoryTransferType(EndOfHistoryTransferType.COMPLETE_AND_NO_MORE_MESSAGE_REMAIN_ON_PRIMARY);
+                        socketHandler.onChatRecentMessages(chat, true);
+                    });
         }
-        historyCache.removeIf(entry -> !history.conversations().contains(entry));
     }
 
-    private void handleConversations(HistorySync history) {
-        var store = socketHandler.store();
-        for (var chat : history.conversations()) {
+    private long addConversations(List<Chat> chats) {
+        if (chats.isEmpty()) {
+            return 0;
+        }
+
+        for (var chat : chats) {
             var pastParticipants = pastParticipantsQueue.remove(chat.jid());
             if (pastParticipants != null) {
                 chat.addPastParticipants(pastParticipants);
             }
-
-            store.addChat(chat);
         }
+
+        return socketHandler.store().addChats(chats);
     }
 
     private void handleNonBlockingData(HistorySync history) {
@@ -811,6 +892,10 @@ class MessageHandler {
         historySyncTypes.clear();
     }
 
+    private record HistorySyncChunk(HistorySync history, Set<ContactJid> conversations) {
+
+    }
+
     private record MessageDecodeResult(byte[] message, Throwable error) {
         public boolean hasError() {
             return error != null;
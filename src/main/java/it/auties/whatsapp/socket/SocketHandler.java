@@ -8,6 +8,7 @@ import it.auties.whatsapp.controller.Keys;
 import it.auties.whatsapp.controller.Store;
 import it.auties.whatsapp.crypto.AesGcm;
 import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerMetrics;
 import it.auties.whatsapp.model.action.Action;
 import it.auties.whatsapp.model.business.BusinessCategory;
 import it.auties.whatsapp.model.call.Call;
@@ -48,6 +49,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.*;
+import static it.auties.whatsapp.metrics.MetricNames.*;
 
 @Accessors(fluent = true)
 @SuppressWarnings("unused")
@@ -101,7 +103,8 @@ public class SocketHandler implements SocketListener {
 
     private CompletableFuture<Void> logoutFuture;
 
-    private ExecutorService listenersService;
+    @NonNull
+    private final ListenerBus listenerBus;
 
     private Node lastNode;
 
@@ -128,6 +131,7 @@ public class SocketHandler implements SocketListener {
         this.appStateHandler = new AppStateHandler(this);
         this.errorHandler = Objects.requireNonNullElse(errorHandler, ErrorHandler.toTerminal());
         this.socketExecutor = Objects.requireNonNullElse(socketExecutor, DEFAULT_EXECUTOR);
+        this.listenerBus = new ListenerBus(() -> this.store.listeners(), listener -> this.store.listenerOptions(listener), throwable -> handleFailure(UNKNOWN, throwable));
     }
 
     private void onShutdown(boolean reconnect) {
@@ -148,8 +152,11 @@ public class SocketHandler implements SocketListener {
     }
 
     private void callListenersAsync(Consumer<Listener> consumer) {
-        var service = getOrCreateListenersService();
-        store.listeners().forEach(listener -> service.execute(() -> invokeListenerSafe(consumer, listener)));
+        listenerBus.publish(null, consumer);
+    }
+
+    private void callListenersAsync(String key, Consumer<Listener> consumer) {
+        listenerBus.publish(key, consumer);
     }
 
     @Override
@@ -169,7 +176,7 @@ public class SocketHandler implements SocketListener {
         onSocketEvent(SocketEvent.OPEN);
         var clientHello = new ClientHello(keys.ephemeralKeyPair().publicKey());
         var handshakeMessage = new HandshakeMessage(clientHello);
-        Request.of(handshakeMessage)
+        Request.of(handshakeMessage, store.requestTraceMode())
                 .sendWithPrologue(session, keys, store)
                 .exceptionallyAsync(throwable -> handleFailure(LOGIN, throwable));
     }
@@ -194,8 +201,10 @@ public class SocketHandler implements SocketListener {
             return;
         }
         var plainText = AesGcm.decrypt(keys.readCounter(true), message, keys.readKey());
+        var decodeStart = System.nanoTime();
         var decoder = new BinaryDecoder();
         var node = decoder.decode(plainText);
+        store.metricsRecorder().recordSince(BINARY_DECODE, decodeStart);
         if(!node.hasNode("bad-mac")) {
             this.lastNode = node;
         }
@@ -249,7 +258,8 @@ public class SocketHandler implements SocketListener {
             this.logoutFuture = new CompletableFuture<>();
         }
 
-        this.session = new SocketSession(store.proxy().orElse(null), socketExecutor);
+        store.metricsRecorder().gauge(LISTENER_QUEUE_DEPTH, listenerBus::pending);
+        this.session = new SocketSession(store.proxy().orElse(null), socketExecutor, store.metricsRecorder());
         return session.connect(this)
                 .thenCompose(ignored -> loginFuture);
     }
@@ -373,7 +383,7 @@ public class SocketHandler implements SocketListener {
             return CompletableFuture.completedFuture(null);
         }
 
-        return node.toRequest(null, false)
+        return node.toRequest(null, false, store.requestTraceMode())
                 .sendWithNoResponse(session, keys, store)
                 .exceptionallyAsync(throwable -> handleFailure(STREAM, throwable))
                 .thenRunAsync(() -> onNodeSent(node));
@@ -441,10 +451,25 @@ public class SocketHandler implements SocketListener {
         if (state() == SocketState.RESTORE) {
             return CompletableFuture.completedFuture(node);
         }
-        var request = node.toRequest(filter, true);
+        var start = System.nanoTime();
+        var request = node.toRequest(filter, true, store.requestTraceMode());
         var result = request.send(session, keys, store);
         onNodeSent(node);
-        return result;
+        if (!store.metricsRecorder().isEnabled() || !node.description().equals("iq")) {
+            return result;
+        }
+
+        var xmlns = node.attributes().getString("xmlns");
+        return result.whenComplete((response, throwable) -> recordQuery(xmlns, start, throwable));
+    }
+
+    private void recordQuery(String xmlns, long start, Throwable throwable) {
+        if (throwable != null) {
+            store.metricsRecorder().increment(IQ_FAILURES + xmlns);
+            return;
+        }
+
+        store.metricsRecorder().recordSince(IQ_LATENCY + xmlns, start);
     }
 
     public CompletableFuture<Optional<URI>> queryPicture(@NonNull ContactJidProvider chat) {
@@ -569,7 +594,7 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onMetadata(Map<String, String> properties) {
-        callListenersAsync(listener -> {
+        callListenersAsync("metadata", listener -> {
             listener.onMetadata(whatsapp, properties);
             listener.onMetadata(properties);
         });
@@ -598,7 +623,7 @@ public class SocketHandler implements SocketListener {
         }
 
         chat.presences().put(contactJid, status);
-        callListenersAsync(listener -> {
+        callListenersAsync("presence/%s/%s".formatted(chat.jid(), contactJid), listener -> {
             listener.onContactPresence(whatsapp, chat, contactJid, status);
             listener.onContactPresence(chat, contactJid, status);
         });
@@ -628,7 +653,7 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onFeatures(ActionValueSync.PrimaryFeature features) {
-        callListenersAsync(listener -> {
+        callListenersAsync("features", listener -> {
             listener.onFeatures(whatsapp, features.flags());
             listener.onFeatures(features.flags());
         });
@@ -688,20 +713,11 @@ public class SocketHandler implements SocketListener {
     }
 
     public void callListenersSync(Consumer<Listener> consumer) {
-        var service = getOrCreateListenersService();
-        var futures = store.listeners()
-                .stream()
-                .map(listener -> CompletableFuture.runAsync(() -> invokeListenerSafe(consumer, listener), service))
-                .toArray(CompletableFuture[]::new);
-        CompletableFuture.allOf(futures).join();
+        listenerBus.publishAndWait(consumer);
     }
 
-    private void invokeListenerSafe(Consumer<Listener> consumer, Listener listener) {
-        try {
-            consumer.accept(listener);
-        }catch (Throwable throwable){
-            handleFailure(UNKNOWN, throwable);
-        }
+    public Map<Listener, ListenerMetrics> listenerMetrics() {
+        return listenerBus.metrics();
     }
 
     protected void onChats() {
@@ -726,7 +742,7 @@ public class SocketHandler implements SocketListener {
     }
 
     protected void onHistorySyncProgress(Integer progress, boolean recent) {
-        callListenersAsync(listener -> {
+        callListenersAsync("history-sync-progress/%s".formatted(recent), listener -> {
             listener.onHistorySyncProgress(whatsapp, progress, recent);
             listener.onHistorySyncProgress(progress, recent);
         });
@@ -779,7 +795,9 @@ public class SocketHandler implements SocketListener {
             onUserNameChange(newName, oldName);
         }
         var self = store().jid().toWhatsappJid();
-        store().findContactByJid(self).orElseGet(() -> store().addContact(self)).chosenName(newName);
+        var contact = store().findContactByJid(self).orElseGet(() -> store().addContact(self));
+        contact.chosenName(newName);
+        store().updateContactNames(contact);
         store().name(newName);
     }
 
@@ -851,17 +869,7 @@ public class SocketHandler implements SocketListener {
         streamHandler.dispose();
         messageHandler.dispose();
         appStateHandler.dispose();
-        if(listenersService != null){
-            listenersService.shutdownNow();
-        }
-    }
-
-    private synchronized ExecutorService getOrCreateListenersService(){
-        if(listenersService == null || listenersService.isShutdown()){
-            listenersService = Executors.newCachedThreadPool();
-        }
-
-        return listenersService;
+        listenerBus.dispose();
     }
 
     protected <T> T handleFailure(Location location, Throwable throwable) {
@@ -1,5 +1,6 @@
 package it.auties.whatsapp.socket;
 
+import it.auties.whatsapp.metrics.MetricsRecorder;
 import it.auties.whatsapp.util.BytesHelper;
 import it.auties.whatsapp.util.ProxyAuthenticator;
 import lombok.AccessLevel;
@@ -16,6 +17,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
+import static it.auties.whatsapp.metrics.MetricNames.*;
 import static it.auties.whatsapp.util.Spec.Whatsapp.APP_ENDPOINT_HOST;
 import static it.auties.whatsapp.util.Spec.Whatsapp.APP_ENDPOINT_PORT;
 
@@ -27,6 +29,7 @@ public class SocketSession {
 
     private final URI proxy;
     private final Executor executor;
+    private final MetricsRecorder metricsRecorder;
     private Socket socket;
     private SocketListener listener;
     private boolean closed;
@@ -104,6 +107,8 @@ public class SocketSession {
                 var stream = socket.getOutputStream();
                 stream.write(bytes);
                 stream.flush();
+                metricsRecorder.increment(SOCKET_FRAMES_SENT);
+                metricsRecorder.increment(SOCKET_BYTES_SENT, bytes.length);
             } catch (IOException exception) {
                 throw new UncheckedIOException("Cannot send message", exception);
             }
@@ -119,6 +124,8 @@ public class SocketSession {
                 }
                 var message = new byte[length];
                 input.readFully(message);
+                metricsRecorder.increment(SOCKET_FRAMES_RECEIVED);
+                metricsRecorder.increment(SOCKET_BYTES_RECEIVED, length + 3);
                 listener.onMessage(message);
             }
         } catch(Throwable throwable) {
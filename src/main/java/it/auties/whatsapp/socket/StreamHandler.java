@@ -65,11 +65,11 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static it.auties.whatsapp.api.ErrorHandler.Location.*;
 import static it.auties.whatsapp.util.Spec.Signal.KEY_BUNDLE_TYPE;
+import static it.auties.whatsapp.util.Spec.Signal.PRE_KEY_GRACE_WINDOW;
 import static it.auties.whatsapp.util.Spec.Whatsapp.ACCOUNT_SIGNATURE_HEADER;
 import static it.auties.whatsapp.util.Spec.Whatsapp.DEVICE_WEB_SIGNATURE_HEADER;
 
@@ -85,6 +85,7 @@ class StreamHandler {
     private final WebVerificationSupport webVerificationSupport;
     private final Map<String, Integer> retries;
     private final AtomicBoolean badMac;
+    private final AtomicBoolean uploadingPreKeys;
     private final AtomicReference<String> lastLinkCodeKey;
     private ScheduledExecutorService service;
 
@@ -93,6 +94,7 @@ class StreamHandler {
         this.webVerificationSupport = webVerificationSupport;
         this.retries = new HashMap<>();
         this.badMac = new AtomicBoolean();
+        this.uploadingPreKeys = new AtomicBoolean();
         this.lastLinkCodeKey = new AtomicReference<>();
     }
 
@@ -187,6 +189,7 @@ class StreamHandler {
                 .orElse(null);
         if(chat != null && chat.unreadMessagesCount() > 0) {
             chat.unreadMessagesCount(chat.unreadMessagesCount() - 1);
+            socketHandler.store().updateChatViews(chat);
         }
 
         message.status(status);
@@ -476,6 +479,8 @@ class StreamHandler {
                 .build();
         socketHandler.store().attribute(message);
         chat.addNewMessage(message);
+        socketHandler.store().updateChatViews(chat);
+        socketHandler.store().applyMessageRetention(chat);
         socketHandler.onNewMessage(message, false);
         if(participantJid == null){
             return;
@@ -711,6 +716,8 @@ class StreamHandler {
         socketHandler.sendQuery("set", "passive", Node.of("active"));
         if (!socketHandler.keys().hasPreKeys()) {
             sendPreKeys();
+        } else {
+            socketHandler.keys().preKeyManager().prefill(PRE_KEYS_UPLOAD_CHUNK);
         }
 
         schedulePing();
@@ -973,6 +980,7 @@ class StreamHandler {
         socketHandler.sendQuery("set", "w:m", Node.of("media_conn"))
                 .thenApplyAsync(MediaConnection::of)
                 .thenAcceptAsync(result -> {
+                    socketHandler.store().mediaHosts().update(result.hosts());
                     socketHandler.store().mediaConnection(result);
                     scheduleMediaConnection(result.ttl());
                 })
@@ -1000,17 +1008,26 @@ class StreamHandler {
     }
 
     private void sendPreKeys() {
-        var startId = socketHandler.keys().lastPreKeyId() + 1;
-        var preKeys = IntStream.range(startId, startId + PRE_KEYS_UPLOAD_CHUNK)
-                .mapToObj(SignalPreKeyPair::random)
-                .peek(socketHandler.keys()::addPreKey)
+        if (!uploadingPreKeys.compareAndSet(false, true)) {
+            return;
+        }
+
+        CompletableFuture.supplyAsync(this::createPreKeys)
+                .thenComposeAsync(preKeys -> socketHandler.sendQuery("set", "encrypt",
+                        Node.of("registration", socketHandler.keys().encodedRegistrationId()),
+                        Node.of("type", KEY_BUNDLE_TYPE),
+                        Node.of("identity", socketHandler.keys().identityKeyPair().publicKey()),
+                        Node.of("list", preKeys), socketHandler.keys().signedKeyPair().toNode()))
+                .whenCompleteAsync((result, throwable) -> uploadingPreKeys.set(false));
+    }
+
+    private List<Node> createPreKeys() {
+        var preKeyManager = socketHandler.keys().preKeyManager();
+        preKeyManager.removeExpired(PRE_KEY_GRACE_WINDOW, socketHandler.keys().preKeyMaxAge());
+        return preKeyManager.create(PRE_KEYS_UPLOAD_CHUNK)
+                .stream()
                 .map(SignalPreKeyPair::toNode)
                 .toList();
-        socketHandler.sendQuery("set", "encrypt",
-                Node.of("registration", socketHandler.keys().encodedRegistrationId()),
-                Node.of("type", KEY_BUNDLE_TYPE),
-                Node.of("identity", socketHandler.keys().identityKeyPair().publicKey()),
-                Node.of("list", preKeys), socketHandler.keys().signedKeyPair().toNode());
     }
 
     private void generateQrCode(Node node, Node container) {
@@ -0,0 +1,109 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A cache of asynchronous lookups that expire a fixed amount of time after they were started.
+ * Concurrent lookups of the same key share the same future, while failed lookups are removed so that they can be retried.
+ * Entries are kept in the order in which they were created, so both the expired ones and the ones that exceed the maximum size are removed starting from the oldest one.
+ *
+ * @param <T> the type of the cached values
+ */
+final class CoalescingCache<T> {
+    private final long ttl;
+    private final int maxSize;
+    private final LongSupplier clock;
+    // Guarded by itself
+    private final LinkedHashMap<String, Entry<T>> entries;
+
+    CoalescingCache(@NonNull Duration ttl, int maxSize) {
+        this(ttl, maxSize, System::currentTimeMillis);
+    }
+
+    CoalescingCache(@NonNull Duration ttl, int maxSize, @NonNull LongSupplier clock) {
+        Validate.isTrue(maxSize > 0, "Expected a positive size, got: %s", maxSize);
+        this.ttl = ttl.toMillis();
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the value associated with a key, loading it if it's missing or expired
+     *
+     * @param key    the non-null key
+     * @param loader the non-null function used to load the value
+     * @return a non-null future
+     */
+    CompletableFuture<T> get(@NonNull String key, @NonNull Supplier<CompletableFuture<T>> loader) {
+        var now = clock.getAsLong();
+        Entry<T> entry;
+        synchronized (entries) {
+            var cached = entries.get(key);
+            if (cached != null && cached.expiration() > now) {
+                return cached.value();
+            }
+
+            entries.remove(key);
+            removeOldest(now);
+            entry = new Entry<>(new CompletableFuture<>(), now + ttl);
+            entries.put(key, entry);
+        }
+
+        // The loader runs outside the lock, so that a slow loader doesn't block the lookups of other keys
+        load(loader).whenComplete((result, error) -> {
+            if (error == null) {
+                entry.value().complete(result);
+                return;
+            }
+
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.value().completeExceptionally(error);
+        });
+        return entry.value();
+    }
+
+    private CompletableFuture<T> load(Supplier<CompletableFuture<T>> loader) {
+        try {
+            return loader.get();
+        } catch (Throwable throwable) {
+            return CompletableFuture.failedFuture(throwable);
+        }
+    }
+
+    // Entries are created in order of expiration, so the expired ones are at the head
+    private void removeOldest(long now) {
+        var iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.expiration() > now && entries.size() < maxSize) {
+                return;
+            }
+
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of entries in this cache, including the ones that are still loading
+     *
+     * @return an unsigned int
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry<T>(CompletableFuture<T> value, long expiration) {
+
+    }
+}
@@ -0,0 +1,136 @@
+package it.auties.whatsapp.util;
+
+import it.auties.linkpreview.LinkPreview;
+import it.auties.linkpreview.LinkPreviewMedia;
+import it.auties.linkpreview.LinkPreviewResult;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the previews of the links contained in text messages without blocking the caller.
+ * Resolved previews, including their thumbnail, are cached by canonical url for a limited amount of time.
+ * Concurrent requests for the same url share the same resolution.
+ */
+@UtilityClass
+public class LinkPreviews {
+    // The link preview library doesn't export the pattern it uses to find links, LinkPreviewsTest checks that this one matches it
+    final Pattern URL_REGEX = Pattern.compile("(https?://)?([\\w.-]+)(\\.\\w{2,})+(?::(\\d+))?([/\\w.?=-]*)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private final CoalescingCache<Optional<Preview>> CACHE = new CoalescingCache<>(Duration.ofHours(1), 512);
+
+    /**
+     * Finds the preview of the first link in a text that can be resolved
+     * If no preview is resolved before the timeout expires, an empty optional is returned
+     * The resolution keeps going in the background so that the preview is cached for the next time
+     *
+     * @param text    the text to search
+     * @param timeout how long to wait for the preview
+     * @return a future that never completes exceptionally
+     */
+    public CompletableFuture<Optional<Match>> findPreview(String text, @NonNull Duration timeout) {
+        if (text == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        var candidates = URL_REGEX.matcher(text)
+                .results()
+                .map(MatchResult::group)
+                .toList();
+        var result = CompletableFuture.completedFuture(Optional.<Match>empty());
+        for (var candidate : candidates) {
+            result = result.thenCompose(match -> match.isPresent() ? CompletableFuture.completedFuture(match) : resolve(candidate)
+                    .thenApply(preview -> preview.map(entry -> new Match(candidate, entry))));
+        }
+
+        return result.completeOnTimeout(Optional.empty(), timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(ignored -> Optional.empty());
+    }
+
+    /**
+     * Queries the preview of a url
+     * If the preview is not resolved before the timeout expires, an empty optional is returned
+     *
+     * @param uri     the non-null url
+     * @param timeout how long to wait for the preview
+     * @return a future that never completes exceptionally
+     */
+    public CompletableFuture<Optional<Preview>> getPreview(@NonNull URI uri, @NonNull Duration timeout) {
+        return resolve(uri.toString())
+                .copy()
+                .completeOnTimeout(Optional.empty(), timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(ignored -> Optional.empty());
+    }
+
+    private CompletableFuture<Optional<Preview>> resolve(String url) {
+        return CACHE.get(canonicalize(url), () -> fetch(url));
+    }
+
+    private CompletableFuture<Optional<Preview>> fetch(String url) {
+        try {
+            return LinkPreview.createPreviewAsync(URI.create(url))
+                    .thenCompose(result -> result.map(LinkPreviews::createPreview)
+                            .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())));
+        } catch (Throwable throwable) {
+            return CompletableFuture.failedFuture(throwable);
+        }
+    }
+
+    private CompletableFuture<Optional<Preview>> createPreview(LinkPreviewResult result) {
+        var imageUri = result.images()
+                .stream()
+                .reduce(LinkPreviews::compareDimensions)
+                .map(LinkPreviewMedia::uri)
+                .orElse(null);
+        var videoUri = result.videos()
+                .stream()
+                .reduce(LinkPreviews::compareDimensions)
+                .map(LinkPreviewMedia::uri)
+                .orElse(null);
+        return Medias.downloadAsync(imageUri)
+                .exceptionally(ignored -> null)
+                .thenApply(thumbnail -> Optional.of(new Preview(result, videoUri, thumbnail)));
+    }
+
+    private LinkPreviewMedia compareDimensions(LinkPreviewMedia first, LinkPreviewMedia second) {
+        return first.width() * first.height() > second.width() * second.height() ? first : second;
+    }
+
+    private String canonicalize(String url) {
+        try {
+            var uri = URI.create(url.contains("://") ? url : "https://" + url);
+            var path = uri.getRawPath() == null || uri.getRawPath().equals("/") ? "" : uri.getRawPath();
+            var query = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+            return "%s://%s%s%s".formatted(uri.getScheme().toLowerCase(), uri.getRawAuthority().toLowerCase(), path, query);
+        } catch (Throwable throwable) {
+            return url;
+        }
+    }
+
+    /**
+     * A resolved preview
+     *
+     * @param result    the non-null metadata of the page
+     * @param videoUri  the largest video in the page, if any
+     * @param thumbnail the largest image in the page, if any
+     */
+    public record Preview(@NonNull LinkPreviewResult result, URI videoUri, byte[] thumbnail) {
+
+    }
+
+    /**
+     * A preview found in a text
+     *
+     * @param text    the non-null text of the link that was matched
+     * @param preview the non-null preview
+     */
+    public record Match(@NonNull String text, @NonNull Preview preview) {
+
+    }
+}
@@ -0,0 +1,25 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+/**
+ * An immutable model class that represents how a media should be downloaded
+ *
+ * @param hosts       the non-null hosts of the session that downloads the media
+ * @param parallelism the number of concurrent range requests used to download the media, one disables range requests
+ */
+public record MediaDownloadOptions(@NonNull MediaHosts hosts, int parallelism) {
+    public MediaDownloadOptions {
+        Validate.isTrue(parallelism > 0, "Expected a positive parallelism, got: %s", parallelism);
+    }
+
+    /**
+     * Constructs new options that download a media using a single request
+     *
+     * @param hosts the non-null hosts of the session that downloads the media
+     * @return non-null options
+     */
+    public static MediaDownloadOptions of(@NonNull MediaHosts hosts) {
+        return new MediaDownloadOptions(hosts, 1);
+    }
+}
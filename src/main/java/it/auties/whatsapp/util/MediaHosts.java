@@ -0,0 +1,141 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the hosts advertised by Whatsapp for media transfers and of their health.
+ * Each session owns its own instance, so the failures of a session don't penalize the hosts used by another one.
+ * Hosts that failed recently are tried last, with a penalty that grows exponentially with the number of consecutive failures.
+ * Among healthy hosts, the ones with the lowest latency are tried first.
+ */
+public final class MediaHosts {
+    private static final String DEFAULT_SCHEME = "https";
+    private static final String DEFAULT_HOST = "mmg.whatsapp.net";
+    private static final long BASE_PENALTY = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_PENALTY = TimeUnit.MINUTES.toMillis(5);
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private final String scheme;
+    private final String fallbackHost;
+    private final Map<String, Health> health;
+    private volatile List<String> hosts;
+
+    /**
+     * Creates a new instance that uses https and Whatsapp's default media host as a fallback
+     */
+    public MediaHosts() {
+        this(DEFAULT_SCHEME, DEFAULT_HOST);
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param scheme       the non-null scheme used to build the urls of the hosts
+     * @param fallbackHost the non-null host to use when none was advertised, optionally followed by a port
+     */
+    public MediaHosts(@NonNull String scheme, @NonNull String fallbackHost) {
+        this.scheme = scheme;
+        this.fallbackHost = fallbackHost;
+        this.health = new ConcurrentHashMap<>();
+        this.hosts = List.of();
+    }
+
+    /**
+     * Returns the scheme used to build the urls of the hosts
+     *
+     * @return a non-null string
+     */
+    public String scheme() {
+        return scheme;
+    }
+
+    /**
+     * Updates the hosts advertised by Whatsapp
+     *
+     * @param hosts the non-null hosts
+     */
+    public void update(@NonNull List<String> hosts) {
+        if (!hosts.isEmpty()) {
+            this.hosts = List.copyOf(hosts);
+        }
+    }
+
+    /**
+     * Returns the hosts to try, sorted from the most to the least healthy
+     * The fallback host is always included
+     *
+     * @return a non-null list
+     */
+    public List<String> candidates() {
+        var now = System.currentTimeMillis();
+        var candidates = new LinkedHashSet<>(hosts);
+        candidates.add(fallbackHost);
+        return candidates.stream()
+                .map(host -> healthOf(host).snapshot(host, now))
+                .sorted(Comparator.comparing(HealthSnapshot::penalized)
+                        .thenComparingInt(HealthSnapshot::failures)
+                        .thenComparingDouble(HealthSnapshot::latency))
+                .map(HealthSnapshot::host)
+                .toList();
+    }
+
+    /**
+     * Records a successful transfer
+     *
+     * @param host          the non-null host
+     * @param elapsedMillis how long the transfer took
+     */
+    public void success(@NonNull String host, long elapsedMillis) {
+        healthOf(host).success(elapsedMillis);
+    }
+
+    /**
+     * Records a failed transfer
+     *
+     * @param host the non-null host
+     */
+    public void failure(@NonNull String host) {
+        healthOf(host).failure(System.currentTimeMillis());
+    }
+
+    private Health healthOf(String host) {
+        return health.computeIfAbsent(host, ignored -> new Health());
+    }
+
+    private static final class Health {
+        private int failures;
+        private long lastFailure;
+        private double latency;
+
+        private synchronized void success(long elapsedMillis) {
+            this.failures = 0;
+            this.latency = latency == 0 ? elapsedMillis : latency + LATENCY_WEIGHT * (elapsedMillis - latency);
+        }
+
+        private synchronized void failure(long now) {
+            this.failures++;
+            this.lastFailure = now;
+        }
+
+        private synchronized boolean isPenalized(long now) {
+            if (failures == 0) {
+                return false;
+            }
+
+            var penalty = Math.min(BASE_PENALTY << Math.min(failures - 1, 16), MAX_PENALTY);
+            return now - lastFailure < penalty;
+        }
+
+        private synchronized HealthSnapshot snapshot(String host, long now) {
+            return new HealthSnapshot(host, isPenalized(now), failures, latency);
+        }
+    }
+
+    private record HealthSnapshot(String host, boolean penalized, int failures, double latency) {
+
+    }
+}
@@ -0,0 +1,262 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.model.media.MediaDimensions;
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Reads the metadata of common media containers from their headers, so that neither a full decode nor an external process is needed.
+ * Every method returns an empty result if the media isn't in a supported format or if its header is malformed.
+ */
+@UtilityClass
+public class MediaProbe {
+    private final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private final int MP4_HEADER_SIZE = 8;
+    private final int MP4_LARGE_HEADER_SIZE = 16;
+
+    /**
+     * Reads the dimensions of a PNG or JPEG image
+     *
+     * @param file the image
+     * @return a non-null optional
+     */
+    public Optional<MediaDimensions> getImageDimensions(byte[] file) {
+        if (file == null) {
+            return Optional.empty();
+        }
+
+        try {
+            var buffer = ByteBuffer.wrap(file);
+            if (startsWith(file, PNG_SIGNATURE)) {
+                return getPngDimensions(buffer);
+            }
+
+            if (file.length > 2 && (file[0] & 0xFF) == 0xFF && (file[1] & 0xFF) == 0xD8) {
+                return getJpegDimensions(buffer);
+            }
+
+            return Optional.empty();
+        } catch (RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    // The IHDR chunk is always the first one: length(4), type(4), width(4), height(4)
+    private Optional<MediaDimensions> getPngDimensions(ByteBuffer buffer) {
+        if (buffer.getInt(PNG_SIGNATURE.length + 4) != fourCc("IHDR")) {
+            return Optional.empty();
+        }
+
+        var width = buffer.getInt(PNG_SIGNATURE.length + 8);
+        var height = buffer.getInt(PNG_SIGNATURE.length + 12);
+        return createDimensions(width, height);
+    }
+
+    // Walks the markers until a start of frame is found: length(2), precision(1), height(2), width(2)
+    private Optional<MediaDimensions> getJpegDimensions(ByteBuffer buffer) {
+        var position = 2;
+        while (position + 4 <= buffer.limit()) {
+            if ((buffer.get(position) & 0xFF) != 0xFF) {
+                return Optional.empty();
+            }
+
+            var marker = buffer.get(position + 1) & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                position += 2;
+                continue;
+            }
+
+            if (marker == 0xD9 || marker == 0xDA) {
+                return Optional.empty();
+            }
+
+            var length = buffer.getShort(position + 2) & 0xFFFF;
+            if (isStartOfFrame(marker)) {
+                var height = buffer.getShort(position + 5) & 0xFFFF;
+                var width = buffer.getShort(position + 7) & 0xFFFF;
+                return createDimensions(width, height);
+            }
+
+            position += 2 + length;
+        }
+
+        return Optional.empty();
+    }
+
+    private boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * Reads the duration in seconds of an MP4 or M4A media from its movie header
+     *
+     * @param file the media
+     * @return a non-null optional
+     */
+    public OptionalInt getMp4Duration(byte[] file) {
+        return file == null ? OptionalInt.empty() : getMp4Duration(ByteBuffer.wrap(file));
+    }
+
+    /**
+     * Reads the duration in seconds of an MP4 or M4A media from its movie header
+     *
+     * @param buffer the media, for example a mapping of its file
+     * @return a non-null optional
+     */
+    public OptionalInt getMp4Duration(ByteBuffer buffer) {
+        try {
+            var moov = findBox(buffer, 0, buffer.limit(), "moov");
+            if (moov == null) {
+                return OptionalInt.empty();
+            }
+
+            var mvhd = findBox(buffer, moov.payloadStart(), moov.end(), "mvhd");
+            if (mvhd == null) {
+                return OptionalInt.empty();
+            }
+
+            var offset = mvhd.payloadStart();
+            var version = buffer.get(offset);
+            long timescale;
+            long duration;
+            if (version == 1) {
+                timescale = Integer.toUnsignedLong(buffer.getInt(offset + 20));
+                duration = buffer.getLong(offset + 24);
+            } else {
+                timescale = Integer.toUnsignedLong(buffer.getInt(offset + 12));
+                duration = Integer.toUnsignedLong(buffer.getInt(offset + 16));
+            }
+
+            if (timescale == 0 || duration < 0) {
+                return OptionalInt.empty();
+            }
+
+            return OptionalInt.of((int) (duration / timescale));
+        } catch (RuntimeException exception) {
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * Reads the dimensions of the first video track of an MP4 media from its track header
+     *
+     * @param file the media
+     * @return a non-null optional
+     */
+    public Optional<MediaDimensions> getMp4Dimensions(byte[] file) {
+        return file == null ? Optional.empty() : getMp4Dimensions(ByteBuffer.wrap(file));
+    }
+
+    /**
+     * Reads the dimensions of the first video track of an MP4 media from its track header
+     *
+     * @param buffer the media, for example a mapping of its file
+     * @return a non-null optional
+     */
+    public Optional<MediaDimensions> getMp4Dimensions(ByteBuffer buffer) {
+        try {
+            var moov = findBox(buffer, 0, buffer.limit(), "moov");
+            if (moov == null) {
+                return Optional.empty();
+            }
+
+            var position = moov.payloadStart();
+            while (position < moov.end()) {
+                var trak = findBox(buffer, position, moov.end(), "trak");
+                if (trak == null) {
+                    return Optional.empty();
+                }
+
+                var dimensions = getTrackDimensions(buffer, trak);
+                if (dimensions.isPresent()) {
+                    return dimensions;
+                }
+
+                position = trak.end();
+            }
+
+            return Optional.empty();
+        } catch (RuntimeException exception) {
+            return Optional.empty();
+        }
+    }
+
+    // Audio tracks have a width and a height of zero, so the first track that has them is the video track
+    private Optional<MediaDimensions> getTrackDimensions(ByteBuffer buffer, Box trak) {
+        var tkhd = findBox(buffer, trak.payloadStart(), trak.end(), "tkhd");
+        if (tkhd == null) {
+            return Optional.empty();
+        }
+
+        var offset = tkhd.payloadStart() + (buffer.get(tkhd.payloadStart()) == 1 ? 88 : 76);
+        var width = buffer.getInt(offset) >>> 16;
+        var height = buffer.getInt(offset + 4) >>> 16;
+        return createDimensions(width, height);
+    }
+
+    private Box findBox(ByteBuffer buffer, int start, int end, String type) {
+        var expected = fourCc(type);
+        var position = start;
+        while (position + MP4_HEADER_SIZE <= end) {
+            var size = Integer.toUnsignedLong(buffer.getInt(position));
+            var boxType = buffer.getInt(position + 4);
+            var headerSize = MP4_HEADER_SIZE;
+            if (size == 1) {
+                size = buffer.getLong(position + 8);
+                headerSize = MP4_LARGE_HEADER_SIZE;
+            } else if (size == 0) {
+                size = end - position;
+            }
+
+            if (size < headerSize || position + size > end) {
+                return null;
+            }
+
+            if (boxType == expected) {
+                return new Box(position + headerSize, (int) (position + size));
+            }
+
+            position += (int) size;
+        }
+
+        return null;
+    }
+
+    private Optional<MediaDimensions> createDimensions(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new MediaDimensions(width, height));
+    }
+
+    private boolean startsWith(byte[] file, byte[] prefix) {
+        if (file.length < prefix.length) {
+            return false;
+        }
+
+        for (var i = 0; i < prefix.length; i++) {
+            if (file[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int fourCc(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+
+    private record Box(int payloadStart, int end) {
+
+    }
+}
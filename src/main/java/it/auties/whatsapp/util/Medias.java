@@ -7,6 +7,7 @@ import it.auties.whatsapp.exception.HmacValidationException;
 import it.auties.whatsapp.model.media.*;
 import it.auties.whatsapp.util.Spec.Whatsapp;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.PDFRenderer;
@@ -15,12 +16,17 @@ import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.Mac;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
@@ -30,16 +36,30 @@ import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.net.http.HttpClient.Version;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
+import java.util.zip.DeflaterInputStream;
 
 import static java.net.http.HttpRequest.BodyPublishers.ofByteArray;
 import static java.net.http.HttpResponse.BodyHandlers.ofString;
@@ -51,23 +71,110 @@ public class Medias {
             .followRedirects(Redirect.ALWAYS)
             .build();
     private final int PROFILE_PIC_SIZE = 640;
-    private final String DEFAULT_HOST = "mmg.whatsapp.net";
     private final int THUMBNAIL_SIZE = 32;
+    private final int BUFFER_SIZE = 8192;
+    private final int MAC_LENGTH = 10;
+    private final int RANGE_SIZE = 1024 * 1024;
+    private final long MAX_DOWNLOAD_SIZE = 4L * 1024 * 1024 * 1024;
     private final String USER_AGENT = "Mozilla/5.0 (Linux; Android 13) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/114.0.5735.57 Mobile Safari/537.36";
+    private final int PREPARATION_CACHE_SIZE = 256;
+    private final int PREPARATION_QUEUE_SIZE = 256;
+    private final Map<String, Object> PREPARATION_CACHE = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > PREPARATION_CACHE_SIZE;
+        }
+    });
+    private final ExecutorService PREPARATION_SERVICE = createPreparationService();
+    private final ExecutorService TRANSFER_SERVICE = createTransferService();
+
+    private ExecutorService createPreparationService() {
+        var threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        var counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(PREPARATION_QUEUE_SIZE), runnable -> {
+            var thread = new Thread(runnable, "media-preparation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Transfers block on the network and on the disk, and a download waits for the workers that fetch its ranges: they can't run on the common pool
+    private ExecutorService createTransferService() {
+        var counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "media-transfer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Hashes a media so that it can be prepared multiple times without being hashed again
+     *
+     * @param file the media, can be null
+     * @return a non-null hashed media
+     */
+    public HashedMedia hash(byte[] file) {
+        return new HashedMedia(file, file == null ? null : HexFormat.of().formatHex(Sha256.calculate(file)));
+    }
+
+    // Preparing a media can fork a process or fully decode it, so successful results are memoized by the hash of its content
+    // Failed probes aren't memoized, so they can be retried, and arrays are copied, so callers can't change the memoized ones
+    @SuppressWarnings("unchecked")
+    private <T> T prepare(String operation, HashedMedia media, Supplier<T> supplier, Predicate<T> successful) {
+        if (media.data() == null) {
+            return supplier.get();
+        }
+
+        var key = "%s:%s".formatted(operation, media.hash());
+        var cached = PREPARATION_CACHE.get(key);
+        if (cached != null) {
+            return (T) copyOf(cached);
+        }
+
+        var result = supplier.get();
+        if (successful.test(result)) {
+            PREPARATION_CACHE.put(key, copyOf(result));
+        }
+
+        return result;
+    }
+
+    private Object copyOf(Object value) {
+        if (value instanceof byte[] bytes) {
+            return bytes.clone();
+        }
+
+        if (value instanceof Optional<?> optional && optional.isPresent() && optional.get() instanceof byte[] bytes) {
+            return Optional.of(bytes.clone());
+        }
+
+        return value;
+    }
+
+    private <T> CompletableFuture<T> prepareAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, PREPARATION_SERVICE);
+    }
 
     public byte[] getProfilePic(byte[] file) {
+        return prepare("profile_pic", hash(file), () -> createProfilePic(file), result -> result != file);
+    }
+
+    public CompletableFuture<byte[]> getProfilePicAsync(byte[] file) {
+        return prepareAsync(() -> getProfilePic(file));
+    }
+
+    private byte[] createProfilePic(byte[] file) {
         try {
-            try(var inputStream = new ByteArrayInputStream(file)) {
-                var inputImage = ImageIO.read(inputStream);
-                var scaledImage = inputImage.getScaledInstance(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, Image.SCALE_SMOOTH);
-                var outputImage = new BufferedImage(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, BufferedImage.TYPE_INT_RGB);
-                var graphics2D = outputImage.createGraphics();
-                graphics2D.drawImage(scaledImage, 0, 0, null);
-                graphics2D.dispose();
-                try (var outputStream = new ByteArrayOutputStream()) {
-                    ImageIO.write(outputImage, "jpg", outputStream);
-                    return outputStream.toByteArray();
-                }
+            var inputImage = readImage(file, PROFILE_PIC_SIZE);
+            var scaledImage = inputImage.getScaledInstance(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, Image.SCALE_SMOOTH);
+            var outputImage = new BufferedImage(PROFILE_PIC_SIZE, PROFILE_PIC_SIZE, BufferedImage.TYPE_INT_RGB);
+            var graphics2D = outputImage.createGraphics();
+            graphics2D.drawImage(scaledImage, 0, 0, null);
+            graphics2D.dispose();
+            try (var outputStream = new ByteArrayOutputStream()) {
+                ImageIO.write(outputImage, "jpg", outputStream);
+                return outputStream.toByteArray();
             }
         } catch (Throwable exception) {
             return file;
@@ -114,8 +221,7 @@ public class Medias {
         }
     }
 
-    public CompletableFuture<MediaFile> upload(byte[] file, AttachmentType type, MediaConnection mediaConnection) {
-        var auth = URLEncoder.encode(mediaConnection.auth(), StandardCharsets.UTF_8);
+    public CompletableFuture<MediaFile> upload(byte[] file, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts) {
         var uploadData = type.inflatable() ? BytesHelper.compress(file) : file;
         var fileSha256 = Sha256.calculate(uploadData);
         var keys = MediaKeys.random(type.keyName());
@@ -123,62 +229,588 @@ public class Medias {
         var hmac = calculateMac(encryptedMedia, keys);
         var encrypted = BytesHelper.concat(encryptedMedia, hmac);
         var fileEncSha256 = Sha256.calculate(encrypted);
+        return sendUpload(ofByteArray(encrypted), fileEncSha256, type, mediaConnection, hosts)
+                .thenApplyAsync(upload -> new MediaFile(fileSha256, fileEncSha256, keys.mediaKey(), uploadData.length, upload.directPath(), upload.url()));
+    }
+
+    public CompletableFuture<MediaFile> upload(Path file, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (var input = Files.newInputStream(file)) {
+                return encryptMedia(input, type);
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Cannot read media", exception);
+            }
+        }, TRANSFER_SERVICE).thenComposeAsync(encrypted -> upload(encrypted, type, mediaConnection, hosts));
+    }
+
+    /**
+     * Uploads the media read from the provided stream.
+     * The stream is read until its end, but it's never closed: the caller keeps its ownership.
+     *
+     * @param input           the non-null stream to read
+     * @param type            the non-null type of the attachment
+     * @param mediaConnection the non-null media connection of the session
+     * @param hosts           the non-null media hosts of the session
+     * @return a future
+     */
+    public CompletableFuture<MediaFile> upload(InputStream input, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts) {
+        return CompletableFuture.supplyAsync(() -> encryptMedia(input, type), TRANSFER_SERVICE)
+                .thenComposeAsync(encrypted -> upload(encrypted, type, mediaConnection, hosts));
+    }
+
+    /**
+     * Copies the provided stream to a temporary file, so that it can be probed and later uploaded without being loaded in memory.
+     * The stream is read until its end, but it's never closed: the caller keeps its ownership.
+     * The file is also deleted when the JVM exits, in case the message that holds it is never sent.
+     *
+     * @param input the non-null stream to copy
+     * @return the non-null temporary file
+     */
+    public Path spool(@NonNull InputStream input) {
+        var file = createTempFile(null);
+        file.toFile().deleteOnExit();
+        try {
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException exception) {
+            deleteTempFile(file);
+            throw new UncheckedIOException("Cannot read media", exception);
+        }
+    }
+
+    public byte[] sha256(Path file) {
+        try (var input = Files.newInputStream(file)) {
+            var digest = Sha256.newDigest();
+            var buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read media", exception);
+        }
+    }
+
+    private CompletableFuture<MediaFile> upload(EncryptedMedia encrypted, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts) {
+        try {
+            return sendUpload(BodyPublishers.ofFile(encrypted.file()), encrypted.fileEncSha256(), type, mediaConnection, hosts)
+                    .thenApplyAsync(upload -> new MediaFile(encrypted.fileSha256(), encrypted.fileEncSha256(), encrypted.keys().mediaKey(), encrypted.fileLength(), upload.directPath(), upload.url()))
+                    .whenCompleteAsync((result, error) -> deleteTempFile(encrypted.file()));
+        } catch (IOException exception) {
+            deleteTempFile(encrypted.file());
+            return CompletableFuture.failedFuture(new UncheckedIOException("Cannot upload media", exception));
+        }
+    }
+
+    private CompletableFuture<MediaUpload> sendUpload(BodyPublisher body, byte[] fileEncSha256, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts) {
+        hosts.update(mediaConnection.hosts());
+        return sendUpload(body, fileEncSha256, type, mediaConnection, hosts, hosts.candidates(), 0, null);
+    }
+
+    // Hosts are tried from the healthiest to the least healthy one until one accepts the upload
+    private CompletableFuture<MediaUpload> sendUpload(BodyPublisher body, byte[] fileEncSha256, AttachmentType type, MediaConnection mediaConnection, MediaHosts hosts, List<String> candidates, int index, Throwable lastError) {
+        if (index >= candidates.size()) {
+            return CompletableFuture.failedFuture(new RuntimeException("Cannot upload media", lastError));
+        }
+
+        var host = candidates.get(index);
+        var auth = URLEncoder.encode(mediaConnection.auth(), StandardCharsets.UTF_8);
         var token = Base64.getUrlEncoder().withoutPadding().encodeToString(fileEncSha256);
-        var uri = URI.create("https://%s/%s/%s?auth=%s&token=%s".formatted(DEFAULT_HOST, type.path(), token, auth, token));
+        var uri = URI.create("%s://%s/%s/%s?auth=%s&token=%s".formatted(hosts.scheme(), host, type.path(), token, auth, token));
         var request = HttpRequest.newBuilder()
-                .POST(ofByteArray(encrypted))
+                .POST(body)
                 .uri(uri)
                 .header("Content-Type", "application/octet-stream")
                 .header("Accept", "application/json")
                 .header("Origin", Whatsapp.WEB_ORIGIN)
                 .build();
+        var start = System.nanoTime();
         return CLIENT.sendAsync(request, ofString()).thenApplyAsync(response -> {
             Validate.isTrue(response.statusCode() == 200, "Invalid status countryCode: %s", response.statusCode());
-            var upload = Json.readValue(response.body(), MediaUpload.class);
-            return new MediaFile(fileSha256, fileEncSha256, keys.mediaKey(), uploadData.length, upload.directPath(), upload.url());
-        });
+            return Json.readValue(response.body(), MediaUpload.class);
+        }).handleAsync((result, error) -> {
+            if (error == null) {
+                hosts.success(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return CompletableFuture.completedFuture(result);
+            }
+
+            hosts.failure(host);
+            return sendUpload(body, fileEncSha256, type, mediaConnection, hosts, candidates, index + 1, error);
+        }).thenCompose(Function.identity());
+    }
+
+    // The encrypted media has to be spooled because its sha256 is needed to build the upload url before the body is sent
+    // Hashes, encryption and mac are all computed chunk by chunk, so the source is read only once
+    private EncryptedMedia encryptMedia(InputStream input, AttachmentType type) {
+        var keys = MediaKeys.random(type.keyName());
+        var spool = createTempFile(null);
+        try (var output = Files.newOutputStream(spool)) {
+            var source = type.inflatable() ? new DeflaterInputStream(input) : input;
+            var fileSha256 = Sha256.newDigest();
+            var fileEncSha256 = Sha256.newDigest();
+            var hmac = Hmac.newSha256(keys.macKey());
+            hmac.update(keys.iv());
+            var cipher = AesCbc.newCipher(Cipher.ENCRYPT_MODE, keys.iv(), keys.cipherKey());
+            var buffer = new byte[BUFFER_SIZE];
+            var fileLength = 0L;
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                fileSha256.update(buffer, 0, read);
+                fileLength += read;
+                writeEncryptedChunk(cipher.update(buffer, 0, read), hmac, fileEncSha256, output);
+            }
+
+            writeEncryptedChunk(cipher.doFinal(), hmac, fileEncSha256, output);
+            var mac = Arrays.copyOf(hmac.doFinal(), MAC_LENGTH);
+            fileEncSha256.update(mac);
+            output.write(mac);
+            return new EncryptedMedia(spool, fileSha256.digest(), fileEncSha256.digest(), keys, fileLength);
+        } catch (IOException | GeneralSecurityException exception) {
+            deleteTempFile(spool);
+            throw new RuntimeException("Cannot encrypt media", exception);
+        } catch (Throwable throwable) {
+            deleteTempFile(spool);
+            throw throwable;
+        }
+    }
+
+    private void writeEncryptedChunk(byte[] chunk, Mac hmac, MessageDigest digest, OutputStream output) throws IOException {
+        if (chunk == null || chunk.length == 0) {
+            return;
+        }
+
+        hmac.update(chunk);
+        digest.update(chunk);
+        output.write(chunk);
+    }
+
+    private void deleteTempFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+
+        }
     }
 
     private byte[] calculateMac(byte[] encryptedMedia, MediaKeys keys) {
         var hmacInput = BytesHelper.concat(keys.iv(), encryptedMedia);
         var hmac = Hmac.calculateSha256(hmacInput, keys.macKey());
-        return Arrays.copyOf(hmac, 10);
+        return Arrays.copyOf(hmac, MAC_LENGTH);
+    }
+
+    /**
+     * Downloads a media in memory
+     * If the options allow range requests, the media is downloaded as a stream and then read in memory
+     *
+     * @param provider the non-null media to download
+     * @param options  the non-null options of the download
+     * @return a future
+     */
+    public CompletableFuture<Optional<byte[]>> download(@NonNull AttachmentProvider provider, @NonNull MediaDownloadOptions options) {
+        if (options.parallelism() > 1) {
+            return downloadStream(provider, options)
+                    .thenApplyAsync(result -> result.map(Medias::readAllBytes), TRANSFER_SERVICE);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            var attempts = createDownloadAttempts(provider, options.hosts());
+            for (var attempt : attempts) {
+                var response = attempt.send(request -> CLIENT.send(request.build(), BodyHandlers.ofByteArray()));
+                if (response.isPresent()) {
+                    return Optional.of(decryptMedia(provider, response.get().body()));
+                }
+            }
+
+            checkDownloadAttempts(attempts);
+            return Optional.empty();
+        }, TRANSFER_SERVICE);
+    }
+
+    /**
+     * Downloads a media to a temporary file and returns a stream that decrypts it
+     * If parallelism is greater than one and the host supports range requests, the media is downloaded in chunks using that many concurrent requests
+     * The chunks are reassembled in place and the media is verified in order before the stream is returned
+     *
+     * @param provider the non-null media to download
+     * @param options  the non-null options of the download
+     * @return a future
+     */
+    public CompletableFuture<Optional<InputStream>> downloadStream(@NonNull AttachmentProvider provider, @NonNull MediaDownloadOptions options) {
+        return CompletableFuture.supplyAsync(() -> {
+            var encryptedMedia = createTempFile(null);
+            try {
+                if (!fetchEncryptedMedia(provider, encryptedMedia, options.parallelism(), options.hosts())) {
+                    Files.deleteIfExists(encryptedMedia);
+                    return Optional.empty();
+                }
+
+                var keys = MediaKeys.of(provider.mediaKey(), provider.attachmentType().keyName());
+                verifyEncryptedMedia(provider, keys, encryptedMedia);
+                var cipher = AesCbc.newCipher(Cipher.DECRYPT_MODE, keys.iv(), keys.cipherKey());
+                var input = Files.newInputStream(encryptedMedia, StandardOpenOption.DELETE_ON_CLOSE);
+                return Optional.of(new CipherInputStream(input, cipher));
+            } catch (IOException exception) {
+                deleteTempFile(encryptedMedia);
+                throw new UncheckedIOException("Cannot download media", exception);
+            } catch (Throwable throwable) {
+                deleteTempFile(encryptedMedia);
+                throw throwable;
+            }
+        }, TRANSFER_SERVICE);
+    }
+
+    /**
+     * Downloads a media to the provided file
+     * The file is replaced only if the media is downloaded and verified successfully
+     *
+     * @param provider the non-null media to download
+     * @param path     the non-null destination
+     * @param options  the non-null options of the download
+     * @return a future that completes with false if the media is no longer available
+     */
+    public CompletableFuture<Boolean> download(@NonNull AttachmentProvider provider, @NonNull Path path, @NonNull MediaDownloadOptions options) {
+        return downloadStream(provider, options)
+                .thenApplyAsync(result -> result.map(stream -> transfer(stream, path)).orElse(false), TRANSFER_SERVICE);
     }
 
-    public CompletableFuture<Optional<byte[]>> download(AttachmentProvider provider) {
+    /**
+     * Downloads a media to the provided stream
+     * The stream is flushed, but it's never closed: the caller keeps its ownership.
+     *
+     * @param provider the non-null media to download
+     * @param output   the non-null destination
+     * @param options  the non-null options of the download
+     * @return a future that completes with false if the media is no longer available
+     */
+    public CompletableFuture<Boolean> download(@NonNull AttachmentProvider provider, @NonNull OutputStream output, @NonNull MediaDownloadOptions options) {
+        return downloadStream(provider, options)
+                .thenApplyAsync(result -> result.map(stream -> transfer(stream, output)).orElse(false), TRANSFER_SERVICE);
+    }
+
+    /**
+     * Downloads a media to the provided channel
+     * The channel is never closed: the caller keeps its ownership.
+     *
+     * @param provider the non-null media to download
+     * @param channel  the non-null destination
+     * @param options  the non-null options of the download
+     * @return a future that completes with false if the media is no longer available
+     */
+    public CompletableFuture<Boolean> download(@NonNull AttachmentProvider provider, @NonNull WritableByteChannel channel, @NonNull MediaDownloadOptions options) {
+        return download(provider, Channels.newOutputStream(channel), options);
+    }
+
+    private byte[] readAllBytes(InputStream input) {
+        try (input) {
+            return input.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot read media", exception);
+        }
+    }
+
+    // The media was already verified when it was spooled, so only decrypted bytes are written here
+    // The file is written next to its destination and moved only when decryption succeeds so that it's never left half written
+    private boolean transfer(InputStream input, Path path) {
         try {
-            Validate.isTrue(provider.mediaUrl() != null || provider.mediaDirectPath() != null, "Missing url and path from media");
-            var url = Objects.requireNonNullElseGet(provider.mediaUrl(), () -> createMediaUrl(provider.mediaDirectPath()));
-            var request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-            return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
-                    .thenApplyAsync(response -> handleResponse(provider, response));
-        } catch (Throwable error) {
-            return CompletableFuture.failedFuture(new RuntimeException("Cannot download media", error));
+            var parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            var temp = Files.createTempFile(parent, path.getFileName().toString(), ".part");
+            try {
+                try (var output = Files.newOutputStream(temp)) {
+                    transfer(input, output);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (Throwable throwable) {
+                Files.deleteIfExists(temp);
+                throw throwable;
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot write media to file", exception);
         }
     }
 
-    public String createMediaUrl(@NonNull String directPath) {
-        return "https://%s%s".formatted(DEFAULT_HOST, directPath);
+    private boolean transfer(InputStream input, OutputStream output) {
+        try (input) {
+            input.transferTo(output);
+            output.flush();
+            return true;
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Cannot write media", exception);
+        }
     }
 
-    private Optional<byte[]> handleResponse(AttachmentProvider provider, HttpResponse<byte[]> response) {
-        if (response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND || response.statusCode() == HttpURLConnection.HTTP_GONE) {
-            return Optional.empty();
+    public String createMediaUrl(@NonNull String directPath, @NonNull MediaHosts hosts) {
+        return createMediaUrl(hosts, hosts.candidates().get(0), directPath);
+    }
+
+    private String createMediaUrl(MediaHosts hosts, String host, String directPath) {
+        return "%s://%s%s".formatted(hosts.scheme(), host, directPath);
+    }
+
+    // The url of the media, if any, is tried first: then the direct path is tried on every known host, from the healthiest to the least healthy one
+    private List<DownloadAttempt> createDownloadAttempts(AttachmentProvider provider, MediaHosts hosts) {
+        Validate.isTrue(provider.mediaUrl() != null || provider.mediaDirectPath() != null, "Missing url and path from media");
+        var uris = new LinkedHashSet<URI>();
+        if (provider.mediaUrl() != null) {
+            uris.add(URI.create(provider.mediaUrl()));
+        }
+
+        if (provider.mediaDirectPath() != null) {
+            hosts.candidates()
+                    .stream()
+                    .map(host -> URI.create(createMediaUrl(hosts, host, provider.mediaDirectPath())))
+                    .forEach(uris::add);
+        }
+
+        return uris.stream()
+                .map(uri -> new DownloadAttempt(uri, hosts))
+                .toList();
+    }
+
+    private boolean fetchEncryptedMedia(AttachmentProvider provider, Path output, int parallelism, MediaHosts hosts) {
+        var attempts = createDownloadAttempts(provider, hosts);
+        for (var attempt : attempts) {
+            var result = attempt.send(request -> fetchEncryptedMedia(provider, request, output, parallelism));
+            if (result.isPresent()) {
+                return true;
+            }
+        }
+
+        checkDownloadAttempts(attempts);
+        return false;
+    }
+
+    // A media is reported as missing only if at least one host said so, otherwise the last error is thrown
+    private void checkDownloadAttempts(List<DownloadAttempt> attempts) {
+        if (attempts.stream().anyMatch(DownloadAttempt::missing)) {
+            return;
         }
 
-        var body = response.body();
+        var error = attempts.stream()
+                .map(DownloadAttempt::error)
+                .filter(Objects::nonNull)
+                .reduce((first, second) -> second)
+                .orElse(null);
+        throw new RuntimeException("Cannot download media", error);
+    }
+
+    // The first request asks for the first range: if the host answers with a partial response, the remaining ranges are downloaded concurrently
+    // Otherwise, the whole body was sent and it's written sequentially
+    private HttpResponse<?> fetchEncryptedMedia(AttachmentProvider provider, HttpRequest.Builder request, Path output, int parallelism) throws IOException, InterruptedException {
+        if (parallelism > 1) {
+            request.header("Range", "bytes=0-%s".formatted(RANGE_SIZE - 1));
+        }
+
+        var response = CLIENT.send(request.build(), BodyHandlers.ofInputStream());
+        try (var body = response.body(); var channel = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!isSuccessful(response)) {
+                return response;
+            }
+
+            var written = writeRange(body, channel, 0);
+            if (response.statusCode() == HttpURLConnection.HTTP_PARTIAL) {
+                var length = parseContentLength(provider, response);
+                if (written != Math.min(RANGE_SIZE, length)) {
+                    throw new IOException("Truncated range 0-%s: %s bytes".formatted(RANGE_SIZE - 1, written));
+                }
+
+                fetchRanges(request, channel, length, parallelism);
+            }
+
+            return response;
+        }
+    }
+
+    private void fetchRanges(HttpRequest.Builder request, FileChannel channel, long length, int parallelism) {
+        var ranges = new ArrayList<Long>();
+        for (var offset = (long) RANGE_SIZE; offset < length; offset += RANGE_SIZE) {
+            ranges.add(offset);
+        }
+
+        var next = new AtomicInteger();
+        var workers = IntStream.range(0, Math.min(parallelism, ranges.size()))
+                .mapToObj(ignored -> CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < ranges.size()) {
+                        var offset = ranges.get(index);
+                        fetchRange(request, channel, offset, Math.min(offset + RANGE_SIZE, length) - 1);
+                    }
+                }, TRANSFER_SERVICE))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(workers).join();
+    }
+
+    @SneakyThrows
+    private void fetchRange(HttpRequest.Builder request, FileChannel channel, long start, long end) {
+        var rangeRequest = request.copy()
+                .setHeader("Range", "bytes=%s-%s".formatted(start, end))
+                .build();
+        var response = CLIENT.send(rangeRequest, BodyHandlers.ofInputStream());
+        try (var body = response.body()) {
+            if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unexpected status code for range %s-%s: %s".formatted(start, end, response.statusCode()));
+            }
+
+            var written = writeRange(body, channel, start);
+            if (written != end - start + 1) {
+                throw new IOException("Truncated range %s-%s: %s bytes".formatted(start, end, written));
+            }
+        }
+    }
+
+    private long writeRange(InputStream body, FileChannel channel, long position) throws IOException {
+        var buffer = new byte[BUFFER_SIZE];
+        var written = 0L;
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            var wrapped = ByteBuffer.wrap(buffer, 0, read);
+            while (wrapped.hasRemaining()) {
+                written += channel.write(wrapped, position + written);
+            }
+        }
+        return written;
+    }
+
+    // The length advertised by the host decides how many ranges are requested and how big the spooled file gets, so it can't exceed the one of the media
+    private long parseContentLength(AttachmentProvider provider, HttpResponse<?> response) throws IOException {
+        var contentRange = response.headers()
+                .firstValue("Content-Range")
+                .orElseThrow(() -> new IOException("Missing Content-Range header"));
+        var separator = contentRange.lastIndexOf('/');
+        if (separator == -1 || contentRange.endsWith("*")) {
+            throw new IOException("Unknown media length: %s".formatted(contentRange));
+        }
+
+        long length;
+        try {
+            length = Long.parseLong(contentRange.substring(separator + 1).trim());
+        } catch (NumberFormatException exception) {
+            throw new IOException("Malformed media length: %s".formatted(contentRange), exception);
+        }
+
+        var maxLength = getEncryptedLength(provider).orElse(MAX_DOWNLOAD_SIZE);
+        if (length <= MAC_LENGTH || length > maxLength) {
+            throw new IOException("Unexpected media length: %s".formatted(contentRange));
+        }
+
+        return length;
+    }
+
+    // The media is padded to the block size of AES before being encrypted, then the mac is appended
+    private OptionalLong getEncryptedLength(AttachmentProvider provider) {
+        if (provider.mediaSize() <= 0) {
+            return OptionalLong.empty();
+        }
+
+        var blockSize = 16;
+        return OptionalLong.of((provider.mediaSize() / blockSize + 1) * blockSize + MAC_LENGTH);
+    }
+
+    private boolean isSuccessful(HttpResponse<?> response) {
+        return response.statusCode() == HttpURLConnection.HTTP_OK || response.statusCode() == HttpURLConnection.HTTP_PARTIAL;
+    }
+
+    private boolean isMissing(HttpResponse<?> response) {
+        return response.statusCode() == HttpURLConnection.HTTP_NOT_FOUND || response.statusCode() == HttpURLConnection.HTTP_GONE;
+    }
+
+    private byte[] decryptMedia(AttachmentProvider provider, byte[] body) {
         var sha256 = Sha256.calculate(body);
         Validate.isTrue(Arrays.equals(sha256, provider.mediaEncryptedSha256()), "Cannot decode media: Invalid sha256 signature", SecurityException.class);
-        var encryptedMedia = Arrays.copyOf(body, body.length - 10);
-        var mediaMac = Arrays.copyOfRange(body, body.length - 10, body.length);
+        var encryptedMedia = Arrays.copyOf(body, body.length - MAC_LENGTH);
+        var mediaMac = Arrays.copyOfRange(body, body.length - MAC_LENGTH, body.length);
         var keys = MediaKeys.of(provider.mediaKey(), provider.attachmentType().keyName());
         var hmac = calculateMac(encryptedMedia, keys);
         Validate.isTrue(Arrays.equals(hmac, mediaMac), "media_decryption", HmacValidationException.class);
-        var decrypted = AesCbc.decrypt(keys.iv(), encryptedMedia, keys.cipherKey());
-        return Optional.of(decrypted);
+        return AesCbc.decrypt(keys.iv(), encryptedMedia, keys.cipherKey());
+    }
+
+    // Reads the spooled media in order to compute the sha256 and the hmac, then truncates the trailing mac so that only the encrypted media is left
+    private void verifyEncryptedMedia(AttachmentProvider provider, MediaKeys keys, Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var size = channel.size();
+            Validate.isTrue(size > MAC_LENGTH, "Cannot decode media: truncated body", SecurityException.class);
+            var sha256 = Sha256.newDigest();
+            var hmac = Hmac.newSha256(keys.macKey());
+            hmac.update(keys.iv());
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            var encryptedLength = size - MAC_LENGTH;
+            var position = 0L;
+            while (position < encryptedLength) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, encryptedLength - position));
+                var read = channel.read(buffer, position);
+                Validate.isTrue(read > 0, "Cannot decode media: truncated body", SecurityException.class);
+                buffer.flip();
+                sha256.update(buffer.duplicate());
+                hmac.update(buffer);
+                position += read;
+            }
+
+            var mediaMac = ByteBuffer.allocate(MAC_LENGTH);
+            while (mediaMac.hasRemaining()) {
+                Validate.isTrue(channel.read(mediaMac, encryptedLength + mediaMac.position()) > 0, "Cannot decode media: truncated body", SecurityException.class);
+            }
+            sha256.update(mediaMac.array());
+            Validate.isTrue(Arrays.equals(sha256.digest(), provider.mediaEncryptedSha256()), "Cannot decode media: Invalid sha256 signature", SecurityException.class);
+            var expectedMac = Arrays.copyOf(hmac.doFinal(), MAC_LENGTH);
+            Validate.isTrue(Arrays.equals(expectedMac, mediaMac.array()), "media_decryption", HmacValidationException.class);
+            channel.truncate(encryptedLength);
+        }
+    }
+
+    // A download attempt against a single url: hosts that fail are reported as unhealthy, hosts that don't have the media are skipped
+    private static final class DownloadAttempt {
+        private final URI uri;
+        private final MediaHosts hosts;
+        private boolean missing;
+        private Throwable error;
+
+        private DownloadAttempt(URI uri, MediaHosts hosts) {
+            this.uri = uri;
+            this.hosts = hosts;
+        }
+
+        private <T extends HttpResponse<?>> Optional<T> send(DownloadFunction<T> function) {
+            var host = uri.getAuthority();
+            var start = System.nanoTime();
+            try {
+                var response = function.apply(HttpRequest.newBuilder().uri(uri).GET());
+                if (isMissing(response)) {
+                    this.missing = true;
+                    return Optional.empty();
+                }
+
+                if (!isSuccessful(response)) {
+                    hosts.failure(host);
+                    this.error = new IOException("Unexpected status code from %s: %s".formatted(host, response.statusCode()));
+                    return Optional.empty();
+                }
+
+                hosts.success(host, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return Optional.of(response);
+            } catch (IOException | UncheckedIOException | CompletionException exception) {
+                hosts.failure(host);
+                this.error = exception;
+                return Optional.empty();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Cannot download media", exception);
+            }
+        }
+
+        private boolean missing() {
+            return missing;
+        }
+
+        private Throwable error() {
+            return error;
+        }
+    }
+
+    private interface DownloadFunction<T> {
+        T apply(HttpRequest.Builder request) throws IOException, InterruptedException;
     }
 
     public Optional<String> getMimeType(String name) {
@@ -215,7 +847,35 @@ public class Medias {
     }
 
     public OptionalInt getPagesCount(byte[] file, String fileType){
-        try(var inputStream = new ByteArrayInputStream(file)) {
+        return getPagesCount(hash(file), fileType);
+    }
+
+    public OptionalInt getPagesCount(HashedMedia media, String fileType){
+        return prepare("pages:%s".formatted(fileType), media, () -> countPages(media.data(), fileType), OptionalInt::isPresent);
+    }
+
+    public CompletableFuture<OptionalInt> getPagesCountAsync(byte[] file, String fileType){
+        return prepareAsync(() -> getPagesCount(file, fileType));
+    }
+
+    public OptionalInt getPagesCount(Path file, String fileType){
+        try(var inputStream = Files.newInputStream(file)) {
+            return countPages(inputStream, fileType);
+        } catch (IOException exception) {
+            return OptionalInt.empty();
+        }
+    }
+
+    public CompletableFuture<OptionalInt> getPagesCountAsync(Path file, String fileType){
+        return prepareAsync(() -> getPagesCount(file, fileType));
+    }
+
+    private OptionalInt countPages(byte[] file, String fileType){
+        return countPages(new ByteArrayInputStream(file), fileType);
+    }
+
+    private OptionalInt countPages(InputStream inputStream, String fileType){
+        try {
             return switch (fileType) {
                 case "docx" -> {
                     var docx = new XWPFDocument(inputStream);
@@ -249,7 +909,45 @@ public class Medias {
     }
 
     public int getDuration(byte[] file) {
+        return getDuration(hash(file));
+    }
+
+    public int getDuration(HashedMedia media) {
+        return prepare("duration", media, () -> probeDuration(media.data()), duration -> duration > 0);
+    }
+
+    public CompletableFuture<Integer> getDurationAsync(byte[] file) {
+        return prepareAsync(() -> getDuration(file));
+    }
+
+    public CompletableFuture<Integer> getDurationAsync(HashedMedia media) {
+        return prepareAsync(() -> getDuration(media));
+    }
+
+    public int getDuration(Path file) {
+        var parsed = mapFile(file).map(MediaProbe::getMp4Duration).orElseGet(OptionalInt::empty);
+        return parsed.isPresent() ? parsed.getAsInt() : probeDuration(file);
+    }
+
+    public CompletableFuture<Integer> getDurationAsync(Path file) {
+        return prepareAsync(() -> getDuration(file));
+    }
+
+    private int probeDuration(byte[] file) {
+        var parsed = MediaProbe.getMp4Duration(file);
+        if (parsed.isPresent()) {
+            return parsed.getAsInt();
+        }
+
         var input = createTempFile(file);
+        try {
+            return probeDuration(input);
+        } finally {
+            deleteTempFile(input);
+        }
+    }
+
+    private int probeDuration(Path input) {
         try {
             var process = Runtime.getRuntime()
                     .exec(new String[]{"ffprobe", "-v", "error", "-show_entries", "format=duration", "-of", "default=noprint_wrappers=1:nokey=1", input.toString()});
@@ -260,16 +958,40 @@ public class Medias {
             return (int) Float.parseFloat(result);
         } catch (Throwable throwable) {
             return 0;
-        }finally {
-            try {
-                Files.deleteIfExists(input);
-            }catch (IOException ignored){
+        }
+    }
 
-            }
+    // Container headers are read through a mapping, so a large video is never copied on the heap
+    private Optional<ByteBuffer> mapFile(Path file) {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE)));
+        } catch (IOException | UnsupportedOperationException exception) {
+            return Optional.empty();
         }
     }
 
     public MediaDimensions getDimensions(byte[] file, boolean video) {
+        return getDimensions(hash(file), video);
+    }
+
+    public MediaDimensions getDimensions(HashedMedia media, boolean video) {
+        return prepare("dimensions:%s".formatted(video), media, () -> probeDimensions(media.data(), video), dimensions -> !MediaDimensions.DEFAULT.equals(dimensions));
+    }
+
+    public CompletableFuture<MediaDimensions> getDimensionsAsync(byte[] file, boolean video) {
+        return prepareAsync(() -> getDimensions(file, video));
+    }
+
+    public CompletableFuture<MediaDimensions> getDimensionsAsync(HashedMedia media, boolean video) {
+        return prepareAsync(() -> getDimensions(media, video));
+    }
+
+    private MediaDimensions probeDimensions(byte[] file, boolean video) {
+        var parsed = video ? MediaProbe.getMp4Dimensions(file) : MediaProbe.getImageDimensions(file);
+        if (parsed.isPresent()) {
+            return parsed.get();
+        }
+
         try {
             if(!video){
                 var originalImage = ImageIO.read(new ByteArrayInputStream(file));
@@ -278,17 +1000,7 @@ public class Medias {
 
             var input = createTempFile(file);
             try {
-                var process = Runtime.getRuntime()
-                        .exec(new String[]{"ffprobe", "-v", "error", "-select_streams", "v", "-show_entries", "stream=width,height", "-of", "json", input.toString()});
-                if (process.waitFor() != 0) {
-                    return MediaDimensions.DEFAULT;
-                }
-                var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                var ffprobe = Json.readValue(result, FfprobeResult.class);
-                if (ffprobe.streams() == null || ffprobe.streams().isEmpty()) {
-                    return MediaDimensions.DEFAULT;
-                }
-                return ffprobe.streams().get(0);
+                return probeVideoDimensions(input);
             }finally {
                 Files.deleteIfExists(input);
             }
@@ -297,6 +1009,49 @@ public class Medias {
         }
     }
 
+    public MediaDimensions getDimensions(Path file, boolean video) {
+        if (!video) {
+            return readFile(file)
+                    .map(data -> getDimensions(data, false))
+                    .orElse(MediaDimensions.DEFAULT);
+        }
+
+        return mapFile(file)
+                .flatMap(MediaProbe::getMp4Dimensions)
+                .orElseGet(() -> probeVideoDimensions(file));
+    }
+
+    public CompletableFuture<MediaDimensions> getDimensionsAsync(Path file, boolean video) {
+        return prepareAsync(() -> getDimensions(file, video));
+    }
+
+    private MediaDimensions probeVideoDimensions(Path input) {
+        try {
+            var process = Runtime.getRuntime()
+                    .exec(new String[]{"ffprobe", "-v", "error", "-select_streams", "v", "-show_entries", "stream=width,height", "-of", "json", input.toString()});
+            if (process.waitFor() != 0) {
+                return MediaDimensions.DEFAULT;
+            }
+            var result = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            var ffprobe = Json.readValue(result, FfprobeResult.class);
+            if (ffprobe.streams() == null || ffprobe.streams().isEmpty()) {
+                return MediaDimensions.DEFAULT;
+            }
+            return ffprobe.streams().get(0);
+        } catch (Exception throwable) {
+            return MediaDimensions.DEFAULT;
+        }
+    }
+
+    // Images and audios have to be fully decoded anyway, so they are read in memory only for the time of the probe
+    private Optional<byte[]> readFile(Path file) {
+        try {
+            return Optional.of(Files.readAllBytes(file));
+        } catch (IOException exception) {
+            return Optional.empty();
+        }
+    }
+
     private Path createTempFile(byte[] data) {
         try {
             var file = Files.createTempFile(UUID.randomUUID().toString(), "");
@@ -313,7 +1068,52 @@ public class Medias {
         return getThumbnail(file, Format.ofDocument(fileType));
     }
 
+    public Optional<byte[]> getThumbnail(HashedMedia media, String fileType){
+        return getThumbnail(media, Format.ofDocument(fileType));
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(byte[] file, String fileType){
+        return getThumbnailAsync(file, Format.ofDocument(fileType));
+    }
+
     public Optional<byte[]> getThumbnail(byte[] file, Format format) {
+        return getThumbnail(hash(file), format);
+    }
+
+    public Optional<byte[]> getThumbnail(HashedMedia media, Format format) {
+        return prepare("thumbnail:%s".formatted(format), media, () -> createThumbnail(media.data(), format), Optional::isPresent);
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(byte[] file, Format format) {
+        return prepareAsync(() -> getThumbnail(file, format));
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(HashedMedia media, Format format) {
+        return prepareAsync(() -> getThumbnail(media, format));
+    }
+
+    public Optional<byte[]> getThumbnail(Path file, String fileType){
+        return getThumbnail(file, Format.ofDocument(fileType));
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(Path file, String fileType){
+        return getThumbnailAsync(file, Format.ofDocument(fileType));
+    }
+
+    public Optional<byte[]> getThumbnail(Path file, Format format) {
+        return switch (format) {
+            case UNKNOWN -> Optional.empty();
+            case VIDEO -> getVideoThumbnail(file);
+            case PDF -> getPdfThumbnail(file);
+            default -> readFile(file).flatMap(data -> getThumbnail(data, format));
+        };
+    }
+
+    public CompletableFuture<Optional<byte[]>> getThumbnailAsync(Path file, Format format) {
+        return prepareAsync(() -> getThumbnail(file, format));
+    }
+
+    private Optional<byte[]> createThumbnail(byte[] file, Format format) {
         return switch (format) {
             case UNKNOWN -> Optional.empty();
             case JPG, PNG -> getImageThumbnail(file, format);
@@ -325,7 +1125,7 @@ public class Medias {
 
     private Optional<byte[]> getImageThumbnail(byte[] file, Format format) {
         try {
-            var image = ImageIO.read(new ByteArrayInputStream(file));
+            var image = readImage(file, THUMBNAIL_SIZE);
             if (image == null) {
                 return Optional.empty();
             }
@@ -346,8 +1146,42 @@ public class Medias {
         }
     }
 
+    // Skips pixels while decoding when the image is much bigger than the target size, so a full resolution raster is never allocated
+    private BufferedImage readImage(byte[] file, int targetSize) throws IOException {
+        var dimensions = MediaProbe.getImageDimensions(file);
+        if (dimensions.isEmpty()) {
+            return ImageIO.read(new ByteArrayInputStream(file));
+        }
+
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(file))) {
+            var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            var reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                var parameters = reader.getDefaultReadParam();
+                var step = Math.max(1, Math.min(dimensions.get().width(), dimensions.get().height()) / targetSize);
+                parameters.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, parameters);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
     private Optional<byte[]> getVideoThumbnail(byte[] file) {
         var input = createTempFile(file);
+        try {
+            return getVideoThumbnail(input);
+        } finally {
+            deleteTempFile(input);
+        }
+    }
+
+    private Optional<byte[]> getVideoThumbnail(Path input) {
         var output = createTempFile(null);
         try {
             var process = Runtime.getRuntime()
@@ -359,17 +1193,28 @@ public class Medias {
         } catch (Throwable throwable) {
             return Optional.empty();
         } finally {
-            try {
-                Files.delete(input);
-                Files.delete(output);
-            } catch (IOException ignored) {
-
-            }
+            deleteTempFile(output);
         }
     }
 
     private Optional<byte[]> getPdfThumbnail(byte[] file) {
-        try (var document = PDDocument.load(file); var outputStream = new ByteArrayOutputStream()) {
+        try (var document = PDDocument.load(file)) {
+            return getPdfThumbnail(document);
+        } catch (Throwable throwable) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<byte[]> getPdfThumbnail(Path file) {
+        try (var document = PDDocument.load(file.toFile())) {
+            return getPdfThumbnail(document);
+        } catch (Throwable throwable) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<byte[]> getPdfThumbnail(PDDocument document) {
+        try (var outputStream = new ByteArrayOutputStream()) {
             var renderer = new PDFRenderer(document);
             var image = renderer.renderImage(0);
             var thumb = new BufferedImage(Spec.Whatsapp.THUMBNAIL_WIDTH, Spec.Whatsapp.THUMBNAIL_HEIGHT, BufferedImage.TYPE_INT_RGB);
@@ -421,6 +1266,24 @@ public class Medias {
 
     }
 
+    /**
+     * A media and the hex encoded sha256 that keys its memoized preparations
+     *
+     * @param data the media, can be null
+     * @param hash the hash of the media, null if the media is null
+     */
+    public record HashedMedia(byte[] data, String hash) {
+
+    }
+
+    private record EncryptedMedia(Path file, byte[] fileSha256, byte[] fileEncSha256, MediaKeys keys, long fileLength) {
+
+    }
+
+    public Optional<byte[]> getAudioWaveForm(Path file) {
+        return readFile(file).flatMap(Medias::getAudioWaveForm);
+    }
+
     public Optional<byte[]> getAudioWaveForm(byte[] audioData) {
         try {
             var rawData = toFloatArray(audioData);
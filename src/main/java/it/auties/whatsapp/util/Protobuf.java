@@ -3,24 +3,230 @@ package it.auties.whatsapp.util;
 import it.auties.protobuf.base.ProtobufDeserializationException;
 import it.auties.protobuf.base.ProtobufMessage;
 import it.auties.protobuf.base.ProtobufSerializationException;
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Consumer;
 
 public class Protobuf {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ClassValue<Codec<?>> CODECS = new ClassValue<>() {
+        @Override
+        protected Codec<?> computeValue(Class<?> type) {
+            return new Codec<>(type);
+        }
+    };
+
+    /**
+     * Returns the codec for a type of message
+     * The methods generated for the type are resolved only the first time this method is called for it
+     *
+     * @param clazz the non-null type of the message
+     * @return a non-null codec
+     */
     @SuppressWarnings("unchecked")
+    public static <T> Codec<T> codec(@NonNull Class<T> clazz) {
+        return (Codec<T>) CODECS.get(clazz);
+    }
+
     public static <T> T readMessage(byte[] message, Class<T> clazz) {
+        return codec(clazz).decode(message);
+    }
+
+    /**
+     * Reads a message from a stream without materializing one of its repeated fields:
+     * every entry of the field at {@code streamedIndex} is decoded on its own and handed to {@code consumer} as soon as it's read,
+     * while all the other fields are buffered and decoded into the returned message once the stream is exhausted.
+     * This means that the memory needed to read the message is bounded by the size of its largest streamed entry plus its other fields.
+     *
+     * @param input         the non-null stream to read, it's not closed by this method
+     * @param clazz         the type of the message to read
+     * @param streamedIndex the index of the repeated message field to stream
+     * @param streamedType  the type of the entries of the streamed field
+     * @param consumer      the consumer for the streamed entries
+     * @return the message without the streamed field
+     */
+    public static <T, R> T readMessage(InputStream input, Class<T> clazz, int streamedIndex, Class<R> streamedType, Consumer<R> consumer) {
         try {
-            var method = clazz.getMethod("ofProtobuf", byte[].class);
-            return (T) method.invoke(null, new Object[]{message});
-        }catch (Throwable exception){
+            var streamedCodec = codec(streamedType);
+            var remaining = new ByteArrayOutputStream();
+            int tag;
+            while ((tag = readVarInt(input, null)) != -1) {
+                var index = tag >>> 3;
+                var wireType = tag & 7;
+                if(index == streamedIndex && wireType == 2){
+                    var entry = new ByteArrayOutputStream(BUFFER_SIZE);
+                    copy(input, entry, readVarInt(input, null));
+                    consumer.accept(streamedCodec.decode(entry.toByteArray()));
+                    continue;
+                }
+
+                writeVarInt(remaining, tag);
+                switch (wireType) {
+                    case 0 -> readVarInt(input, remaining);
+                    case 1 -> copy(input, remaining, 8);
+                    case 2 -> copy(input, remaining, readVarInt(input, remaining));
+                    case 5 -> copy(input, remaining, 4);
+                    default -> throw ProtobufDeserializationException.invalidTag(tag);
+                }
+            }
+
+            return readMessage(remaining.toByteArray(), clazz);
+        }catch (IOException exception){
             throw new ProtobufDeserializationException(exception);
         }
     }
 
+    private static int readVarInt(InputStream input, ByteArrayOutputStream copy) throws IOException {
+        var result = 0;
+        for(var shift = 0; shift < 64; shift += 7){
+            var read = input.read();
+            if(read == -1){
+                if(shift == 0 && copy == null){
+                    return -1;
+                }
+
+                throw ProtobufDeserializationException.truncatedMessage();
+            }
+
+            if(copy != null){
+                copy.write(read);
+            }
+
+            if(shift < 32){
+                result |= (read & 0x7F) << shift;
+            }
+
+            if((read & 0x80) == 0){
+                return result;
+            }
+        }
+
+        throw ProtobufDeserializationException.malformedVarInt();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        output.write(value);
+    }
+
+    // The output grows with the bytes that are actually read, so a corrupted length fails as a truncated message instead of being allocated upfront
+    private static void copy(InputStream input, ByteArrayOutputStream output, int length) throws IOException {
+        if(length < 0){
+            throw ProtobufDeserializationException.negativeSize();
+        }
+
+        var buffer = new byte[Math.min(length, BUFFER_SIZE)];
+        var remaining = length;
+        while (remaining > 0){
+            var read = input.read(buffer, 0, Math.min(remaining, buffer.length));
+            if(read == -1){
+                throw ProtobufDeserializationException.truncatedMessage();
+            }
+
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     public static byte[] writeMessage(ProtobufMessage object) {
-        try {
-            var method = object.getClass().getMethod("toEncodedProtobuf");
-            return (byte[]) method.invoke(object);
-        }catch (Throwable exception){
-            throw new ProtobufSerializationException(exception);
+        var codec = (Codec<ProtobufMessage>) codec(object.getClass());
+        return codec.encode(object);
+    }
+
+    /**
+     * A codec for a type of message, backed by method handles to the methods generated for that type
+     *
+     * @param <T> the type of the message
+     */
+    public static final class Codec<T> {
+        private static final MethodType DECODER_TYPE = MethodType.methodType(Object.class, byte[].class);
+        private static final MethodType ENCODER_TYPE = MethodType.methodType(byte[].class, Object.class);
+
+        private final Class<T> type;
+        private final MethodHandle decoder;
+        private final MethodHandle encoder;
+
+        private Codec(Class<T> type) {
+            this.type = type;
+            this.decoder = findMethod(type, true);
+            this.encoder = findMethod(type, false);
+        }
+
+        private static MethodHandle findMethod(Class<?> type, boolean decoder) {
+            for(var lookup : new MethodHandles.Lookup[]{MethodHandles.lookup(), MethodHandles.publicLookup()}){
+                try {
+                    return decoder
+                            ? lookup.findStatic(type, "ofProtobuf", MethodType.methodType(type, byte[].class)).asType(DECODER_TYPE)
+                            : lookup.findVirtual(type, "toEncodedProtobuf", MethodType.methodType(byte[].class)).asType(ENCODER_TYPE);
+                }catch (IllegalAccessException exception){
+                    // The type isn't accessible from this module, try with the public lookup
+                }catch (NoSuchMethodException exception){
+                    return null;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the type of message handled by this codec
+         *
+         * @return a non-null class
+         */
+        public Class<T> type() {
+            return type;
+        }
+
+        /**
+         * Decodes a message
+         *
+         * @param message the encoded message
+         * @return the decoded message
+         */
+        @SuppressWarnings("unchecked")
+        public T decode(byte[] message) {
+            if(decoder == null){
+                throw new ProtobufDeserializationException("Missing decoder for %s".formatted(type.getName()));
+            }
+
+            try {
+                return (T) decoder.invokeExact(message);
+            }catch (ProtobufDeserializationException | Error exception){
+                throw exception;
+            }catch (Throwable exception){
+                throw new ProtobufDeserializationException(exception);
+            }
+        }
+
+        /**
+         * Encodes a message
+         *
+         * @param message the non-null message
+         * @return the encoded message
+         */
+        public byte[] encode(@NonNull T message) {
+            if(encoder == null){
+                throw new ProtobufSerializationException("Missing encoder for %s".formatted(type.getName()));
+            }
+
+            try {
+                return (byte[]) encoder.invokeExact((Object) message);
+            }catch (ProtobufSerializationException | Error exception){
+                throw exception;
+            }catch (Throwable exception){
+                throw new ProtobufSerializationException(exception);
+            }
         }
     }
 }
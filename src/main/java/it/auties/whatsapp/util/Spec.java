@@ -5,6 +5,7 @@ import it.auties.whatsapp.model.signal.auth.Version;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.HexFormat;
 
@@ -39,6 +40,12 @@ public class Spec {
         public static final byte[] REGISTRATION_PUBLIC_KEY = HexFormat.of().parseHex("8e8c0f74c3ebc5d7a6865c6c3c843856b06121cce8ea774d22fb6f122512302d");
         public static final String MOBILE_IOS_STATIC = "0a1mLfGUIBVrMKF1RdvLI5lkRBvof6vn0fD2QRSM";
         public static final int COMPANION_PAIRING_TIMEOUT = 10;
+        public static final Duration MEDIA_RETENTION = Duration.ofDays(30);
+        public static final int MEDIA_UPLOAD_CACHE_SIZE = 1000;
+        public static final Duration STATUS_LIFETIME = Duration.ofHours(24);
+        public static final int MAX_CALLS = 1000;
+        public static final Duration TERMINATED_CALL_TTL = Duration.ofDays(1);
+        public static final Duration ONGOING_CALL_TTL = Duration.ofHours(6);
     }
 
     public final static class Signal {
@@ -50,6 +57,8 @@ public class Spec {
         public static final int KEY_TYPE = 5;
         public static final byte[] KEY_BUNDLE_TYPE = new byte[]{5};
         public static final int MAX_MESSAGES = 2000;
+        public static final int MAX_SENDER_KEY_STATES = 5;
+        public static final Duration PRE_KEY_GRACE_WINDOW = Duration.ofDays(1);
         public static final String SKMSG = "skmsg";
         public static final String PKMSG = "pkmsg";
         public static final String MSG = "msg";
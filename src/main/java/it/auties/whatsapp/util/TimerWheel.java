@@ -0,0 +1,205 @@
+package it.auties.whatsapp.util;
+
+import lombok.NonNull;
+
+import java.lang.System.Logger;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * A hashed wheel timer: tasks are hashed into a fixed number of buckets by their deadline and a single thread expires one bucket per tick.
+ * Scheduling and cancelling a task take O(1), regardless of how many tasks are pending, at the cost of a precision of one tick.
+ * Tasks run on the thread of the timer, so they should be short and never block.
+ * The thread is a daemon that is started when the first task is scheduled.
+ */
+public final class TimerWheel {
+    private static final int NEW = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final String name;
+    private final long tickNanos;
+    private final Queue<Timeout>[] buckets;
+    private final Queue<Timeout> pending;
+    private final Logger logger;
+    private volatile Thread worker;
+    private long startTime;
+
+    /**
+     * Creates a new timer
+     *
+     * @param name         the non-null name of the thread of this timer
+     * @param tickDuration the non-null precision of this timer
+     * @param wheelSize    the number of buckets, a higher number means less work per tick for long delays
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(@NonNull String name, @NonNull Duration tickDuration, int wheelSize) {
+        Validate.isTrue(!tickDuration.isNegative() && !tickDuration.isZero(), "Expected a positive tick duration, got: %s", tickDuration);
+        Validate.isTrue(wheelSize > 0, "Expected a positive wheel size, got: %s", wheelSize);
+        this.name = name;
+        this.tickNanos = tickDuration.toNanos();
+        this.buckets = new Queue[wheelSize];
+        for (var i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.logger = System.getLogger(name);
+    }
+
+    /**
+     * Schedules a task
+     *
+     * @param task  the non-null task to run
+     * @param delay the non-null delay after which the task should run
+     * @return a handle that can be used to cancel the task
+     */
+    public Timeout schedule(@NonNull Runnable task, @NonNull Duration delay) {
+        start();
+        var timeout = new Timeout(task, System.nanoTime() + Math.max(0, delay.toNanos()));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void start() {
+        if (worker != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (worker != null) {
+                return;
+            }
+
+            startTime = System.nanoTime();
+            var thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+            worker = thread;
+        }
+    }
+
+    private void run() {
+        var tick = 0L;
+        while (!Thread.currentThread().isInterrupted()) {
+            var deadline = startTime + (tick + 1) * tickNanos;
+            waitUntil(deadline);
+            transferPending(tick);
+            expire(buckets[(int) (tick % buckets.length)], deadline);
+            tick++;
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        var remaining = deadline - System.nanoTime();
+        while (remaining > 0) {
+            LockSupport.parkNanos(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private void transferPending(long tick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state.get() == CANCELLED) {
+                continue;
+            }
+
+            var ticks = Math.max(tick, (timeout.deadline - startTime) / tickNanos);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks % buckets.length)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long deadline) {
+        var iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            var timeout = iterator.next();
+            if (timeout.state.get() == CANCELLED) {
+                iterator.remove();
+                continue;
+            }
+
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                continue;
+            }
+
+            if (timeout.deadline > deadline) {
+                continue;
+            }
+
+            iterator.remove();
+            timeout.expire();
+        }
+    }
+
+    /**
+     * A task scheduled on a {@link TimerWheel}
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+        private long rounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(NEW);
+        }
+
+        /**
+         * Cancels this task if it didn't run yet
+         *
+         * @return whether the task was cancelled
+         */
+        public boolean cancel() {
+            return state.compareAndSet(NEW, CANCELLED);
+        }
+
+        /**
+         * Returns whether this task was cancelled
+         *
+         * @return a boolean
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * Returns whether this task already ran
+         *
+         * @return a boolean
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /**
+         * Returns how long until this task runs
+         *
+         * @return a non-null duration, zero if the deadline passed
+         */
+        public Duration remaining() {
+            return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(NEW, EXPIRED)) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                logger.log(WARNING, "Timer task failed", throwable);
+            }
+        }
+    }
+}
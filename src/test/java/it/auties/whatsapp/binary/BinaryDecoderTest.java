@@ -0,0 +1,27 @@
+package it.auties.whatsapp.binary;
+
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.exchange.Node;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class BinaryDecoderTest {
+    @Test
+    public void testJidRoundTrip() {
+        var jids = new ContactJid[]{
+                ContactJid.of("393495089819@s.whatsapp.net"),
+                ContactJid.of("120363041234567890@g.us"),
+                ContactJid.of("status@broadcast"),
+                ContactJid.of("393495089819:12@s.whatsapp.net"),
+                ContactJid.ofServer(ContactJid.Server.WHATSAPP)
+        };
+        var encoder = new BinaryEncoder();
+        var decoder = new BinaryDecoder();
+        for (var jid : jids) {
+            var decoded = decoder.decode(encoder.encode(Node.of("iq", Map.of("to", jid))));
+            Assertions.assertSame(jid, decoded.attributes().getJid("to").orElseThrow(), jid.toString());
+        }
+    }
+}
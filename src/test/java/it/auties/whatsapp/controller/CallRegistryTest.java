@@ -0,0 +1,116 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.model.call.Call;
+import it.auties.whatsapp.model.call.CallRetention;
+import it.auties.whatsapp.model.call.CallStatus;
+import it.auties.whatsapp.model.companion.CompanionDevice;
+import it.auties.whatsapp.model.contact.ContactJid;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class CallRegistryTest {
+    private static final CallRetention RETENTION = new CallRetention(3, Duration.ofHours(1), Duration.ofHours(1));
+
+    @Test
+    public void testTerminatedCallsOverflowOldestFirst() {
+        var registry = new CallRegistry();
+        registry.add(call("ongoing", CallStatus.RINGING, 0), RETENTION, null);
+        registry.add(call("a", CallStatus.REJECTED, 0), RETENTION, null);
+        registry.add(call("b", CallStatus.TIMED_OUT, 0), RETENTION, null);
+        registry.add(call("c", CallStatus.REJECTED, 0), RETENTION, null);
+        Assertions.assertEquals(Set.of("ongoing", "b", "c"), ids(registry));
+        registry.add(call("d", CallStatus.REJECTED, 0), RETENTION, null);
+        Assertions.assertEquals(Set.of("ongoing", "c", "d"), ids(registry));
+    }
+
+    @Test
+    public void testLoadedCallsExpire() {
+        var registry = load(
+                call("stale", CallStatus.RINGING, 2),
+                call("accepted", CallStatus.ACCEPTED, 2),
+                call("expired", CallStatus.REJECTED, 2),
+                call("recent", CallStatus.REJECTED, 0),
+                call("ongoing", CallStatus.ACCEPTED, 0)
+        );
+        Assertions.assertEquals(3, registry.removeExpired(RETENTION));
+        Assertions.assertEquals(Set.of("recent", "ongoing"), ids(registry));
+    }
+
+    @Test
+    public void testStaleCallsAreKeptWithoutOngoingTtl() {
+        var registry = load(call("stale", CallStatus.RINGING, 2), call("expired", CallStatus.REJECTED, 2));
+        Assertions.assertEquals(0, registry.removeExpired(CallRetention.unlimited()));
+        Assertions.assertEquals(1, registry.removeExpired(new CallRetention(0, Duration.ofHours(1), Duration.ZERO)));
+        Assertions.assertEquals(Set.of("stale"), ids(registry));
+    }
+
+    @Test
+    public void testUpdatedCallIsNotRemovedByItsStaleUpdate() {
+        var registry = load(call("call", CallStatus.RINGING, 2));
+        var previous = registry.add(call("call", CallStatus.REJECTED, 2), RETENTION, null);
+        Assertions.assertEquals(CallStatus.RINGING, previous.map(Call::status).orElseThrow());
+        Assertions.assertEquals(CallStatus.REJECTED, registry.find("call").map(Call::status).orElseThrow());
+    }
+
+    @Test
+    public void testCallLogReceivesTerminatedCalls() {
+        var log = new ArrayList<Call>();
+        var registry = new CallRegistry();
+        var ringing = call("call", CallStatus.RINGING, 0);
+        var rejected = call("call", CallStatus.REJECTED, 0);
+        registry.add(ringing, RETENTION, log::add);
+        Assertions.assertEquals(Set.of("call"), ids(registry));
+        registry.add(rejected, RETENTION, log::add);
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertEquals(List.of(ringing, rejected), log);
+    }
+
+    @Test
+    public void testStoreRemovesExpiredCallsOnLookup() {
+        var store = Store.builder()
+                .uuid(UUID.randomUUID())
+                .clientType(ClientType.WEB)
+                .device(CompanionDevice.windows())
+                .calls(load(call("stale", CallStatus.RINGING, 8), call("recent", CallStatus.RINGING, 0)))
+                .build();
+        Assertions.assertTrue(store.findCallById("stale").isEmpty());
+        Assertions.assertTrue(store.findCallById("recent").isPresent());
+        Assertions.assertEquals(1, store.calls().size());
+    }
+
+    @Test
+    public void testRetentionValidation() {
+        Assertions.assertTrue(CallRetention.unlimited().isUnlimited());
+        Assertions.assertFalse(CallRetention.defaultRetention().isUnlimited());
+        Assertions.assertFalse(new CallRetention(0, Duration.ZERO, Duration.ofHours(1)).isUnlimited());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallRetention(-1, Duration.ZERO, Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallRetention(0, Duration.ofSeconds(-1), Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CallRetention(0, Duration.ZERO, Duration.ofSeconds(-1)));
+    }
+
+    private CallRegistry load(Call... calls) {
+        return new CallRegistry(List.of(calls).stream().collect(Collectors.toMap(Call::id, Function.identity())));
+    }
+
+    private Set<String> ids(CallRegistry registry) {
+        return registry.values()
+                .stream()
+                .map(Call::id)
+                .collect(Collectors.toSet());
+    }
+
+    private Call call(String id, CallStatus status, int hoursAgo) {
+        var jid = ContactJid.of("1@s.whatsapp.net");
+        return new Call(jid, jid, id, ZonedDateTime.now().minusHours(hoursAgo), false, status, false);
+    }
+}
@@ -0,0 +1,91 @@
+package it.auties.whatsapp.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+public class DefaultMediaCacheTest {
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("media-cache");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (var walker = Files.walk(directory)) {
+            for (var file : walker.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testMemoryOnlyByDefault() {
+        var cache = new DefaultMediaCache(4);
+        cache.put("a", new byte[]{1, 2, 3});
+        cache.put("b", new byte[]{4, 5, 6});
+        Assertions.assertTrue(cache.get("a").isEmpty());
+        Assertions.assertArrayEquals(new byte[]{4, 5, 6}, cache.get("b").orElseThrow());
+        Assertions.assertEquals(1, cache.stats().evictions());
+        Assertions.assertEquals(0, cache.stats().diskSize());
+    }
+
+    @Test
+    public void testSpillToDisk() {
+        var cache = new DefaultMediaCache(4, directory, 1024);
+        cache.put("a", new byte[]{1, 2, 3});
+        cache.put("b", new byte[]{4, 5, 6});
+        Assertions.assertTrue(Files.exists(directory.resolve("a")));
+        Assertions.assertEquals(3, cache.stats().diskSize());
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, cache.get("a").orElseThrow());
+        Assertions.assertEquals(0, cache.stats().evictions());
+    }
+
+    @Test
+    public void testDiskEviction() {
+        var cache = new DefaultMediaCache(0, directory, 4);
+        cache.put("a", new byte[]{1, 2, 3});
+        cache.put("b", new byte[]{4, 5, 6});
+        Assertions.assertFalse(Files.exists(directory.resolve("a")));
+        Assertions.assertTrue(cache.get("a").isEmpty());
+        Assertions.assertArrayEquals(new byte[]{4, 5, 6}, cache.get("b").orElseThrow());
+        Assertions.assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    public void testDiskIndexedOnRestart() {
+        new DefaultMediaCache(0, directory, 1024).put("a", new byte[]{1, 2, 3});
+        var restarted = new DefaultMediaCache(0, directory, 1024);
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, restarted.get("a").orElseThrow());
+        Assertions.assertEquals(3, restarted.stats().diskSize());
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        var cache = new DefaultMediaCache(0, directory, 1024);
+        cache.put("a", new byte[]{1});
+        cache.put("b", new byte[]{2});
+        cache.remove("a");
+        Assertions.assertFalse(Files.exists(directory.resolve("a")));
+        cache.clear();
+        Assertions.assertFalse(Files.exists(directory.resolve("b")));
+        Assertions.assertEquals(0, cache.stats().diskSize());
+    }
+
+    @Test
+    public void testMissingFileIsAMiss() throws IOException {
+        var cache = new DefaultMediaCache(0, directory, 1024);
+        cache.put("a", new byte[]{1});
+        Files.delete(directory.resolve("a"));
+        Assertions.assertTrue(cache.get("a").isEmpty());
+        Assertions.assertEquals(0, cache.stats().diskSize());
+    }
+}
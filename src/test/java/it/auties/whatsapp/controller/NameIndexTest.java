@@ -0,0 +1,162 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.companion.CompanionDevice;
+import it.auties.whatsapp.model.contact.Contact;
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.util.Smile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class NameIndexTest {
+    @Test
+    public void testExactLookupIgnoresCase() {
+        var index = new NameIndex<Integer>();
+        index.update(1, List.of("Alice"));
+        index.update(2, List.of("alice", "Bob"));
+        Assertions.assertEquals(Set.of(1, 2), index.find("ALICE"));
+        Assertions.assertEquals(Set.of(2), index.find("bob"));
+        Assertions.assertEquals(Set.of(), index.find("Ali"));
+    }
+
+    @Test
+    public void testPrefixLookupIgnoresCase() {
+        var index = new NameIndex<Integer>();
+        index.update(1, List.of("Alice"));
+        index.update(2, List.of("Alfred"));
+        index.update(3, List.of("Bob"));
+        Assertions.assertEquals(Set.of(1, 2), index.findByPrefix("AL"));
+        Assertions.assertEquals(Set.of(1), index.findByPrefix("alic"));
+        Assertions.assertEquals(Set.of(1, 2, 3), index.findByPrefix(""));
+        Assertions.assertEquals(Set.of(), index.findByPrefix("c"));
+    }
+
+    @Test
+    public void testNullNamesAreIgnored() {
+        var index = new NameIndex<Integer>();
+        index.update(1, Arrays.asList("Alice", null));
+        Assertions.assertEquals(Set.of(1), index.find("alice"));
+        index.update(1, Arrays.asList(null, null));
+        Assertions.assertEquals(Set.of(), index.find("alice"));
+    }
+
+    @Test
+    public void testRenameUnlinksOldName() {
+        var index = new NameIndex<Integer>();
+        index.update(1, List.of("Alice"));
+        index.update(2, List.of("Alice"));
+        index.update(1, List.of("Carol"));
+        Assertions.assertEquals(Set.of(2), index.find("alice"));
+        Assertions.assertEquals(Set.of(1), index.find("carol"));
+        index.update(2, List.of("Dave"));
+        Assertions.assertEquals(Set.of(), index.find("alice"));
+        Assertions.assertEquals(Set.of(), index.findByPrefix("al"));
+    }
+
+    @Test
+    public void testRemoveUnlinksAllNames() {
+        var index = new NameIndex<Integer>();
+        index.update(1, List.of("Alice", "Ally"));
+        index.update(2, List.of("Ally"));
+        index.remove(1);
+        Assertions.assertEquals(Set.of(), index.find("alice"));
+        Assertions.assertEquals(Set.of(2), index.find("ally"));
+        Assertions.assertEquals(Set.of(2), index.findByPrefix("al"));
+        index.remove(1);
+        Assertions.assertEquals(Set.of(2), index.find("ally"));
+    }
+
+    @Test
+    public void testPopulateRunsOnce() {
+        var index = new NameIndex<Integer>();
+        index.populate(List.of("Alice", "Bob"), String::length, List::of);
+        Assertions.assertEquals(Set.of(5), index.find("alice"));
+        Assertions.assertEquals(Set.of(3), index.find("bob"));
+        index.populate(List.of("Carol"), String::length, List::of);
+        Assertions.assertEquals(Set.of(), index.find("carol"));
+    }
+
+    @Test
+    public void testStoreFindsContactsByName() {
+        var store = createStore();
+        var alice = store.addContact(contact("1", "Alice Smith", "Alice"));
+        var alfred = store.addContact(contact("2", "Alfred Jones", null));
+        store.addContact(contact("3", "Bob", null));
+        Assertions.assertEquals(Set.of(alice), store.findContactsByName("alice"));
+        Assertions.assertEquals(Set.of(alice, alfred), store.findContactsByNamePrefix("AL"));
+        Assertions.assertEquals(Set.of(), store.findContactsByNamePrefix("carol"));
+        alice.fullName("Carol Smith");
+        alice.chosenName(null);
+        store.updateContactNames(alice);
+        Assertions.assertEquals(Set.of(alfred), store.findContactsByNamePrefix("al"));
+        Assertions.assertEquals(Set.of(alice), store.findContactsByNamePrefix("carol"));
+    }
+
+    @Test
+    public void testStoreFindsChatsByName() {
+        var store = createStore();
+        var alice = chat("1", "Alice");
+        var alfred = chat("2", "Alfred");
+        store.addChatDirect(alice);
+        store.addChatDirect(alfred);
+        store.addChatDirect(chat("3", "Bob"));
+        Assertions.assertEquals(Set.of(alice, alfred), store.findChatsByNamePrefix("aL"));
+        Assertions.assertSame(alice, store.findChatByName("ALICE").orElseThrow());
+        alice.name("Carol");
+        store.updateChatName(alice);
+        Assertions.assertEquals(Set.of(alfred), store.findChatsByNamePrefix("al"));
+        Assertions.assertEquals(Set.of(alice), store.findChatsByNamePrefix("car"));
+        store.removeChat(alfred.jid());
+        Assertions.assertEquals(Set.of(), store.findChatsByNamePrefix("al"));
+    }
+
+    @Test
+    public void testDeserializedStoreIsIndexedLazily() throws IOException {
+        var store = createStore();
+        store.addContact(contact("1", "Alice Smith", null));
+        var chat = chat("2", "Alfred");
+        store.addChatDirect(chat);
+        // Chats are serialized separately from the store, so they are added back like the default serializer does
+        var decoded = Smile.readValue(Smile.writeValueAsBytes(store), Store.class);
+        decoded.addChatDirect(Smile.readValue(Smile.writeValueAsBytes(chat), Chat.class));
+        var contacts = decoded.findContactsByNamePrefix("ali")
+                .stream()
+                .map(Contact::jid)
+                .collect(Collectors.toUnmodifiableSet());
+        Assertions.assertEquals(Set.of(ContactJid.of("1@s.whatsapp.net")), contacts);
+        var chats = decoded.findChatsByNamePrefix("alf")
+                .stream()
+                .map(Chat::jid)
+                .collect(Collectors.toUnmodifiableSet());
+        Assertions.assertEquals(Set.of(ContactJid.of("2@s.whatsapp.net")), chats);
+    }
+
+    private Contact contact(String user, String fullName, String chosenName) {
+        var contact = Contact.ofJid(ContactJid.of(user + "@s.whatsapp.net"));
+        contact.fullName(fullName);
+        contact.chosenName(chosenName);
+        return contact;
+    }
+
+    private Chat chat(String user, String name) {
+        var chat = Chat.ofJid(ContactJid.of(user + "@s.whatsapp.net"));
+        chat.name(name);
+        return chat;
+    }
+
+    private Store createStore() {
+        return Store.builder()
+                .uuid(UUID.randomUUID())
+                .clientType(ClientType.WEB)
+                .device(CompanionDevice.windows())
+                .build();
+    }
+}
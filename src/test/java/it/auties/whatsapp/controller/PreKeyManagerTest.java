@@ -0,0 +1,98 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.keypair.SignalPreKeyPair;
+import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.Smile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PreKeyManagerTest {
+    private static final Duration GRACE_WINDOW = Duration.ofDays(1);
+
+    @Test
+    public void testCreatedIdsFollowLastId() {
+        var manager = new PreKeyManager();
+        Assertions.assertEquals(List.of(1, 2, 3), ids(manager.create(3)));
+        manager.add(SignalPreKeyPair.random(10));
+        Assertions.assertEquals(List.of(11, 12), ids(manager.create(2)));
+        Assertions.assertEquals(12, manager.lastId());
+        Assertions.assertEquals(6, manager.size());
+    }
+
+    @Test
+    public void testConsumedPreKeysAreRemovedAfterGraceWindow() {
+        var manager = new PreKeyManager();
+        manager.create(3);
+        manager.consume(1);
+        Assertions.assertEquals(0, manager.removeExpired(GRACE_WINDOW, Duration.ZERO));
+        Assertions.assertTrue(manager.find(1).isPresent());
+        Assertions.assertEquals(1, manager.removeExpired(Duration.ZERO, Duration.ZERO));
+        Assertions.assertTrue(manager.find(1).isEmpty());
+        Assertions.assertEquals(List.of(2, 3), ids(manager.values()));
+    }
+
+    @Test
+    public void testOldPreKeysAreRemoved() {
+        var now = Clock.nowSeconds();
+        var day = Duration.ofDays(1).toSeconds();
+        var manager = new PreKeyManager(List.of(
+                entry(1, now - 3 * day),
+                entry(2, now - day / 2),
+                entry(3, 0),
+                entry(4, now)
+        ));
+        Assertions.assertEquals(0, manager.removeExpired(GRACE_WINDOW, Duration.ZERO));
+        Assertions.assertEquals(1, manager.removeExpired(GRACE_WINDOW, Duration.ofDays(1)));
+        Assertions.assertEquals(List.of(2, 3, 4), ids(manager.values()));
+    }
+
+    @Test
+    public void testLastPreKeyIsNeverRemoved() {
+        var manager = new PreKeyManager();
+        manager.create(2);
+        manager.consume(1);
+        manager.consume(2);
+        Assertions.assertEquals(1, manager.removeExpired(Duration.ZERO, Duration.ZERO));
+        Assertions.assertEquals(List.of(2), ids(manager.values()));
+        Assertions.assertEquals(List.of(3), ids(manager.create(1)));
+    }
+
+    @Test
+    public void testSmileRoundTrip() throws IOException {
+        var manager = new PreKeyManager();
+        manager.create(2);
+        manager.consume(1);
+        var decoded = Smile.readValue(Smile.writeValueAsBytes(manager), PreKeyManager.class);
+        Assertions.assertEquals(List.of(1, 2), ids(decoded.values()));
+        Assertions.assertArrayEquals(manager.find(2).orElseThrow().publicKey(), decoded.find(2).orElseThrow().publicKey());
+        Assertions.assertEquals(1, decoded.removeExpired(Duration.ZERO, Duration.ZERO));
+    }
+
+    @Test
+    public void testLegacyListIsDeserialized() throws IOException {
+        var legacy = new ArrayList<>(List.of(SignalPreKeyPair.random(1), SignalPreKeyPair.random(2)));
+        var decoded = Smile.readValue(Smile.writeValueAsBytes(legacy), PreKeyManager.class);
+        Assertions.assertEquals(List.of(1, 2), ids(decoded.values()));
+        Assertions.assertArrayEquals(legacy.get(0).publicKey(), decoded.find(1).orElseThrow().publicKey());
+        Assertions.assertArrayEquals(legacy.get(0).privateKey(), decoded.find(1).orElseThrow().privateKey());
+        Assertions.assertEquals(0, decoded.removeExpired(Duration.ZERO, Duration.ofSeconds(1)));
+        Assertions.assertEquals(List.of(3), ids(decoded.create(1)));
+    }
+
+    private PreKeyManager.Entry entry(int id, long createdSeconds) {
+        var keyPair = SignalKeyPair.random();
+        return new PreKeyManager.Entry(id, keyPair.publicKey(), keyPair.privateKey(), createdSeconds, 0);
+    }
+
+    private List<Integer> ids(Iterable<SignalPreKeyPair> preKeys) {
+        var results = new ArrayList<Integer>();
+        preKeys.forEach(preKey -> results.add(preKey.id()));
+        return results;
+    }
+}
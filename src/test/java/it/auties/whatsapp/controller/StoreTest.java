@@ -0,0 +1,205 @@
+package it.auties.whatsapp.controller;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.companion.CompanionDevice;
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.info.MessageInfo;
+import it.auties.whatsapp.model.message.model.MessageKey;
+import it.auties.whatsapp.model.sync.HistorySyncMessage;
+import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.Protobuf;
+import it.auties.whatsapp.util.Spec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+public class StoreTest {
+    @Test
+    public void testRemoveMessageUpdatesViews() {
+        var store = createStore();
+        var first = Chat.ofJid(ContactJid.of("1@s.whatsapp.net"));
+        var second = Chat.ofJid(ContactJid.of("2@s.whatsapp.net"));
+        store.addChatDirect(first);
+        store.addChatDirect(second);
+        first.addNewMessage(message(first, "a", 10));
+        var newest = message(first, "b", 30);
+        first.addNewMessage(newest);
+        second.addNewMessage(message(second, "c", 20));
+        store.updateChatViews(first);
+        store.updateChatViews(second);
+        Assertions.assertEquals(List.of(first, second), store.chats());
+
+        store.removeMessage(first, newest);
+        Assertions.assertEquals(List.of(second, first), store.chats());
+    }
+
+    @Test
+    public void testMessageMemoryBudget() {
+        var store = createStore();
+        var first = Chat.ofJid(ContactJid.of("1@s.whatsapp.net"));
+        var second = Chat.ofJid(ContactJid.of("2@s.whatsapp.net"));
+        store.addChatDirect(first);
+        store.addChatDirect(second);
+        first.addNewMessage(message(first, "a", 10));
+        second.addNewMessage(message(second, "b", 20));
+        var starred = message(first, "c", 30);
+        starred.starred(true);
+        first.addNewMessage(starred);
+        second.addNewMessage(message(second, "d", 40));
+        store.messageMemoryBudget(first.residentBytes() + second.residentBytes() - 1);
+        Assertions.assertEquals(1, store.applyMessageMemoryBudget());
+        Assertions.assertEquals(List.of("c"), ids(first));
+        Assertions.assertEquals(List.of("b", "d"), ids(second));
+        store.messageMemoryBudget(1);
+        Assertions.assertEquals(2, store.applyMessageMemoryBudget());
+        Assertions.assertEquals(List.of("c"), ids(first));
+        Assertions.assertTrue(second.messages().isEmpty());
+        Assertions.assertEquals(3, store.evictedMessagesCount());
+    }
+
+    @Test
+    public void testAddChatMergesIntoExistingChat() {
+        var store = createStore();
+        var jid = ContactJid.of("1@s.whatsapp.net");
+        var existing = store.addNewChat(jid);
+        existing.name("Name");
+        var live = message(existing, "live", 30);
+        existing.addNewMessage(live);
+        var incoming = Chat.builder()
+                .jid(jid)
+                .archived(true)
+                .build();
+        incoming.addNewMessage(message(incoming, "history", 10));
+        Assertions.assertEquals(Optional.of(existing), store.addChat(incoming));
+        Assertions.assertSame(existing, store.findChatByJid(jid).orElseThrow());
+        Assertions.assertEquals(List.of("history", "live"), ids(existing));
+        Assertions.assertTrue(existing.archived());
+        Assertions.assertEquals("Name", existing.name());
+        Assertions.assertSame(existing, store.findMessageById(existing, "history").orElseThrow().chat());
+        Assertions.assertSame(existing, store.addNewChat(jid));
+    }
+
+    @Test
+    public void testAddChatsMergesIntoExistingChat() {
+        var store = createStore();
+        var jid = ContactJid.of("1@s.whatsapp.net");
+        var existing = store.addNewChat(jid);
+        existing.addNewMessage(message(existing, "live", 30));
+        var incoming = Chat.ofJid(jid);
+        incoming.name("History");
+        incoming.addNewMessage(message(incoming, "history", 10));
+        var created = Chat.ofJid(ContactJid.of("2@s.whatsapp.net"));
+        created.addNewMessage(message(created, "other", 20));
+        Assertions.assertEquals(2, store.addChats(List.of(incoming, created)));
+        Assertions.assertSame(existing, store.findChatByJid(jid).orElseThrow());
+        Assertions.assertSame(created, store.findChatByJid(created.jid()).orElseThrow());
+        Assertions.assertEquals(List.of("history", "live"), ids(existing));
+        Assertions.assertEquals("History", existing.name());
+        Assertions.assertSame(existing, store.findMessageById(existing, "history").orElseThrow().chat());
+        Assertions.assertEquals(List.of("other"), ids(created));
+    }
+
+    @Test
+    public void testExpiredStatusIsIgnored() {
+        var store = createStore();
+        var sender = ContactJid.of("1@s.whatsapp.net");
+        store.addStatus(status(sender, "a", Clock.nowSeconds() - Spec.Whatsapp.STATUS_LIFETIME.toSeconds()));
+        var live = status(sender, "b", Clock.nowSeconds());
+        store.addStatus(live);
+        Assertions.assertEquals(Set.of(live), Set.copyOf(store.status()));
+        Assertions.assertTrue(store.findStatusById("a").isEmpty());
+        Assertions.assertEquals(Optional.of(live), store.findStatusById("b"));
+    }
+
+    @Test
+    public void testCompactionIsSuspendedWhileEncoding() {
+        var store = createStore();
+        store.messageCompactionAge(Duration.ofSeconds(1));
+        var chat = Chat.ofJid(ContactJid.of("1@s.whatsapp.net"));
+        store.addChatDirect(chat);
+        chat.addNewMessage(message(chat, "a", 10));
+        var encoded = store.withoutCompaction(() -> {
+            Assertions.assertEquals(0, CompletableFuture.supplyAsync(store::compactMessages).join());
+            return Protobuf.writeMessage(chat);
+        });
+        Assertions.assertEquals(List.of("a"), ids(Protobuf.readMessage(encoded, Chat.class)));
+        Assertions.assertEquals(1, store.compactMessages());
+        Assertions.assertTrue(chat.messages().iterator().next().isCompacted());
+    }
+
+    @Test
+    public void testRestoredStatusIsExpired() {
+        var sender = ContactJid.of("1@s.whatsapp.net");
+        var expired = status(sender, "a", Clock.nowSeconds() - Spec.Whatsapp.STATUS_LIFETIME.toSeconds() - 1);
+        var live = status(sender, "b", Clock.nowSeconds());
+        var status = new ConcurrentHashMap<ContactJid, ConcurrentLinkedDeque<MessageInfo>>();
+        status.put(sender, new ConcurrentLinkedDeque<>(List.of(expired, live)));
+        var store = createStore(status);
+        Assertions.assertEquals(Set.of(live), Set.copyOf(store.status()));
+        Assertions.assertEquals(List.of(live), List.copyOf(store.findStatusBySender(sender)));
+    }
+
+    @Test
+    public void testStatusAreSortedBySender() {
+        var store = createStore();
+        var sender = ContactJid.of("1@s.whatsapp.net");
+        var newest = status(sender, "a", Clock.nowSeconds());
+        var oldest = status(sender, "b", Clock.nowSeconds() - 60);
+        store.addStatus(newest);
+        store.addStatus(oldest);
+        Assertions.assertEquals(List.of(oldest, newest), List.copyOf(store.findStatusBySender(sender)));
+    }
+
+    private Store createStore() {
+        return createStore(new ConcurrentHashMap<>());
+    }
+
+    private Store createStore(ConcurrentHashMap<ContactJid, ConcurrentLinkedDeque<MessageInfo>> status) {
+        return Store.builder()
+                .uuid(UUID.randomUUID())
+                .clientType(ClientType.WEB)
+                .device(CompanionDevice.windows())
+                .status(status)
+                .build();
+    }
+
+    private MessageInfo status(ContactJid sender, String id, long timestampSeconds) {
+        var key = MessageKey.builder()
+                .chatJid(ContactJid.of("status@broadcast"))
+                .senderJid(sender)
+                .id(id)
+                .build();
+        return MessageInfo.builder()
+                .key(key)
+                .senderJid(sender)
+                .timestampSeconds(timestampSeconds)
+                .build();
+    }
+
+    private List<String> ids(Chat chat) {
+        return chat.messages()
+                .stream()
+                .map(HistorySyncMessage::id)
+                .toList();
+    }
+
+    private MessageInfo message(Chat chat, String id, long timestampSeconds) {
+        var key = MessageKey.builder()
+                .chatJid(chat.jid())
+                .id(id)
+                .build();
+        return MessageInfo.builder()
+                .key(key)
+                .timestampSeconds(timestampSeconds)
+                .build();
+    }
+}
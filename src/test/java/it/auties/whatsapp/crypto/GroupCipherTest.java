@@ -0,0 +1,79 @@
+package it.auties.whatsapp.crypto;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.controller.Keys;
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.model.signal.sender.SenderKeyName;
+import it.auties.whatsapp.model.signal.session.SessionAddress;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class GroupCipherTest {
+    private static final SenderKeyName NAME = new SenderKeyName("group", new SessionAddress("1", 0));
+    private static final byte[] SEED = new byte[32];
+    private static final SignalKeyPair SIGNING_KEY = SignalKeyPair.random();
+
+    @Test
+    public void testSkippedMessageKeysAreRetained() {
+        var messages = encrypt(6);
+        var keys = createKeys(10, 10);
+        var cipher = new GroupCipher(NAME, keys);
+        Assertions.assertEquals("5", decrypt(cipher, messages.get(5)));
+        Assertions.assertEquals("0", decrypt(cipher, messages.get(0)));
+        Assertions.assertEquals(0, keys.evictedMessageKeys().get());
+        Assertions.assertEquals(0, keys.rejectedMessageKeys().get());
+    }
+
+    @Test
+    public void testOldestSkippedMessageKeysAreEvicted() {
+        var messages = encrypt(6);
+        var keys = createKeys(10, 3);
+        var cipher = new GroupCipher(NAME, keys);
+        Assertions.assertEquals("5", decrypt(cipher, messages.get(5)));
+        Assertions.assertEquals(2, keys.evictedMessageKeys().get());
+        Assertions.assertEquals("2", decrypt(cipher, messages.get(2)));
+        Assertions.assertThrows(RuntimeException.class, () -> decrypt(cipher, messages.get(1)));
+        Assertions.assertEquals(0, keys.rejectedMessageKeys().get());
+    }
+
+    @Test
+    public void testSkippingTooManyKeysIsRejected() {
+        var messages = encrypt(12);
+        var keys = createKeys(5, 10);
+        var cipher = new GroupCipher(NAME, keys);
+        Assertions.assertThrows(RuntimeException.class, () -> decrypt(cipher, messages.get(11)));
+        Assertions.assertEquals(1, keys.rejectedMessageKeys().get());
+        Assertions.assertEquals(0, keys.evictedMessageKeys().get());
+        Assertions.assertTrue(keys.findSenderKeyByName(NAME).findState().messageKeys().isEmpty());
+        Assertions.assertEquals("5", decrypt(cipher, messages.get(5)));
+    }
+
+    private static List<byte[]> encrypt(int count) {
+        var cipher = new GroupCipher(NAME, createKeys(2000, 2000));
+        var results = new ArrayList<byte[]>();
+        for (var index = 0; index < count; index++) {
+            results.add(cipher.encrypt(String.valueOf(index).getBytes(StandardCharsets.UTF_8)).message());
+        }
+        return results;
+    }
+
+    private static String decrypt(GroupCipher cipher, byte[] message) {
+        return new String(cipher.decrypt(message), StandardCharsets.UTF_8);
+    }
+
+    private static Keys createKeys(int skipped, int retained) {
+        var keys = Keys.builder()
+                .uuid(UUID.randomUUID())
+                .clientType(ClientType.WEB)
+                .build();
+        keys.maxSkippedMessageKeys(skipped);
+        keys.maxRetainedMessageKeys(retained);
+        keys.findSenderKeyByName(NAME).addState(1, 0, SEED, SIGNING_KEY);
+        return keys;
+    }
+}
@@ -0,0 +1,99 @@
+package it.auties.whatsapp.crypto;
+
+import it.auties.whatsapp.api.ClientType;
+import it.auties.whatsapp.controller.Keys;
+import it.auties.whatsapp.model.signal.session.SessionAddress;
+import it.auties.whatsapp.model.signal.session.SessionChain;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class SessionCipherTest {
+    @Test
+    public void testFastForwardMatchesStepDerivation() {
+        for (var retained : List.of(1, 5, 2000)) {
+            for (var counter : List.of(1, 2, 7, 64, 1500)) {
+                var keys = createKeys(retained);
+                var expected = createChain();
+                var expectedEvicted = fillMessageKeysByStep(expected, counter, retained);
+                var actual = createChain();
+                new SessionCipher(new SessionAddress("1", 0), keys).fillMessageKeys(actual, counter);
+                var message = "retained %s, counter %s".formatted(retained, counter);
+                Assertions.assertEquals(expected.counter().get(), actual.counter().get(), message);
+                Assertions.assertArrayEquals(expected.key().get(), actual.key().get(), message);
+                Assertions.assertEquals(encode(expected), encode(actual), message);
+                Assertions.assertEquals(expectedEvicted, keys.evictedMessageKeys().get(), message);
+            }
+        }
+    }
+
+    @Test
+    public void testFastForwardIsResumable() {
+        var keys = createKeys(2000);
+        var cipher = new SessionCipher(new SessionAddress("1", 0), keys);
+        var expected = createChain();
+        fillMessageKeysByStep(expected, 50, 2000);
+        var actual = createChain();
+        cipher.fillMessageKeys(actual, 20);
+        cipher.fillMessageKeys(actual, 50);
+        cipher.fillMessageKeys(actual, 30);
+        Assertions.assertEquals(50, actual.counter().get());
+        Assertions.assertArrayEquals(expected.key().get(), actual.key().get());
+        Assertions.assertEquals(encode(expected), encode(actual));
+    }
+
+    @Test
+    public void testSkippingTooManyKeysIsRejected() {
+        var keys = createKeys(2000);
+        keys.maxSkippedMessageKeys(10);
+        var chain = createChain();
+        var cipher = new SessionCipher(new SessionAddress("1", 0), keys);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cipher.fillMessageKeys(chain, 11));
+        Assertions.assertEquals(1, keys.rejectedMessageKeys().get());
+        Assertions.assertEquals(0, chain.counter().get());
+        Assertions.assertTrue(chain.messageKeys().isEmpty());
+    }
+
+    // The derivation that was used before chains were fast-forwarded in a loop, kept to check that the keys didn't change
+    private static int fillMessageKeysByStep(SessionChain chain, int counter, int retained) {
+        if (chain.counter().get() >= counter) {
+            return 0;
+        }
+
+        var messagesHmac = Hmac.calculateSha256(new byte[]{1}, chain.key().get());
+        var evicted = chain.addMessageKey(chain.counter().get() + 1, messagesHmac, retained);
+        var keyHmac = Hmac.calculateSha256(new byte[]{2}, chain.key().get());
+        chain.key().set(keyHmac);
+        chain.counter().getAndIncrement();
+        return evicted + fillMessageKeysByStep(chain, counter, retained);
+    }
+
+    private static Map<Integer, String> encode(SessionChain chain) {
+        return chain.messageKeys()
+                .entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> Arrays.toString(entry.getValue())));
+    }
+
+    private static SessionChain createChain() {
+        var key = new byte[32];
+        new Random(42).nextBytes(key);
+        return new SessionChain(0, key);
+    }
+
+    private static Keys createKeys(int retained) {
+        var keys = Keys.builder()
+                .uuid(UUID.randomUUID())
+                .clientType(ClientType.WEB)
+                .build();
+        keys.maxSkippedMessageKeys(2000);
+        keys.maxRetainedMessageKeys(retained);
+        return keys;
+    }
+}
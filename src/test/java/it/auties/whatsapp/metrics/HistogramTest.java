@@ -0,0 +1,104 @@
+package it.auties.whatsapp.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class HistogramTest {
+    @Test
+    public void testEmptySnapshot() {
+        var snapshot = new Histogram().snapshot();
+        Assertions.assertEquals(new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0, 0), snapshot);
+        Assertions.assertEquals(0, snapshot.mean());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        var histogram = new Histogram();
+        IntStream.rangeClosed(1, 10).forEach(histogram::record);
+        var snapshot = histogram.snapshot();
+        Assertions.assertEquals(10, snapshot.count());
+        Assertions.assertEquals(55, snapshot.sum());
+        Assertions.assertEquals(1, snapshot.min());
+        Assertions.assertEquals(10, snapshot.max());
+        Assertions.assertEquals(5, snapshot.p50());
+        Assertions.assertEquals(9, snapshot.p90());
+        Assertions.assertEquals(10, snapshot.p99());
+        Assertions.assertEquals(5.5, snapshot.mean());
+    }
+
+    @Test
+    public void testPercentilesAreWithinRelativeError() {
+        var random = new Random(42);
+        var values = random.longs(100_000, 0, Long.MAX_VALUE >> random.nextInt(8))
+                .map(value -> value >> random.nextInt(60))
+                .toArray();
+        var histogram = new Histogram();
+        Arrays.stream(values).forEach(histogram::record);
+        Arrays.sort(values);
+        var snapshot = histogram.snapshot();
+        Assertions.assertEquals(values[0], snapshot.min());
+        Assertions.assertEquals(values[values.length - 1], snapshot.max());
+        assertWithinError(exactPercentile(values, 0.5), snapshot.p50());
+        assertWithinError(exactPercentile(values, 0.9), snapshot.p90());
+        assertWithinError(exactPercentile(values, 0.99), snapshot.p99());
+        assertWithinError(exactPercentile(values, 0.999), snapshot.p999());
+    }
+
+    @Test
+    public void testExtremeValues() {
+        var histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        var snapshot = histogram.snapshot();
+        Assertions.assertEquals(0, snapshot.min());
+        Assertions.assertEquals(Long.MAX_VALUE, snapshot.max());
+        Assertions.assertEquals(0, snapshot.p50());
+        Assertions.assertEquals(Long.MAX_VALUE, snapshot.p99());
+    }
+
+    @Test
+    public void testConcurrentRecording() {
+        var histogram = new Histogram();
+        IntStream.range(0, 100_000)
+                .parallel()
+                .forEach(index -> histogram.record(index % 100));
+        var snapshot = histogram.snapshot();
+        Assertions.assertEquals(100_000, snapshot.count());
+        Assertions.assertEquals(1000L * 4950, snapshot.sum());
+        Assertions.assertEquals(0, snapshot.min());
+        Assertions.assertEquals(99, snapshot.max());
+    }
+
+    @Test
+    public void testInMemoryRecorder() {
+        var recorder = new InMemoryMetricsRecorder();
+        recorder.increment(MetricNames.SOCKET_FRAMES_SENT);
+        recorder.increment(MetricNames.SOCKET_FRAMES_SENT, 2);
+        recorder.gauge(MetricNames.LISTENER_QUEUE_DEPTH, () -> 7);
+        recorder.record(MetricNames.MESSAGE_ENCRYPT, 12);
+        var snapshot = recorder.snapshot();
+        Assertions.assertEquals(3, snapshot.counters().get(MetricNames.SOCKET_FRAMES_SENT));
+        Assertions.assertEquals(7, snapshot.gauges().get(MetricNames.LISTENER_QUEUE_DEPTH));
+        Assertions.assertEquals(1, snapshot.histograms().get(MetricNames.MESSAGE_ENCRYPT).count());
+        recorder.reset();
+        var reset = recorder.snapshot();
+        Assertions.assertTrue(reset.counters().isEmpty());
+        Assertions.assertTrue(reset.histograms().isEmpty());
+        Assertions.assertEquals(7, reset.gauges().get(MetricNames.LISTENER_QUEUE_DEPTH));
+    }
+
+    private long exactPercentile(long[] sorted, double percentile) {
+        var rank = Math.max(1, (long) Math.ceil(sorted.length * percentile));
+        return sorted[(int) rank - 1];
+    }
+
+    // A percentile is reported as the highest value of its bucket, so it can only overestimate by at most 1/16
+    private void assertWithinError(long expected, long actual) {
+        Assertions.assertTrue(actual >= expected, "%s < %s".formatted(actual, expected));
+        Assertions.assertTrue(actual - expected <= expected / 16, "%s too far from %s".formatted(actual, expected));
+    }
+}
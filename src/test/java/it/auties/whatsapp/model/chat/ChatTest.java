@@ -0,0 +1,144 @@
+package it.auties.whatsapp.model.chat;
+
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.info.MessageInfo;
+import it.auties.whatsapp.model.message.model.MessageKey;
+import it.auties.whatsapp.model.sync.HistorySyncMessage;
+import it.auties.whatsapp.util.Clock;
+import it.auties.whatsapp.util.Protobuf;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.IntStream;
+
+public class ChatTest {
+    private static final ContactJid JID = ContactJid.of("1@s.whatsapp.net");
+
+    @Test
+    public void testMergeInterleavedMessages() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", 10), message("c", 30), message("e", 50)));
+        chat.mergeMessages(List.of(message("f", 60), message("b", 20), message("0", 5), message("c", 30), message("d", 40)));
+        Assertions.assertEquals(List.of("0", "a", "b", "c", "d", "e", "f"), ids(chat));
+        Assertions.assertEquals(60, chat.timestampSeconds());
+    }
+
+    @Test
+    public void testMergeOlderAndNewerMessages() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("b", 20), message("c", 30)));
+        chat.mergeMessages(List.of(message("a", 10), message("d", 40)));
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), ids(chat));
+    }
+
+    @Test
+    public void testMergeIntoEmptyChat() {
+        var chat = Chat.ofJid(JID);
+        chat.mergeMessages(List.of(message("b", 20), message("a", 10), message("a", 10)));
+        Assertions.assertEquals(List.of("a", "b"), ids(chat));
+    }
+
+    @Test
+    public void testEvictByCount() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", 10), message("b", 20), message("c", 30), message("d", 40)));
+        Assertions.assertEquals(2, chat.evictMessages(ChatRetention.ofMessages(2), ignored -> false));
+        Assertions.assertEquals(List.of("c", "d"), ids(chat));
+    }
+
+    @Test
+    public void testEvictByAge() {
+        var now = Clock.nowSeconds();
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", now - 7200), message("b", now - 60), message("c", now)));
+        Assertions.assertEquals(1, chat.evictMessages(ChatRetention.ofAge(Duration.ofHours(1)), ignored -> false));
+        Assertions.assertEquals(List.of("b", "c"), ids(chat));
+    }
+
+    @Test
+    public void testEvictSkipsProtectedMessages() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", 10), message("b", 20), message("c", 30)));
+        Assertions.assertEquals(2, chat.evictMessages(ChatRetention.ofMessages(1), info -> info.id().equals("a")));
+        Assertions.assertEquals(List.of("a"), ids(chat));
+        Assertions.assertEquals(0, chat.evictMessages(ChatRetention.unlimited(), ignored -> false));
+    }
+
+    @Test
+    public void testEvictOldestMessage() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", 10), message("b", 20)));
+        Assertions.assertTrue(chat.evictOldestMessage(info -> info.id().equals("a")) > 0);
+        Assertions.assertEquals(List.of("a"), ids(chat));
+        Assertions.assertEquals(0, chat.evictOldestMessage(ignored -> true));
+    }
+
+    @Test
+    public void testResidentBytesAreBalanced() {
+        var chat = Chat.ofJid(JID);
+        Assertions.assertEquals(0, chat.residentBytes());
+        var messages = IntStream.range(0, 100)
+                .mapToObj(index -> message(String.valueOf(index), index))
+                .toList();
+        chat.addMessages(messages);
+        Assertions.assertTrue(chat.residentBytes() > 0);
+        messages.forEach(entry -> chat.removeMessage(entry.messageInfo()));
+        Assertions.assertEquals(0, chat.residentBytes());
+    }
+
+    @Test
+    public void testRetentionValidation() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChatRetention.ofMessages(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChatRetention.ofAge(Duration.ofSeconds(-1)));
+        Assertions.assertTrue(ChatRetention.unlimited().isUnlimited());
+        Assertions.assertFalse(ChatRetention.unlimited().isExpired(0));
+        Assertions.assertTrue(ChatRetention.ofAge(Duration.ofMinutes(1)).isExpired(Clock.nowSeconds() - 120));
+        Assertions.assertFalse(ChatRetention.ofAge(Duration.ofMinutes(1)).isExpired(Clock.nowSeconds()));
+    }
+
+    @Test
+    public void testCompactedMessagesAreNotDecodedByEviction() {
+        var chat = Chat.ofJid(JID);
+        var messages = List.of(message("a", 10), message("b", 20), message("c", 30));
+        chat.addMessages(messages);
+        messages.forEach(entry -> entry.compact(ignored -> true, ignored -> {}));
+        Assertions.assertEquals(1, chat.evictMessages(ChatRetention.ofMessages(2), ignored -> true));
+        Assertions.assertTrue(chat.evictOldestMessage(ignored -> true) > 0);
+        Assertions.assertTrue(chat.removeMessage("c"));
+        Assertions.assertTrue(chat.messages().isEmpty());
+        Assertions.assertTrue(messages.stream().allMatch(HistorySyncMessage::isCompacted));
+    }
+
+    @Test
+    public void testInflatedMessagesAreEncoded() {
+        var chat = Chat.ofJid(JID);
+        chat.addMessages(List.of(message("a", 10), message("b", 20)));
+        chat.messages().forEach(entry -> entry.compact(ignored -> true, ignored -> {}));
+        chat.inflateMessages();
+        var decoded = Protobuf.readMessage(Protobuf.writeMessage(chat), Chat.class);
+        Assertions.assertEquals(List.of("a", "b"), ids(decoded));
+        Assertions.assertEquals(OptionalLong.of(10), decoded.oldestMessageTimestampSeconds());
+    }
+
+    private static HistorySyncMessage message(String id, long timestampSeconds) {
+        var key = MessageKey.builder()
+                .chatJid(JID)
+                .id(id)
+                .build();
+        var info = MessageInfo.builder()
+                .key(key)
+                .timestampSeconds(timestampSeconds)
+                .build();
+        return new HistorySyncMessage(info, 0);
+    }
+
+    private static List<String> ids(Chat chat) {
+        return chat.messages()
+                .stream()
+                .map(HistorySyncMessage::id)
+                .toList();
+    }
+}
@@ -0,0 +1,142 @@
+package it.auties.whatsapp.model.contact;
+
+import it.auties.whatsapp.model.contact.ContactJid.Server;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class ContactJidTest {
+    private static final List<String> JIDS = List.of(
+            "393495089819@s.whatsapp.net",
+            "393495089819@c.us",
+            "120363041234567890@g.us",
+            "status@broadcast",
+            "1234567890@broadcast",
+            "ABCDEF0123456789@call",
+            "123456789012345@lid",
+            "393495089819:12@s.whatsapp.net",
+            "393495089819_1@s.whatsapp.net",
+            "393495089819_1:3@s.whatsapp.net",
+            "393495089819_abc:3@s.whatsapp.net",
+            "393495089819_abc@s.whatsapp.net",
+            "123456789012345_1:2@lid",
+            "393495089819:0@s.whatsapp.net",
+            "393495089819",
+            "393495089819:5",
+            "s.whatsapp.net",
+            "g.us",
+            "broadcast",
+            "call",
+            "lid",
+            "",
+            "393495089819@example.com",
+            "393495089819:4@example.com",
+            "user@domain@s.whatsapp.net",
+            "393495089819:abc@s.whatsapp.net"
+    );
+
+    @Test
+    public void testParsingMatchesSplitParser() {
+        for (var jid : JIDS) {
+            Assertions.assertEquals(outcome(() -> parseBySplitting(jid)), outcome(() -> ContactJid.of(jid)), jid);
+        }
+    }
+
+    @Test
+    public void testParsingWithServerMatchesSplitParser() {
+        for (var jid : JIDS) {
+            for (var server : Server.values()) {
+                Assertions.assertEquals(outcome(() -> parseBySplitting(jid, server)), outcome(() -> ContactJid.of(jid, server)), "%s %s".formatted(jid, server));
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutServer() {
+        Assertions.assertEquals("393495089819:12", ContactJid.withoutServer("393495089819:12@s.whatsapp.net"));
+        Assertions.assertEquals("status", ContactJid.withoutServer("status@broadcast"));
+        Assertions.assertEquals("s.whatsapp.net", ContactJid.withoutServer("s.whatsapp.net"));
+        Assertions.assertEquals("393495089819@example.com", ContactJid.withoutServer("393495089819@example.com"));
+        Assertions.assertNull(ContactJid.withoutServer(null));
+    }
+
+    @Test
+    public void testComponents() {
+        var jid = ContactJid.of("393495089819_1:3@s.whatsapp.net");
+        Assertions.assertEquals("393495089819", jid.user());
+        Assertions.assertEquals(Server.WHATSAPP, jid.server());
+        Assertions.assertEquals(3, jid.device());
+        Assertions.assertEquals(1, jid.agent());
+        Assertions.assertEquals("393495089819_1:3@s.whatsapp.net", jid.toString());
+        Assertions.assertEquals(ContactJid.of("393495089819", Server.WHATSAPP, 3, 1), jid);
+    }
+
+    @Test
+    public void testServerOnly() {
+        var jid = ContactJid.ofServer(Server.GROUP);
+        Assertions.assertNull(jid.user());
+        Assertions.assertEquals("g.us", jid.toString());
+        Assertions.assertEquals(Server.BROADCAST, ContactJid.of("status@broadcast").server());
+    }
+
+    @Test
+    public void testInvalidDevice() {
+        Assertions.assertThrows(NumberFormatException.class, () -> ContactJid.of("393495089819:abc@s.whatsapp.net"));
+    }
+
+    @Test
+    public void testInterning() {
+        Assertions.assertSame(ContactJid.of("393495089819@s.whatsapp.net"), ContactJid.of("393495089819", Server.WHATSAPP, 0, 0));
+        Assertions.assertSame(ContactJid.ofDevice("393495089819@s.whatsapp.net", 2), ContactJid.of("393495089819:2@s.whatsapp.net"));
+    }
+
+    // Both parsers reject the same malformed jids, so the type of the exception is compared too
+    private static Object outcome(Supplier<ContactJid> parser) {
+        try {
+            return parser.get();
+        } catch (RuntimeException exception) {
+            return exception.getClass();
+        }
+    }
+
+    // The parser that was used before jids were parsed in a single pass, kept to check that the results didn't change
+    private static ContactJid parseBySplitting(String jid) {
+        return parseBySplitting(jid, Server.of(jid));
+    }
+
+    private static ContactJid parseBySplitting(String jid, Server server) {
+        var complexUser = jid;
+        for (var entry : Server.values()) {
+            complexUser = complexUser.replace("@%s".formatted(entry.address()), "");
+        }
+
+        if (complexUser.contains(":")) {
+            var simpleUser = complexUser.split(":", 2);
+            var user = simpleUser[0];
+            var device = Integer.parseUnsignedInt(simpleUser[1]);
+            if (user.contains("_")) {
+                var simpleUserAgent = user.split("_", 2);
+                return new ContactJid(simpleUserAgent[0], server, device, parseAgent(simpleUserAgent[1]));
+            }
+
+            return new ContactJid(user, server, device, 0);
+        }
+
+        if (!complexUser.contains("_")) {
+            return new ContactJid(complexUser, server, 0, 0);
+        }
+
+        var simpleUserAgent = complexUser.split("_", 2);
+        return new ContactJid(simpleUserAgent[0], server, 0, parseAgent(simpleUserAgent[1]));
+    }
+
+    private static int parseAgent(String agent) {
+        try {
+            return Integer.parseUnsignedInt(agent);
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+}
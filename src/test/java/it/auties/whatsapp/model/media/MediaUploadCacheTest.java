@@ -0,0 +1,89 @@
+package it.auties.whatsapp.model.media;
+
+import it.auties.whatsapp.util.Smile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+public class MediaUploadCacheTest {
+    private static final Duration TTL = Duration.ofDays(30);
+
+    @Test
+    public void testHit() {
+        var cache = new MediaUploadCache();
+        var file = file("a");
+        cache.add(sha256("a"), AttachmentType.IMAGE, file, 0);
+        Assertions.assertSame(file, cache.find(sha256("a"), AttachmentType.IMAGE, TTL).orElseThrow());
+        Assertions.assertEquals(1, cache.hits());
+        Assertions.assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void testMiss() {
+        var cache = new MediaUploadCache();
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 0);
+        Assertions.assertTrue(cache.find(sha256("b"), AttachmentType.IMAGE, TTL).isEmpty());
+        Assertions.assertTrue(cache.find(sha256("a"), AttachmentType.VIDEO, TTL).isEmpty());
+        Assertions.assertEquals(0, cache.hits());
+        Assertions.assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void testExpiredUploadsArePrunedOnLookup() {
+        var cache = new MediaUploadCache();
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 0);
+        cache.add(sha256("b"), AttachmentType.IMAGE, file("b"), 0);
+        Assertions.assertTrue(cache.find(sha256("c"), AttachmentType.IMAGE, Duration.ZERO).isEmpty());
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testExpiredUploadsAreRemoved() {
+        var cache = new MediaUploadCache();
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 0);
+        cache.removeExpired(TTL);
+        Assertions.assertEquals(1, cache.size());
+        cache.removeExpired(Duration.ZERO);
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testOldestUploadsAreEvicted() {
+        var cache = new MediaUploadCache();
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 2);
+        cache.add(sha256("b"), AttachmentType.IMAGE, file("b"), 2);
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 2);
+        cache.add(sha256("c"), AttachmentType.IMAGE, file("c"), 2);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertTrue(cache.find(sha256("b"), AttachmentType.IMAGE, TTL).isEmpty());
+        Assertions.assertTrue(cache.find(sha256("a"), AttachmentType.IMAGE, TTL).isPresent());
+        Assertions.assertTrue(cache.find(sha256("c"), AttachmentType.IMAGE, TTL).isPresent());
+    }
+
+    @Test
+    public void testSmileRoundTrip() throws IOException {
+        var cache = new MediaUploadCache();
+        cache.add(sha256("a"), AttachmentType.IMAGE, file("a"), 0);
+        cache.add(sha256("b"), AttachmentType.VIDEO, file("b"), 0);
+        var decoded = Smile.readValue(Smile.writeValueAsBytes(cache), MediaUploadCache.class);
+        Assertions.assertEquals(2, decoded.size());
+        var file = decoded.find(sha256("a"), AttachmentType.IMAGE, TTL).orElseThrow();
+        Assertions.assertEquals("a", file.directPath());
+        Assertions.assertArrayEquals(sha256("a"), file.fileSha256());
+        Assertions.assertTrue(decoded.find(sha256("b"), AttachmentType.VIDEO, TTL).isPresent());
+        decoded.add(sha256("c"), AttachmentType.IMAGE, file("c"), 2);
+        Assertions.assertTrue(decoded.find(sha256("a"), AttachmentType.IMAGE, TTL).isEmpty());
+    }
+
+    private byte[] sha256(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MediaFile file(String name) {
+        return new MediaFile(sha256(name), sha256(name), new byte[32], 1, name, "https://mmg.whatsapp.net/" + name);
+    }
+}
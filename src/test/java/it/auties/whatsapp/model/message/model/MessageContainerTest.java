@@ -0,0 +1,85 @@
+package it.auties.whatsapp.model.message.model;
+
+import it.auties.whatsapp.model.message.standard.TextMessage;
+import it.auties.whatsapp.util.Json;
+import it.auties.whatsapp.util.Protobuf;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MessageContainerTest {
+    @Test
+    public void testTextType() {
+        var container = MessageContainer.of("hello");
+        Assertions.assertEquals(MessageType.TEXT, container.type());
+        Assertions.assertEquals(MessageType.TEXT, container.deepType());
+        Assertions.assertEquals("hello", text(container));
+    }
+
+    @Test
+    public void testEphemeralType() {
+        var container = MessageContainer.ofEphemeral(TextMessage.of("hello"));
+        Assertions.assertEquals(MessageType.EPHEMERAL, container.type());
+        Assertions.assertEquals(MessageType.TEXT, container.deepType());
+        Assertions.assertEquals("hello", text(container));
+    }
+
+    @Test
+    public void testViewOnceType() {
+        for (var container : new MessageContainer[]{MessageContainer.ofViewOnce(TextMessage.of("hello")), MessageContainer.ofViewOnceV2(TextMessage.of("hello"))}) {
+            Assertions.assertEquals(MessageType.VIEW_ONCE, container.type());
+            Assertions.assertEquals(MessageType.TEXT, container.deepType());
+            Assertions.assertEquals("hello", text(container));
+        }
+    }
+
+    @Test
+    public void testPlainTextIsCached() {
+        var container = MessageContainer.builder()
+                .textWithNoContextMessage("hello")
+                .build();
+        var content = container.content();
+        Assertions.assertInstanceOf(TextMessage.class, content);
+        Assertions.assertSame(content, container.content());
+        Assertions.assertEquals(MessageType.TEXT, container.type());
+    }
+
+    @Test
+    public void testDecodedProtobufType() {
+        var plain = MessageContainer.builder()
+                .textWithNoContextMessage("hello")
+                .build();
+        var decodedPlain = Protobuf.readMessage(Protobuf.writeMessage(plain), MessageContainer.class);
+        Assertions.assertEquals(MessageType.TEXT, decodedPlain.type());
+        Assertions.assertSame(decodedPlain.content(), decodedPlain.content());
+        Assertions.assertEquals("hello", text(decodedPlain));
+
+        var ephemeral = MessageContainer.ofEphemeral(TextMessage.of("hello"));
+        var decodedEphemeral = Protobuf.readMessage(Protobuf.writeMessage(ephemeral), MessageContainer.class);
+        Assertions.assertEquals(MessageType.EPHEMERAL, decodedEphemeral.type());
+        Assertions.assertEquals(MessageType.TEXT, decodedEphemeral.deepType());
+        Assertions.assertEquals("hello", text(decodedEphemeral));
+    }
+
+    @Test
+    public void testDecodedJsonType() {
+        var plain = MessageContainer.builder()
+                .textWithNoContextMessage("hello")
+                .build();
+        plain.content();
+        var decodedPlain = Json.readValue(Json.writeValueAsString(plain), MessageContainer.class);
+        Assertions.assertEquals(MessageType.TEXT, decodedPlain.type());
+        Assertions.assertSame(decodedPlain.content(), decodedPlain.content());
+        Assertions.assertEquals("hello", text(decodedPlain));
+
+        var viewOnce = MessageContainer.ofViewOnce(TextMessage.of("hello"));
+        viewOnce.type();
+        var decodedViewOnce = Json.readValue(Json.writeValueAsString(viewOnce), MessageContainer.class);
+        Assertions.assertEquals(MessageType.VIEW_ONCE, decodedViewOnce.type());
+        Assertions.assertEquals(MessageType.TEXT, decodedViewOnce.deepType());
+        Assertions.assertEquals("hello", text(decodedViewOnce));
+    }
+
+    private String text(MessageContainer container) {
+        return ((TextMessage) container.content()).text();
+    }
+}
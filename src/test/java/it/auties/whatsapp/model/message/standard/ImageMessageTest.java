@@ -0,0 +1,88 @@
+package it.auties.whatsapp.model.message.standard;
+
+import it.auties.whatsapp.util.Json;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class ImageMessageTest {
+    @Test
+    public void testStreamedImage() throws IOException {
+        var image = createImage(64, 32);
+        var message = ImageMessage.simpleBuilder()
+                .mediaStream(new ByteArrayInputStream(image))
+                .build();
+        var path = message.decodedMediaPath().orElseThrow();
+        Assertions.assertArrayEquals(image, Files.readAllBytes(path));
+        Assertions.assertEquals(64, message.width());
+        Assertions.assertEquals(32, message.height());
+        message.deleteTemporaryMedia();
+        Assertions.assertFalse(Files.exists(path));
+        Assertions.assertTrue(message.decodedMediaPath().isEmpty());
+    }
+
+    @Test
+    public void testFileImageIsKept() throws IOException {
+        var path = Files.createTempFile("image", ".png");
+        try {
+            Files.write(path, createImage(16, 48));
+            var message = ImageMessage.simpleBuilder()
+                    .mediaPath(path)
+                    .build();
+            Assertions.assertEquals(16, message.width());
+            Assertions.assertEquals(48, message.height());
+            message.deleteTemporaryMedia();
+            Assertions.assertTrue(Files.exists(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testTemporaryPathIsNotSerialized() throws IOException {
+        var message = ImageMessage.simpleBuilder()
+                .mediaStream(new ByteArrayInputStream(createImage(8, 8)))
+                .build();
+        try {
+            var path = message.decodedMediaPath().orElseThrow();
+            Assertions.assertFalse(Json.writeValueAsString(message).contains(path.getFileName().toString()));
+        } finally {
+            message.deleteTemporaryMedia();
+        }
+    }
+
+    @Test
+    public void testFilePathIsSerialized() throws IOException {
+        var path = Files.createTempFile("image", ".png");
+        try {
+            Files.write(path, createImage(8, 8));
+            var message = ImageMessage.simpleBuilder()
+                    .mediaPath(path)
+                    .build();
+            Assertions.assertTrue(Json.writeValueAsString(message).contains(path.getFileName().toString()));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testMultipleSources() throws IOException {
+        var image = createImage(8, 8);
+        var builder = ImageMessage.simpleBuilder()
+                .media(image)
+                .mediaStream(new ByteArrayInputStream(image));
+        Assertions.assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    private byte[] createImage(int width, int height) throws IOException {
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
+    }
+}
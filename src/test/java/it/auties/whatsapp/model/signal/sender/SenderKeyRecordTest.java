@@ -0,0 +1,53 @@
+package it.auties.whatsapp.model.signal.sender;
+
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import it.auties.whatsapp.util.Spec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+public class SenderKeyRecordTest {
+    @Test
+    public void testStatesOfAnIdAreCapped() {
+        var record = new SenderKeyRecord();
+        for (var iteration = 0; iteration < Spec.Signal.MAX_SENDER_KEY_STATES + 2; iteration++) {
+            record.addState(1, iteration, new byte[32], SignalKeyPair.random());
+        }
+        var states = record.findStateById(1);
+        Assertions.assertEquals(Spec.Signal.MAX_SENDER_KEY_STATES, states.size());
+        Assertions.assertEquals(2, states.get(0).chainKey().iteration());
+    }
+
+    @Test
+    public void testOldestIdsAreEvicted() {
+        var record = new SenderKeyRecord();
+        for (var id = 0; id < Spec.Signal.MAX_SENDER_KEY_STATES + 1; id++) {
+            record.addState(id, 0, new byte[32], SignalKeyPair.random());
+        }
+        Assertions.assertThrows(NullPointerException.class, () -> record.findStateById(0));
+        for (var id = 1; id < Spec.Signal.MAX_SENDER_KEY_STATES + 1; id++) {
+            Assertions.assertEquals(1, record.findStateById(id).size());
+        }
+    }
+
+    @Test
+    public void testUpdatedIdsAreEvictedLast() {
+        var record = new SenderKeyRecord();
+        for (var id = 0; id < Spec.Signal.MAX_SENDER_KEY_STATES; id++) {
+            record.addState(id, 0, new byte[32], SignalKeyPair.random());
+        }
+        record.addState(0, 1, new byte[32], SignalKeyPair.random());
+        record.addState(Spec.Signal.MAX_SENDER_KEY_STATES, 0, new byte[32], SignalKeyPair.random());
+        Assertions.assertEquals(2, record.findStateById(0).size());
+        Assertions.assertThrows(NullPointerException.class, () -> record.findStateById(1));
+        Assertions.assertEquals(2, record.findState().id());
+    }
+
+    @Test
+    public void testEmptyRecord() {
+        var record = new SenderKeyRecord();
+        Assertions.assertTrue(record.isEmpty());
+        Assertions.assertThrows(NoSuchElementException.class, record::findState);
+    }
+}
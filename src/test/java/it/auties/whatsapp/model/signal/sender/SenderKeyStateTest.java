@@ -0,0 +1,35 @@
+package it.auties.whatsapp.model.signal.sender;
+
+import it.auties.whatsapp.model.signal.keypair.SignalKeyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SenderKeyStateTest {
+    @Test
+    public void testMessageKeysAreRetained() {
+        var state = createState();
+        for (var iteration = 0; iteration < 3; iteration++) {
+            Assertions.assertEquals(0, state.addSenderMessageKey(new SenderMessageKey(iteration, new byte[32]), 3));
+        }
+        Assertions.assertEquals(List.of(0, 1, 2), List.copyOf(state.messageKeys().keySet()));
+        Assertions.assertTrue(state.findSenderMessageKey(0).isPresent());
+    }
+
+    @Test
+    public void testOldestMessageKeysAreEvicted() {
+        var state = createState();
+        var evicted = 0;
+        for (var iteration = 0; iteration < 5; iteration++) {
+            evicted += state.addSenderMessageKey(new SenderMessageKey(iteration, new byte[32]), 3);
+        }
+        Assertions.assertEquals(2, evicted);
+        Assertions.assertEquals(List.of(2, 3, 4), List.copyOf(state.messageKeys().keySet()));
+        Assertions.assertTrue(state.findSenderMessageKey(1).isEmpty());
+    }
+
+    private SenderKeyState createState() {
+        return new SenderKeyState(1, 0, new byte[32], SignalKeyPair.random());
+    }
+}
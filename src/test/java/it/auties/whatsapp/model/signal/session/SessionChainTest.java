@@ -0,0 +1,39 @@
+package it.auties.whatsapp.model.signal.session;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SessionChainTest {
+    @Test
+    public void testMessageKeysAreRetained() {
+        var chain = new SessionChain(0, new byte[32]);
+        for (var counter = 1; counter <= 3; counter++) {
+            Assertions.assertEquals(0, chain.addMessageKey(counter, new byte[]{(byte) counter}, 3));
+        }
+        Assertions.assertEquals(List.of(1, 2, 3), List.copyOf(chain.messageKeys().keySet()));
+        Assertions.assertTrue(chain.hasMessageKey(1));
+    }
+
+    @Test
+    public void testOldestMessageKeysAreEvicted() {
+        var chain = new SessionChain(0, new byte[32]);
+        var evicted = 0;
+        for (var counter = 1; counter <= 5; counter++) {
+            evicted += chain.addMessageKey(counter, new byte[]{(byte) counter}, 3);
+        }
+        Assertions.assertEquals(2, evicted);
+        Assertions.assertEquals(List.of(3, 4, 5), List.copyOf(chain.messageKeys().keySet()));
+        Assertions.assertFalse(chain.hasMessageKey(1));
+    }
+
+    @Test
+    public void testGapEvictsEveryOlderMessageKey() {
+        var chain = new SessionChain(0, new byte[32]);
+        chain.addMessageKey(1, new byte[]{1}, 3);
+        chain.addMessageKey(2, new byte[]{2}, 3);
+        Assertions.assertEquals(2, chain.addMessageKey(10, new byte[]{10}, 3));
+        Assertions.assertEquals(List.of(10), List.copyOf(chain.messageKeys().keySet()));
+    }
+}
@@ -0,0 +1,105 @@
+package it.auties.whatsapp.socket;
+
+import it.auties.whatsapp.listener.Listener;
+import it.auties.whatsapp.listener.ListenerOptions;
+import it.auties.whatsapp.listener.ListenerOverflowPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+public class ListenerBusTest {
+    private final Listener listener = new Listener() {};
+    private final Map<Listener, ListenerOptions> options = new ConcurrentHashMap<>();
+    private final ListenerBus bus = new ListenerBus(() -> List.of(listener), entry -> options.getOrDefault(entry, ListenerOptions.defaults()), Throwable::printStackTrace);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void dispose() {
+        release.countDown();
+        bus.dispose();
+    }
+
+    @Test
+    public void testEventsAreDeliveredInOrder() throws InterruptedException {
+        var results = new CopyOnWriteArrayList<Integer>();
+        var latch = new CountDownLatch(100);
+        IntStream.range(0, 100).forEach(index -> bus.publish(null, ignored -> {
+            results.add(index);
+            latch.countDown();
+        }));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(IntStream.range(0, 100).boxed().toList(), results);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotLoseEventsByDefault() throws InterruptedException {
+        Assertions.assertEquals(ListenerOverflowPolicy.BLOCK, ListenerOptions.defaults().overflowPolicy());
+        block();
+        var events = ListenerOptions.defaults().capacity() * 2;
+        var latch = new CountDownLatch(events);
+        var published = CompletableFuture.runAsync(() -> IntStream.range(0, events)
+                .forEach(index -> bus.publish(null, ignored -> latch.countDown())));
+        Assertions.assertThrows(TimeoutException.class, () -> published.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assertions.assertDoesNotThrow(() -> published.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, bus.metrics().get(listener).dropped());
+    }
+
+    @Test
+    public void testSlowListenerDropsOldestEventsIfAllowed() {
+        var capacity = ListenerOptions.defaults().capacity();
+        options.put(listener, new ListenerOptions(capacity, ListenerOverflowPolicy.DROP_OLDEST));
+        block();
+        var published = CompletableFuture.runAsync(() -> IntStream.range(0, capacity * 2)
+                .forEach(index -> bus.publish(null, ignored -> {})));
+        Assertions.assertDoesNotThrow(() -> published.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(bus.metrics().get(listener).dropped() >= capacity - 1);
+    }
+
+    @Test
+    public void testOptionsAreUpdated() {
+        options.put(listener, new ListenerOptions(1, ListenerOverflowPolicy.BLOCK));
+        block();
+        var published = CompletableFuture.runAsync(() -> IntStream.range(0, 3)
+                .forEach(index -> bus.publish(null, ignored -> {})));
+        Assertions.assertThrows(TimeoutException.class, () -> published.get(200, TimeUnit.MILLISECONDS));
+        options.put(listener, new ListenerOptions(1, ListenerOverflowPolicy.DROP_OLDEST));
+        bus.publish(null, ignored -> {});
+        Assertions.assertDoesNotThrow(() -> published.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(bus.metrics().get(listener).dropped() > 0);
+    }
+
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        options.put(listener, new ListenerOptions(16, ListenerOverflowPolicy.COALESCE));
+        block();
+        var results = new CopyOnWriteArrayList<Integer>();
+        IntStream.range(0, 10).forEach(index -> bus.publish("presence", ignored -> results.add(index)));
+        var latch = new CountDownLatch(1);
+        bus.publish(null, ignored -> latch.countDown());
+        release.countDown();
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(9), results);
+        Assertions.assertEquals(9, bus.metrics().get(listener).coalesced());
+    }
+
+    // Occupies the listener until the test ends, so that the events published afterwards are queued
+    private void block() {
+        var started = new CountDownLatch(1);
+        bus.publish(null, ignored -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertDoesNotThrow(() -> started.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,111 @@
+package it.auties.whatsapp.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class CoalescingCacheTest {
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws InterruptedException {
+        var cache = new CoalescingCache<String>(TTL, 8);
+        var loads = new AtomicInteger();
+        var pending = new CompletableFuture<String>();
+        var threads = 16;
+        var start = new CountDownLatch(1);
+        var issued = new CountDownLatch(threads);
+        var results = new CompletableFuture<?>[threads];
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (var i = 0; i < threads; i++) {
+                var result = new CompletableFuture<String>();
+                results[i] = result;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        cache.get("key", count(loads, () -> pending)).whenComplete((value, error) -> result.complete(value));
+                    } catch (InterruptedException exception) {
+                        result.completeExceptionally(exception);
+                    } finally {
+                        issued.countDown();
+                    }
+                });
+            }
+
+            start.countDown();
+            Assertions.assertTrue(issued.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        pending.complete("value");
+        CompletableFuture.allOf(results).orTimeout(5, TimeUnit.SECONDS).join();
+        Assertions.assertEquals(1, loads.get());
+        for (var result : results) {
+            Assertions.assertEquals("value", result.join());
+        }
+    }
+
+    @Test
+    public void testExpiredValuesAreLoadedAgain() {
+        var clock = new AtomicLong();
+        var cache = new CoalescingCache<String>(TTL, 8, clock::get);
+        var loads = new AtomicInteger();
+        Assertions.assertEquals("value", cache.get("key", count(loads, () -> CompletableFuture.completedFuture("value"))).join());
+        clock.set(TTL.toMillis() - 1);
+        Assertions.assertEquals("value", cache.get("key", count(loads, () -> CompletableFuture.completedFuture("other"))).join());
+        Assertions.assertEquals(1, loads.get());
+        clock.set(TTL.toMillis());
+        Assertions.assertEquals("other", cache.get("key", count(loads, () -> CompletableFuture.completedFuture("other"))).join());
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testFailedLookupsAreRemoved() {
+        var cache = new CoalescingCache<String>(TTL, 8);
+        var failed = cache.get("key", () -> CompletableFuture.failedFuture(new IllegalStateException("failure")));
+        var error = Assertions.assertThrows(CompletionException.class, failed::join);
+        Assertions.assertInstanceOf(IllegalStateException.class, error.getCause());
+        Assertions.assertEquals(0, cache.size());
+        var thrown = cache.get("key", () -> {
+            throw new IllegalStateException("failure");
+        });
+        Assertions.assertThrows(CompletionException.class, thrown::join);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals("value", cache.get("key", () -> CompletableFuture.completedFuture("value")).join());
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testOldestValuesAreEvicted() {
+        var cache = new CoalescingCache<String>(TTL, 2);
+        var loads = new AtomicInteger();
+        cache.get("a", count(loads, () -> CompletableFuture.completedFuture("a")));
+        cache.get("b", count(loads, () -> CompletableFuture.completedFuture("b")));
+        cache.get("a", count(loads, () -> CompletableFuture.completedFuture("a")));
+        cache.get("c", count(loads, () -> CompletableFuture.completedFuture("c")));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(3, loads.get());
+        cache.get("b", count(loads, () -> CompletableFuture.completedFuture("b")));
+        Assertions.assertEquals(3, loads.get());
+        cache.get("a", count(loads, () -> CompletableFuture.completedFuture("a")));
+        Assertions.assertEquals(4, loads.get());
+    }
+
+    private Supplier<CompletableFuture<String>> count(AtomicInteger loads, Supplier<CompletableFuture<String>> loader) {
+        return () -> {
+            loads.incrementAndGet();
+            return loader.get();
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package it.auties.whatsapp.util;
+
+import it.auties.linkpreview.LinkPreview;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+public class LinkPreviewsTest {
+    @Test
+    public void testUrlRegexMatchesLibrary() throws ReflectiveOperationException {
+        var field = LinkPreview.class.getDeclaredField("URL_REGEX");
+        field.setAccessible(true);
+        var expected = (Pattern) field.get(null);
+        Assertions.assertEquals(expected.pattern(), LinkPreviews.URL_REGEX.pattern());
+        Assertions.assertEquals(expected.flags(), LinkPreviews.URL_REGEX.flags());
+    }
+
+    @Test
+    public void testMissingTextHasNoPreview() {
+        Assertions.assertTrue(LinkPreviews.findPreview(null, Duration.ofSeconds(1)).join().isEmpty());
+        Assertions.assertTrue(LinkPreviews.findPreview("no links here", Duration.ofSeconds(1)).join().isEmpty());
+    }
+}
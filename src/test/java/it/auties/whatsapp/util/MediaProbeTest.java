@@ -0,0 +1,101 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.model.media.MediaDimensions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+public class MediaProbeTest {
+    @Test
+    public void testPngDimensions() throws IOException {
+        var image = createImage("png", 40, 30);
+        Assertions.assertEquals(Optional.of(new MediaDimensions(40, 30)), MediaProbe.getImageDimensions(image));
+    }
+
+    @Test
+    public void testJpegDimensions() throws IOException {
+        var image = createImage("jpg", 17, 91);
+        Assertions.assertEquals(Optional.of(new MediaDimensions(17, 91)), MediaProbe.getImageDimensions(image));
+    }
+
+    @Test
+    public void testMalformedImage() throws IOException {
+        var image = createImage("png", 40, 30);
+        Assertions.assertTrue(MediaProbe.getImageDimensions(Arrays.copyOf(image, 12)).isEmpty());
+        Assertions.assertTrue(MediaProbe.getImageDimensions(new byte[]{1, 2, 3}).isEmpty());
+        Assertions.assertTrue(MediaProbe.getImageDimensions(null).isEmpty());
+    }
+
+    @Test
+    public void testMp4() {
+        var video = createMp4(1000, 12500, 1280, 720);
+        Assertions.assertEquals(OptionalInt.of(12), MediaProbe.getMp4Duration(video));
+        Assertions.assertEquals(Optional.of(new MediaDimensions(1280, 720)), MediaProbe.getMp4Dimensions(video));
+        Assertions.assertEquals(OptionalInt.of(12), MediaProbe.getMp4Duration(ByteBuffer.wrap(video)));
+        Assertions.assertEquals(Optional.of(new MediaDimensions(1280, 720)), MediaProbe.getMp4Dimensions(ByteBuffer.wrap(video)));
+    }
+
+    @Test
+    public void testMp4AudioTrackIsSkipped() {
+        var video = box("moov", concat(mvhd(600, 6000), trak(0, 0), trak(640, 480)));
+        Assertions.assertEquals(Optional.of(new MediaDimensions(640, 480)), MediaProbe.getMp4Dimensions(video));
+    }
+
+    @Test
+    public void testMalformedMp4() {
+        var video = createMp4(1000, 12500, 1280, 720);
+        Assertions.assertTrue(MediaProbe.getMp4Duration(Arrays.copyOf(video, video.length - 8)).isEmpty());
+        Assertions.assertTrue(MediaProbe.getMp4Duration(box("moov", mvhd(0, 100))).isEmpty());
+        Assertions.assertTrue(MediaProbe.getMp4Dimensions(box("ftyp", new byte[8])).isEmpty());
+        Assertions.assertTrue(MediaProbe.getMp4Duration((byte[]) null).isEmpty());
+    }
+
+    private byte[] createImage(String format, int width, int height) throws IOException {
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, output);
+        return output.toByteArray();
+    }
+
+    private byte[] createMp4(int timescale, int duration, int width, int height) {
+        return concat(box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)), box("moov", concat(mvhd(timescale, duration), trak(width, height))));
+    }
+
+    private byte[] mvhd(int timescale, int duration) {
+        var payload = ByteBuffer.allocate(100);
+        payload.putInt(12, timescale);
+        payload.putInt(16, duration);
+        return box("mvhd", payload.array());
+    }
+
+    private byte[] trak(int width, int height) {
+        var payload = ByteBuffer.allocate(84);
+        payload.putInt(76, width << 16);
+        payload.putInt(80, height << 16);
+        return box("trak", box("tkhd", payload.array()));
+    }
+
+    private byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(payload)
+                .array();
+    }
+
+    private byte[] concat(byte[]... parts) {
+        var output = new ByteArrayOutputStream();
+        for (var part : parts) {
+            output.writeBytes(part);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,388 @@
+package it.auties.whatsapp.util;
+
+import it.auties.whatsapp.crypto.Sha256;
+import it.auties.whatsapp.exception.HmacValidationException;
+import it.auties.whatsapp.model.media.AttachmentType;
+import it.auties.whatsapp.model.media.MediaConnection;
+import it.auties.whatsapp.model.media.MediaFile;
+import it.auties.whatsapp.model.message.standard.DocumentMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs uploads and downloads against local stand-ins of the media hosts
+public class MediasTest {
+    private static final int MEDIA_SIZE = 3 * 1024 * 1024 + 12345;
+
+    private MediaServer healthy;
+    private MediaServer broken;
+
+    @BeforeEach
+    public void startServers() throws IOException {
+        this.healthy = new MediaServer(200);
+        this.broken = new MediaServer(500);
+    }
+
+    @AfterEach
+    public void stopServers() throws IOException {
+        healthy.stop();
+        broken.stop();
+    }
+
+    @Test
+    public void testUploadFailover() {
+        var hosts = new MediaHosts("http", healthy.host());
+        var upload = upload(createMedia(), hosts);
+        Assertions.assertEquals(1, broken.uploads().get());
+        Assertions.assertEquals(1, healthy.uploads().get());
+        Assertions.assertEquals(healthy.host(), hosts.candidates().get(0));
+        Assertions.assertEquals("/d/%s".formatted(healthy.files().keySet().iterator().next()), upload.directPath());
+    }
+
+    @Test
+    public void testDownloadFailover() {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        var hosts = new MediaHosts("http", healthy.host());
+        hosts.update(List.of(broken.host()));
+        var result = Medias.download(message, MediaDownloadOptions.of(hosts)).join();
+        Assertions.assertArrayEquals(media, result.orElseThrow());
+        Assertions.assertEquals(1, broken.downloads().get());
+        Assertions.assertEquals(healthy.host(), hosts.candidates().get(0));
+    }
+
+    @Test
+    public void testRangedDownload() throws IOException {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        var stream = Medias.downloadStream(message, new MediaDownloadOptions(new MediaHosts("http", healthy.host()), 3))
+                .join()
+                .orElseThrow();
+        try (stream) {
+            Assertions.assertArrayEquals(media, stream.readAllBytes());
+        }
+
+        var encryptedLength = healthy.files().values().iterator().next().length;
+        var ranges = (encryptedLength + 1024 * 1024 - 1) / (1024 * 1024);
+        Assertions.assertEquals(ranges, healthy.ranges().get());
+    }
+
+    @Test
+    public void testOversizedContentRange() {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        healthy.advertisedLength(Long.MAX_VALUE);
+        var hosts = new MediaHosts("http", healthy.host());
+        var error = Assertions.assertThrows(CompletionException.class, () -> Medias.downloadStream(message, new MediaDownloadOptions(hosts, 3)).join());
+        Assertions.assertTrue(error.getCause().getCause().getMessage().startsWith("Unexpected media length"));
+        Assertions.assertEquals(1, healthy.ranges().get());
+    }
+
+    @Test
+    public void testMissingMedia() {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        healthy.files().clear();
+        Assertions.assertTrue(Medias.download(message, MediaDownloadOptions.of(new MediaHosts("http", healthy.host()))).join().isEmpty());
+    }
+
+    @Test
+    public void testStreamedDownloadsMatchBufferedDownload() throws IOException {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        var expected = Medias.download(message, MediaDownloadOptions.of(new MediaHosts("http", healthy.host()))).join().orElseThrow();
+        Assertions.assertArrayEquals(media, expected);
+
+        var output = new ByteArrayOutputStream();
+        Assertions.assertTrue(Medias.download(message, output, new MediaDownloadOptions(new MediaHosts("http", healthy.host()), 3)).join());
+        Assertions.assertArrayEquals(expected, output.toByteArray());
+
+        var channelOutput = new ByteArrayOutputStream();
+        Assertions.assertTrue(Medias.download(message, Channels.newChannel(channelOutput), new MediaDownloadOptions(new MediaHosts("http", healthy.host()), 3)).join());
+        Assertions.assertArrayEquals(expected, channelOutput.toByteArray());
+
+        var directory = Files.createTempDirectory("medias");
+        try {
+            var path = directory.resolve("media.bin");
+            Assertions.assertTrue(Medias.download(message, path, new MediaDownloadOptions(new MediaHosts("http", healthy.host()), 3)).join());
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(path));
+            Assertions.assertEquals(List.of(path), listFiles(directory));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testInvalidSha256LeavesPathUntouched() throws IOException {
+        var upload = upload(createMedia(), new MediaHosts("http", healthy.host()));
+        var message = createMessage(upload);
+        message.mediaEncryptedSha256(new byte[32]);
+        assertPathUntouched(message, SecurityException.class);
+    }
+
+    @Test
+    public void testInvalidMacLeavesPathUntouched() throws IOException {
+        var message = createMessage(upload(createMedia(), new MediaHosts("http", healthy.host())));
+        var file = healthy.files().values().iterator().next();
+        file[file.length - 1] ^= 1;
+        message.mediaEncryptedSha256(Sha256.calculate(file));
+        assertPathUntouched(message, HmacValidationException.class);
+    }
+
+    private void assertPathUntouched(DocumentMessage message, Class<? extends Throwable> expected) throws IOException {
+        var directory = Files.createTempDirectory("medias");
+        try {
+            var path = directory.resolve("media.bin");
+            var original = "original".getBytes(StandardCharsets.UTF_8);
+            Files.write(path, original);
+            var hosts = new MediaHosts("http", healthy.host());
+            var error = Assertions.assertThrows(CompletionException.class, () -> Medias.download(message, path, new MediaDownloadOptions(hosts, 3)).join());
+            Assertions.assertInstanceOf(expected, error.getCause());
+            Assertions.assertArrayEquals(original, Files.readAllBytes(path));
+            Assertions.assertEquals(List.of(path), listFiles(directory));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testParallelDownloadInMemory() {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        var result = Medias.download(message, new MediaDownloadOptions(new MediaHosts("http", healthy.host()), 3)).join();
+        Assertions.assertArrayEquals(media, result.orElseThrow());
+        Assertions.assertTrue(healthy.ranges().get() > 1);
+    }
+
+    @Test
+    public void testDecodedMediaUsesSessionHosts() {
+        var media = createMedia();
+        var message = createMessage(upload(media, new MediaHosts("http", healthy.host())));
+        Assertions.assertThrows(IllegalArgumentException.class, message::decodedMedia);
+        message.mediaHosts(new MediaHosts("http", healthy.host()));
+        Assertions.assertArrayEquals(media, message.decodedMedia().orElseThrow());
+    }
+
+    private List<Path> listFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+
+    private void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testPreparedThumbnailIsCopied() throws IOException {
+        var output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB), "png", output);
+        var image = Medias.hash(output.toByteArray());
+        var first = Medias.getThumbnail(image, Medias.Format.PNG).orElseThrow();
+        var expected = first.clone();
+        Arrays.fill(first, (byte) 0);
+        var second = Medias.getThumbnail(image, Medias.Format.PNG).orElseThrow();
+        Assertions.assertArrayEquals(expected, second);
+        Arrays.fill(second, (byte) 0);
+        Assertions.assertArrayEquals(expected, Medias.getThumbnail(image, Medias.Format.PNG).orElseThrow());
+    }
+
+    private MediaFile upload(byte[] media, MediaHosts hosts) {
+        var connection = new MediaConnection("auth", 60, 1, System.currentTimeMillis(), List.of(broken.host()));
+        return Medias.upload(media, AttachmentType.DOCUMENT, connection, hosts).join();
+    }
+
+    private DocumentMessage createMessage(MediaFile upload) {
+        return DocumentMessage.builder()
+                .mediaKey(upload.mediaKey())
+                .mediaSha256(upload.fileSha256())
+                .mediaEncryptedSha256(upload.fileEncSha256())
+                .mediaDirectPath(upload.directPath())
+                .mediaSize(upload.fileLength())
+                .build();
+    }
+
+    private byte[] createMedia() {
+        var media = new byte[MEDIA_SIZE];
+        new Random(42).nextBytes(media);
+        return media;
+    }
+
+    // A minimal HTTP/1.1 server that closes every connection after its response, enough to stand in for a media host
+    private static final class MediaServer {
+        private final ServerSocket server;
+        private final int status;
+        private final Map<String, byte[]> files;
+        private final AtomicInteger uploads;
+        private final AtomicInteger downloads;
+        private final AtomicInteger ranges;
+        private volatile long advertisedLength;
+
+        private MediaServer(int status) throws IOException {
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.status = status;
+            this.files = new ConcurrentHashMap<>();
+            this.uploads = new AtomicInteger();
+            this.downloads = new AtomicInteger();
+            this.ranges = new AtomicInteger();
+            this.advertisedLength = -1;
+            startThread(this::accept);
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    var socket = server.accept();
+                    startThread(() -> handle(socket));
+                } catch (IOException ignored) {
+
+                }
+            }
+        }
+
+        private void startThread(Runnable runnable) {
+            var thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                var input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                var requestLine = readLine(input).split(" ");
+                var headers = new HashMap<String, String>();
+                String header;
+                while (!(header = readLine(input)).isEmpty()) {
+                    var separator = header.indexOf(':');
+                    headers.put(header.substring(0, separator).trim().toLowerCase(), header.substring(separator + 1).trim());
+                }
+
+                var body = new byte[Integer.parseInt(headers.getOrDefault("content-length", "0"))];
+                input.readFully(body);
+                var path = URI.create(requestLine[1]).getPath();
+                var output = socket.getOutputStream();
+                if (requestLine[0].equals("POST")) {
+                    handleUpload(path, body, output);
+                } else {
+                    handleDownload(path, headers.get("range"), output);
+                }
+                output.flush();
+            } catch (IOException ignored) {
+
+            }
+        }
+
+        private void handleUpload(String path, byte[] body, OutputStream output) throws IOException {
+            uploads.incrementAndGet();
+            if (status != 200) {
+                respond(output, status, Map.of(), new byte[0], 0, 0);
+                return;
+            }
+
+            var token = path.substring(path.lastIndexOf('/') + 1);
+            files.put(token, body);
+            var response = "{\"direct_path\":\"/d/%s\",\"url\":\"http://%s/d/%s\"}".formatted(token, host(), token)
+                    .getBytes(StandardCharsets.UTF_8);
+            respond(output, 200, Map.of(), response, 0, response.length);
+        }
+
+        private void handleDownload(String path, String range, OutputStream output) throws IOException {
+            downloads.incrementAndGet();
+            if (status != 200) {
+                respond(output, status, Map.of(), new byte[0], 0, 0);
+                return;
+            }
+
+            var file = files.get(path.substring("/d/".length()));
+            if (file == null) {
+                respond(output, 404, Map.of(), new byte[0], 0, 0);
+                return;
+            }
+
+            if (range == null) {
+                respond(output, 200, Map.of(), file, 0, file.length);
+                return;
+            }
+
+            ranges.incrementAndGet();
+            var bounds = range.substring("bytes=".length()).split("-");
+            var start = Integer.parseInt(bounds[0]);
+            var end = Math.min(Integer.parseInt(bounds[1]), file.length - 1);
+            var length = advertisedLength == -1 ? file.length : advertisedLength;
+            respond(output, 206, Map.of("Content-Range", "bytes %s-%s/%s".formatted(start, end, length)), file, start, end - start + 1);
+        }
+
+        private void respond(OutputStream output, int status, Map<String, String> headers, byte[] body, int offset, int length) throws IOException {
+            var response = new StringBuilder("HTTP/1.1 %s Status\r\n".formatted(status));
+            headers.forEach((key, value) -> response.append("%s: %s\r\n".formatted(key, value)));
+            response.append("Content-Length: %s\r\nConnection: close\r\n\r\n".formatted(length));
+            output.write(response.toString().getBytes(StandardCharsets.US_ASCII));
+            output.write(body, offset, length);
+        }
+
+        private String readLine(InputStream input) throws IOException {
+            var line = new StringBuilder();
+            int read;
+            while ((read = input.read()) != -1 && read != '\n') {
+                if (read != '\r') {
+                    line.append((char) read);
+                }
+            }
+            return line.toString();
+        }
+
+        private String host() {
+            return "127.0.0.1:%s".formatted(server.getLocalPort());
+        }
+
+        private Map<String, byte[]> files() {
+            return files;
+        }
+
+        private AtomicInteger uploads() {
+            return uploads;
+        }
+
+        private AtomicInteger downloads() {
+            return downloads;
+        }
+
+        private AtomicInteger ranges() {
+            return ranges;
+        }
+
+        private void advertisedLength(long advertisedLength) {
+            this.advertisedLength = advertisedLength;
+        }
+
+        private void stop() throws IOException {
+            server.close();
+        }
+    }
+}
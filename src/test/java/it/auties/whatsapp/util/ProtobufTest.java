@@ -0,0 +1,85 @@
+package it.auties.whatsapp.util;
+
+import it.auties.protobuf.base.ProtobufDeserializationException;
+import it.auties.whatsapp.model.chat.Chat;
+import it.auties.whatsapp.model.contact.ContactJid;
+import it.auties.whatsapp.model.sync.HistorySync;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ProtobufTest {
+    private static final int CONVERSATIONS_INDEX = 2;
+
+    @Test
+    public void testStreamedField() {
+        var chats = List.of(Chat.ofJid(ContactJid.of("1@s.whatsapp.net")), Chat.ofJid(ContactJid.of("2@s.whatsapp.net")));
+        var history = HistorySync.builder()
+                .conversations(new ArrayList<>(chats))
+                .chunkOrder(7)
+                .build();
+        var streamed = new ArrayList<Chat>();
+        var result = Protobuf.readMessage(new ByteArrayInputStream(Protobuf.writeMessage(history)), HistorySync.class, CONVERSATIONS_INDEX, Chat.class, streamed::add);
+        Assertions.assertEquals(List.of(chats.get(0).jid(), chats.get(1).jid()), streamed.stream().map(Chat::jid).toList());
+        Assertions.assertTrue(result.conversations().isEmpty());
+        Assertions.assertEquals(7, result.chunkOrder());
+    }
+
+    @Test
+    public void testTruncatedStreamedField() {
+        var history = HistorySync.builder()
+                .conversations(new ArrayList<>(List.of(Chat.ofJid(ContactJid.of("1@s.whatsapp.net")))))
+                .build();
+        var encoded = Protobuf.writeMessage(history);
+        var truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        Assertions.assertThrows(ProtobufDeserializationException.class, () -> readConversations(truncated));
+    }
+
+    @Test
+    public void testNegativeStreamedFieldLength() {
+        var encoded = new byte[]{0x12, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 1, 2, 3};
+        Assertions.assertThrows(ProtobufDeserializationException.class, () -> readConversations(encoded));
+    }
+
+    @Test
+    public void testOversizedStreamedFieldLength() {
+        var encoded = new byte[]{0x12, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x07, 1, 2, 3};
+        Assertions.assertThrows(ProtobufDeserializationException.class, () -> readConversations(encoded));
+    }
+
+    private void readConversations(byte[] encoded) {
+        Protobuf.readMessage(new ByteArrayInputStream(encoded), HistorySync.class, CONVERSATIONS_INDEX, Chat.class, ignored -> {});
+    }
+
+    @Test
+    public void testCodecRethrowsErrors() {
+        var codec = Protobuf.codec(FailingMessage.class);
+        Assertions.assertThrows(StackOverflowError.class, () -> codec.decode(new byte[0]));
+        Assertions.assertThrows(StackOverflowError.class, () -> codec.encode(new FailingMessage()));
+    }
+
+    @Test
+    public void testCodecWrapsExceptions() {
+        var codec = Protobuf.codec(FailingMessage.class);
+        Assertions.assertThrows(ProtobufDeserializationException.class, () -> codec.decode(null));
+        Assertions.assertThrows(ProtobufDeserializationException.class, () -> Protobuf.codec(String.class).decode(new byte[0]));
+    }
+
+    public static final class FailingMessage {
+        public static FailingMessage ofProtobuf(byte[] bytes) {
+            if (bytes == null) {
+                throw new IllegalArgumentException("Missing bytes");
+            }
+
+            throw new StackOverflowError();
+        }
+
+        public byte[] toEncodedProtobuf() {
+            throw new StackOverflowError();
+        }
+    }
+}
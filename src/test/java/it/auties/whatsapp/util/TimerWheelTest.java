@@ -0,0 +1,73 @@
+package it.auties.whatsapp.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TimerWheelTest {
+    private static final Duration TICK = Duration.ofMillis(10);
+
+    @Test
+    public void testTasksRunInDeadlineOrder() throws InterruptedException {
+        var timer = new TimerWheel("TimerWheelTest", TICK, 8);
+        var results = new CopyOnWriteArrayList<Integer>();
+        var latch = new CountDownLatch(3);
+        timer.schedule(() -> record(results, latch, 3), Duration.ofMillis(150));
+        timer.schedule(() -> record(results, latch, 1), Duration.ofMillis(30));
+        timer.schedule(() -> record(results, latch, 2), Duration.ofMillis(90));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(1, 2, 3), results);
+    }
+
+    @Test
+    public void testTaskIsNotRunBeforeItsDeadline() throws InterruptedException {
+        var timer = new TimerWheel("TimerWheelTest", TICK, 4);
+        var latch = new CountDownLatch(1);
+        var start = System.nanoTime();
+        var timeout = timer.schedule(latch::countDown, Duration.ofMillis(200));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(System.nanoTime() - start >= Duration.ofMillis(200).toNanos());
+        Assertions.assertTrue(timeout.isExpired());
+        Assertions.assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testCancelledTaskIsNotRun() throws InterruptedException {
+        var timer = new TimerWheel("TimerWheelTest", TICK, 8);
+        var results = new CopyOnWriteArrayList<Integer>();
+        var latch = new CountDownLatch(1);
+        var cancelled = timer.schedule(() -> results.add(1), Duration.ofMillis(20));
+        Assertions.assertTrue(cancelled.cancel());
+        Assertions.assertTrue(cancelled.isCancelled());
+        timer.schedule(() -> record(results, latch, 2), Duration.ofMillis(60));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(2), results);
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopTheTimer() throws InterruptedException {
+        var timer = new TimerWheel("TimerWheelTest", TICK, 8);
+        var latch = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("Expected failure");
+        }, Duration.ZERO);
+        timer.schedule(latch::countDown, Duration.ofMillis(30));
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TimerWheel("TimerWheelTest", Duration.ZERO, 8));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TimerWheel("TimerWheelTest", TICK, 0));
+    }
+
+    private void record(List<Integer> results, CountDownLatch latch, int value) {
+        results.add(value);
+        latch.countDown();
+    }
+}